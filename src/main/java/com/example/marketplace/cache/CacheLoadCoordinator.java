@@ -0,0 +1,159 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.util.RedisLocks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.cache.RedisCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cross-node side of the stampede protection of {@link TwoLevelCache}.
+ * <p>
+ * A node about to recompute a missing entry first takes a short Redis lock on its key; the other
+ * nodes wait for the value to show up in Redis instead of querying the database as well. The lock
+ * expires on its own, so a node dying mid-load only delays the others by {@code lockTtl}.
+ * <p>
+ * Entries are also refreshed ahead of their Redis expiry following XFetch: a read refreshes an
+ * entry when {@code now - delta * beta * ln(random) >= expiry}, {@code delta} being the time it
+ * takes to compute. Refreshes start with low probability and become certain at expiry, with the
+ * slowest entries starting earliest, so a hot key is almost always recomputed by a single reader
+ * in the background before it ever expires.
+ */
+@Slf4j
+public class CacheLoadCoordinator {
+
+    private static final String LOCK_PREFIX = "cache:lock:";
+
+    // Intervalle d'interrogation de Redis pendant le chargement par un autre noeud
+    private static final long POLL_INTERVAL_MS = 20;
+
+    private final StringRedisTemplate redisTemplate;
+    private final Duration lockTtl;
+    private final Duration lockWait;
+    private final double beta;
+    private final Executor refreshExecutor;
+
+    // Identifie les verrous posés par ce noeud
+    private final String owner = UUID.randomUUID().toString();
+
+    public CacheLoadCoordinator(StringRedisTemplate redisTemplate, Duration lockTtl, Duration lockWait, double beta,
+                                Executor refreshExecutor) {
+        this.redisTemplate = redisTemplate;
+        this.lockTtl = lockTtl;
+        this.lockWait = lockWait;
+        this.beta = beta;
+        this.refreshExecutor = refreshExecutor;
+    }
+
+    /**
+     * Whether an entry expiring at {@code expiresAt} (epoch millis) should be recomputed now.
+     */
+    public boolean shouldRefreshEarly(long expiresAt, double deltaMillis) {
+        if (expiresAt == Long.MAX_VALUE || deltaMillis <= 0 || beta <= 0) {
+            return false;
+        }
+        double random = ThreadLocalRandom.current().nextDouble();
+        return System.currentTimeMillis() - deltaMillis * beta * Math.log(random) >= expiresAt;
+    }
+
+    /**
+     * Epoch millis at which the Redis entry of {@code key} expires, or {@link Long#MAX_VALUE} when
+     * unknown or never.
+     */
+    public long remoteExpiresAt(Cache remote, Object key) {
+        String redisKey = redisKey(remote, key);
+        if (redisKey == null) {
+            return Long.MAX_VALUE;
+        }
+        try {
+            Long ttl = redisTemplate.getExpire(redisKey, TimeUnit.MILLISECONDS);
+            return ttl != null && ttl > 0 ? System.currentTimeMillis() + ttl : Long.MAX_VALUE;
+        } catch (DataAccessException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Epoch millis at which a value written now expires from Redis, or {@link Long#MAX_VALUE}.
+     */
+    public long expiresAtIfWrittenNow(Cache remote, Object key, Object value) {
+        if (!(remote instanceof RedisCache redisCache) || value == null) {
+            return Long.MAX_VALUE;
+        }
+        Duration ttl = redisCache.getCacheConfiguration().getTtlFunction().getTimeToLive(key, value);
+        return ttl != null && !ttl.isZero() && !ttl.isNegative()
+                ? System.currentTimeMillis() + ttl.toMillis()
+                : Long.MAX_VALUE;
+    }
+
+    /**
+     * Takes the load lock of a key. Returns true as well when Redis cannot be reached: the node
+     * then loads on its own rather than not at all.
+     */
+    public boolean tryLock(Cache remote, Object key) {
+        String redisKey = redisKey(remote, key);
+        if (redisKey == null) {
+            return true;
+        }
+        try {
+            Boolean acquired = redisTemplate.opsForValue().setIfAbsent(LOCK_PREFIX + redisKey, owner, lockTtl);
+            return !Boolean.FALSE.equals(acquired);
+        } catch (DataAccessException e) {
+            log.debug("Cache load lock unavailable for {}: {}", redisKey, e.getMessage());
+            return true;
+        }
+    }
+
+    public void unlock(Cache remote, Object key) {
+        String redisKey = redisKey(remote, key);
+        if (redisKey == null) {
+            return;
+        }
+        try {
+            // Comparaison et suppression atomiques : jamais un verrou expiré puis repris par un autre noeud
+            RedisLocks.release(redisTemplate, LOCK_PREFIX + redisKey, owner);
+        } catch (DataAccessException e) {
+            log.debug("Could not release cache load lock of {}: {}", redisKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Polls {@code lookup} until it returns a value or the lock wait is over.
+     */
+    public Cache.ValueWrapper awaitRemote(Supplier<Cache.ValueWrapper> lookup) {
+        long deadline = System.nanoTime() + lockWait.toNanos();
+        while (System.nanoTime() < deadline) {
+            Cache.ValueWrapper value = lookup.get();
+            if (value != null) {
+                return value;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return null;
+    }
+
+    public Executor getRefreshExecutor() {
+        return refreshExecutor;
+    }
+
+    private static String redisKey(Cache remote, Object key) {
+        if (!(remote instanceof RedisCache redisCache)) {
+            return null;
+        }
+        String converted = redisCache.getCacheConfiguration().getConversionService().convert(key, String.class);
+        return redisCache.getCacheConfiguration().getKeyPrefixFor(redisCache.getName()) + converted;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.util.TransactionUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Version counters of cache tags such as {@code store:5} or {@code category:12}.
+ * <p>
+ * A cached entry records the version of each of its tags when it was computed, and is stale as
+ * soon as one of them has moved; a write invalidates every entry carrying a tag by incrementing
+ * the tag's Redis counter, without having to know which entries those are. New versions are
+ * broadcast so that each node answers freshness checks from its local copy of the counters; a
+ * lost message delays an invalidation on one node by at most {@code local-ttl}, after which the
+ * counter is read from Redis again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CacheTags implements MessageListener {
+
+    static final String CHANNEL = "cache:tags";
+    private static final String VERSION_PREFIX = "cache:tag:";
+
+    // Tag de toutes les listes non restreintes à une boutique ou une catégorie
+    public static final String PRODUCTS = "products";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${marketplace.cache.tags.local-ttl:1m}")
+    private Duration localTtl;
+
+    @Value("${marketplace.cache.tags.local-max-size:100000}")
+    private long localMaxSize;
+
+    private Cache<String, Long> known;
+
+    public static String product(Long id) {
+        return "product:" + id;
+    }
+
+    public static String store(Long id) {
+        return "store:" + id;
+    }
+
+    public static String category(Long id) {
+        return "category:" + id;
+    }
+
+    @PostConstruct
+    public void init() {
+        known = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(localTtl)
+                .build();
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Current version of each tag, 0 for a tag never invalidated.
+     *
+     * @throws DataAccessException when some versions are not known locally and Redis is unreachable
+     */
+    public Map<String, Long> versions(Collection<String> tags) {
+        Map<String, Long> versions = new HashMap<>(known.getAllPresent(tags));
+        List<String> missing = new ArrayList<>();
+        for (String tag : tags) {
+            if (!versions.containsKey(tag) && !missing.contains(tag)) {
+                missing.add(tag);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<String> stored = redisTemplate.opsForValue().multiGet(missing.stream().map(tag -> VERSION_PREFIX + tag).toList());
+            for (int i = 0; i < missing.size(); i++) {
+                String value = stored != null ? stored.get(i) : null;
+                long version = value != null ? Long.parseLong(value) : 0L;
+                versions.put(missing.get(i), remember(missing.get(i), version));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Whether none of the tags has been invalidated since {@code versions} were read.
+     */
+    public boolean isCurrent(Map<String, Long> versions) {
+        return versions.equals(versions(versions.keySet()));
+    }
+
+    /**
+     * Invalidates every entry carrying one of the tags, once the current transaction has committed:
+     * a reader recomputing in between would otherwise cache the data about to be replaced.
+     */
+    public void invalidate(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            return;
+        }
+        Set<String> distinct = new LinkedHashSet<>(tags);
+        TransactionUtils.afterCommit(() -> bump(distinct));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        for (String field : body.split(",")) {
+            int separator = field.lastIndexOf('=');
+            try {
+                remember(field.substring(0, separator), Long.parseLong(field.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                log.warn("Ignoring malformed cache tag version: {}", field);
+            }
+        }
+    }
+
+    private void bump(Collection<String> tags) {
+        StringBuilder message = new StringBuilder();
+        try {
+            for (String tag : tags) {
+                Long version = redisTemplate.opsForValue().increment(VERSION_PREFIX + tag);
+                if (version != null) {
+                    remember(tag, version);
+                    message.append(message.isEmpty() ? "" : ",").append(tag).append('=').append(version);
+                }
+            }
+            if (!message.isEmpty()) {
+                redisTemplate.convertAndSend(CHANNEL, message.toString());
+            }
+        } catch (DataAccessException e) {
+            // Copie locale oubliée : la prochaine vérification relira Redis
+            known.invalidateAll(tags);
+            log.warn("Could not invalidate cache tags {}: {}", tags, e.getMessage());
+        }
+    }
+
+    // Les versions ne font que croître : un message en retard ne fait pas revenir en arrière
+    private long remember(String tag, long version) {
+        return known.asMap().merge(tag, version, Math::max);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.model.product.Category;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable cached view of a category and the name of its parent.
+ */
+public record CategorySnapshot(
+        Long id,
+        String name,
+        String description,
+        String image,
+        Boolean active,
+        Long parentId,
+        String parentName,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public static CategorySnapshot of(Category category) {
+        return new CategorySnapshot(
+                category.getId(),
+                category.getName(),
+                category.getDescription(),
+                category.getImage(),
+                category.getActive(),
+                category.getParent() != null ? category.getParent().getId() : null,
+                category.getParent() != null ? category.getParent().getName() : null,
+                category.getCreatedAt(),
+                category.getUpdatedAt());
+    }
+}
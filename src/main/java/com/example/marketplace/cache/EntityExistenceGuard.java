@@ -0,0 +1,294 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.exception.ResourceNotFoundException;
+import com.example.marketplace.repository.jpa.CategoryRepository;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import com.example.marketplace.repository.jpa.StoreRepository;
+import com.example.marketplace.repository.jpa.UserRepository;
+import com.example.marketplace.util.TransactionUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiFunction;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers "does this id exist?" for the by-id lookups of products, stores, categories and users
+ * without going to the database for ids that were never created.
+ * <p>
+ * Each entity type has a {@link ScalableBloomFilter} of its ids, built at startup and rebuilt
+ * nightly from an id scan, and fed with new ids as they are inserted, on this node directly and on
+ * the others through a Redis channel. A filter never forgets an id: deleted entities and false
+ * positives still reach the database, and the misses found there are remembered for a short while
+ * in a local negative cache. Until its filter is built, every id of a type is assumed to exist, and
+ * so is any id above the highest one seen by the last scan: an insertion message may have been
+ * lost, and the negative cache absorbs the misses among those ids.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class EntityExistenceGuard implements MessageListener {
+
+    public enum EntityType {
+        PRODUCT, STORE, CATEGORY, USER
+    }
+
+    static final String CHANNEL = "existence:inserts";
+
+    private static final char SEPARATOR = '|';
+
+    private final ProductRepository productRepository;
+    private final StoreRepository storeRepository;
+    private final CategoryRepository categoryRepository;
+    private final UserRepository userRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.existence.enabled:true}")
+    private boolean enabled;
+
+    @Value("${marketplace.existence.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${marketplace.existence.scan-chunk-size:10000}")
+    private int scanChunkSize;
+
+    @Value("${marketplace.existence.negative-ttl:30s}")
+    private Duration negativeTtl;
+
+    @Value("${marketplace.existence.negative-max-size:100000}")
+    private long negativeMaxSize;
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final Map<EntityType, Guard> guards = new EnumMap<>(EntityType.class);
+
+    private Cache<String, Boolean> negative;
+
+    /**
+     * Filter state of one entity type; {@code pending} receives the ids inserted while a new
+     * filter is being built, so that none is lost when it replaces the current one.
+     */
+    private final class Guard {
+        private final EntityType type;
+        private final LongSupplier counter;
+        private final BiFunction<Long, Pageable, List<Long>> idScanner;
+        private volatile ScalableBloomFilter filter;
+        private volatile ScalableBloomFilter pending;
+        // Plus grand id vu par le dernier parcours : au-delà, l'id a pu être créé sans que ce noeud le sache
+        private volatile long scannedUpTo;
+
+        private final Counter rejected;
+        private final Counter negativeHits;
+        private final Counter falsePositives;
+
+        private Guard(EntityType type, LongSupplier counter, BiFunction<Long, Pageable, List<Long>> idScanner) {
+            this.type = type;
+            this.counter = counter;
+            this.idScanner = idScanner;
+            this.rejected = checkCounter("rejected");
+            this.negativeHits = checkCounter("negative-cached");
+            this.falsePositives = checkCounter("not-found");
+        }
+
+        private Counter checkCounter(String result) {
+            return Counter.builder("marketplace.existence.checks")
+                    .description("Id lookups answered without the database, or missed in it despite the filter")
+                    .tag("type", type.name().toLowerCase())
+                    .tag("result", result)
+                    .register(meterRegistry);
+        }
+    }
+
+    @PostConstruct
+    public void initialize() {
+        negative = Caffeine.newBuilder()
+                .maximumSize(negativeMaxSize)
+                .expireAfterWrite(negativeTtl)
+                .build();
+        guards.put(EntityType.PRODUCT, new Guard(EntityType.PRODUCT, productRepository::count,
+                (afterId, page) -> productRepository.findIdsInRange(afterId, Long.MAX_VALUE, page)));
+        guards.put(EntityType.STORE, new Guard(EntityType.STORE, storeRepository::count,
+                storeRepository::findIdsAfter));
+        guards.put(EntityType.CATEGORY, new Guard(EntityType.CATEGORY, categoryRepository::count,
+                categoryRepository::findIdsAfter));
+        guards.put(EntityType.USER, new Guard(EntityType.USER, userRepository::count,
+                userRepository::findIdsAfter));
+        if (enabled) {
+            listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+        }
+    }
+
+    // Avant le préchauffage, qui passe par les recherches par id
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void buildFilters() {
+        if (!enabled) {
+            return;
+        }
+        guards.values().forEach(this::build);
+    }
+
+    @Scheduled(cron = "${marketplace.existence.rebuild-cron:0 45 4 * * *}")
+    public void rebuildFilters() {
+        // Purge les ids supprimés depuis la dernière construction
+        buildFilters();
+    }
+
+    /**
+     * Returns false when {@code id} is known not to exist, so that the lookup can fail without a query.
+     */
+    public boolean mightExist(EntityType type, Long id) {
+        if (!enabled || id == null) {
+            return true;
+        }
+        Guard guard = guards.get(type);
+        ScalableBloomFilter filter = guard.filter;
+        if (filter != null && id <= guard.scannedUpTo && !filter.mightContain(id)) {
+            guard.rejected.increment();
+            return false;
+        }
+        if (negative.getIfPresent(negativeKey(type, id)) != null) {
+            guard.negativeHits.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records a database miss and returns the exception to throw for it.
+     */
+    public ResourceNotFoundException notFound(EntityType type, Long id, String message) {
+        if (enabled && id != null) {
+            guards.get(type).falsePositives.increment();
+            negative.put(negativeKey(type, id), Boolean.TRUE);
+        }
+        return ResourceNotFoundException.withoutStackTrace(message);
+    }
+
+    /**
+     * To be called right after an entity has been inserted. The id is added locally at once, and
+     * again locally and on the other nodes once the transaction has committed.
+     */
+    public void added(EntityType type, Long id) {
+        if (!enabled || id == null) {
+            return;
+        }
+        addLocally(type, id);
+        TransactionUtils.afterCommit(() -> {
+            // Avant le commit, une construction du filtre ou une lecture manquée en base a pu ne pas voir l'id
+            addLocally(type, id);
+            publish(type, id);
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        String[] fields = body.split("\\" + SEPARATOR);
+        if (fields.length != 3) {
+            log.warn("Ignoring malformed existence update: {}", body);
+            return;
+        }
+        if (fields[0].equals(nodeId)) {
+            return;
+        }
+        try {
+            addLocally(EntityType.valueOf(fields[1]), Long.parseLong(fields[2]));
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring malformed existence update: {}", body);
+        }
+    }
+
+    private void addLocally(EntityType type, long id) {
+        Guard guard = guards.get(type);
+        ScalableBloomFilter pending = guard.pending;
+        if (pending != null) {
+            pending.add(id);
+        }
+        ScalableBloomFilter filter = guard.filter;
+        if (filter != null) {
+            filter.add(id);
+        }
+        // Filtre remplacé entre-temps par une construction qui n'a pas vu l'id
+        ScalableBloomFilter replaced = guard.filter;
+        if (replaced != filter && replaced != null) {
+            replaced.add(id);
+        }
+        negative.invalidate(negativeKey(type, id));
+    }
+
+    private void build(Guard guard) {
+        synchronized (guard) {
+            try {
+                long start = System.nanoTime();
+                // Marge pour les insertions à venir avant qu'un étage supplémentaire ne soit nécessaire
+                ScalableBloomFilter building = new ScalableBloomFilter(
+                        guard.counter.getAsLong() * 5 / 4, falsePositiveRate);
+                guard.pending = building;
+
+                long afterId = 0;
+                List<Long> ids;
+                do {
+                    ids = guard.idScanner.apply(afterId, PageRequest.of(0, scanChunkSize));
+                    for (Long id : ids) {
+                        building.add(id);
+                    }
+                    if (!ids.isEmpty()) {
+                        afterId = ids.get(ids.size() - 1);
+                    }
+                } while (ids.size() == scanChunkSize);
+
+                guard.filter = building;
+                guard.scannedUpTo = afterId;
+                log.info("Existence filter of {} built: {} ids, {} KB in {} ms",
+                        guard.type, building.approximateCount(), building.bitSize() / 8 / 1024,
+                        (System.nanoTime() - start) / 1_000_000);
+            } catch (DataAccessException e) {
+                // Le filtre précédent reste en place ; sans filtre, toutes les recherches vont en base
+                log.warn("Could not build existence filter of {}: {}", guard.type, e.getMessage());
+            } finally {
+                guard.pending = null;
+            }
+        }
+    }
+
+    private void publish(EntityType type, Long id) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + SEPARATOR + type.name() + SEPARATOR + id);
+        } catch (DataAccessException e) {
+            // Les autres noeuds le verront à la prochaine reconstruction ; d'ici là, 404 possible chez eux
+            log.warn("Could not publish insertion of {} {}: {}", type, id, e.getMessage());
+        }
+    }
+
+    private static String negativeKey(EntityType type, Long id) {
+        return type.name() + ':' + id;
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.marketplace.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Node-local cache of the serialized JSON bodies of the hottest catalog responses.
+ * <p>
+ * An entry holds the UTF-8 bytes of the response, gzipped as well when large enough, and is
+ * written as is to the servlet output stream: a hit costs neither DTO mapping nor Jackson. Like
+ * {@link ProductListingCache}, an entry records the {@link CacheTags} versions of its scope and of
+ * the items it shows, read before the body is computed where known, and is rebuilt once one of
+ * them has moved; a body whose tags moved while it was computed is not kept. {@code ttl} bounds the staleness of what tags do not cover, such as rankings. Bodies
+ * are computed by the first requesting thread outside of any cache lock, the concurrent requests
+ * for the same key waiting for its result.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class JsonResponseCache {
+
+    private final CacheTags cacheTags;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${marketplace.response-cache.max-size:1000}")
+    private long maxSize;
+
+    @Value("${marketplace.response-cache.ttl:1m}")
+    private Duration ttl;
+
+    @Value("${marketplace.response-cache.gzip-min-size:1024}")
+    private int gzipMinSize;
+
+    private AsyncCache<String, Body> bodies;
+
+    private Counter hits;
+    private Counter misses;
+
+    /**
+     * Serialized response; {@code gzipped} is null for bodies too small to be worth compressing.
+     */
+    private record Body(byte[] json, byte[] gzipped, String etag, Map<String, Long> tagVersions) {
+    }
+
+    @PostConstruct
+    public void initialize() {
+        bodies = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .buildAsync();
+        hits = requestCounter("hit");
+        misses = requestCounter("miss");
+    }
+
+    /**
+     * Writes the response of {@code key}, from the cache or computed with {@code body}, or a 304
+     * when the client's copy is current.
+     *
+     * @param key       endpoint and parameters, e.g. {@code stores:top|5}
+     * @param scopeTags tags whose writes can change which items the response contains
+     * @param itemTags  tags of the items shown by a computed body
+     */
+    public <T> void write(HttpServletRequest request, HttpServletResponse response, String key,
+                          CacheControl cacheControl, Collection<String> scopeTags, Supplier<T> body,
+                          Function<T, Collection<String>> itemTags) throws IOException {
+        Body cached;
+        try {
+            cached = enabled ? lookup(key, scopeTags, body, itemTags) : null;
+        } catch (DataAccessException e) {
+            // Versions illisibles : réponse calculée, non mise en cache
+            log.debug("Response cache unavailable for {}: {}", key, e.getMessage());
+            cached = null;
+        }
+        send(new ServletWebRequest(request, response), cached != null ? cached : serialize(body.get(), Map.of()),
+                cacheControl);
+    }
+
+    private <T> Body lookup(String key, Collection<String> scopeTags, Supplier<T> body,
+                            Function<T, Collection<String>> itemTags) {
+        CompletableFuture<Body> cached = bodies.getIfPresent(key);
+        Collection<String> knownTags = scopeTags;
+        if (cached != null) {
+            // Calcul en cours par une autre requête : on attend son résultat
+            Body present = await(cached);
+            if (cacheTags.isCurrent(present.tagVersions())) {
+                hits.increment();
+                return present;
+            }
+            bodies.asMap().remove(key, cached);
+            // Les éléments du corps remplacé sont les seuls connus avant le calcul
+            knownTags = new LinkedHashSet<>(scopeTags);
+            knownTags.addAll(present.tagVersions().keySet());
+        }
+        misses.increment();
+
+        // Un seul calcul par clé, fait par le thread appelant hors du verrou de la table
+        CompletableFuture<Body> computing = new CompletableFuture<>();
+        CompletableFuture<Body> running = bodies.asMap().putIfAbsent(key, computing);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            Map<String, Long> before = cacheTags.versions(knownTags);
+            T value = body.get();
+
+            Map<String, Long> versions = new HashMap<>();
+            List<String> unknownTags = new ArrayList<>();
+            for (String tag : scopeTags) {
+                versions.put(tag, before.get(tag));
+            }
+            for (String tag : itemTags.apply(value)) {
+                if (before.containsKey(tag)) {
+                    versions.put(tag, before.get(tag));
+                } else {
+                    unknownTags.add(tag);
+                }
+            }
+            cacheTags.versions(unknownTags).forEach(versions::putIfAbsent);
+            computing.complete(serialize(value, versions));
+            if (!cacheTags.isCurrent(versions)) {
+                // Modifié pendant le calcul : servi aux requêtes en attente, pas conservé
+                bodies.asMap().remove(key, computing);
+            }
+        } catch (RuntimeException e) {
+            // Retiré du cache par Caffeine : la requête suivante recalcule
+            computing.completeExceptionally(e);
+            throw e;
+        }
+        return computing.join();
+    }
+
+    private static Body await(CompletableFuture<Body> body) {
+        try {
+            return body.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private Body serialize(Object value, Map<String, Long> tagVersions) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(value);
+            String etag = "W/\"" + DigestUtils.md5DigestAsHex(json) + "\"";
+            return new Body(json, json.length >= gzipMinSize ? gzip(json) : null, etag, tagVersions);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize cached response", e);
+        }
+    }
+
+    private void send(ServletWebRequest request, Body body, CacheControl cacheControl) throws IOException {
+        HttpServletResponse response = request.getResponse();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        if (body.gzipped() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (request.checkNotModified(body.etag())) {
+            return;
+        }
+
+        byte[] bytes = body.json();
+        if (body.gzipped() != null && acceptsGzip(request)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            bytes = body.gzipped();
+        }
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
+
+    private static boolean acceptsGzip(ServletWebRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                // "gzip;q=0" : refusé explicitement
+                return !(parts.length > 1 && parts[1].trim().matches("q=0(\\.0*)?"));
+            }
+        }
+        return false;
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private Counter requestCounter(String result) {
+        return Counter.builder("marketplace.response-cache.requests")
+                .description("Requests served from pre-serialized response bodies, or computing them")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.dto.PagedResponse;
+import com.example.marketplace.dto.product.ProductDto;
+
+import java.util.Map;
+
+/**
+ * Cached page of a product listing, with the version of each cache tag it was computed under.
+ */
+public record ProductListing(PagedResponse<ProductDto> page, Map<String, Long> tagVersions) {
+}
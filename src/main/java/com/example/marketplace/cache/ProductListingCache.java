@@ -0,0 +1,143 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.dto.PagedResponse;
+import com.example.marketplace.dto.product.ProductDto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Cache of the paginated product listings, invalidated through {@link CacheTags}.
+ * <p>
+ * A listing is tagged with its scope ({@link CacheTags#PRODUCTS}, a store or a category) and
+ * with the product, store and category of each product it shows. The versions of the scope, and
+ * of the items of the page being replaced, are read before the page is computed; a page whose
+ * tags moved while it was computed is served but not kept. Product writes invalidate the scopes
+ * the product belongs to, so a listing can never miss a change of its own content; store and
+ * category writes invalidate the listings showing their name. Pages are computed in a read-only transaction of their own, which lets the
+ * two-level cache refresh them in the background.
+ */
+@Component
+@Slf4j
+public class ProductListingCache {
+
+    static final String CACHE_NAME = "listings";
+
+    private final CacheManager cacheManager;
+    private final CacheTags cacheTags;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public ProductListingCache(CacheManager cacheManager, CacheTags cacheTags,
+                               PlatformTransactionManager transactionManager) {
+        this.cacheManager = cacheManager;
+        this.cacheTags = cacheTags;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Returns the cached page of a listing, computing it with {@code loader} when missing or
+     * invalidated.
+     *
+     * @param listing   name and arguments of the listing, e.g. {@code store:5}
+     * @param scopeTags tags whose writes can change which products the listing contains
+     */
+    public PagedResponse<ProductDto> get(String listing, Pageable pageable, Collection<String> scopeTags,
+                                         Supplier<PagedResponse<ProductDto>> loader) {
+        String key = listing + '|' + pageable.getPageNumber() + '|' + pageable.getPageSize() + '|' + pageable.getSort();
+        try {
+            Cache cache = cacheManager.getCache(CACHE_NAME);
+            // Page en place lue par le chargeur : cas du rafraîchissement anticipé
+            ProductListing cached = cache.get(key,
+                    () -> load(scopeTags, cache.get(key, ProductListing.class), loader, new AtomicBoolean()));
+            if (cached != null && cacheTags.isCurrent(cached.tagVersions())) {
+                return cached.page();
+            }
+            evictIfStale(cache, key);
+            // Rechargée par le chargeur du cache : un seul calcul par clé, les autres appelants l'attendent
+            AtomicBoolean moved = new AtomicBoolean();
+            ProductListing fresh = cache.get(key, () -> load(scopeTags, cached, loader, moved));
+            if (fresh == null) {
+                return load(scopeTags, cached, loader, moved).page();
+            }
+            if (moved.get()) {
+                // Modifiée pendant le calcul : servie cette fois, pas conservée
+                evictIfStale(cache, key);
+            }
+            return fresh.page();
+        } catch (DataAccessException e) {
+            // Sans Redis, ni les versions ni les pages ne sont partagées : lecture directe
+            log.debug("Product listing cache unavailable for {}: {}", key, e.getMessage());
+            return loader.get();
+        }
+    }
+
+    // Ne retire pas une page déjà recalculée entre-temps par un autre appelant
+    private void evictIfStale(Cache cache, String key) {
+        ProductListing stored = cache.get(key, ProductListing.class);
+        if (stored != null && !cacheTags.isCurrent(stored.tagVersions())) {
+            cache.evict(key);
+        }
+    }
+
+    private ProductListing load(Collection<String> scopeTags, ProductListing previous,
+                                Supplier<PagedResponse<ProductDto>> loader, AtomicBoolean moved) {
+        // Versions lues avant le calcul : une écriture concurrente rend la page aussitôt périmée.
+        // Les produits affichés ne sont connus d'avance que par la page remplacée
+        Set<String> knownTags = new LinkedHashSet<>(scopeTags);
+        if (previous != null) {
+            knownTags.addAll(itemTags(previous.page().getContent()));
+        }
+        Map<String, Long> before = cacheTags.versions(knownTags);
+        PagedResponse<ProductDto> page = readOnlyTransaction.execute(status -> loader.get());
+
+        Map<String, Long> versions = new HashMap<>();
+        List<String> unknownTags = new ArrayList<>();
+        for (String tag : scopeTags) {
+            versions.put(tag, before.get(tag));
+        }
+        for (String tag : itemTags(page.getContent())) {
+            if (before.containsKey(tag)) {
+                versions.put(tag, before.get(tag));
+            } else {
+                unknownTags.add(tag);
+            }
+        }
+        cacheTags.versions(unknownTags).forEach(versions::putIfAbsent);
+        // Relues après le calcul : une écriture survenue entre-temps rend la page inutile à conserver
+        moved.set(!versions.equals(cacheTags.versions(versions.keySet())));
+        return new ProductListing(page, versions);
+    }
+
+    /**
+     * Tags of the product, store and categories of each product shown.
+     */
+    public static List<String> itemTags(Collection<ProductDto> products) {
+        Set<String> tags = new LinkedHashSet<>();
+        for (ProductDto product : products) {
+            tags.add(CacheTags.product(product.getId()));
+            if (product.getStoreId() != null) {
+                tags.add(CacheTags.store(product.getStoreId()));
+            }
+            if (product.getCategoryIds() != null) {
+                product.getCategoryIds().forEach(id -> tags.add(CacheTags.category(id)));
+            }
+        }
+        return new ArrayList<>(tags);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.model.product.Category;
+import com.example.marketplace.model.product.Product;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Immutable cached view of a product with its store and categories reduced to ids. Their names are
+ * read from their own snapshots when the product is shown, so that renaming a store or a category
+ * does not have to evict every product it holds.
+ */
+public record ProductSnapshot(
+        Long id,
+        String name,
+        String description,
+        BigDecimal price,
+        Integer quantity,
+        List<String> images,
+        Boolean featured,
+        Boolean active,
+        Long storeId,
+        List<Long> categoryIds,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public ProductSnapshot {
+        images = images != null ? List.copyOf(images) : List.of();
+        categoryIds = categoryIds != null ? List.copyOf(categoryIds) : List.of();
+    }
+
+    /**
+     * To be called while the product's store and categories can still be loaded.
+     */
+    public static ProductSnapshot of(Product product) {
+        return new ProductSnapshot(
+                product.getId(),
+                product.getName(),
+                product.getDescription(),
+                product.getPrice(),
+                product.getQuantity(),
+                product.getImages().stream().sorted().toList(),
+                product.getFeatured(),
+                product.getActive(),
+                product.getStore() != null ? product.getStore().getId() : null,
+                product.getCategories().stream().map(Category::getId).sorted().toList(),
+                product.getCreatedAt(),
+                product.getUpdatedAt());
+    }
+}
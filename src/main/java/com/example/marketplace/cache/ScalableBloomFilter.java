@@ -0,0 +1,126 @@
+package com.example.marketplace.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over {@code long} ids that grows with the number of ids added.
+ * <p>
+ * Made of a chain of plain Bloom filters: once the last one holds its planned capacity, a new one
+ * twice as large and with half the false positive rate is appended, so the overall rate stays
+ * below twice the initial one however many ids are added. Lookups and additions are lock-free;
+ * only appending a filter synchronizes.
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+
+    public ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        stages.add(new Stage(Math.max(initialCapacity, 64), falsePositiveRate));
+    }
+
+    public boolean mightContain(long id) {
+        long hash1 = mix(id);
+        long hash2 = mix(hash1);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash1, hash2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(long id) {
+        long hash1 = mix(id);
+        long hash2 = mix(hash1);
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash1, hash2)) {
+                return;
+            }
+        }
+        current().add(hash1, hash2);
+    }
+
+    public long approximateCount() {
+        return stages.stream().mapToLong(stage -> stage.count.get()).sum();
+    }
+
+    public long bitSize() {
+        return stages.stream().mapToLong(stage -> stage.bitCount).sum();
+    }
+
+    private Stage current() {
+        Stage last = stages.get(stages.size() - 1);
+        if (last.count.get() < last.capacity) {
+            return last;
+        }
+        synchronized (stages) {
+            last = stages.get(stages.size() - 1);
+            if (last.count.get() >= last.capacity) {
+                last = new Stage(last.capacity * GROWTH, last.falsePositiveRate * TIGHTENING);
+                stages.add(last);
+            }
+            return last;
+        }
+    }
+
+    // Finaliseur de SplitMix64 : disperse des ids consécutifs sur tout l'espace des hachés
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static final class Stage {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bitCount;
+        private final int hashCount;
+        private final AtomicLongArray words;
+        private final AtomicLong count = new AtomicLong();
+
+        private Stage(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            // Taille et nombre de fonctions de hachage optimaux pour la capacité et le taux visés
+            long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bitCount = Math.max(64, (bits + 63) / 64 * 64);
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+            this.words = new AtomicLongArray((int) (bitCount / 64));
+        }
+
+        private boolean mightContain(long hash1, long hash2) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hash1, hash2, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void add(long hash1, long hash2) {
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hash1, hash2, i);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long value;
+                do {
+                    value = words.get(word);
+                } while ((value & mask) == 0 && !words.compareAndSet(word, value, value | mask));
+            }
+            count.incrementAndGet();
+        }
+
+        // Double hachage (Kirsch-Mitzenmacher) : k positions à partir de deux hachés
+        private long index(long hash1, long hash2, int i) {
+            return Math.floorMod(hash1 + i * hash2, bitCount);
+        }
+    }
+}
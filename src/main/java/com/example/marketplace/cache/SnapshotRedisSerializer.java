@@ -0,0 +1,101 @@
+package com.example.marketplace.cache;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Redis serializer of one snapshot type, encoded as Smile (binary JSON) without any type information.
+ * <p>
+ * Payloads at least {@code compressionThreshold} bytes long are LZ4-compressed when that makes them
+ * smaller. The first byte tells the two formats apart; a compressed payload then carries its
+ * decompressed length.
+ */
+public class SnapshotRedisSerializer<T> implements RedisSerializer<T> {
+
+    private static final byte RAW = 0;
+    private static final byte LZ4 = 1;
+
+    private static final ObjectMapper MAPPER = SmileMapper.builder()
+            .addModule(new JavaTimeModule())
+            // Champ retiré d'un instantané : les entrées écrites avant restent lisibles
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+            .build();
+
+    private static final LZ4Factory LZ4_FACTORY = LZ4Factory.fastestInstance();
+
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final boolean compression;
+    private final int compressionThreshold;
+
+    public SnapshotRedisSerializer(Class<T> type, boolean compression, int compressionThreshold) {
+        this.reader = MAPPER.readerFor(type);
+        this.writer = MAPPER.writerFor(type);
+        this.compression = compression;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(T value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] encoded;
+        try {
+            encoded = writer.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new SerializationException("Could not encode " + value.getClass().getSimpleName(), e);
+        }
+
+        if (compression && encoded.length >= compressionThreshold) {
+            LZ4Compressor compressor = LZ4_FACTORY.fastCompressor();
+            byte[] compressed = new byte[5 + compressor.maxCompressedLength(encoded.length)];
+            int length = compressor.compress(encoded, 0, encoded.length, compressed, 5);
+            if (length + 5 < encoded.length + 1) {
+                compressed[0] = LZ4;
+                ByteBuffer.wrap(compressed, 1, 4).putInt(encoded.length);
+                return Arrays.copyOf(compressed, length + 5);
+            }
+        }
+
+        byte[] raw = new byte[encoded.length + 1];
+        raw[0] = RAW;
+        System.arraycopy(encoded, 0, raw, 1, encoded.length);
+        return raw;
+    }
+
+    @Override
+    public T deserialize(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            if (bytes[0] == RAW) {
+                return reader.readValue(bytes, 1, bytes.length - 1);
+            }
+            if (bytes[0] == LZ4) {
+                int length = ByteBuffer.wrap(bytes, 1, 4).getInt();
+                LZ4FastDecompressor decompressor = LZ4_FACTORY.fastDecompressor();
+                byte[] decoded = new byte[length];
+                decompressor.decompress(bytes, 5, decoded, 0, length);
+                return reader.readValue(decoded);
+            }
+        } catch (IOException | RuntimeException e) {
+            throw new SerializationException("Could not decode cached snapshot", e);
+        }
+        throw new SerializationException("Unknown cached snapshot format: " + bytes[0]);
+    }
+}
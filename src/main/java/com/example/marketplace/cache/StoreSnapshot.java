@@ -0,0 +1,35 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.model.store.Store;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable cached view of a store, its owner reduced to an id and a display name.
+ */
+public record StoreSnapshot(
+        Long id,
+        String name,
+        String description,
+        String logo,
+        String banner,
+        Boolean active,
+        Long ownerId,
+        String ownerName,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public static StoreSnapshot of(Store store) {
+        return new StoreSnapshot(
+                store.getId(),
+                store.getName(),
+                store.getDescription(),
+                store.getLogo(),
+                store.getBanner(),
+                store.getActive(),
+                store.getOwner() != null ? store.getOwner().getId() : null,
+                store.getOwner() != null ? store.getOwner().getFirstName() + " " + store.getOwner().getLastName() : null,
+                store.getCreatedAt(),
+                store.getUpdatedAt());
+    }
+}
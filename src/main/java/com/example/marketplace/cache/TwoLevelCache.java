@@ -0,0 +1,309 @@
+package com.example.marketplace.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link Cache} answering from an in-process Caffeine cache (L1) before the shared Redis cache (L2).
+ * <p>
+ * L1 entries are keyed by the string form of the cache key, the same form Redis uses, so that an
+ * invalidation received from another node can address them. Every local eviction or clear is
+ * broadcast through {@code invalidationPublisher}; entries written by another node are not, since
+ * this node only ever reads them from L2 after its own copy was invalidated.
+ * <p>
+ * Loads through {@link #get(Object, Callable)} ({@code @Cacheable(sync = true)}) are single-flight:
+ * concurrent misses of a key on this node share one load, and the {@link CacheLoadCoordinator}
+ * keeps the other nodes from running it too. L1 entries remember when their L2 copy expires, so
+ * that hot entries are recomputed in the background shortly before.
+ */
+@Slf4j
+public class TwoLevelCache implements Cache {
+
+    /**
+     * L1 entry: the value and the time (epoch millis) its L2 copy expires.
+     */
+    private record Entry(Object value, long expiresAt) implements ValueWrapper {
+        @Override
+        public Object get() {
+            return value;
+        }
+    }
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Entry> local;
+    private final Cache remote;
+    private final BiConsumer<String, String> invalidationPublisher;
+    private final CacheLoadCoordinator coordinator;
+
+    // Chargements en cours sur ce noeud, par clé locale
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> loads = new ConcurrentHashMap<>();
+
+    // Durée moyenne (ms) d'un chargement, le delta de XFetch
+    private volatile double averageLoadMillis;
+
+    private final Counter localHits;
+    private final Counter localMisses;
+    private final Counter remoteHits;
+    private final Counter remoteMisses;
+    private final Counter loaded;
+    private final Counter joined;
+    private final Counter awaited;
+    private final Counter earlyRefreshes;
+
+    /**
+     * @param localSpec Caffeine specification of the local cache, e.g. {@code maximumSize=10000,expireAfterWrite=5m}
+     */
+    public TwoLevelCache(String name, String localSpec, Cache remote, BiConsumer<String, String> invalidationPublisher,
+                         CacheLoadCoordinator coordinator, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.local = Caffeine.from(localSpec).build();
+        this.remote = remote;
+        this.invalidationPublisher = invalidationPublisher;
+        this.coordinator = coordinator;
+        this.localHits = counter(meterRegistry, "l1", "hit");
+        this.localMisses = counter(meterRegistry, "l1", "miss");
+        this.remoteHits = counter(meterRegistry, "l2", "hit");
+        this.remoteMisses = counter(meterRegistry, "l2", "miss");
+        this.loaded = loadCounter(meterRegistry, "loaded");
+        this.joined = loadCounter(meterRegistry, "joined");
+        this.awaited = loadCounter(meterRegistry, "awaited");
+        this.earlyRefreshes = Counter.builder("marketplace.cache.early-refreshes")
+                .description("Cache entries recomputed ahead of their expiry")
+                .tag("cache", name)
+                .register(meterRegistry);
+        meterRegistry.gauge("marketplace.cache.local.size",
+                Tags.of("cache", name), local, com.github.benmanes.caffeine.cache.Cache::estimatedSize);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        return lookup(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper value = get(key);
+        Object stored = value != null ? value.get() : null;
+        if (stored != null && type != null && !type.isInstance(stored)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + stored);
+        }
+        return (T) stored;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        Entry entry = lookup(key);
+        if (entry != null) {
+            if (coordinator.shouldRefreshEarly(entry.expiresAt(), averageLoadMillis)) {
+                refreshInBackground(key, entry, valueLoader);
+            }
+            return (T) entry.value();
+        }
+        return (T) loadOnce(key, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        remote.put(key, value);
+        local.put(localKey(key), new Entry(value, coordinator.expiresAtIfWrittenNow(remote, key, value)));
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        if (existing != null) {
+            local.put(localKey(key), new Entry(existing.get(), coordinator.remoteExpiresAt(remote, key)));
+        } else {
+            local.put(localKey(key), new Entry(value, coordinator.expiresAtIfWrittenNow(remote, key, value)));
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        String localKey = localKey(key);
+        remote.evict(key);
+        local.invalidate(localKey);
+        invalidationPublisher.accept(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        local.invalidateAll();
+        invalidationPublisher.accept(name, null);
+    }
+
+    /**
+     * Drops local entries on behalf of another node; {@code key} null clears the whole cache.
+     */
+    void invalidateLocal(String key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    private Entry lookup(Object key) {
+        String localKey = localKey(key);
+        Entry entry = local.getIfPresent(localKey);
+        if (entry != null) {
+            localHits.increment();
+            return entry;
+        }
+        localMisses.increment();
+        return fromRemote(key, localKey);
+    }
+
+    private Entry fromRemote(Object key, String localKey) {
+        ValueWrapper value = remote.get(key);
+        if (value == null) {
+            remoteMisses.increment();
+            return null;
+        }
+        remoteHits.increment();
+        Entry entry = new Entry(value.get(), coordinator.remoteExpiresAt(remote, key));
+        local.put(localKey, entry);
+        return entry;
+    }
+
+    private Object loadOnce(Object key, Callable<?> valueLoader) {
+        String localKey = localKey(key);
+        CompletableFuture<Object> load = new CompletableFuture<>();
+        CompletableFuture<Object> running = loads.putIfAbsent(localKey, load);
+        if (running != null) {
+            joined.increment();
+            return join(running, key, valueLoader);
+        }
+
+        try {
+            Object value = loadAcrossNodes(key, localKey, valueLoader);
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(localKey, load);
+        }
+    }
+
+    private Object loadAcrossNodes(Object key, String localKey, Callable<?> valueLoader) {
+        boolean locked = coordinator.tryLock(remote, key);
+        if (!locked) {
+            // Un autre noeud calcule déjà cette entrée : on attend qu'elle arrive dans Redis
+            ValueWrapper value = coordinator.awaitRemote(() -> fromRemote(key, localKey));
+            if (value != null) {
+                awaited.increment();
+                return value.get();
+            }
+        }
+
+        try {
+            long start = System.nanoTime();
+            Object value = valueLoader.call();
+            recordLoadTime((System.nanoTime() - start) / 1_000_000.0);
+            loaded.increment();
+            if (value != null) {
+                put(key, value);
+            }
+            return value;
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } finally {
+            if (locked) {
+                coordinator.unlock(remote, key);
+            }
+        }
+    }
+
+    private void refreshInBackground(Object key, Entry stale, Callable<?> valueLoader) {
+        String localKey = localKey(key);
+        if (loads.containsKey(localKey)) {
+            return;
+        }
+        try {
+            coordinator.getRefreshExecutor().execute(() -> {
+                try {
+                    // Déjà rafraîchie par un autre noeud : seule la copie locale est à jour
+                    Entry current = fromRemote(key, localKey);
+                    if (current != null && current.expiresAt() > stale.expiresAt()) {
+                        return;
+                    }
+                    earlyRefreshes.increment();
+                    loadOnce(key, valueLoader);
+                } catch (RuntimeException e) {
+                    log.debug("Early refresh of {}::{} failed: {}", name, localKey, e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // File pleine : l'entrée sera rafraîchie par une lecture suivante
+        }
+    }
+
+    private Object join(CompletableFuture<Object> running, Object key, Callable<?> valueLoader) {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ValueRetrievalException(key, valueLoader, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new ValueRetrievalException(key, valueLoader, e.getCause());
+        }
+    }
+
+    private void recordLoadTime(double millis) {
+        double average = averageLoadMillis;
+        averageLoadMillis = average == 0 ? millis : average * 0.8 + millis * 0.2;
+    }
+
+    private static String localKey(Object key) {
+        return String.valueOf(key);
+    }
+
+    private Counter counter(MeterRegistry meterRegistry, String tier, String result) {
+        return Counter.builder("marketplace.cache.requests")
+                .description("Cache lookups by tier")
+                .tag("cache", name)
+                .tag("tier", tier)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter loadCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("marketplace.cache.loads")
+                .description("Cache misses by outcome: loaded here, joined a load of this node, or awaited another node")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
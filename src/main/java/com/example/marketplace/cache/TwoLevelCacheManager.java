@@ -0,0 +1,137 @@
+package com.example.marketplace.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link CacheManager} putting a size-bounded local cache in front of each cache of a Redis
+ * {@link CacheManager}.
+ * <p>
+ * Local caches are Caffeine caches (W-TinyLFU eviction) built from a per-cache specification such
+ * as {@code maximumSize=10000,expireAfterWrite=5m}; caches without one use the default
+ * specification. Evictions are published on a Redis channel and applied to the local caches of
+ * the other nodes, the local TTL bounding staleness if a message is lost.
+ * <p>
+ * Loads are coordinated across nodes by a {@link CacheLoadCoordinator}; early refreshes run on a
+ * small bounded pool that drops them when saturated, the entry then simply expiring as usual.
+ */
+@Slf4j
+public class TwoLevelCacheManager implements CacheManager, MessageListener, DisposableBean {
+
+    static final String CHANNEL = "cache:invalidations";
+
+    // Séparateur des champs d'un message : noeud, cache, clé (vide pour tout le cache)
+    private static final char SEPARATOR = '|';
+
+    private static final int REFRESH_THREADS = 2;
+    private static final int REFRESH_QUEUE_SIZE = 100;
+
+    private final CacheManager remote;
+    private final Map<String, String> localSpecs;
+    private final String defaultLocalSpec;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ThreadPoolExecutor refreshExecutor;
+    private final CacheLoadCoordinator coordinator;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remote, Map<String, String> localSpecs, String defaultLocalSpec,
+                                StringRedisTemplate redisTemplate, RedisMessageListenerContainer listenerContainer,
+                                Duration lockTtl, Duration lockWait, double earlyRefreshBeta,
+                                MeterRegistry meterRegistry) {
+        this.remote = remote;
+        this.localSpecs = Map.copyOf(localSpecs);
+        this.defaultLocalSpec = defaultLocalSpec;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.refreshExecutor = refreshExecutor();
+        this.coordinator = new CacheLoadCoordinator(redisTemplate, lockTtl, lockWait, earlyRefreshBeta, refreshExecutor);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        TwoLevelCache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+        Cache remoteCache = remote.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+        return caches.computeIfAbsent(name, n -> new TwoLevelCache(n, localSpecs.getOrDefault(n, defaultLocalSpec),
+                remoteCache, this::publish, coordinator, meterRegistry));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return remote.getCacheNames();
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int first = body.indexOf(SEPARATOR);
+        int second = first >= 0 ? body.indexOf(SEPARATOR, first + 1) : -1;
+        if (second < 0) {
+            log.warn("Ignoring malformed cache invalidation: {}", body);
+            return;
+        }
+        if (body.substring(0, first).equals(nodeId)) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(body.substring(first + 1, second));
+        if (cache != null) {
+            String key = body.substring(second + 1);
+            cache.invalidateLocal(key.isEmpty() ? null : key);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private static ThreadPoolExecutor refreshExecutor() {
+        AtomicInteger threads = new AtomicInteger();
+        return new ThreadPoolExecutor(REFRESH_THREADS, REFRESH_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "cache-refresh-" + threads.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    private void publish(String cacheName, String key) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + SEPARATOR + cacheName + SEPARATOR + (key != null ? key : ""));
+        } catch (DataAccessException e) {
+            // Les autres noeuds garderont leur copie locale jusqu'à son expiration
+            log.warn("Could not publish invalidation of cache {}: {}", cacheName, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.model.user.User;
+import com.example.marketplace.model.user.UserRole;
+
+import java.time.LocalDateTime;
+
+/**
+ * Immutable cached view of a user's public profile. Credentials and associations are left out.
+ */
+public record UserSnapshot(
+        Long id,
+        String email,
+        String firstName,
+        String lastName,
+        String phone,
+        UserRole role,
+        Boolean enabled,
+        LocalDateTime createdAt,
+        LocalDateTime updatedAt) {
+
+    public static UserSnapshot of(User user) {
+        return new UserSnapshot(
+                user.getId(),
+                user.getEmail(),
+                user.getFirstName(),
+                user.getLastName(),
+                user.getPhone(),
+                user.getRole(),
+                user.getEnabled(),
+                user.getCreatedAt(),
+                user.getUpdatedAt());
+    }
+}
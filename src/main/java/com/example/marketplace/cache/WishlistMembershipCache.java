@@ -0,0 +1,148 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.repository.jpa.WishlistRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Per-user Redis set of every product id present in any of the user's wishlists,
+ * answering "which of these products are wished" with a single SMISMEMBER.
+ * Sets are built lazily from the join table and kept up to date on add/remove.
+ * <p>
+ * Every change bumps a per-user version, read before the join table is loaded and checked by the
+ * script filling the set: a load that may have missed a change committed meanwhile is dropped
+ * instead of cached.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WishlistMembershipCache {
+
+    private static final String KEY_PREFIX = "wishlist:members:";
+    private static final String VERSION_PREFIX = "wishlist:members:version:";
+
+    // Redis ne conserve pas d'ensemble vide : ce membre marque un ensemble construit
+    private static final String SENTINEL = "_";
+
+    private static final Duration TTL = Duration.ofHours(24);
+
+    // Remplit l'ensemble seulement s'il n'existe pas et qu'aucune modification n'a été publiée
+    // depuis la lecture de la version : -1 quand la lecture en base est peut-être périmée
+    private static final RedisScript<Long> LOAD_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 1 then return 0 end\n" +
+            "if (redis.call('GET', KEYS[2]) or '0') ~= ARGV[2] then return -1 end\n" +
+            "for i = 3, #ARGV, 1000 do\n" +
+            "  redis.call('SADD', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))\n" +
+            "end\n" +
+            "redis.call('EXPIRE', KEYS[1], ARGV[1])\n" +
+            "return 1", Long.class);
+
+    // Publie une modification : version incrémentée, puis SADD/SREM sur un ensemble déjà construit
+    // seulement, ou suppression de l'ensemble
+    private static final RedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR', KEYS[2])\n" +
+            "redis.call('EXPIRE', KEYS[2], ARGV[1])\n" +
+            "if ARGV[2] == 'DEL' then return redis.call('DEL', KEYS[1]) end\n" +
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n" +
+            "return redis.call(ARGV[2], KEYS[1], ARGV[3])", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final WishlistRepository wishlistRepository;
+
+    public Set<Long> findWishedProductIds(Long userId, Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return Set.of();
+        }
+
+        try {
+            String key = key(userId);
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(key)) && !load(userId)) {
+                // Wishlists modifiées pendant le chargement : réponse lue en base
+                return new LinkedHashSet<>(wishlistRepository.findWishedProductIds(userId, productIds));
+            }
+
+            Object[] members = productIds.stream().map(String::valueOf).toArray();
+            Map<Object, Boolean> membership = redisTemplate.opsForSet().isMember(key, members);
+
+            Set<Long> result = new LinkedHashSet<>();
+            if (membership != null) {
+                membership.forEach((member, present) -> {
+                    if (Boolean.TRUE.equals(present)) {
+                        result.add(Long.valueOf(member.toString()));
+                    }
+                });
+            }
+            return result;
+        } catch (DataAccessException e) {
+            log.warn("Wishlist membership cache unavailable for user {}: {}", userId, e.getMessage());
+            return new LinkedHashSet<>(wishlistRepository.findWishedProductIds(userId, productIds));
+        }
+    }
+
+    public void productAdded(Long userId, Long productId) {
+        // Seuls les ensembles déjà construits sont mis à jour, les autres seront chargés à la demande
+        update(userId, "SADD", String.valueOf(productId));
+    }
+
+    public void productRemoved(Long userId, Long productId) {
+        update(userId, "SREM", String.valueOf(productId));
+    }
+
+    public void evict(Long userId) {
+        update(userId, "DEL");
+    }
+
+    private void update(Long userId, String command, String... members) {
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(TTL.toSeconds()));
+        args.add(command);
+        args.addAll(List.of(members));
+        try {
+            redisTemplate.execute(UPDATE_SCRIPT, List.of(key(userId), versionKey(userId)), args.toArray());
+        } catch (DataAccessException e) {
+            evictQuietly(userId);
+        }
+    }
+
+    // Faux si l'ensemble n'a pas été rempli parce qu'une modification a été publiée pendant la lecture
+    private boolean load(Long userId) {
+        String version = redisTemplate.opsForValue().get(versionKey(userId));
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(TTL.toSeconds()));
+        args.add(version != null ? version : "0");
+        args.add(SENTINEL);
+        wishlistRepository.findProductIdsByUserId(userId).forEach(id -> args.add(String.valueOf(id)));
+
+        Long loaded = redisTemplate.execute(LOAD_SCRIPT, List.of(key(userId), versionKey(userId)), args.toArray());
+        return !Long.valueOf(-1L).equals(loaded);
+    }
+
+    private void evictQuietly(Long userId) {
+        try {
+            redisTemplate.delete(key(userId));
+        } catch (DataAccessException e) {
+            log.warn("Could not evict wishlist membership set for user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    private static String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private static String versionKey(Long userId) {
+        return VERSION_PREFIX + userId;
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.marketplace.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.client.ClientConfiguration;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchConfiguration;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 
+// Client, template et dépôts Elasticsearch ; aucun avec engine=lucene (auto-configuration Boot exclue)
 @Configuration
+@ConditionalOnExpression("'${marketplace.search.engine:elasticsearch}' != 'lucene'")
 @EnableElasticsearchRepositories(basePackages = "com.example.marketplace.repository.elasticsearch")
 public class ElasticsearchConfig extends ElasticsearchConfiguration {
 
@@ -1,16 +1,27 @@
 package com.example.marketplace.config;
 
+import com.example.marketplace.cache.CategorySnapshot;
+import com.example.marketplace.cache.ProductListing;
+import com.example.marketplace.cache.ProductSnapshot;
+import com.example.marketplace.cache.SnapshotRedisSerializer;
+import com.example.marketplace.cache.StoreSnapshot;
+import com.example.marketplace.cache.TwoLevelCacheManager;
+import com.example.marketplace.cache.UserSnapshot;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -20,9 +31,13 @@ import java.util.HashMap;
 import java.util.Map;
 
 @Configuration
-@EnableCaching
+// Appliqué avant les transactions : une lecture en cache n'en ouvre pas, et un chargement, même
+// anticipé sur un autre thread, s'exécute dans la sienne
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
 public class RedisConfig {
 
+    private static final String SNAPSHOT_PREFIX = "snapshot:";
+
     @Value("${spring.data.redis.host}")
     private String redisHost;
 
@@ -32,6 +47,46 @@ public class RedisConfig {
     @Value("${spring.cache.redis.time-to-live}")
     private long timeToLive;
 
+    @Value("${marketplace.cache.snapshots.compression:true}")
+    private boolean snapshotCompression;
+
+    @Value("${marketplace.cache.snapshots.compression-threshold:256}")
+    private int snapshotCompressionThreshold;
+
+    @Value("${marketplace.cache.local.enabled:true}")
+    private boolean localCacheEnabled;
+
+    // Spécifications Caffeine du cache local (L1) de chaque cache, leur TTL restant inférieur à celui de Redis
+    @Value("${marketplace.cache.local.products:maximumSize=10000,expireAfterWrite=5m}")
+    private String productsLocalSpec;
+
+    @Value("${marketplace.cache.local.categories:maximumSize=2000,expireAfterWrite=10m}")
+    private String categoriesLocalSpec;
+
+    @Value("${marketplace.cache.local.users:maximumSize=10000,expireAfterWrite=1m}")
+    private String usersLocalSpec;
+
+    @Value("${marketplace.cache.local.stores:maximumSize=5000,expireAfterWrite=5m}")
+    private String storesLocalSpec;
+
+    @Value("${marketplace.cache.local.listings:maximumSize=5000,expireAfterWrite=1m}")
+    private String listingsLocalSpec;
+
+    @Value("${marketplace.cache.listings.time-to-live:10m}")
+    private Duration listingsTimeToLive;
+
+    @Value("${marketplace.cache.local.default:maximumSize=1000,expireAfterWrite=1m}")
+    private String defaultLocalSpec;
+
+    @Value("${marketplace.cache.stampede.lock-ttl:5s}")
+    private Duration loadLockTtl;
+
+    @Value("${marketplace.cache.stampede.lock-wait:2s}")
+    private Duration loadLockWait;
+
+    @Value("${marketplace.cache.stampede.early-refresh-beta:1.0}")
+    private double earlyRefreshBeta;
+
     @Bean
     public LettuceConnectionFactory redisConnectionFactory() {
         RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration();
@@ -53,24 +108,31 @@ public class RedisConfig {
     }
 
     @Bean
-    public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory, StringRedisTemplate stringRedisTemplate,
+                                     RedisMessageListenerContainer listenerContainer, MeterRegistry meterRegistry) {
         Map<String, RedisCacheConfiguration> cacheConfigurations = new HashMap<>();
 
         // Configuration pour le cache des produits - TTL plus long (1 heure)
-        cacheConfigurations.put("products", RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofHours(1)));
+        cacheConfigurations.put("products", snapshotCacheConfig(ProductSnapshot.class, Duration.ofHours(1)));
 
         // Configuration pour le cache des catégories - TTL très long (12 heures)
-        cacheConfigurations.put("categories", RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofHours(12)));
+        cacheConfigurations.put("categories", snapshotCacheConfig(CategorySnapshot.class, Duration.ofHours(12)));
 
         // Configuration pour le cache des utilisateurs - TTL court (15 minutes)
-        cacheConfigurations.put("users", RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(15)));
+        cacheConfigurations.put("users", snapshotCacheConfig(UserSnapshot.class, Duration.ofMinutes(15)));
 
         // Configuration pour le cache des stores - TTL moyen (30 minutes)
-        cacheConfigurations.put("stores", RedisCacheConfiguration.defaultCacheConfig()
-                .entryTtl(Duration.ofMinutes(30)));
+        cacheConfigurations.put("stores", snapshotCacheConfig(StoreSnapshot.class, Duration.ofMinutes(30)));
+
+        // Listes paginées de produits - invalidées par tags, le TTL ne borne que les entrées oubliées
+        cacheConfigurations.put("listings", snapshotCacheConfig(ProductListing.class, listingsTimeToLive));
 
         // Configuration par défaut pour les caches non spécifiés
         RedisCacheConfiguration defaultConfig = RedisCacheConfiguration.defaultCacheConfig()
@@ -78,9 +140,35 @@ public class RedisConfig {
                 .serializeValuesWith(RedisSerializationContext.SerializationPair
                         .fromSerializer(new GenericJackson2JsonRedisSerializer()));
 
-        return RedisCacheManager.builder(connectionFactory)
+        RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
                 .cacheDefaults(defaultConfig)
                 .withInitialCacheConfigurations(cacheConfigurations)
                 .build();
+        redisCacheManager.afterPropertiesSet();
+        if (!localCacheEnabled) {
+            return redisCacheManager;
+        }
+
+        // Cache local par noeud devant Redis, invalidé sur tous les noeuds à chaque éviction
+        return new TwoLevelCacheManager(redisCacheManager,
+                Map.of("products", productsLocalSpec,
+                        "categories", categoriesLocalSpec,
+                        "users", usersLocalSpec,
+                        "stores", storesLocalSpec,
+                        "listings", listingsLocalSpec),
+                defaultLocalSpec, stringRedisTemplate, listenerContainer,
+                loadLockTtl, loadLockWait, earlyRefreshBeta, meterRegistry);
+    }
+
+    /**
+     * Cache holding a single snapshot type, stored in Smile without type information.
+     */
+    private <T> RedisCacheConfiguration snapshotCacheConfig(Class<T> type, Duration ttl) {
+        return RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(ttl)
+                // Préfixe propre au format des instantanés : les anciennes entrées ne sont jamais relues
+                .prefixCacheNameWith(SNAPSHOT_PREFIX)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new SnapshotRedisSerializer<>(type, snapshotCompression, snapshotCompressionThreshold)));
     }
 }
\ No newline at end of file
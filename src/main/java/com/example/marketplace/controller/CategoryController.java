@@ -1,20 +1,41 @@
 package com.example.marketplace.controller;
 
+import com.example.marketplace.cache.CacheTags;
+import com.example.marketplace.cache.CategorySnapshot;
+import com.example.marketplace.cache.JsonResponseCache;
+import com.example.marketplace.dto.category.CategoryCountDto;
 import com.example.marketplace.dto.category.CategoryCreateRequest;
 import com.example.marketplace.dto.category.CategoryDto;
+import com.example.marketplace.dto.category.CategoryTreeDto;
 import com.example.marketplace.dto.category.CategoryUpdateRequest;
+import com.example.marketplace.exception.BadRequestException;
 import com.example.marketplace.model.product.Category;
+import com.example.marketplace.model.product.CategoryProductCount;
 import com.example.marketplace.service.CategoryService;
+import com.example.marketplace.service.category.CategoryNode;
+import com.example.marketplace.service.category.CategoryTree;
+import com.example.marketplace.util.HttpCachingUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
@@ -23,62 +44,152 @@ import java.util.stream.Collectors;
 @Slf4j
 public class CategoryController {
 
+    // Limite le nombre d'ids par requête de compteurs
+    private static final int MAX_COUNT_IDS = 500;
+
     private final CategoryService categoryService;
+    private final CacheTags cacheTags;
+    private final JsonResponseCache responseCache;
+
+    @Value("${marketplace.http-cache.max-age.entity:60s}")
+    private Duration entityMaxAge;
+
+    @Value("${marketplace.http-cache.max-age.listing:30s}")
+    private Duration listingMaxAge;
+
+    @Value("${marketplace.http-cache.max-age.category-tree:5m}")
+    private Duration treeMaxAge;
 
     @GetMapping
-    public ResponseEntity<List<CategoryDto>> getAllCategories() {
+    public ResponseEntity<List<CategoryDto>> getAllCategories(WebRequest request) {
         log.debug("REST request to get all Categories");
-        List<Category> categories = categoryService.getAllCategories();
-        return ResponseEntity.ok(categories.stream().map(this::convertToDto).collect(Collectors.toList()));
+        CategoryTree tree = categoryService.getCategoryTree();
+        List<CategoryNode> nodes = tree.getAll();
+        return categories(request, tree, ids(nodes), () -> {
+            Map<Long, CategoryProductCount> counts = categoryService.getAllProductCounts();
+            return nodes.stream()
+                    .map(node -> convertToDto(node, tree, counts))
+                    .collect(Collectors.toList());
+        });
     }
 
     @GetMapping("/active")
-    public ResponseEntity<List<CategoryDto>> getActiveCategories() {
+    public ResponseEntity<List<CategoryDto>> getActiveCategories(WebRequest request) {
         log.debug("REST request to get all active Categories");
-        List<Category> categories = categoryService.getActiveCategories();
-        return ResponseEntity.ok(categories.stream().map(this::convertToDto).collect(Collectors.toList()));
+        CategoryTree tree = categoryService.getCategoryTree();
+        List<CategoryNode> nodes = tree.getAll().stream().filter(CategoryNode::isActive).toList();
+        return categories(request, tree, ids(nodes), () -> {
+            Map<Long, CategoryProductCount> counts = categoryService.getAllProductCounts();
+            return nodes.stream()
+                    .map(node -> convertToDto(node, tree, counts))
+                    .collect(Collectors.toList());
+        });
     }
 
     @GetMapping("/root")
-    public ResponseEntity<List<CategoryDto>> getRootCategories() {
+    public void getRootCategories(HttpServletRequest request, HttpServletResponse response) throws IOException {
         log.debug("REST request to get root Categories");
-        List<Category> categories = categoryService.getRootCategories();
-        return ResponseEntity.ok(categories.stream().map(this::convertToDto).collect(Collectors.toList()));
+        CategoryTree tree = categoryService.getCategoryTree();
+        List<CategoryNode> roots = tree.getRoots();
+        // Version de l'arbre dans la clé ; les tags des racines suivent leurs compteurs
+        responseCache.write(request, response, "categories:root|" + tree.getVersion(),
+                HttpCachingUtil.publicFor(listingMaxAge), List.of(), () -> convertToDtos(roots, tree),
+                dtos -> ids(roots).stream().map(CacheTags::category).toList());
+    }
+
+    @GetMapping("/tree")
+    public ResponseEntity<List<CategoryTreeDto>> getCategoryTree(WebRequest request) {
+        log.debug("REST request to get the Category tree");
+        CategoryTree tree = categoryService.getCategoryTree();
+        // Sans compteurs : la version de l'arbre suffit
+        return HttpCachingUtil.conditional(request, HttpCachingUtil.etag(tree.getVersion()), -1L,
+                HttpCachingUtil.publicFor(treeMaxAge), () -> tree.getRoots().stream()
+                        .map(root -> convertToTreeDto(root, tree))
+                        .collect(Collectors.toList()));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<CategoryDto> getCategoryById(@PathVariable Long id) {
+    public ResponseEntity<CategoryDto> getCategoryById(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Category : {}", id);
-        Category category = categoryService.getCategoryById(id);
-        return ResponseEntity.ok(convertToDto(category));
+        // Validé sans charger la catégorie ni ses compteurs
+        CategoryTree tree = categoryService.getCategoryTree();
+        return HttpCachingUtil.conditional(request, categoriesETag(tree, List.of(id)), -1L,
+                HttpCachingUtil.publicFor(entityMaxAge), () -> {
+                    CategorySnapshot category = categoryService.getCategorySnapshot(id);
+                    CategoryDto dto = convertToDto(category);
+                    applyCounts(dto, categoryService.getProductCounts(List.of(id)));
+                    return dto;
+                });
+    }
+
+    @GetMapping("/counts")
+    public ResponseEntity<List<CategoryCountDto>> getProductCounts(@RequestParam(required = false) List<Long> ids,
+                                                                   WebRequest request) {
+        log.debug("REST request to get product counts of Categories : {}", ids);
+        if (ids != null && ids.size() > MAX_COUNT_IDS) {
+            throw new BadRequestException("At most " + MAX_COUNT_IDS + " category ids can be requested at once");
+        }
+
+        CategoryTree tree = categoryService.getCategoryTree();
+        return categories(request, tree, ids != null ? ids : ids(tree.getAll()), () -> {
+            Map<Long, CategoryProductCount> counts = ids != null
+                    ? categoryService.getProductCounts(ids)
+                    : categoryService.getAllProductCounts();
+            Collection<Long> categoryIds = ids != null ? ids : counts.keySet();
+            return categoryIds.stream()
+                    .distinct()
+                    .map(categoryId -> {
+                        CategoryProductCount count = counts.get(categoryId);
+                        return count != null
+                                ? new CategoryCountDto(categoryId, count.getDirectCount(), count.getTotalCount())
+                                : new CategoryCountDto(categoryId, 0L, 0L);
+                    })
+                    .collect(Collectors.toList());
+        });
     }
 
     @GetMapping("/{id}/subcategories")
-    public ResponseEntity<List<CategoryDto>> getSubcategories(@PathVariable Long id) {
+    public ResponseEntity<List<CategoryDto>> getSubcategories(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get subcategories for Category : {}", id);
-        List<Category> subcategories = categoryService.getSubcategories(id);
-        return ResponseEntity.ok(subcategories.stream().map(this::convertToDto).collect(Collectors.toList()));
+        CategoryTree tree = categoryService.getCategoryTree();
+        List<CategoryNode> subcategories = categoryService.getSubcategories(id);
+        return categories(request, tree, ids(subcategories), () -> convertToDtos(subcategories, tree));
     }
 
     @GetMapping("/{id}/path")
-    public ResponseEntity<List<CategoryDto>> getCategoryPath(@PathVariable Long id) {
+    public ResponseEntity<List<CategoryDto>> getCategoryPath(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get path for Category : {}", id);
-        List<Category> path = categoryService.getCategoryPath(id);
-        return ResponseEntity.ok(path.stream().map(this::convertToDto).collect(Collectors.toList()));
+        CategoryTree tree = categoryService.getCategoryTree();
+        List<CategoryNode> path = categoryService.getCategoryPath(id);
+        return categories(request, tree, ids(path), () -> convertToDtos(path, tree));
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<CategoryDto>> searchCategories(@RequestParam String keyword) {
+    public ResponseEntity<List<CategoryDto>> searchCategories(@RequestParam String keyword, WebRequest request) {
         log.debug("REST request to search Categories with keyword: {}", keyword);
+        CategoryTree tree = categoryService.getCategoryTree();
         List<Category> categories = categoryService.searchCategories(keyword);
-        return ResponseEntity.ok(categories.stream().map(this::convertToDto).collect(Collectors.toList()));
+        return categories(request, tree, categories.stream().map(Category::getId).toList(),
+                () -> categories.stream().map(this::convertToDto).collect(Collectors.toList()));
     }
 
     @GetMapping("/top")
-    public ResponseEntity<List<CategoryDto>> getTopCategories(@RequestParam(defaultValue = "5") int limit) {
+    public ResponseEntity<List<CategoryDto>> getTopCategories(@RequestParam(defaultValue = "5") int limit,
+                                                              WebRequest request) {
         log.debug("REST request to get top {} Categories", limit);
+        CategoryTree tree = categoryService.getCategoryTree();
         List<Category> categories = categoryService.getTopCategories(limit);
-        return ResponseEntity.ok(categories.stream().map(this::convertToDto).collect(Collectors.toList()));
+        List<Long> ids = categories.stream().map(Category::getId).toList();
+        return categories(request, tree, ids, () -> {
+            Map<Long, CategoryProductCount> counts = categoryService.getProductCounts(ids);
+            return categories.stream()
+                    .map(category -> {
+                        CategoryDto dto = convertToDto(category);
+                        applyCounts(dto, counts);
+                        return dto;
+                    })
+                    .collect(Collectors.toList());
+        });
     }
 
     @PostMapping
@@ -137,8 +248,31 @@ public class CategoryController {
     public ResponseEntity<Map<String, Boolean>> toggleCategoryStatus(@PathVariable Long id) {
         log.debug("REST request to toggle status of Category : {}", id);
         categoryService.toggleCategoryStatus(id);
-        Category category = categoryService.getCategoryById(id);
-        return ResponseEntity.ok(Map.of("active", category.getActive()));
+        CategorySnapshot category = categoryService.getCategorySnapshot(id);
+        return ResponseEntity.ok(Map.of("active", category.active()));
+    }
+
+    private <T> ResponseEntity<T> categories(WebRequest request, CategoryTree tree, List<Long> ids, Supplier<T> body) {
+        return HttpCachingUtil.conditional(request, categoriesETag(tree, ids), -1L,
+                HttpCachingUtil.publicFor(listingMaxAge), body);
+    }
+
+    /**
+     * ETag of a list of categories: the tree version, which every category write increments, the ids
+     * in order, and the tag versions of the categories, incremented with their product counts.
+     */
+    private String categoriesETag(CategoryTree tree, List<Long> ids) {
+        try {
+            Map<String, Long> versions = new TreeMap<>(cacheTags.versions(ids.stream().map(CacheTags::category).toList()));
+            return HttpCachingUtil.etag(tree.getVersion(), ids, versions);
+        } catch (DataAccessException e) {
+            // Versions indisponibles : réponse complète, sans validateur
+            return null;
+        }
+    }
+
+    private static List<Long> ids(List<CategoryNode> nodes) {
+        return nodes.stream().map(CategoryNode::getId).toList();
     }
 
     private CategoryDto convertToDto(Category category) {
@@ -156,4 +290,65 @@ public class CategoryController {
 
         return dto;
     }
+
+    private CategoryDto convertToDto(CategorySnapshot category) {
+        CategoryDto dto = new CategoryDto();
+        dto.setId(category.id());
+        dto.setName(category.name());
+        dto.setDescription(category.description());
+        dto.setImage(category.image());
+        dto.setActive(category.active());
+        dto.setParentId(category.parentId());
+        dto.setParentName(category.parentName());
+        return dto;
+    }
+
+    private List<CategoryDto> convertToDtos(List<CategoryNode> nodes, CategoryTree tree) {
+        Map<Long, CategoryProductCount> counts = categoryService.getProductCounts(
+                nodes.stream().map(CategoryNode::getId).toList());
+        return nodes.stream()
+                .map(node -> convertToDto(node, tree, counts))
+                .collect(Collectors.toList());
+    }
+
+    private CategoryDto convertToDto(CategoryNode node, CategoryTree tree, Map<Long, CategoryProductCount> counts) {
+        CategoryDto dto = new CategoryDto();
+        dto.setId(node.getId());
+        dto.setName(node.getName());
+        dto.setDescription(node.getDescription());
+        dto.setImage(node.getImage());
+        dto.setActive(node.isActive());
+
+        if (node.getParentId() != null) {
+            dto.setParentId(node.getParentId());
+            tree.find(node.getParentId()).ifPresent(parent -> dto.setParentName(parent.getName()));
+        }
+
+        applyCounts(dto, counts);
+        return dto;
+    }
+
+    private void applyCounts(CategoryDto dto, Map<Long, CategoryProductCount> counts) {
+        CategoryProductCount count = counts.get(dto.getId());
+        dto.setProductCount(count != null ? count.getDirectCount() : 0L);
+        dto.setTotalProductCount(count != null ? count.getTotalCount() : 0L);
+    }
+
+    private CategoryTreeDto convertToTreeDto(CategoryNode root, CategoryTree tree) {
+        // Construction itérative : chaque noeud du sous-arbre suit son parent dans l'ordre préfixe
+        Map<Long, CategoryTreeDto> dtos = new HashMap<>();
+        for (CategoryNode node : tree.getSubtree(root.getId())) {
+            CategoryTreeDto dto = new CategoryTreeDto();
+            dto.setId(node.getId());
+            dto.setName(node.getName());
+            dto.setImage(node.getImage());
+            dto.setActive(node.isActive());
+            dtos.put(node.getId(), dto);
+
+            if (node.getParentId() != null && dtos.containsKey(node.getParentId())) {
+                dtos.get(node.getParentId()).getChildren().add(dto);
+            }
+        }
+        return dtos.get(root.getId());
+    }
 }
\ No newline at end of file
@@ -1,29 +1,43 @@
 package com.example.marketplace.controller;
 
+import com.example.marketplace.cache.CacheTags;
+import com.example.marketplace.cache.JsonResponseCache;
+import com.example.marketplace.cache.ProductListingCache;
+import com.example.marketplace.cache.ProductSnapshot;
 import com.example.marketplace.dto.PagedResponse;
 import com.example.marketplace.dto.product.ProductCreateRequest;
 import com.example.marketplace.dto.product.ProductDto;
 import com.example.marketplace.dto.product.ProductSearchCriteria;
 import com.example.marketplace.dto.product.ProductUpdateRequest;
-import com.example.marketplace.model.product.Product;
+import com.example.marketplace.exception.ResourceNotFoundException;
 import com.example.marketplace.service.AuthService;
+import com.example.marketplace.service.CategoryService;
 import com.example.marketplace.service.ProductService;
 import com.example.marketplace.service.StoreService;
+import com.example.marketplace.util.HttpCachingUtil;
 import com.example.marketplace.util.PaginationUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 @RestController
 @RequestMapping("/api/products")
@@ -33,96 +47,132 @@ public class ProductController {
 
     private final ProductService productService;
     private final StoreService storeService;
+    private final CategoryService categoryService;
     private final AuthService authService;
+    private final CacheTags cacheTags;
+    private final JsonResponseCache responseCache;
+
+    @Value("${marketplace.http-cache.max-age.entity:60s}")
+    private Duration entityMaxAge;
+
+    @Value("${marketplace.http-cache.max-age.listing:30s}")
+    private Duration listingMaxAge;
 
     @GetMapping
     public ResponseEntity<PagedResponse<ProductDto>> getAllProducts(
-            @PageableDefault(size = 10, sort = "id") Pageable pageable) {
+            @PageableDefault(size = 10, sort = "id") Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to get all Products");
-        return ResponseEntity.ok(productService.getAllProducts(pageable));
+        return page(request, productService.getAllProducts(pageable));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<ProductDto> getProductById(@PathVariable Long id) {
+    public ResponseEntity<ProductDto> getProductById(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Product : {}", id);
-        Product product = productService.getProductById(id);
-        return ResponseEntity.ok(convertToProductDto(product));
+        ProductSnapshot product = productService.getProductSnapshot(id);
+        return HttpCachingUtil.conditional(request, productETag(product), HttpCachingUtil.lastModified(product.updatedAt()),
+                HttpCachingUtil.publicFor(entityMaxAge), () -> convertToProductDto(product));
     }
 
     @GetMapping("/store/{storeId}")
     public ResponseEntity<PagedResponse<ProductDto>> getProductsByStore(
             @PathVariable Long storeId,
-            @PageableDefault(size = 10) Pageable pageable) {
+            @PageableDefault(size = 10) Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to get Products by store ID: {}", storeId);
-        return ResponseEntity.ok(productService.getProductsByStore(storeId, pageable));
+        return page(request, productService.getProductsByStore(storeId, pageable));
     }
 
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<PagedResponse<ProductDto>> getProductsByCategory(
             @PathVariable Long categoryId,
-            @PageableDefault(size = 10) Pageable pageable) {
+            @PageableDefault(size = 10) Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to get Products by category ID: {}", categoryId);
-        return ResponseEntity.ok(productService.getProductsByCategory(categoryId, pageable));
+        return page(request, productService.getProductsByCategory(categoryId, pageable));
+    }
+
+    @GetMapping("/category/{categoryId}/subtree")
+    public ResponseEntity<PagedResponse<ProductDto>> getProductsInCategorySubtree(
+            @PathVariable Long categoryId,
+            @PageableDefault(size = 10, sort = "id") Pageable pageable,
+            WebRequest request) {
+        log.debug("REST request to get Products in subtree of category ID: {}", categoryId);
+        return page(request, productService.getProductsInCategorySubtree(categoryId, pageable));
     }
 
     @GetMapping("/category-name/{categoryName}")
     public ResponseEntity<PagedResponse<ProductDto>> getProductsByCategoryName(
             @PathVariable String categoryName,
-            @PageableDefault(size = 10) Pageable pageable) {
+            @PageableDefault(size = 10) Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to get Products by category name: {}", categoryName);
-        return ResponseEntity.ok(productService.getProductsByCategoryName(categoryName, pageable));
+        return page(request, productService.getProductsByCategoryName(categoryName, pageable));
     }
 
     @GetMapping("/search/keyword")
     public ResponseEntity<PagedResponse<ProductDto>> searchProductsByKeyword(
             @RequestParam String keyword,
-            @PageableDefault(size = 10) Pageable pageable) {
+            @PageableDefault(size = 10) Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to search Products with keyword: {}", keyword);
-        return ResponseEntity.ok(productService.searchProducts(keyword, pageable));
+        return page(request, productService.searchProducts(keyword, pageable));
     }
 
     @GetMapping("/search/name")
     public ResponseEntity<PagedResponse<ProductDto>> getProductsByName(
             @RequestParam String name,
-            @PageableDefault(size = 10) Pageable pageable) {
+            @PageableDefault(size = 10) Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to get Products by name: {}", name);
-        return ResponseEntity.ok(productService.getProductsByName(name, pageable));
+        return page(request, productService.getProductsByName(name, pageable));
     }
 
     @GetMapping("/search/price")
     public ResponseEntity<PagedResponse<ProductDto>> getProductsByPriceRange(
             @RequestParam BigDecimal minPrice,
             @RequestParam BigDecimal maxPrice,
-            @PageableDefault(size = 10) Pageable pageable) {
+            @PageableDefault(size = 10) Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to get Products by price range: {} - {}", minPrice, maxPrice);
-        return ResponseEntity.ok(productService.getProductsByPriceRange(minPrice, maxPrice, pageable));
+        return page(request, productService.getProductsByPriceRange(minPrice, maxPrice, pageable));
     }
 
     @GetMapping("/featured")
-    public ResponseEntity<PagedResponse<ProductDto>> getFeaturedProducts(
-            @PageableDefault(size = 10) Pageable pageable) {
+    public void getFeaturedProducts(
+            @PageableDefault(size = 10) Pageable pageable,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
         log.debug("REST request to get featured Products");
-        return ResponseEntity.ok(productService.getFeaturedProducts(pageable));
+        // Page d'accueil : corps JSON déjà sérialisé, invalidé par toute écriture de produit
+        String key = "products:featured|" + pageable.getPageNumber() + '|' + pageable.getPageSize() + '|' + pageable.getSort();
+        responseCache.write(request, response, key, HttpCachingUtil.publicFor(listingMaxAge),
+                List.of(CacheTags.PRODUCTS), () -> productService.getFeaturedProducts(pageable),
+                page -> ProductListingCache.itemTags(page.getContent()));
     }
 
     @GetMapping("/available")
     public ResponseEntity<PagedResponse<ProductDto>> getAvailableProducts(
-            @PageableDefault(size = 10) Pageable pageable) {
+            @PageableDefault(size = 10) Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to get available Products");
-        return ResponseEntity.ok(productService.getAvailableProducts(pageable));
+        return page(request, productService.getAvailableProducts(pageable));
     }
 
     @GetMapping("/top-selling")
     public ResponseEntity<List<ProductDto>> getTopSellingProducts(
-            @RequestParam(defaultValue = "5") int limit) {
+            @RequestParam(defaultValue = "5") int limit,
+            WebRequest request) {
         log.debug("REST request to get top {} selling Products", limit);
-        return ResponseEntity.ok(productService.getTopSellingProducts(limit));
+        List<ProductDto> products = productService.getTopSellingProducts(limit);
+        return listing(request, products, products.size(), products);
     }
 
     @GetMapping("/new")
-    public ResponseEntity<List<ProductDto>> getNewProducts() {
+    public ResponseEntity<List<ProductDto>> getNewProducts(WebRequest request) {
         log.debug("REST request to get new Products");
-        return ResponseEntity.ok(productService.getNewProducts());
+        List<ProductDto> products = productService.getNewProducts();
+        return listing(request, products, products.size(), products);
     }
 
     @GetMapping("/{id}/available")
@@ -135,9 +185,9 @@ public class ProductController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<PagedResponse<ProductDto>> findProducts(ProductSearchCriteria criteria) {
+    public ResponseEntity<PagedResponse<ProductDto>> findProducts(ProductSearchCriteria criteria, WebRequest request) {
         log.debug("REST request to find products with criteria: {}", criteria);
-        return ResponseEntity.ok(productService.findProducts(criteria));
+        return page(request, productService.findProducts(criteria));
     }
 
     @PostMapping
@@ -195,8 +245,8 @@ public class ProductController {
         }
 
         productService.toggleProductStatus(id);
-        Product product = productService.getProductById(id);
-        return ResponseEntity.ok(Map.of("active", product.getActive()));
+        ProductSnapshot product = productService.getProductSnapshot(id);
+        return ResponseEntity.ok(Map.of("active", product.active()));
     }
 
     @PutMapping("/{id}/stock")
@@ -212,8 +262,8 @@ public class ProductController {
         }
 
         productService.updateProductStock(id, quantityDelta);
-        Product product = productService.getProductById(id);
-        return ResponseEntity.ok(Map.of("quantity", product.getQuantity()));
+        ProductSnapshot product = productService.getProductSnapshot(id);
+        return ResponseEntity.ok(Map.of("quantity", product.quantity()));
     }
 
     // Helper methods
@@ -224,39 +274,87 @@ public class ProductController {
     }
 
     private boolean canManageProduct(Long productId) {
-        Product product = productService.getProductById(productId);
+        ProductSnapshot product = productService.getProductSnapshot(productId);
         Long currentUserId = authService.getCurrentUser().getId();
         boolean isAdmin = "ADMIN".equals(authService.getCurrentUser().getRole().name());
-        boolean isStoreOwner = storeService.isUserStoreOwner(currentUserId, product.getStore().getId());
+        boolean isStoreOwner = storeService.isUserStoreOwner(currentUserId, product.storeId());
 
         return isAdmin || isStoreOwner;
     }
 
-    private ProductDto convertToProductDto(Product product) {
-        ProductDto dto = new ProductDto();
-        dto.setId(product.getId());
-        dto.setName(product.getName());
-        dto.setDescription(product.getDescription());
-        dto.setPrice(product.getPrice());
-        dto.setQuantity(product.getQuantity());
-        dto.setImages((List<String>) product.getImages());
-        dto.setFeatured(product.getFeatured());
-        dto.setActive(product.getActive());
-        dto.setCreatedAt(product.getCreatedAt());
-
-        if (product.getStore() != null) {
-            dto.setStoreId(product.getStore().getId());
-            dto.setStoreName(product.getStore().getName());
+    private ResponseEntity<PagedResponse<ProductDto>> page(WebRequest request, PagedResponse<ProductDto> page) {
+        return listing(request, page.getContent(), page.getTotalElements(), page);
+    }
+
+    private <T> ResponseEntity<T> listing(WebRequest request, List<ProductDto> products, long total, T body) {
+        return HttpCachingUtil.conditional(request, listingETag(products, total), -1L,
+                HttpCachingUtil.publicFor(listingMaxAge), () -> body);
+    }
+
+    /**
+     * ETag of a list of products: their ids in order, and the tag versions of the products, stores
+     * and categories shown, which every write changing one of them increments.
+     */
+    private String listingETag(List<ProductDto> products, long total) {
+        try {
+            Map<String, Long> versions = new TreeMap<>(cacheTags.versions(ProductListingCache.itemTags(products)));
+            return HttpCachingUtil.etag(total, products.stream().map(ProductDto::getId).toList(), versions);
+        } catch (DataAccessException e) {
+            // Versions indisponibles : réponse complète, sans validateur
+            return null;
         }
+    }
 
-        if (product.getCategories() != null && !product.getCategories().isEmpty()) {
-            dto.setCategoryIds(product.getCategories().stream()
-                    .map(category -> category.getId())
-                    .collect(Collectors.toList()));
+    /**
+     * ETag of a product: its last update, and the tag versions of the product, its store and its
+     * categories, whose names are shown without the product being modified.
+     */
+    private String productETag(ProductSnapshot product) {
+        List<String> tags = new ArrayList<>();
+        tags.add(CacheTags.product(product.id()));
+        if (product.storeId() != null) {
+            tags.add(CacheTags.store(product.storeId()));
+        }
+        product.categoryIds().forEach(categoryId -> tags.add(CacheTags.category(categoryId)));
+        try {
+            Map<String, Long> versions = new TreeMap<>(cacheTags.versions(tags));
+            return HttpCachingUtil.etag(product.id(), product.updatedAt(), versions);
+        } catch (DataAccessException e) {
+            // Versions indisponibles : réponse complète, sans validateur
+            return null;
+        }
+    }
 
-            dto.setCategoryNames(product.getCategories().stream()
-                    .map(category -> category.getName())
-                    .collect(Collectors.toList()));
+    private ProductDto convertToProductDto(ProductSnapshot product) {
+        ProductDto dto = new ProductDto();
+        dto.setId(product.id());
+        dto.setName(product.name());
+        dto.setDescription(product.description());
+        dto.setPrice(product.price());
+        dto.setQuantity(product.quantity());
+        dto.setImages(product.images());
+        dto.setFeatured(product.featured());
+        dto.setActive(product.active());
+        dto.setCreatedAt(product.createdAt());
+        dto.setStoreId(product.storeId());
+        if (product.storeId() != null) {
+            dto.setStoreName(storeService.getStoreSnapshot(product.storeId()).name());
+        }
+
+        // Noms lus dans les instantanés des catégories, tenus à jour par leurs propres écritures
+        List<Long> categoryIds = new ArrayList<>();
+        List<String> categoryNames = new ArrayList<>();
+        for (Long categoryId : product.categoryIds()) {
+            try {
+                categoryNames.add(categoryService.getCategorySnapshot(categoryId).name());
+                categoryIds.add(categoryId);
+            } catch (ResourceNotFoundException e) {
+                // Catégorie supprimée depuis la mise en cache du produit
+            }
+        }
+        if (!categoryIds.isEmpty()) {
+            dto.setCategoryIds(categoryIds);
+            dto.setCategoryNames(categoryNames);
         }
 
         return dto;
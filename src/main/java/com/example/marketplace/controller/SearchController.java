@@ -0,0 +1,73 @@
+package com.example.marketplace.controller;
+
+import com.example.marketplace.dto.search.FacetedSearchResponse;
+import com.example.marketplace.dto.search.ProductSearchRequest;
+import com.example.marketplace.dto.search.ReindexStatusDto;
+import com.example.marketplace.dto.search.SuggestionDto;
+import com.example.marketplace.exception.BadRequestException;
+import com.example.marketplace.service.SearchService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@Slf4j
+public class SearchController {
+
+    // Nombre maximal de suggestions par type
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final SearchService searchService;
+
+    /**
+     * Full-text product search with filters; returns the page of results together with the
+     * category, store, price, rating and stock facets of the query. Past the first pages, results
+     * are walked by passing back the {@code nextCursor} of each response.
+     */
+    @GetMapping("/products")
+    public ResponseEntity<FacetedSearchResponse> searchProducts(@ModelAttribute ProductSearchRequest request) {
+        log.debug("REST request to search products: {}", request);
+        return ResponseEntity.ok(searchService.searchProducts(request));
+    }
+
+    @GetMapping("/suggestions")
+    public ResponseEntity<Map<String, List<SuggestionDto>>> getSuggestions(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "8") int limit) {
+        log.debug("REST request to get suggestions for: {}", q);
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        return ResponseEntity.ok(searchService.getSuggestions(q, limit));
+    }
+
+    @PostMapping("/reindex")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReindexStatusDto> reindex(@RequestParam(defaultValue = "false") boolean resume) {
+        log.debug("REST request to reindex products (resume={})", resume);
+        ReindexStatusDto status = resume ? searchService.resumeReindex() : searchService.reindexAllProducts();
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(status);
+    }
+
+    @GetMapping("/reindex")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ReindexStatusDto> getReindexStatus() {
+        log.debug("REST request to get product reindex status");
+        return ResponseEntity.ok(searchService.getReindexStatus());
+    }
+
+    @PostMapping("/indexing/dead-letters/replay")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Integer>> replayIndexingDeadLetters() {
+        log.debug("REST request to replay dead-lettered product indexing");
+        return ResponseEntity.ok(Map.of("replayed", searchService.replayIndexingDeadLetters()));
+    }
+}
@@ -1,5 +1,8 @@
 package com.example.marketplace.controller;
 
+import com.example.marketplace.cache.CacheTags;
+import com.example.marketplace.cache.JsonResponseCache;
+import com.example.marketplace.cache.StoreSnapshot;
 import com.example.marketplace.dto.store.StoreCreateRequest;
 import com.example.marketplace.dto.store.StoreDto;
 import com.example.marketplace.dto.store.StoreUpdateRequest;
@@ -7,18 +10,27 @@ import com.example.marketplace.model.store.Store;
 import com.example.marketplace.security.CurrentUser;
 import com.example.marketplace.service.AuthService;
 import com.example.marketplace.service.StoreService;
+import com.example.marketplace.util.HttpCachingUtil;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
@@ -27,35 +39,51 @@ import java.util.stream.Collectors;
 @Slf4j
 public class StoreController {
 
+    // Borne la taille du classement, et donc le nombre de clés du cache de réponses
+    private static final int MAX_TOP_STORES = 50;
+
     private final StoreService storeService;
     private final AuthService authService;
+    private final JsonResponseCache responseCache;
+
+    @Value("${marketplace.http-cache.max-age.entity:60s}")
+    private Duration entityMaxAge;
+
+    @Value("${marketplace.http-cache.max-age.listing:30s}")
+    private Duration listingMaxAge;
 
     @GetMapping
-    public ResponseEntity<Page<StoreDto>> getAllStores(Pageable pageable) {
+    public ResponseEntity<Page<StoreDto>> getAllStores(Pageable pageable, WebRequest request) {
         log.debug("REST request to get all Stores");
         Page<Store> stores = storeService.getAllStores(pageable);
-        return ResponseEntity.ok(stores.map(this::convertToDto));
+        return stores(request, stores.getContent(), stores.getTotalElements(), () -> stores.map(this::convertToDto));
     }
 
     @GetMapping("/active")
-    public ResponseEntity<List<StoreDto>> getActiveStores() {
+    public ResponseEntity<List<StoreDto>> getActiveStores(WebRequest request) {
         log.debug("REST request to get all active Stores");
         List<Store> stores = storeService.getActiveStores();
-        return ResponseEntity.ok(stores.stream().map(this::convertToDto).collect(Collectors.toList()));
+        return stores(request, stores, stores.size(),
+                () -> stores.stream().map(this::convertToDto).collect(Collectors.toList()));
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<StoreDto> getStoreById(@PathVariable Long id) {
+    public ResponseEntity<StoreDto> getStoreById(@PathVariable Long id, WebRequest request) {
         log.debug("REST request to get Store : {}", id);
-        Store store = storeService.getStoreById(id);
-        return ResponseEntity.ok(convertToDto(store));
+        StoreSnapshot store = storeService.getStoreSnapshot(id);
+        // Nom du propriétaire inclus : il change sans que la boutique soit modifiée
+        String etag = HttpCachingUtil.etag(store.id(), store.updatedAt(), store.ownerName());
+        return HttpCachingUtil.conditional(request, etag, HttpCachingUtil.lastModified(store.updatedAt()),
+                HttpCachingUtil.publicFor(entityMaxAge), () -> convertToDto(store));
     }
 
     @GetMapping("/owner/{ownerId}")
-    public ResponseEntity<StoreDto> getStoreByOwnerId(@PathVariable Long ownerId) {
+    public ResponseEntity<StoreDto> getStoreByOwnerId(@PathVariable Long ownerId, WebRequest request) {
         log.debug("REST request to get Store by owner ID: {}", ownerId);
         Store store = storeService.getStoreByOwnerId(ownerId);
-        return ResponseEntity.ok(convertToDto(store));
+        return HttpCachingUtil.conditional(request, storesETag(List.of(store), 1),
+                HttpCachingUtil.lastModified(store.getUpdatedAt()),
+                HttpCachingUtil.publicFor(entityMaxAge), () -> convertToDto(store));
     }
 
     @GetMapping("/my-store")
@@ -70,33 +98,43 @@ public class StoreController {
     @GetMapping("/search")
     public ResponseEntity<Page<StoreDto>> searchStores(
             @RequestParam String keyword,
-            Pageable pageable) {
+            Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to search Stores with keyword: {}", keyword);
         Page<Store> stores = storeService.searchStores(keyword, pageable);
-        return ResponseEntity.ok(stores.map(this::convertToDto));
+        return stores(request, stores.getContent(), stores.getTotalElements(), () -> stores.map(this::convertToDto));
     }
 
     @GetMapping("/by-name")
     public ResponseEntity<Page<StoreDto>> getStoresByName(
             @RequestParam String name,
-            Pageable pageable) {
+            Pageable pageable,
+            WebRequest request) {
         log.debug("REST request to get Stores by name: {}", name);
         Page<Store> stores = storeService.getStoresByName(name, pageable);
-        return ResponseEntity.ok(stores.map(this::convertToDto));
+        return stores(request, stores.getContent(), stores.getTotalElements(), () -> stores.map(this::convertToDto));
     }
 
     @GetMapping("/top")
-    public ResponseEntity<List<StoreDto>> getTopStores(@RequestParam(defaultValue = "5") int limit) {
-        log.debug("REST request to get top {} Stores", limit);
-        List<Store> stores = storeService.getTopStoresByOrderCount(limit);
-        return ResponseEntity.ok(stores.stream().map(this::convertToDto).collect(Collectors.toList()));
+    public void getTopStores(@RequestParam(defaultValue = "5") int limit,
+                             HttpServletRequest request,
+                             HttpServletResponse response) throws IOException {
+        int size = Math.max(1, Math.min(limit, MAX_TOP_STORES));
+        log.debug("REST request to get top {} Stores", size);
+        // Classement rafraîchi au TTL du cache de réponses ; les modifications des boutiques l'invalident
+        responseCache.write(request, response, "stores:top|" + size, HttpCachingUtil.publicFor(listingMaxAge),
+                List.of(), () -> storeService.getTopStoresByOrderCount(size).stream()
+                        .map(this::convertToDto)
+                        .collect(Collectors.toList()),
+                stores -> stores.stream().map(store -> CacheTags.store(store.getId())).toList());
     }
 
     @GetMapping("/new")
-    public ResponseEntity<List<StoreDto>> getNewStores() {
+    public ResponseEntity<List<StoreDto>> getNewStores(WebRequest request) {
         log.debug("REST request to get new Stores");
         List<Store> stores = storeService.getNewStores();
-        return ResponseEntity.ok(stores.stream().map(this::convertToDto).collect(Collectors.toList()));
+        return stores(request, stores, stores.size(),
+                () -> stores.stream().map(this::convertToDto).collect(Collectors.toList()));
     }
 
     @PostMapping
@@ -166,8 +204,27 @@ public class StoreController {
     public ResponseEntity<Map<String, Boolean>> toggleStoreStatus(@PathVariable Long id) {
         log.debug("REST request to toggle status of Store : {}", id);
         storeService.toggleStoreStatus(id);
-        Store store = storeService.getStoreById(id);
-        return ResponseEntity.ok(Map.of("active", store.getActive()));
+        StoreSnapshot store = storeService.getStoreSnapshot(id);
+        return ResponseEntity.ok(Map.of("active", store.active()));
+    }
+
+    private <T> ResponseEntity<T> stores(WebRequest request, List<Store> stores, long total, Supplier<T> body) {
+        return HttpCachingUtil.conditional(request, storesETag(stores, total), -1L,
+                HttpCachingUtil.publicFor(listingMaxAge), body);
+    }
+
+    // Ids dans l'ordre, dates de modification et noms des propriétaires, seuls champs issus d'une autre entité
+    private static String storesETag(List<Store> stores, long total) {
+        List<Object> parts = new ArrayList<>();
+        parts.add(total);
+        for (Store store : stores) {
+            parts.add(store.getId());
+            parts.add(store.getUpdatedAt());
+            if (store.getOwner() != null) {
+                parts.add(store.getOwner().getFirstName() + " " + store.getOwner().getLastName());
+            }
+        }
+        return HttpCachingUtil.etag(parts.toArray());
     }
 
     private StoreDto convertToDto(Store store) {
@@ -187,4 +244,18 @@ public class StoreController {
 
         return dto;
     }
+
+    private StoreDto convertToDto(StoreSnapshot store) {
+        StoreDto dto = new StoreDto();
+        dto.setId(store.id());
+        dto.setName(store.name());
+        dto.setDescription(store.description());
+        dto.setLogo(store.logo());
+        dto.setBanner(store.banner());
+        dto.setActive(store.active());
+        dto.setCreatedAt(store.createdAt());
+        dto.setOwnerId(store.ownerId());
+        dto.setOwnerName(store.ownerName());
+        return dto;
+    }
 }
\ No newline at end of file
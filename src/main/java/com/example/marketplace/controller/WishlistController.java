@@ -0,0 +1,39 @@
+package com.example.marketplace.controller;
+
+import com.example.marketplace.exception.BadRequestException;
+import com.example.marketplace.service.AuthService;
+import com.example.marketplace.service.WishlistService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping("/api/wishlist")
+@RequiredArgsConstructor
+@Slf4j
+public class WishlistController {
+
+    // Limite le nombre d'ids par requête (une page de produits)
+    private static final int MAX_PRODUCT_IDS = 200;
+
+    private final WishlistService wishlistService;
+    private final AuthService authService;
+
+    @GetMapping("/membership")
+    public ResponseEntity<Map<String, Set<Long>>> getWishedProductIds(@RequestParam List<Long> productIds) {
+        log.debug("REST request to check wishlist membership of {} products", productIds.size());
+
+        if (productIds.size() > MAX_PRODUCT_IDS) {
+            throw new BadRequestException("At most " + MAX_PRODUCT_IDS + " product ids can be checked at once");
+        }
+
+        Long currentUserId = authService.getCurrentUser().getId();
+        Set<Long> wished = wishlistService.getWishedProductIds(currentUserId, productIds);
+        return ResponseEntity.ok(Map.of("productIds", wished));
+    }
+}
@@ -1,11 +1,13 @@
 package com.example.marketplace.dto;
 
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.data.domain.Page;
 
 import java.util.List;
 
 @Data
+@NoArgsConstructor
 public class PagedResponse<T> {
     private List<T> content;
     private int page;
@@ -0,0 +1,16 @@
+package com.example.marketplace.dto.category;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryCountDto {
+    private Long categoryId;
+    // Produits actifs rattachés directement à la catégorie
+    private long productCount;
+    // Produits actifs distincts de tout le sous-arbre
+    private long totalProductCount;
+}
@@ -11,4 +11,6 @@ public class CategoryDto {
     private Boolean active;
     private Long parentId;
     private String parentName;
+    private Long productCount;
+    private Long totalProductCount;
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package com.example.marketplace.dto.category;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class CategoryTreeDto {
+    private Long id;
+    private String name;
+    private String image;
+    private Boolean active;
+    private List<CategoryTreeDto> children = new ArrayList<>();
+}
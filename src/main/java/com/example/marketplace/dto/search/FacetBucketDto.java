@@ -0,0 +1,15 @@
+package com.example.marketplace.dto.search;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetBucketDto {
+    private String key;
+    private String label;
+    private long count;
+    private boolean selected;
+}
@@ -0,0 +1,19 @@
+package com.example.marketplace.dto.search;
+
+import com.example.marketplace.dto.PagedResponse;
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class FacetedSearchResponse {
+    private PagedResponse<ProductSearchHit> results;
+    private List<FacetBucketDto> categories = new ArrayList<>();
+    private List<FacetBucketDto> stores = new ArrayList<>();
+    private List<FacetBucketDto> priceRanges = new ArrayList<>();
+    private List<FacetBucketDto> ratings = new ArrayList<>();
+    private long inStockCount;
+    // Position de la page suivante, absente sur la dernière page
+    private String nextCursor;
+}
@@ -0,0 +1,29 @@
+package com.example.marketplace.dto.search;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search result built from the indexed document only: rendering a result page never touches the database.
+ */
+@Data
+public class ProductSearchHit {
+    private Long id;
+    private String name;
+    private BigDecimal price;
+    private String imageUrl;
+    private Boolean inStock;
+    private Boolean featured;
+    private Long storeId;
+    private String storeName;
+    private List<Long> categoryIds;
+    private List<String> categoryNames;
+    private Double rating;
+    private Integer reviewCount;
+    private Float score;
+    // Fragments surlignés par champ (name, description), échappés en HTML
+    private Map<String, List<String>> highlights;
+}
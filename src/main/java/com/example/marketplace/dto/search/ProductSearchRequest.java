@@ -0,0 +1,28 @@
+package com.example.marketplace.dto.search;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+public class ProductSearchRequest {
+    private String q;
+    // Facettes sélectionnables : une catégorie inclut tout son sous-arbre
+    private List<Long> categoryIds;
+    private List<Long> storeIds;
+    private BigDecimal minPrice;
+    private BigDecimal maxPrice;
+    private Boolean inStock;
+    private Double minRating;
+    // relevance, best_match, price_asc, price_desc, newest, rating, popularity
+    private String sort;
+    // Fragments surlignés du nom et de la description
+    private boolean highlight;
+    private int page = 0;
+    // Pagination profonde : curseur renvoyé par la page précédente, page est alors ignoré
+    private String cursor;
+    // Parcours sur un instantané figé de l'index (point-in-time)
+    private boolean pit;
+    private int size = 20;
+}
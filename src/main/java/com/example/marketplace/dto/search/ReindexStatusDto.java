@@ -0,0 +1,18 @@
+package com.example.marketplace.dto.search;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+public class ReindexStatusDto {
+    // IDLE, RUNNING, FAILED ou COMPLETED
+    private String state;
+    private String targetIndex;
+    private int totalPartitions;
+    private int completedPartitions;
+    private long indexedDocuments;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
@@ -0,0 +1,21 @@
+package com.example.marketplace.event;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published once per abandoned cart so that a reminder (e-mail, push...) can be sent to its owner.
+ */
+@Getter
+@RequiredArgsConstructor
+@ToString
+public class CartAbandonedEvent {
+
+    private final Long cartId;
+    private final Long userId;
+    private final int itemCount;
+    private final LocalDateTime lastUpdatedAt;
+}
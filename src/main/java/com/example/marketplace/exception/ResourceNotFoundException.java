@@ -9,4 +9,16 @@ public class ResourceNotFoundException extends RuntimeException {
     public ResourceNotFoundException(String message) {
         super(message);
     }
+
+    private ResourceNotFoundException(String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+    }
+
+    /**
+     * Not-found error without a stack trace, for lookups that miss often: capturing the stack is
+     * most of the cost of throwing, and the handler never logs it.
+     */
+    public static ResourceNotFoundException withoutStackTrace(String message) {
+        return new ResourceNotFoundException(message, false);
+    }
 }
\ No newline at end of file
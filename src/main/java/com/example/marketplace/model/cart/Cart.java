@@ -6,11 +6,14 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
 
 @Entity
-@Table(name = "carts")
+@Table(name = "carts", indexes = {
+        @Index(name = "idx_carts_active_updated_at", columnList = "active, updated_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,6 +24,10 @@ public class Cart extends BaseEntity {
     @Column(nullable = false)
     private Boolean active = true;
 
+    // Date du dernier rappel de panier abandonné envoyé à l'utilisateur
+    @Column(name = "reminder_sent_at")
+    private LocalDateTime reminderSentAt;
+
     @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
     private User user;
@@ -0,0 +1,30 @@
+package com.example.marketplace.model.product;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Active product counts of a category: {@code directCount} counts products attached to the
+ * category itself, {@code totalCount} the distinct products of its whole subtree.
+ * Maintained incrementally by CategoryProductCounter.
+ */
+@Entity
+@Table(name = "category_product_counts", indexes = {
+        @Index(name = "idx_category_product_counts_direct", columnList = "direct_count")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CategoryProductCount {
+
+    @Id
+    @Column(name = "category_id")
+    private Long categoryId;
+
+    @Column(name = "direct_count", nullable = false)
+    private long directCount;
+
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+}
@@ -6,9 +6,6 @@ import com.example.marketplace.model.order.OrderItem;
 import com.example.marketplace.model.store.Store;
 import jakarta.persistence.*;
 import lombok.*;
-import org.springframework.data.elasticsearch.annotations.Document;
-import org.springframework.data.elasticsearch.annotations.Field;
-import org.springframework.data.elasticsearch.annotations.FieldType;
 
 import java.math.BigDecimal;
 import java.util.HashSet;
@@ -16,7 +13,6 @@ import java.util.Set;
 
 @Entity
 @Table(name = "products")
-@Document(indexName = "products")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -24,19 +20,15 @@ import java.util.Set;
 @Builder
 public class Product extends BaseEntity {
 
-    @Field(type = FieldType.Text, analyzer = "standard")
     @Column(nullable = false)
     private String name;
 
-    @Field(type = FieldType.Text, analyzer = "standard")
     @Column(columnDefinition = "TEXT")
     private String description;
 
-    @Field(type = FieldType.Double)
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal price;
 
-    @Field(type = FieldType.Integer)
     @Column(nullable = false)
     private Integer quantity;
 
@@ -45,11 +37,9 @@ public class Product extends BaseEntity {
     @Column(name = "image_url")
     private Set<String> images = new HashSet<>();
 
-    @Field(type = FieldType.Boolean)
     @Column(nullable = false)
     private Boolean featured = false;
 
-    @Field(type = FieldType.Boolean)
     @Column(nullable = false)
     private Boolean active = true;
 
@@ -61,7 +51,9 @@ public class Product extends BaseEntity {
     @JoinTable(
             name = "product_categories",
             joinColumns = @JoinColumn(name = "product_id"),
-            inverseJoinColumns = @JoinColumn(name = "category_id")
+            inverseJoinColumns = @JoinColumn(name = "category_id"),
+            // Parcours par catégorie sans lire la table : (category_id, product_id) couvre la jointure
+            indexes = @Index(name = "idx_product_categories_category_product", columnList = "category_id, product_id")
     )
     private Set<Category> categories = new HashSet<>();
 
@@ -0,0 +1,113 @@
+package com.example.marketplace.model.search;
+
+import lombok.*;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.elasticsearch.annotations.CompletionField;
+import org.springframework.data.elasticsearch.annotations.DateFormat;
+import org.springframework.data.elasticsearch.annotations.Document;
+import org.springframework.data.elasticsearch.annotations.Dynamic;
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flattened search view of a product, built by ProductDocumentMapper.
+ * <p>
+ * The mapping is strict and explicit: free text goes to {@code text} fields with a {@code keyword}
+ * subfield for exact matches, and doc values are only kept on the fields results are sorted or
+ * faceted by.
+ */
+@Document(indexName = "products", dynamic = Dynamic.STRICT)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProductDocument {
+
+    // Départage des tris, donc des curseurs search_after
+    @Id
+    @Field(type = FieldType.Long)
+    private Long id;
+
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "standard"),
+            otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword, ignoreAbove = 256))
+    private String name;
+
+    @Field(type = FieldType.Text, analyzer = "standard")
+    private String description;
+
+    // Entrées d'autocomplétion normalisées, pondérées par la popularité ; absent pour un produit inactif
+    @CompletionField(maxInputLength = 100)
+    private Completion nameSuggest;
+
+    @Field(type = FieldType.Keyword, index = false, docValues = false)
+    private String imageUrl;
+
+    @Field(type = FieldType.Double)
+    private BigDecimal price;
+
+    @Field(type = FieldType.Boolean, docValues = false)
+    private Boolean inStock;
+
+    @Field(type = FieldType.Boolean, docValues = false)
+    private Boolean featured;
+
+    @Field(type = FieldType.Boolean, docValues = false)
+    private Boolean active;
+
+    @Field(type = FieldType.Long)
+    private Long storeId;
+
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "standard"),
+            otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword, ignoreAbove = 256))
+    private String storeName;
+
+    // Catégories directes du produit
+    @Field(type = FieldType.Long)
+    @Builder.Default
+    private List<Long> categoryIds = new ArrayList<>();
+
+    @MultiField(
+            mainField = @Field(type = FieldType.Text, analyzer = "standard"),
+            otherFields = @InnerField(suffix = "keyword", type = FieldType.Keyword, ignoreAbove = 256, docValues = false))
+    @Builder.Default
+    private List<String> categoryNames = new ArrayList<>();
+
+    // Fils d'Ariane des catégories directes, ex. "Electronics > Phones"
+    @Field(type = FieldType.Keyword, docValues = false)
+    @Builder.Default
+    private List<String> categoryPaths = new ArrayList<>();
+
+    // Catégories directes et tous leurs ancêtres : filtre sur un sous-arbre par un simple term
+    @Field(type = FieldType.Long, docValues = false)
+    @Builder.Default
+    private List<Long> categoryTreeIds = new ArrayList<>();
+
+    @Field(type = FieldType.Double)
+    private Double rating;
+
+    @Field(type = FieldType.Integer, docValues = false)
+    private Integer reviewCount;
+
+    @Field(type = FieldType.Long)
+    private Long salesCount;
+
+    @Field(type = FieldType.Long)
+    private Long recentSalesCount;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis)
+    private LocalDateTime createdAt;
+
+    @Field(type = FieldType.Date, format = DateFormat.date_hour_minute_second_millis, docValues = false)
+    private LocalDateTime updatedAt;
+}
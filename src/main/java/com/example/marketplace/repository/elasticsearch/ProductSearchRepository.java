@@ -1,48 +1,74 @@
 package com.example.marketplace.repository.elasticsearch;
 
-import com.example.marketplace.model.product.Product;
-import org.springframework.data.domain.Page;
+import com.example.marketplace.model.search.ProductDocument;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.annotations.Highlight;
+import org.springframework.data.elasticsearch.annotations.HighlightField;
+import org.springframework.data.elasticsearch.annotations.HighlightParameters;
 import org.springframework.data.elasticsearch.annotations.Query;
+import org.springframework.data.elasticsearch.annotations.SourceFilters;
+import org.springframework.data.elasticsearch.core.SearchPage;
 import org.springframework.data.elasticsearch.repository.ElasticsearchRepository;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
 
+/**
+ * Legacy search queries. Results only carry the fields of a ProductSearchHit (see ProductSearchHits.SOURCE_FIELDS).
+ */
 @Repository
-public interface ProductSearchRepository extends ElasticsearchRepository<Product, Long> {
+public interface ProductSearchRepository extends ElasticsearchRepository<ProductDocument, Long> {
 
     // Recherche par nom ou description avec score de pertinence
     @Query("{\"bool\": {\"should\": [" +
             "{\"match\": {\"name\": {\"query\": \"?0\", \"boost\": 2.0}}}," +
             "{\"match\": {\"description\": \"?0\"}}" +
             "]}}")
-    Page<Product> searchByNameOrDescription(String searchTerm, Pageable pageable);
+    @SourceFilters(includes = {"id", "name", "price", "imageUrl", "inStock", "featured", "storeId", "storeName",
+            "categoryIds", "categoryNames", "rating", "reviewCount"})
+    @Highlight(parameters = @HighlightParameters(encoder = "html", preTags = "<em>", postTags = "</em>"), fields = {
+            @HighlightField(name = "name", parameters = @HighlightParameters(numberOfFragments = 0)),
+            @HighlightField(name = "description", parameters = @HighlightParameters(fragmentSize = 150, numberOfFragments = 2))})
+    SearchPage<ProductDocument> searchByNameOrDescription(String searchTerm, Pageable pageable);
 
     // Recherche par plage de prix
-    Page<Product> findByPriceBetween(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
+    @SourceFilters(includes = {"id", "name", "price", "imageUrl", "inStock", "featured", "storeId", "storeName",
+            "categoryIds", "categoryNames", "rating", "reviewCount"})
+    SearchPage<ProductDocument> findByPriceBetween(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
 
     // Recherche par catégorie et mot-clé
     @Query("{\"bool\": {\"must\": [" +
-            "{\"term\": {\"categories.name.keyword\": \"?0\"}}," +
+            "{\"term\": {\"categoryNames.keyword\": \"?0\"}}," +
             "{\"multi_match\": {\"query\": \"?1\", \"fields\": [\"name\", \"description\"]}}" +
             "]}}")
-    Page<Product> searchByCategoryAndKeyword(String category, String keyword, Pageable pageable);
+    @SourceFilters(includes = {"id", "name", "price", "imageUrl", "inStock", "featured", "storeId", "storeName",
+            "categoryIds", "categoryNames", "rating", "reviewCount"})
+    @Highlight(parameters = @HighlightParameters(encoder = "html", preTags = "<em>", postTags = "</em>"), fields = {
+            @HighlightField(name = "name", parameters = @HighlightParameters(numberOfFragments = 0)),
+            @HighlightField(name = "description", parameters = @HighlightParameters(fragmentSize = 150, numberOfFragments = 2))})
+    SearchPage<ProductDocument> searchByCategoryAndKeyword(String category, String keyword, Pageable pageable);
 
     // Recherche avec filtres sur plusieurs champs
     @Query("{\"bool\": {\"must\": [{\"term\": {\"active\": true}}]," +
             "\"should\": [" +
             "{\"match\": {\"name\": {\"query\": \"?0\", \"boost\": 3.0}}}," +
             "{\"match\": {\"description\": {\"query\": \"?0\", \"boost\": 1.0}}}," +
-            "{\"match\": {\"store.name\": {\"query\": \"?0\", \"boost\": 0.5}}}" +
+            "{\"match\": {\"storeName\": {\"query\": \"?0\", \"boost\": 0.5}}}" +
             "]," +
             "\"minimum_should_match\": 1}}")
-    Page<Product> advancedSearch(String query, Pageable pageable);
+    @SourceFilters(includes = {"id", "name", "price", "imageUrl", "inStock", "featured", "storeId", "storeName",
+            "categoryIds", "categoryNames", "rating", "reviewCount"})
+    @Highlight(parameters = @HighlightParameters(encoder = "html", preTags = "<em>", postTags = "</em>"), fields = {
+            @HighlightField(name = "name", parameters = @HighlightParameters(numberOfFragments = 0)),
+            @HighlightField(name = "description", parameters = @HighlightParameters(fragmentSize = 150, numberOfFragments = 2))})
+    SearchPage<ProductDocument> advancedSearch(String query, Pageable pageable);
 
     // Recherche avec suggestion (Did you mean...)
     @Query("{\"bool\": {\"should\": [" +
             "{\"match\": {\"name\": {\"query\": \"?0\", \"fuzziness\": \"AUTO\"}}}," +
             "{\"match\": {\"description\": {\"query\": \"?0\", \"fuzziness\": \"AUTO\"}}}" +
             "]}}")
-    Page<Product> fuzzySearch(String searchTerm, Pageable pageable);
+    @SourceFilters(includes = {"id", "name", "price", "imageUrl", "inStock", "featured", "storeId", "storeName",
+            "categoryIds", "categoryNames", "rating", "reviewCount"})
+    SearchPage<ProductDocument> fuzzySearch(String searchTerm, Pageable pageable);
 }
\ No newline at end of file
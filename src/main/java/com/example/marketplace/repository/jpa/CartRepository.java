@@ -1,10 +1,14 @@
 package com.example.marketplace.repository.jpa;
 
 import com.example.marketplace.model.cart.Cart;
+import com.example.marketplace.repository.jpa.projection.AbandonedCartView;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,17 +19,53 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c WHERE c.active = true AND c.user.id = :userId")
     Optional<Cart> findActiveCartByUserId(@Param("userId") Long userId);
 
-    @Query("SELECT c FROM Cart c WHERE c.active = true AND SIZE(c.items) > 0")
+    @Query("SELECT c FROM Cart c WHERE c.active = true " +
+            "AND EXISTS (SELECT ci.id FROM CartItem ci WHERE ci.cart = c)")
     List<Cart> findNonEmptyActiveCarts();
 
     @Query(value = "SELECT c.* FROM carts c " +
-            "JOIN cart_items ci ON c.id = ci.cart_id " +
             "WHERE c.updated_at < current_timestamp - interval '7 day' " +
             "AND c.active = true " +
-            "GROUP BY c.id",
+            "AND EXISTS (SELECT 1 FROM cart_items ci WHERE ci.cart_id = c.id)",
             nativeQuery = true)
     List<Cart> findAbandonedCarts();
 
+    // Parcours par clé (keyset) : chaque appel renvoie au plus :limit paniers d'id > :afterId
+    @Query(value = "SELECT c.id AS \"id\", c.user_id AS \"userId\", c.updated_at AS \"updatedAt\", " +
+            "(SELECT COUNT(*) FROM cart_items ci WHERE ci.cart_id = c.id) AS \"itemCount\" " +
+            "FROM carts c " +
+            "WHERE c.active = true " +
+            "AND c.id > :afterId " +
+            "AND c.updated_at < :abandonedBefore " +
+            "AND c.updated_at >= :retainedAfter " +
+            "AND (c.reminder_sent_at IS NULL OR c.reminder_sent_at < c.updated_at) " +
+            "AND EXISTS (SELECT 1 FROM cart_items ci WHERE ci.cart_id = c.id) " +
+            "ORDER BY c.id " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<AbandonedCartView> findAbandonedCartChunk(@Param("afterId") long afterId,
+                                                   @Param("abandonedBefore") LocalDateTime abandonedBefore,
+                                                   @Param("retainedAfter") LocalDateTime retainedAfter,
+                                                   @Param("limit") int limit);
+
+    @Query(value = "SELECT c.id FROM carts c " +
+            "WHERE c.id > :afterId " +
+            "AND c.updated_at < :expiredBefore " +
+            "ORDER BY c.id " +
+            "LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findExpiredCartIds(@Param("afterId") long afterId,
+                                  @Param("expiredBefore") LocalDateTime expiredBefore,
+                                  @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE Cart c SET c.reminderSentAt = :sentAt WHERE c.id IN :cartIds")
+    int markReminderSent(@Param("cartIds") Collection<Long> cartIds, @Param("sentAt") LocalDateTime sentAt);
+
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.id IN :cartIds")
+    int deleteAllByIdIn(@Param("cartIds") Collection<Long> cartIds);
+
     @Query(value = "SELECT p.id, p.name, COUNT(ci.product_id) as frequency " +
             "FROM cart_items ci " +
             "JOIN products p ON ci.product_id = p.id " +
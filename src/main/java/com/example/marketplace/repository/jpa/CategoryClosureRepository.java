@@ -0,0 +1,69 @@
+package com.example.marketplace.repository.jpa;
+
+import com.example.marketplace.model.product.CategoryClosure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CategoryClosureRepository extends JpaRepository<CategoryClosure, CategoryClosure.Key> {
+
+    // Nouvelle feuille : lignes de ses ancêtres (via le parent) plus la ligne réflexive
+    @Modifying
+    @Query(value = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+            "SELECT cc.ancestor_id, :categoryId, cc.depth + 1 FROM category_closure cc " +
+            "WHERE cc.descendant_id = :parentId " +
+            "UNION ALL SELECT :categoryId, :categoryId, 0",
+            nativeQuery = true)
+    int insertLeaf(@Param("categoryId") Long categoryId, @Param("parentId") Long parentId);
+
+    // Détache le sous-arbre de :categoryId de tous ses anciens ancêtres
+    @Modifying
+    @Query(value = "DELETE FROM category_closure " +
+            "WHERE descendant_id IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = :categoryId) " +
+            "AND ancestor_id NOT IN (SELECT descendant_id FROM category_closure WHERE ancestor_id = :categoryId)",
+            nativeQuery = true)
+    int detachSubtree(@Param("categoryId") Long categoryId);
+
+    // Rattache le sous-arbre de :categoryId sous :parentId et tous ses ancêtres
+    @Modifying
+    @Query(value = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+            "SELECT sup.ancestor_id, sub.descendant_id, sup.depth + sub.depth + 1 " +
+            "FROM category_closure sup CROSS JOIN category_closure sub " +
+            "WHERE sup.descendant_id = :parentId AND sub.ancestor_id = :categoryId",
+            nativeQuery = true)
+    int attachSubtree(@Param("categoryId") Long categoryId, @Param("parentId") Long parentId);
+
+    // Suppression d'un noeud dont les enfants remontent d'un niveau : les chemins qui le traversaient raccourcissent
+    @Modifying
+    @Query(value = "UPDATE category_closure SET depth = depth - 1 " +
+            "WHERE ancestor_id IN (SELECT ancestor_id FROM category_closure " +
+            "    WHERE descendant_id = :categoryId AND ancestor_id <> :categoryId) " +
+            "AND descendant_id IN (SELECT descendant_id FROM category_closure " +
+            "    WHERE ancestor_id = :categoryId AND descendant_id <> :categoryId)",
+            nativeQuery = true)
+    int shortenPathsThrough(@Param("categoryId") Long categoryId);
+
+    @Modifying
+    @Query(value = "DELETE FROM category_closure WHERE ancestor_id = :categoryId OR descendant_id = :categoryId",
+            nativeQuery = true)
+    int deleteAllFor(@Param("categoryId") Long categoryId);
+
+    @Modifying
+    @Query(value = "DELETE FROM category_closure", nativeQuery = true)
+    int deleteAllRows();
+
+    // Reconstruction complète depuis categories.parent_id (initialisation uniquement)
+    @Modifying
+    @Query(value = "INSERT INTO category_closure (ancestor_id, descendant_id, depth) " +
+            "WITH RECURSIVE closure (ancestor_id, descendant_id, depth) AS (" +
+            "  SELECT id, id, 0 FROM categories" +
+            "  UNION ALL" +
+            "  SELECT cl.ancestor_id, c.id, cl.depth + 1" +
+            "  FROM categories c" +
+            "  JOIN closure cl ON c.parent_id = cl.descendant_id" +
+            ") " +
+            "SELECT ancestor_id, descendant_id, depth FROM closure",
+            nativeQuery = true)
+    int rebuildFromCategories();
+}
@@ -0,0 +1,62 @@
+package com.example.marketplace.repository.jpa;
+
+import com.example.marketplace.model.product.CategoryProductCount;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+
+public interface CategoryProductCountRepository extends JpaRepository<CategoryProductCount, Long> {
+
+    @Modifying
+    @Query(value = "INSERT INTO category_product_counts (category_id, direct_count, total_count) " +
+            "SELECT c.id, :delta, 0 FROM categories c WHERE c.id IN (:categoryIds) ORDER BY c.id " +
+            "ON CONFLICT (category_id) DO UPDATE " +
+            "SET direct_count = category_product_counts.direct_count + EXCLUDED.direct_count",
+            nativeQuery = true)
+    int addToDirectCounts(@Param("categoryIds") Collection<Long> categoryIds, @Param("delta") long delta);
+
+    // Chaque ancêtre n'est compté qu'une fois, même si le produit est dans plusieurs de ses sous-catégories.
+    // Lignes verrouillées dans l'ordre des ids pour éviter les interblocages entre écritures concurrentes
+    @Modifying
+    @Query(value = "INSERT INTO category_product_counts (category_id, direct_count, total_count) " +
+            "SELECT DISTINCT cc.ancestor_id, 0, :delta FROM category_closure cc " +
+            "WHERE cc.descendant_id IN (:categoryIds) ORDER BY cc.ancestor_id " +
+            "ON CONFLICT (category_id) DO UPDATE " +
+            "SET total_count = category_product_counts.total_count + EXCLUDED.total_count",
+            nativeQuery = true)
+    int addToTotalCounts(@Param("categoryIds") Collection<Long> categoryIds, @Param("delta") long delta);
+
+    // Upsert : un ancêtre sans ligne (jamais compté) reçoit aussi son total
+    @Modifying
+    @Query(value = "INSERT INTO category_product_counts (category_id, direct_count, total_count) " +
+            "SELECT c.id, 0, (" +
+            "  SELECT COUNT(DISTINCT pc.product_id) FROM category_closure cc" +
+            "  JOIN product_categories pc ON pc.category_id = cc.descendant_id" +
+            "  JOIN products p ON p.id = pc.product_id" +
+            "  WHERE cc.ancestor_id = c.id AND p.active = true" +
+            ") FROM categories c WHERE c.id IN (:categoryIds) ORDER BY c.id " +
+            "ON CONFLICT (category_id) DO UPDATE SET total_count = EXCLUDED.total_count",
+            nativeQuery = true)
+    int recomputeTotalCounts(@Param("categoryIds") Collection<Long> categoryIds);
+
+    @Modifying
+    @Query(value = "DELETE FROM category_product_counts", nativeQuery = true)
+    int deleteAllRows();
+
+    // Reconstruction complète (initialisation et réconciliation nocturne)
+    @Modifying
+    @Query(value = "INSERT INTO category_product_counts (category_id, direct_count, total_count) " +
+            "SELECT c.id, " +
+            "  (SELECT COUNT(*) FROM product_categories pc JOIN products p ON p.id = pc.product_id" +
+            "   WHERE pc.category_id = c.id AND p.active = true), " +
+            "  (SELECT COUNT(DISTINCT pc.product_id) FROM category_closure cc" +
+            "   JOIN product_categories pc ON pc.category_id = cc.descendant_id" +
+            "   JOIN products p ON p.id = pc.product_id" +
+            "   WHERE cc.ancestor_id = c.id AND p.active = true) " +
+            "FROM categories c",
+            nativeQuery = true)
+    int rebuildFromProducts();
+}
@@ -1,6 +1,7 @@
 package com.example.marketplace.repository.jpa;
 
 import com.example.marketplace.model.product.Category;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -18,6 +19,14 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
 
     List<Category> findByActiveTrue();
 
+    // Parcours des ids par tranches pour le filtre d'existence : afterId exclu
+    @Query("SELECT c.id FROM Category c WHERE c.id > :afterId ORDER BY c.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
+    // Lignes plates (sans entités) pour construire l'arbre en mémoire
+    @Query("SELECT c.id, c.name, c.description, c.image, c.active, p.id FROM Category c LEFT JOIN c.parent p")
+    List<Object[]> findAllForTree();
+
     @Query("SELECT c FROM Category c WHERE c.name LIKE %:keyword% OR c.description LIKE %:keyword%")
     List<Category> searchCategories(@Param("keyword") String keyword);
 
@@ -47,10 +56,8 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
             nativeQuery = true)
     List<Object[]> findCategoryHierarchy();
 
-    @Query(value = "SELECT c.* FROM categories c " +
-            "JOIN product_categories pc ON c.id = pc.category_id " +
-            "GROUP BY c.id " +
-            "ORDER BY COUNT(pc.product_id) DESC LIMIT :limit",
-            nativeQuery = true)
-    List<Category> findTopCategories(@Param("limit") int limit);
+    // Lit les compteurs maintenus par CategoryProductCounter au lieu d'agréger product_categories
+    @Query("SELECT c FROM Category c JOIN CategoryProductCount cpc ON cpc.categoryId = c.id " +
+            "WHERE cpc.directCount > 0 ORDER BY cpc.directCount DESC, c.id")
+    List<Category> findTopCategories(Pageable pageable);
 }
\ No newline at end of file
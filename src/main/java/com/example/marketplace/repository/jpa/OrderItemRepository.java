@@ -5,6 +5,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
@@ -16,6 +18,9 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
     @Query("SELECT oi FROM OrderItem oi WHERE oi.order.user.id = :userId")
     List<OrderItem> findByUserId(@Param("userId") Long userId);
 
+    @Query("SELECT DISTINCT oi.product.id FROM OrderItem oi WHERE oi.order.user.id = :userId")
+    List<Long> findProductIdsByUserId(@Param("userId") Long userId);
+
     @Query("SELECT oi FROM OrderItem oi " +
             "JOIN oi.product p " +
             "WHERE p.store.id = :storeId")
@@ -46,4 +51,26 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
             "ORDER BY quantity DESC",
             nativeQuery = true)
     List<Object[]> findSalesByCategory();
+
+    // Quantités vendues (hors commandes annulées) : total et depuis recentSince
+    @Query(value = "SELECT oi.product_id, SUM(oi.quantity), " +
+            "SUM(CASE WHEN o.created_at >= :recentSince THEN oi.quantity ELSE 0 END) " +
+            "FROM order_items oi " +
+            "JOIN orders o ON oi.order_id = o.id " +
+            "WHERE oi.product_id IN (:productIds) AND o.status <> 'CANCELLED' " +
+            "GROUP BY oi.product_id",
+            nativeQuery = true)
+    List<Object[]> findSalesByProductIdIn(@Param("productIds") Collection<Long> productIds,
+                                          @Param("recentSince") LocalDateTime recentSince);
+
+    // Produits dont les ventes ont pu changer depuis since : commandes créées ou modifiées depuis,
+    // ou commandes sorties de la fenêtre des ventes récentes entre expiredFrom et expiredTo
+    @Query(value = "SELECT DISTINCT oi.product_id FROM order_items oi " +
+            "JOIN orders o ON oi.order_id = o.id " +
+            "WHERE o.created_at > :since OR o.updated_at > :since " +
+            "OR (o.created_at > :expiredFrom AND o.created_at <= :expiredTo)",
+            nativeQuery = true)
+    List<Long> findProductIdsWithSalesChangedSince(@Param("since") LocalDateTime since,
+                                                   @Param("expiredFrom") LocalDateTime expiredFrom,
+                                                   @Param("expiredTo") LocalDateTime expiredTo);
 }
\ No newline at end of file
@@ -9,7 +9,10 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -20,6 +23,17 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Page<Product> findByCategories_Id(Long categoryId, Pageable pageable);
 
+    // Produits rattachés à la catégorie ou à l'une de ses sous-catégories, via la table de fermeture
+    @Query(value = "SELECT p.* FROM products p " +
+            "WHERE EXISTS (SELECT 1 FROM category_closure cc " +
+            "    JOIN product_categories pc ON pc.category_id = cc.descendant_id " +
+            "    WHERE cc.ancestor_id = :categoryId AND pc.product_id = p.id)",
+            countQuery = "SELECT COUNT(DISTINCT pc.product_id) FROM category_closure cc " +
+                    "JOIN product_categories pc ON pc.category_id = cc.descendant_id " +
+                    "WHERE cc.ancestor_id = :categoryId",
+            nativeQuery = true)
+    Page<Product> findByCategorySubtree(@Param("categoryId") Long categoryId, Pageable pageable);
+
     @Query("SELECT p FROM Product p WHERE p.price BETWEEN :minPrice AND :maxPrice")
     Page<Product> findByPriceRange(@Param("minPrice") BigDecimal minPrice,
                                    @Param("maxPrice") BigDecimal maxPrice,
@@ -48,6 +62,68 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             nativeQuery = true)
     List<Product> findNewProducts();
 
+    @Query(value = "SELECT category_id FROM product_categories WHERE product_id = :productId", nativeQuery = true)
+    List<Long> findCategoryIdsByProductId(@Param("productId") Long productId);
+
+    @Query("SELECT p.active FROM Product p WHERE p.id = :id")
+    Optional<Boolean> findActiveById(@Param("id") Long id);
+
+    @Query("SELECT MAX(p.id) FROM Product p")
+    Long findMaxId();
+
+    // Parcours par plage d'ids pour la réindexation : afterId exclu, toId inclus
+    @Query("SELECT p.id FROM Product p WHERE p.id > :afterId AND p.id <= :toId ORDER BY p.id")
+    List<Long> findIdsInRange(@Param("afterId") Long afterId, @Param("toId") Long toId, Pageable pageable);
+
+    // Colonnes du document de recherche : id, name, description, price, quantity, featured, active,
+    // createdAt, updatedAt, store id, store name, store active
+    @Query("SELECT p.id, p.name, p.description, p.price, p.quantity, p.featured, p.active, " +
+            "p.createdAt, p.updatedAt, s.id, s.name, s.active FROM Product p JOIN p.store s WHERE p.id IN :ids")
+    List<Object[]> findSearchRowsByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Produits d'une boutique par pages d'ids (afterId exclu), à réindexer après une écriture sur la boutique
+    @Query("SELECT p.id FROM Product p WHERE p.store.id = :storeId AND p.id > :afterId ORDER BY p.id")
+    List<Long> findIdsByStoreId(@Param("storeId") Long storeId, @Param("afterId") Long afterId, Pageable pageable);
+
+    // Produits modifiés depuis une date par pages d'ids (afterId exclu), pour le rattrapage de l'index embarqué
+    @Query("SELECT p.id FROM Product p WHERE p.updatedAt > :since AND p.id > :afterId ORDER BY p.id")
+    List<Long> findIdsUpdatedSince(@Param("since") LocalDateTime since, @Param("afterId") Long afterId,
+                                   Pageable pageable);
+
+    // Produits rattachés aux catégories ou à leurs sous-catégories, via la table de fermeture, par pages d'ids
+    @Query(value = "SELECT DISTINCT pc.product_id FROM category_closure cc " +
+            "JOIN product_categories pc ON pc.category_id = cc.descendant_id " +
+            "WHERE cc.ancestor_id IN (:categoryIds) AND pc.product_id > :afterId " +
+            "ORDER BY pc.product_id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findIdsInCategorySubtrees(@Param("categoryIds") Collection<Long> categoryIds,
+                                         @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    @Query(value = "SELECT product_id, category_id FROM product_categories WHERE product_id IN (:productIds)",
+            nativeQuery = true)
+    List<Object[]> findCategoryLinksByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Query(value = "SELECT product_id, MIN(image_url) FROM product_images " +
+            "WHERE product_id IN (:productIds) GROUP BY product_id",
+            nativeQuery = true)
+    List<Object[]> findFirstImagesByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    // Produits actifs les plus populaires pour l'autocomplétion : id, name, ventes totales, ventes récentes.
+    // Même pondération que ProductDocumentMapper.suggestionWeight
+    @Query(value = "SELECT p.id, p.name, COALESCE(s.sold, 0), COALESCE(s.recent, 0) FROM products p " +
+            "LEFT JOIN (SELECT oi.product_id, SUM(oi.quantity) AS sold, " +
+            "  SUM(CASE WHEN o.created_at >= :recentSince THEN oi.quantity ELSE 0 END) AS recent " +
+            "  FROM order_items oi JOIN orders o ON oi.order_id = o.id " +
+            "  WHERE o.status <> 'CANCELLED' GROUP BY oi.product_id) s ON s.product_id = p.id " +
+            "JOIN stores st ON st.id = p.store_id " +
+            "WHERE p.active = true AND st.active = true " +
+            "ORDER BY COALESCE(s.sold, 0) + 4 * COALESCE(s.recent, 0) DESC, p.id LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> findSuggestionCandidates(@Param("recentSince") LocalDateTime recentSince, @Param("limit") int limit);
+
+    @Query("SELECT p.id, p.name FROM Product p WHERE p.id IN :ids")
+    List<Object[]> findNamesByIdIn(@Param("ids") Collection<Long> ids);
+
     @Query("SELECT p FROM Product p " +
             "JOIN p.categories c " +
             "WHERE (:categoryId IS NULL OR c.id = :categoryId) " +
@@ -7,6 +7,8 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface ReviewRepository extends JpaRepository<Review, Long> {
@@ -39,6 +41,16 @@ public interface ReviewRepository extends JpaRepository<Review, Long> {
             nativeQuery = true)
     List<Object[]> findTopRatedProducts(@Param("minReviews") int minReviews, @Param("limit") int limit);
 
+    @Query("SELECT r.product.id, AVG(r.rating), COUNT(r) FROM Review r " +
+            "WHERE r.product.id IN :productIds GROUP BY r.product.id")
+    List<Object[]> findRatingsByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Query("SELECT DISTINCT r.product.id FROM Review r WHERE r.createdAt > :since OR r.updatedAt > :since")
+    List<Long> findProductIdsReviewedSince(@Param("since") LocalDateTime since);
+
+    @Query("SELECT DISTINCT r.product.id FROM Review r WHERE r.user.id = :userId")
+    List<Long> findProductIdsByUserId(@Param("userId") Long userId);
+
     @Query(value = "SELECT COUNT(*) FROM reviews WHERE created_at > current_date - interval '7 day'",
             nativeQuery = true)
     long countNewReviews();
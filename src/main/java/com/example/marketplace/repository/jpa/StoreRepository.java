@@ -18,6 +18,10 @@ public interface StoreRepository extends JpaRepository<Store, Long> {
 
     List<Store> findByActiveTrue();
 
+    // Parcours des ids par tranches pour le filtre d'existence : afterId exclu
+    @Query("SELECT s.id FROM Store s WHERE s.id > :afterId ORDER BY s.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
     @Query("SELECT s FROM Store s WHERE s.name LIKE %:keyword% OR s.description LIKE %:keyword%")
     Page<Store> searchStores(@Param("keyword") String keyword, Pageable pageable);
 
@@ -27,6 +27,10 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     List<User> findByEnabledTrue();
 
+    // Parcours des ids par tranches pour le filtre d'existence : afterId exclu
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Long> findIdsAfter(@Param("afterId") Long afterId, Pageable pageable);
+
     @Query(value = "SELECT * FROM users u WHERE u.created_at > current_date - interval '30 day'", nativeQuery = true)
     List<User> findNewUsers();
 }
\ No newline at end of file
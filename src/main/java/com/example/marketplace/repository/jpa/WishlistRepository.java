@@ -2,9 +2,11 @@ package com.example.marketplace.repository.jpa;
 
 import com.example.marketplace.model.cart.Wishlist;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +19,51 @@ public interface WishlistRepository extends JpaRepository<Wishlist, Long> {
     @Query("SELECT w FROM Wishlist w WHERE w.user.id = :userId AND :productId MEMBER OF w.products")
     List<Wishlist> findByUserIdAndProductId(@Param("userId") Long userId, @Param("productId") Long productId);
 
+    // Vide le contexte de persistance : la liste rechargée ensuite reflète la modification
+    @Modifying(clearAutomatically = true)
+    @Query(value = "INSERT INTO wishlist_products (wishlist_id, product_id) " +
+            "VALUES (:wishlistId, :productId) " +
+            "ON CONFLICT DO NOTHING",
+            nativeQuery = true)
+    int addProduct(@Param("wishlistId") Long wishlistId, @Param("productId") Long productId);
+
+    @Modifying(clearAutomatically = true)
+    @Query(value = "DELETE FROM wishlist_products WHERE wishlist_id = :wishlistId AND product_id = :productId",
+            nativeQuery = true)
+    int removeProduct(@Param("wishlistId") Long wishlistId, @Param("productId") Long productId);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM wishlist_products " +
+            "WHERE wishlist_id = :wishlistId AND product_id = :productId)",
+            nativeQuery = true)
+    boolean containsProduct(@Param("wishlistId") Long wishlistId, @Param("productId") Long productId);
+
+    @Query(value = "SELECT EXISTS (SELECT 1 FROM wishlist_products wp " +
+            "JOIN wishlists w ON w.id = wp.wishlist_id " +
+            "WHERE w.user_id = :userId AND wp.product_id = :productId)",
+            nativeQuery = true)
+    boolean existsByUserIdAndProductId(@Param("userId") Long userId, @Param("productId") Long productId);
+
+    @Query(value = "SELECT DISTINCT wp.product_id FROM wishlist_products wp " +
+            "JOIN wishlists w ON w.id = wp.wishlist_id " +
+            "WHERE w.user_id = :userId",
+            nativeQuery = true)
+    List<Long> findProductIdsByUserId(@Param("userId") Long userId);
+
+    @Query(value = "SELECT DISTINCT wp.product_id FROM wishlist_products wp " +
+            "JOIN wishlists w ON w.id = wp.wishlist_id " +
+            "WHERE w.user_id = :userId AND wp.product_id IN (:productIds)",
+            nativeQuery = true)
+    List<Long> findWishedProductIds(@Param("userId") Long userId, @Param("productIds") Collection<Long> productIds);
+
+    @Query(value = "SELECT product_id FROM wishlist_products WHERE wishlist_id = :wishlistId",
+            nativeQuery = true)
+    List<Long> findProductIdsByWishlistId(@Param("wishlistId") Long wishlistId);
+
+    // Agrégat complet, utilisé uniquement pour (re)construire les compteurs de ProductWishCounter
+    @Query(value = "SELECT product_id, COUNT(*) FROM wishlist_products GROUP BY product_id",
+            nativeQuery = true)
+    List<Object[]> findWishCountsByProduct();
+
     @Query("SELECT COUNT(w) FROM Wishlist w JOIN w.products p WHERE p.id = :productId")
     long countWishlistsByProduct(@Param("productId") Long productId);
 
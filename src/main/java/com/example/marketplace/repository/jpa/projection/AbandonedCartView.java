@@ -0,0 +1,18 @@
+package com.example.marketplace.repository.jpa.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lightweight view of an abandoned cart, used to walk stale carts in chunks
+ * without hydrating the cart, its items and their products.
+ */
+public interface AbandonedCartView {
+
+    Long getId();
+
+    Long getUserId();
+
+    LocalDateTime getUpdatedAt();
+
+    Integer getItemCount();
+}
@@ -0,0 +1,147 @@
+package com.example.marketplace.scheduler;
+
+import com.example.marketplace.event.CartAbandonedEvent;
+import com.example.marketplace.repository.jpa.CartItemRepository;
+import com.example.marketplace.repository.jpa.CartRepository;
+import com.example.marketplace.repository.jpa.projection.AbandonedCartView;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Walks abandoned carts in keyset-paged chunks: emits a {@link CartAbandonedEvent} for every cart
+ * idle longer than {@code abandoned-after}, then purges carts idle longer than {@code retention}.
+ * Only one chunk of ids is held in memory at a time and each chunk runs in its own transaction.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AbandonedCartProcessor {
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.carts.abandoned-after:7d}")
+    private Duration abandonedAfter;
+
+    @Value("${marketplace.carts.retention:90d}")
+    private Duration retention;
+
+    @Value("${marketplace.carts.chunk-size:500}")
+    private int chunkSize;
+
+    private Counter scannedCounter;
+    private Counter remindedCounter;
+    private Counter purgedCounter;
+    private Timer durationTimer;
+
+    @PostConstruct
+    public void initMetrics() {
+        scannedCounter = Counter.builder("marketplace.carts.abandoned.scanned")
+                .description("Abandoned carts scanned by the processor")
+                .register(meterRegistry);
+        remindedCounter = Counter.builder("marketplace.carts.abandoned.reminded")
+                .description("Abandoned cart reminder events emitted")
+                .register(meterRegistry);
+        purgedCounter = Counter.builder("marketplace.carts.abandoned.purged")
+                .description("Carts deleted after the retention window")
+                .register(meterRegistry);
+        durationTimer = Timer.builder("marketplace.carts.abandoned.duration")
+                .description("Duration of an abandoned cart processing run")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${marketplace.carts.processor-cron:0 0 3 * * *}")
+    public void processAbandonedCarts() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            int reminded = sendReminders(now);
+            int purged = purgeExpiredCarts(now);
+            log.info("Abandoned cart run finished: {} reminders emitted, {} carts purged", reminded, purged);
+        } catch (RuntimeException e) {
+            log.error("Abandoned cart run failed", e);
+        } finally {
+            sample.stop(durationTimer);
+        }
+    }
+
+    int sendReminders(LocalDateTime now) {
+        LocalDateTime abandonedBefore = now.minus(abandonedAfter);
+        LocalDateTime retainedAfter = now.minus(retention);
+
+        long afterId = 0L;
+        int total = 0;
+        while (true) {
+            final long cursor = afterId;
+            List<AbandonedCartView> chunk = transactionTemplate.execute(status -> {
+                List<AbandonedCartView> carts = cartRepository.findAbandonedCartChunk(
+                        cursor, abandonedBefore, retainedAfter, chunkSize);
+                if (!carts.isEmpty()) {
+                    cartRepository.markReminderSent(carts.stream().map(AbandonedCartView::getId).toList(), now);
+                    carts.forEach(cart -> eventPublisher.publishEvent(new CartAbandonedEvent(
+                            cart.getId(), cart.getUserId(), cart.getItemCount(), cart.getUpdatedAt())));
+                }
+                return carts;
+            });
+
+            if (chunk == null || chunk.isEmpty()) {
+                return total;
+            }
+            scannedCounter.increment(chunk.size());
+            remindedCounter.increment(chunk.size());
+            total += chunk.size();
+            afterId = chunk.get(chunk.size() - 1).getId();
+
+            if (chunk.size() < chunkSize) {
+                return total;
+            }
+        }
+    }
+
+    int purgeExpiredCarts(LocalDateTime now) {
+        LocalDateTime expiredBefore = now.minus(retention);
+
+        long afterId = 0L;
+        int total = 0;
+        while (true) {
+            final long cursor = afterId;
+            List<Long> cartIds = transactionTemplate.execute(status -> {
+                List<Long> ids = cartRepository.findExpiredCartIds(cursor, expiredBefore, chunkSize);
+                if (!ids.isEmpty()) {
+                    // Suppressions ensemblistes : les articles d'abord, puis les paniers
+                    cartItemRepository.deleteAllByCartIdIn(ids);
+                    cartRepository.deleteAllByIdIn(ids);
+                }
+                return ids;
+            });
+
+            if (cartIds == null || cartIds.isEmpty()) {
+                return total;
+            }
+            scannedCounter.increment(cartIds.size());
+            purgedCounter.increment(cartIds.size());
+            total += cartIds.size();
+            afterId = cartIds.get(cartIds.size() - 1);
+
+            if (cartIds.size() < chunkSize) {
+                return total;
+            }
+        }
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.marketplace.service;
 
+import com.example.marketplace.cache.CategorySnapshot;
 import com.example.marketplace.model.product.Category;
+import com.example.marketplace.model.product.CategoryProductCount;
+import com.example.marketplace.service.category.CategoryNode;
+import com.example.marketplace.service.category.CategoryTree;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -9,13 +14,18 @@ public interface CategoryService {
 
     Category getCategoryById(Long id);
 
+    /**
+     * Cached, immutable view of the category, for reads that need no managed entity.
+     */
+    CategorySnapshot getCategorySnapshot(Long id);
+
     Category getCategoryByName(String name);
 
     List<Category> getAllCategories();
 
-    List<Category> getRootCategories();
+    List<CategoryNode> getRootCategories();
 
-    List<Category> getSubcategories(Long parentId);
+    List<CategoryNode> getSubcategories(Long parentId);
 
     List<Category> getActiveCategories();
 
@@ -31,7 +41,15 @@ public interface CategoryService {
 
     List<Category> getTopCategories(int limit);
 
-    List<Category> getCategoryPath(Long categoryId);
+    Map<Long, CategoryProductCount> getProductCounts(Collection<Long> categoryIds);
+
+    Map<Long, CategoryProductCount> getAllProductCounts();
+
+    List<CategoryNode> getCategoryPath(Long categoryId);
+
+    Map<Long, List<Long>> getCategoryHierarchy();
+
+    CategoryTree getCategoryTree();
 
-    Map<Category, List<Category>> getCategoryHierarchy();
+    boolean isDescendantOfCategory(Long categoryId, Long ancestorId);
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.example.marketplace.service;
 
+import com.example.marketplace.cache.ProductSnapshot;
 import com.example.marketplace.dto.PagedResponse;
 import com.example.marketplace.dto.product.ProductCreateRequest;
 import com.example.marketplace.dto.product.ProductDto;
@@ -15,12 +16,19 @@ import java.util.List;
 public interface ProductService {
     Product getProductById(Long id);
 
+    /**
+     * Cached, immutable view of the product, for reads that need no managed entity.
+     */
+    ProductSnapshot getProductSnapshot(Long id);
+
     PagedResponse<ProductDto> getAllProducts(Pageable pageable);
 
     PagedResponse<ProductDto> getProductsByStore(Long storeId, Pageable pageable);
 
     PagedResponse<ProductDto> getProductsByCategory(Long categoryId, Pageable pageable);
 
+    PagedResponse<ProductDto> getProductsInCategorySubtree(Long categoryId, Pageable pageable);
+
     PagedResponse<ProductDto> getProductsByCategoryName(String categoryName, Pageable pageable);
 
     PagedResponse<ProductDto> searchProducts(String keyword, Pageable pageable);
@@ -1,6 +1,10 @@
 package com.example.marketplace.service;
 
-import com.example.marketplace.model.product.Product;
+import com.example.marketplace.dto.search.FacetedSearchResponse;
+import com.example.marketplace.dto.search.ProductSearchHit;
+import com.example.marketplace.dto.search.ProductSearchRequest;
+import com.example.marketplace.dto.search.ReindexStatusDto;
+import com.example.marketplace.dto.search.SuggestionDto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -10,23 +14,31 @@ import java.util.Map;
 
 public interface SearchService {
 
-    Page<Product> searchByNameOrDescription(String searchTerm, Pageable pageable);
+    Page<ProductSearchHit> searchByNameOrDescription(String searchTerm, Pageable pageable);
 
-    Page<Product> searchByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
+    Page<ProductSearchHit> searchByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
 
-    Page<Product> searchByCategoryAndKeyword(String category, String keyword, Pageable pageable);
+    Page<ProductSearchHit> searchByCategoryAndKeyword(String category, String keyword, Pageable pageable);
 
-    Page<Product> advancedSearch(String query, Pageable pageable);
+    Page<ProductSearchHit> advancedSearch(String query, Pageable pageable);
 
-    Page<Product> fuzzySearch(String searchTerm, Pageable pageable);
+    Page<ProductSearchHit> fuzzySearch(String searchTerm, Pageable pageable);
 
-    Map<String, List<String>> getSuggestions(String searchTerm);
+    FacetedSearchResponse searchProducts(ProductSearchRequest request);
 
-    void indexProduct(Product product);
+    Map<String, List<SuggestionDto>> getSuggestions(String prefix, int limit);
+
+    void indexProduct(Long productId);
 
     void deleteProductFromIndex(Long productId);
 
-    void reindexAllProducts();
+    ReindexStatusDto reindexAllProducts();
+
+    ReindexStatusDto resumeReindex();
+
+    ReindexStatusDto getReindexStatus();
+
+    int replayIndexingDeadLetters();
 
     long countIndexedProducts();
 }
\ No newline at end of file
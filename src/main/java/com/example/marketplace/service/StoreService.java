@@ -1,5 +1,6 @@
 package com.example.marketplace.service;
 
+import com.example.marketplace.cache.StoreSnapshot;
 import com.example.marketplace.model.store.Store;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -10,6 +11,11 @@ public interface StoreService {
 
     Store getStoreById(Long id);
 
+    /**
+     * Cached, immutable view of the store, for reads that need no managed entity.
+     */
+    StoreSnapshot getStoreSnapshot(Long id);
+
     Store getStoreByOwnerId(Long ownerId);
 
     Page<Store> getAllStores(Pageable pageable);
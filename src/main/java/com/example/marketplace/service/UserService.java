@@ -1,5 +1,6 @@
 package com.example.marketplace.service;
 
+import com.example.marketplace.cache.UserSnapshot;
 import com.example.marketplace.dto.user.AddressRequest;
 import com.example.marketplace.dto.user.UserProfileUpdateRequest;
 import com.example.marketplace.model.user.Address;
@@ -13,6 +14,11 @@ import java.util.List;
 public interface UserService {
     User getUserById(Long id);
 
+    /**
+     * Cached, immutable view of the user's profile, without credentials.
+     */
+    UserSnapshot getUserSnapshot(Long id);
+
     User getUserByEmail(String email);
 
     Page<User> getAllUsers(Pageable pageable);
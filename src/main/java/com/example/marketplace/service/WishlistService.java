@@ -2,8 +2,10 @@ package com.example.marketplace.service;
 
 import com.example.marketplace.model.cart.Wishlist;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface WishlistService {
 
@@ -27,6 +29,11 @@ public interface WishlistService {
 
     boolean isProductInWishlist(Long wishlistId, Long productId);
 
+    /**
+     * Returns the subset of {@code productIds} present in at least one wishlist of the user.
+     */
+    Set<Long> getWishedProductIds(Long userId, Collection<Long> productIds);
+
     long countWishlistsByProduct(Long productId);
 
     List<Map<String, Object>> getMostWishedProducts(int limit);
@@ -0,0 +1,71 @@
+package com.example.marketplace.service.category;
+
+import com.example.marketplace.repository.jpa.CategoryClosureRepository;
+import com.example.marketplace.repository.jpa.CategoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Keeps the category_closure table in step with categories.parent_id. Every method is expected
+ * to run inside the transaction of the category write it mirrors.
+ */
+@Component
+@Slf4j
+public class CategoryClosureMaintainer {
+
+    private final CategoryClosureRepository closureRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public CategoryClosureMaintainer(CategoryClosureRepository closureRepository,
+                                     CategoryRepository categoryRepository,
+                                     PlatformTransactionManager transactionManager) {
+        this.closureRepository = closureRepository;
+        this.categoryRepository = categoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public void categoryCreated(Long categoryId, Long parentId) {
+        closureRepository.insertLeaf(categoryId, parentId);
+    }
+
+    public void categoryMoved(Long categoryId, Long newParentId) {
+        closureRepository.detachSubtree(categoryId);
+        if (newParentId != null) {
+            closureRepository.attachSubtree(categoryId, newParentId);
+        }
+    }
+
+    /**
+     * Removes a category whose children are moved up to its own parent.
+     */
+    public void categoryDeleted(Long categoryId) {
+        closureRepository.shortenPathsThrough(categoryId);
+        closureRepository.deleteAllFor(categoryId);
+    }
+
+    /**
+     * Rebuilds the whole table in a transaction of its own, also when called from this class.
+     */
+    public void rebuild() {
+        Integer rows = transactionTemplate.execute(status -> {
+            closureRepository.deleteAllRows();
+            return closureRepository.rebuildFromCategories();
+        });
+        log.info("Category closure table rebuilt with {} rows", rows);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public void initialize() {
+        // Remplissage initial des bases existantes
+        if (closureRepository.count() == 0 && categoryRepository.count() > 0) {
+            rebuild();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.marketplace.service.category;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Immutable category entry of a {@link CategoryTree} snapshot.
+ * <p>
+ * {@code left} is the node's position in a pre-order walk of the tree and {@code right} the position
+ * just after its last descendant, so the subtree of a node is exactly the interval [left, right).
+ */
+@Getter
+@AllArgsConstructor(access = AccessLevel.PACKAGE)
+public final class CategoryNode {
+
+    private final Long id;
+    private final String name;
+    private final String description;
+    private final String image;
+    private final boolean active;
+    private final Long parentId;
+    private final int depth;
+    private final int left;
+    private final int right;
+
+    // Fil d'Ariane : ids de la racine jusqu'à ce noeud inclus
+    private final List<Long> path;
+
+    private final List<Long> childIds;
+
+    public boolean isRoot() {
+        return parentId == null;
+    }
+
+    public int getSubtreeSize() {
+        return right - left;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.marketplace.service.category;
+
+import com.example.marketplace.model.product.CategoryProductCount;
+import com.example.marketplace.repository.jpa.CategoryProductCountRepository;
+import com.example.marketplace.repository.jpa.CategoryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains active-product counts per category, both direct and rolled up to every ancestor
+ * through the closure table. Product writes call {@link #productAdded}/{@link #productRemoved}
+ * inside their own transaction; category moves recompute the totals of the affected ancestors.
+ */
+@Component
+@Slf4j
+public class CategoryProductCounter {
+
+    private final CategoryProductCountRepository countRepository;
+    private final CategoryRepository categoryRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public CategoryProductCounter(CategoryProductCountRepository countRepository,
+                                  CategoryRepository categoryRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.countRepository = countRepository;
+        this.categoryRepository = categoryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * An active product now belongs to these categories.
+     */
+    public void productAdded(Collection<Long> categoryIds) {
+        apply(categoryIds, 1L);
+    }
+
+    /**
+     * An active product no longer belongs to these categories (deleted, deactivated or re-categorized).
+     */
+    public void productRemoved(Collection<Long> categoryIds) {
+        apply(categoryIds, -1L);
+    }
+
+    public void recomputeTotals(Collection<Long> categoryIds) {
+        if (!categoryIds.isEmpty()) {
+            countRepository.recomputeTotalCounts(categoryIds);
+        }
+    }
+
+    /**
+     * Drops the counts of a deleted category and recomputes the totals of its former ancestors.
+     */
+    public void categoryDeleted(Long categoryId, Collection<Long> ancestorIds) {
+        countRepository.deleteAllByIdInBatch(List.of(categoryId));
+        recomputeTotals(ancestorIds);
+    }
+
+    public Map<Long, CategoryProductCount> getCounts(Collection<Long> categoryIds) {
+        Map<Long, CategoryProductCount> counts = new HashMap<>();
+        countRepository.findAllById(categoryIds).forEach(count -> counts.put(count.getCategoryId(), count));
+        return counts;
+    }
+
+    public Map<Long, CategoryProductCount> getAllCounts() {
+        Map<Long, CategoryProductCount> counts = new HashMap<>();
+        countRepository.findAll().forEach(count -> counts.put(count.getCategoryId(), count));
+        return counts;
+    }
+
+    /**
+     * Rebuilds every count in a transaction of its own, also when called from this class.
+     */
+    public void rebuild() {
+        Integer rows = transactionTemplate.execute(status -> {
+            countRepository.deleteAllRows();
+            return countRepository.rebuildFromProducts();
+        });
+        log.info("Category product counts rebuilt for {} categories", rows);
+    }
+
+    // Après CategoryClosureMaintainer : les totaux s'appuient sur la table de fermeture
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void initialize() {
+        if (countRepository.count() == 0 && categoryRepository.count() > 0) {
+            rebuild();
+        }
+    }
+
+    @Scheduled(cron = "${marketplace.categories.counts.reconcile-cron:0 0 5 * * *}")
+    public void reconcile() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            log.error("Category product count reconciliation failed", e);
+        }
+    }
+
+    private void apply(Collection<Long> categoryIds, long delta) {
+        if (categoryIds == null || categoryIds.isEmpty()) {
+            return;
+        }
+        countRepository.addToDirectCounts(categoryIds, delta);
+        countRepository.addToTotalCounts(categoryIds, delta);
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.marketplace.service.category;
+
+import lombok.Getter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Versioned, immutable snapshot of the whole category hierarchy.
+ * <p>
+ * Nodes are numbered by a pre-order walk, which makes ancestor checks and subtree enumeration
+ * O(1) interval comparisons. Breadcrumb paths are precomputed at build time. A snapshot is never
+ * modified: category writes build a new one that replaces it atomically.
+ */
+public final class CategoryTree {
+
+    public static final CategoryTree EMPTY = new CategoryTree(0L, List.of(), Map.of(), List.of());
+
+    @Getter
+    private final long version;
+
+    // Noeuds dans l'ordre du parcours préfixe : node.getLeft() == index dans cette liste
+    private final List<CategoryNode> ordered;
+    private final Map<Long, CategoryNode> nodesById;
+    private final List<CategoryNode> roots;
+
+    private CategoryTree(long version, List<CategoryNode> ordered, Map<Long, CategoryNode> nodesById,
+                         List<CategoryNode> roots) {
+        this.version = version;
+        this.ordered = ordered;
+        this.nodesById = nodesById;
+        this.roots = roots;
+    }
+
+    /**
+     * Flat category row as read from the database.
+     */
+    public record Row(Long id, String name, String description, String image, Boolean active, Long parentId) {
+    }
+
+    public static CategoryTree build(long version, Collection<Row> rows) {
+        Map<Long, Row> rowsById = new HashMap<>();
+        for (Row row : rows) {
+            rowsById.put(row.id(), row);
+        }
+
+        Map<Long, List<Row>> childrenByParent = new HashMap<>();
+        List<Row> rootRows = new ArrayList<>();
+        for (Row row : rows) {
+            // Un parent inconnu (supprimé entre-temps) fait du noeud une racine
+            if (row.parentId() == null || !rowsById.containsKey(row.parentId())) {
+                rootRows.add(row);
+            } else {
+                childrenByParent.computeIfAbsent(row.parentId(), id -> new ArrayList<>()).add(row);
+            }
+        }
+
+        Comparator<Row> byName = Comparator.comparing(Row::name, Comparator.nullsLast(String::compareTo))
+                .thenComparing(Row::id);
+        rootRows.sort(byName);
+        childrenByParent.values().forEach(children -> children.sort(byName));
+
+        // Parcours préfixe itératif : la profondeur de l'arbre ne doit pas dépendre de la pile d'appels
+        List<Row> preorder = new ArrayList<>(rows.size());
+        Map<Long, Integer> depths = new HashMap<>();
+        Map<Long, Integer> lefts = new HashMap<>();
+        Map<Long, List<Long>> paths = new HashMap<>();
+        Deque<Row> stack = new ArrayDeque<>();
+        for (int i = rootRows.size() - 1; i >= 0; i--) {
+            stack.push(rootRows.get(i));
+        }
+        while (!stack.isEmpty()) {
+            Row row = stack.pop();
+            if (lefts.containsKey(row.id())) {
+                continue;
+            }
+
+            Long parentId = rowsById.containsKey(row.parentId()) ? row.parentId() : null;
+            List<Long> path = new ArrayList<>(parentId != null ? paths.get(parentId) : List.of());
+            path.add(row.id());
+
+            lefts.put(row.id(), preorder.size());
+            depths.put(row.id(), path.size() - 1);
+            paths.put(row.id(), Collections.unmodifiableList(path));
+            preorder.add(row);
+
+            List<Row> children = childrenByParent.getOrDefault(row.id(), List.of());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(children.get(i));
+            }
+        }
+
+        // Borne droite : position suivant le dernier descendant, calculée de la fin vers le début
+        Map<Long, Integer> rights = new HashMap<>();
+        for (int i = preorder.size() - 1; i >= 0; i--) {
+            Row row = preorder.get(i);
+            int right = i + 1;
+            for (Row child : childrenByParent.getOrDefault(row.id(), List.of())) {
+                right = Math.max(right, rights.getOrDefault(child.id(), right));
+            }
+            rights.put(row.id(), right);
+        }
+
+        List<CategoryNode> ordered = new ArrayList<>(preorder.size());
+        Map<Long, CategoryNode> nodesById = new HashMap<>();
+        List<CategoryNode> roots = new ArrayList<>();
+        for (Row row : preorder) {
+            List<Long> childIds = childrenByParent.getOrDefault(row.id(), List.of()).stream()
+                    .map(Row::id)
+                    .toList();
+            CategoryNode node = new CategoryNode(
+                    row.id(),
+                    row.name(),
+                    row.description(),
+                    row.image(),
+                    !Boolean.FALSE.equals(row.active()),
+                    rowsById.containsKey(row.parentId()) ? row.parentId() : null,
+                    depths.get(row.id()),
+                    lefts.get(row.id()),
+                    rights.get(row.id()),
+                    paths.get(row.id()),
+                    childIds);
+            ordered.add(node);
+            nodesById.put(node.getId(), node);
+            if (node.isRoot()) {
+                roots.add(node);
+            }
+        }
+
+        return new CategoryTree(version,
+                Collections.unmodifiableList(ordered),
+                Collections.unmodifiableMap(nodesById),
+                Collections.unmodifiableList(roots));
+    }
+
+    public Optional<CategoryNode> find(Long id) {
+        return Optional.ofNullable(nodesById.get(id));
+    }
+
+    public boolean contains(Long id) {
+        return nodesById.containsKey(id);
+    }
+
+    public int size() {
+        return ordered.size();
+    }
+
+    public List<CategoryNode> getAll() {
+        return ordered;
+    }
+
+    public List<CategoryNode> getRoots() {
+        return roots;
+    }
+
+    public List<CategoryNode> getChildren(Long id) {
+        CategoryNode node = nodesById.get(id);
+        if (node == null) {
+            return List.of();
+        }
+        return node.getChildIds().stream().map(nodesById::get).toList();
+    }
+
+    /**
+     * Returns the breadcrumb from the root down to the category, both included.
+     */
+    public List<CategoryNode> getPath(Long id) {
+        CategoryNode node = nodesById.get(id);
+        if (node == null) {
+            return List.of();
+        }
+        return node.getPath().stream().map(nodesById::get).toList();
+    }
+
+    /**
+     * Returns the category followed by all of its descendants, in pre-order.
+     */
+    public List<CategoryNode> getSubtree(Long id) {
+        CategoryNode node = nodesById.get(id);
+        if (node == null) {
+            return List.of();
+        }
+        return ordered.subList(node.getLeft(), node.getRight());
+    }
+
+    /**
+     * Returns true if {@code ancestorId} is a strict ancestor of {@code descendantId}.
+     */
+    public boolean isAncestor(Long ancestorId, Long descendantId) {
+        return !ancestorId.equals(descendantId) && isAncestorOrSelf(ancestorId, descendantId);
+    }
+
+    public boolean isAncestorOrSelf(Long ancestorId, Long descendantId) {
+        CategoryNode ancestor = nodesById.get(ancestorId);
+        CategoryNode descendant = nodesById.get(descendantId);
+        if (ancestor == null || descendant == null) {
+            return false;
+        }
+        return ancestor.getLeft() <= descendant.getLeft() && descendant.getLeft() < ancestor.getRight();
+    }
+
+    /**
+     * Parent id to child ids, for every category that has children.
+     */
+    public Map<Long, List<Long>> getHierarchy() {
+        Map<Long, List<Long>> hierarchy = new HashMap<>();
+        for (CategoryNode node : ordered) {
+            if (!node.getChildIds().isEmpty()) {
+                hierarchy.put(node.getId(), node.getChildIds());
+            }
+        }
+        return hierarchy;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.marketplace.service.category;
+
+import com.example.marketplace.repository.jpa.CategoryRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Holds the current {@link CategoryTree} snapshot.
+ * <p>
+ * After every committed category write the snapshot is rebuilt under a new version, taken from a
+ * Redis counter, and the version is published on a Redis channel so that the other nodes rebuild
+ * theirs. A node only rebuilds when it sees a version newer than the one it holds. The counter is
+ * also checked periodically, so that a node which missed a message catches up.
+ * <p>
+ * A write made while Redis is unreachable rebuilds the local tree under the version it already
+ * holds; a new version is taken and published by the first check once Redis is back.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryTreeManager implements MessageListener {
+
+    static final String CHANNEL = "categories:tree";
+    static final String VERSION_KEY = "categories:tree:version";
+
+    private final CategoryRepository categoryRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    private final Object rebuildLock = new Object();
+
+    private volatile CategoryTree tree;
+
+    // Écriture reconstruite localement sans nouvelle version, faute de Redis
+    private volatile boolean unpublished;
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public CategoryTree getTree() {
+        CategoryTree current = tree;
+        if (current == null) {
+            rebuild(currentVersion(), false);
+            current = tree;
+        }
+        return current;
+    }
+
+    /**
+     * To be called once a category write has been committed.
+     */
+    public void categoriesChanged() {
+        Long version = nextVersion();
+        if (version == null) {
+            // Pas de version locale inventée : elle pourrait coïncider avec une version Redis ultérieure
+            unpublished = true;
+            CategoryTree current = tree;
+            rebuild(current != null ? current.getVersion() : 0L, true);
+            return;
+        }
+        rebuild(version, false);
+        publish(version);
+    }
+
+    /**
+     * Catches up with versions whose message was lost, and publishes the writes made while Redis
+     * was unreachable.
+     */
+    @Scheduled(fixedDelayString = "${marketplace.categories.tree.version-check-interval:10000}")
+    public void checkVersion() {
+        if (unpublished) {
+            unpublished = false;
+            Long version = nextVersion();
+            if (version == null) {
+                unpublished = true;
+                return;
+            }
+            rebuild(version, false);
+            publish(version);
+            return;
+        }
+
+        CategoryTree current = tree;
+        if (current == null) {
+            return;
+        }
+        String stored;
+        try {
+            stored = redisTemplate.opsForValue().get(VERSION_KEY);
+        } catch (DataAccessException e) {
+            log.debug("Category tree version unavailable: {}", e.getMessage());
+            return;
+        }
+        if (stored != null && Long.parseLong(stored) > current.getVersion()) {
+            log.info("Category tree v{} missed, rebuilding from v{}", stored, current.getVersion());
+            rebuild(Long.parseLong(stored), false);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            long version = Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8));
+            CategoryTree current = tree;
+            if (current == null || current.getVersion() < version) {
+                rebuild(version, false);
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not apply category tree update: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild(long version, boolean force) {
+        synchronized (rebuildLock) {
+            CategoryTree current = tree;
+            if (!force && current != null && current.getVersion() >= version) {
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            List<CategoryTree.Row> rows = categoryRepository.findAllForTree().stream()
+                    .map(row -> new CategoryTree.Row(
+                            (Long) row[0],
+                            (String) row[1],
+                            (String) row[2],
+                            (String) row[3],
+                            (Boolean) row[4],
+                            (Long) row[5]))
+                    .toList();
+
+            CategoryTree rebuilt = CategoryTree.build(version, rows);
+            if (rebuilt.size() != rows.size()) {
+                log.warn("Category tree v{}: {} categories are unreachable from a root (cycle?)",
+                        version, rows.size() - rebuilt.size());
+            }
+            tree = rebuilt;
+            log.debug("Category tree v{} built with {} nodes in {} ms",
+                    version, rebuilt.size(), System.currentTimeMillis() - start);
+        }
+    }
+
+    private long currentVersion() {
+        try {
+            String version = redisTemplate.opsForValue().get(VERSION_KEY);
+            return version != null ? Long.parseLong(version) : 0L;
+        } catch (DataAccessException e) {
+            return 0L;
+        }
+    }
+
+    // Null quand le compteur Redis est injoignable
+    private Long nextVersion() {
+        try {
+            return redisTemplate.opsForValue().increment(VERSION_KEY);
+        } catch (DataAccessException e) {
+            log.warn("Category tree version counter unavailable: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void publish(long version) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, Long.toString(version));
+        } catch (DataAccessException e) {
+            log.warn("Could not publish category tree v{}: {}", version, e.getMessage());
+        }
+    }
+}
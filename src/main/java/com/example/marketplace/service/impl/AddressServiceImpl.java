@@ -24,7 +24,7 @@ public class AddressServiceImpl implements AddressService {
     @Override
     public List<Address> getUserAddresses(Long userId) {
         // Verify that user exists
-        userService.getUserById(userId);
+        userService.getUserSnapshot(userId);
 
         return addressRepository.findByUserId(userId);
     }
@@ -1,5 +1,7 @@
 package com.example.marketplace.service.impl;
 
+import com.example.marketplace.cache.EntityExistenceGuard;
+import com.example.marketplace.cache.EntityExistenceGuard.EntityType;
 import com.example.marketplace.exception.BadRequestException;
 import com.example.marketplace.model.user.User;
 import com.example.marketplace.model.user.UserRole;
@@ -31,6 +33,7 @@ public class AuthServiceImpl implements AuthService {
     private final JwtTokenProvider tokenProvider;
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final EntityExistenceGuard existenceGuard;
 
     @Override
     public JwtAuthResponse login(LoginRequest loginRequest) {
@@ -92,6 +95,7 @@ public class AuthServiceImpl implements AuthService {
 
         // Save user
         user = userRepository.save(user);
+        existenceGuard.added(EntityType.USER, user.getId());
         // Authenticate user
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(
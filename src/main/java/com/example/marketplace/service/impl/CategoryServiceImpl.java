@@ -1,31 +1,61 @@
 package com.example.marketplace.service.impl;
 
+import com.example.marketplace.cache.CacheTags;
+import com.example.marketplace.cache.CategorySnapshot;
+import com.example.marketplace.cache.EntityExistenceGuard;
+import com.example.marketplace.cache.EntityExistenceGuard.EntityType;
 import com.example.marketplace.exception.ResourceNotFoundException;
 import com.example.marketplace.model.product.Category;
+import com.example.marketplace.model.product.CategoryProductCount;
 import com.example.marketplace.repository.jpa.CategoryRepository;
 import com.example.marketplace.service.CategoryService;
+import com.example.marketplace.service.category.CategoryClosureMaintainer;
+import com.example.marketplace.service.category.CategoryNode;
+import com.example.marketplace.service.category.CategoryProductCounter;
+import com.example.marketplace.service.category.CategoryTree;
+import com.example.marketplace.service.category.CategoryTreeManager;
+import com.example.marketplace.service.search.ProductIndexQueue;
+import com.example.marketplace.util.TransactionUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
+    private final CategoryTreeManager categoryTreeManager;
+    private final CategoryClosureMaintainer closureMaintainer;
+    private final CategoryProductCounter productCounter;
+    private final EntityExistenceGuard existenceGuard;
+    private final CacheTags cacheTags;
+    private final ProductIndexQueue productIndexQueue;
 
     @Override
-    @Cacheable(value = "categories", key = "#id")
     public Category getCategoryById(Long id) {
+        if (!existenceGuard.mightExist(EntityType.CATEGORY, id)) {
+            throw ResourceNotFoundException.withoutStackTrace("Category not found with id: " + id);
+        }
         return categoryRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + id));
+                .orElseThrow(() -> existenceGuard.notFound(EntityType.CATEGORY, id, "Category not found with id: " + id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(value = "categories", key = "#id", sync = true)
+    public CategorySnapshot getCategorySnapshot(Long id) {
+        return CategorySnapshot.of(getCategoryById(id));
     }
 
     @Override
@@ -35,23 +65,22 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Cacheable(value = "categories", key = "'all'")
     public List<Category> getAllCategories() {
         return categoryRepository.findAll();
     }
 
     @Override
-    @Cacheable(value = "categories", key = "'root'")
-    public List<Category> getRootCategories() {
-        return categoryRepository.findByParentIsNull();
+    public List<CategoryNode> getRootCategories() {
+        return getCategoryTree().getRoots();
     }
 
     @Override
-    public List<Category> getSubcategories(Long parentId) {
+    public List<CategoryNode> getSubcategories(Long parentId) {
+        CategoryTree tree = getCategoryTree();
         // Verify parent exists
-        getCategoryById(parentId);
+        requireNode(tree, parentId);
 
-        return categoryRepository.findByParentId(parentId);
+        return tree.getChildren(parentId);
     }
 
     @Override
@@ -78,7 +107,12 @@ public class CategoryServiceImpl implements CategoryService {
             category.setActive(true);
         }
 
-        return categoryRepository.save(category);
+        Category savedCategory = categoryRepository.save(category);
+        existenceGuard.added(EntityType.CATEGORY, savedCategory.getId());
+        closureMaintainer.categoryCreated(savedCategory.getId(),
+                savedCategory.getParent() != null ? savedCategory.getParent().getId() : null);
+        TransactionUtils.afterCommit(categoryTreeManager::categoriesChanged);
+        return savedCategory;
     }
 
     @Override
@@ -86,6 +120,8 @@ public class CategoryServiceImpl implements CategoryService {
     @CacheEvict(value = "categories", allEntries = true)
     public Category updateCategory(Long id, Category categoryDetails) {
         Category category = getCategoryById(id);
+        String previousName = category.getName();
+        Boolean previousActive = category.getActive();
 
         // Update category fields
         if (categoryDetails.getName() != null) {
@@ -101,11 +137,13 @@ public class CategoryServiceImpl implements CategoryService {
             category.setActive(categoryDetails.getActive());
         }
 
+        Long previousParentId = category.getParent() != null ? category.getParent().getId() : null;
+
         // Update parent if specified
         if (categoryDetails.getParent() != null) {
             // Prevent cyclic hierarchy
             if (categoryDetails.getParent().getId() != null &&
-                    isDescendantOfCategory(categoryDetails.getParent().getId(), id)) {
+                    getCategoryTree().isAncestorOrSelf(id, categoryDetails.getParent().getId())) {
                 throw new IllegalArgumentException("Cannot set a descendant category as parent");
             }
 
@@ -117,7 +155,33 @@ public class CategoryServiceImpl implements CategoryService {
             }
         }
 
-        return categoryRepository.save(category);
+        Category updatedCategory = categoryRepository.save(category);
+
+        // Listes de la catégorie et des sous-arbres qui la contenaient ou la contiennent désormais
+        invalidateListings(id, updatedCategory.getParent() != null ? updatedCategory.getParent().getId() : null);
+
+        Long newParentId = updatedCategory.getParent() != null ? updatedCategory.getParent().getId() : null;
+        if (!Objects.equals(previousParentId, newParentId)) {
+            // Ancêtres avant et après le déplacement, lus dans l'arbre encore non reconstruit
+            CategoryTree tree = getCategoryTree();
+            Set<Long> affectedAncestors = new LinkedHashSet<>(tree.find(id)
+                    .map(node -> node.getPath().subList(0, node.getDepth()))
+                    .orElse(List.of()));
+            if (newParentId != null) {
+                affectedAncestors.addAll(tree.find(newParentId).map(CategoryNode::getPath).orElse(List.of(newParentId)));
+            }
+
+            closureMaintainer.categoryMoved(id, newParentId);
+            productCounter.recomputeTotals(affectedAncestors);
+        }
+        // Noms et chemins recopiés dans les documents de recherche des produits du sous-arbre
+        if (!Objects.equals(previousName, updatedCategory.getName())
+                || !Objects.equals(previousActive, updatedCategory.getActive())
+                || !Objects.equals(previousParentId, newParentId)) {
+            productIndexQueue.enqueueCategorySubtrees(List.of(id));
+        }
+        TransactionUtils.afterCommit(categoryTreeManager::categoriesChanged);
+        return updatedCategory;
     }
 
     @Override
@@ -126,6 +190,12 @@ public class CategoryServiceImpl implements CategoryService {
     public void deleteCategory(Long id) {
         Category category = getCategoryById(id);
 
+        List<Long> ancestorIds = getCategoryTree().find(id)
+                .map(node -> node.getPath().subList(0, node.getDepth()))
+                .orElse(List.of());
+        closureMaintainer.categoryDeleted(id);
+        invalidateListings(id);
+
         // If has subcategories, move them to parent or make them root
         List<Category> subcategories = categoryRepository.findByParentId(id);
         for (Category subcategory : subcategories) {
@@ -134,6 +204,10 @@ public class CategoryServiceImpl implements CategoryService {
         }
 
         categoryRepository.deleteById(id);
+        productCounter.categoryDeleted(id, ancestorIds);
+        // Chemins des sous-catégories raccourcis d'un niveau
+        productIndexQueue.enqueueCategorySubtrees(subcategories.stream().map(Category::getId).toList());
+        TransactionUtils.afterCommit(categoryTreeManager::categoriesChanged);
     }
 
     @Override
@@ -143,83 +217,68 @@ public class CategoryServiceImpl implements CategoryService {
         Category category = getCategoryById(id);
         category.setActive(!category.getActive());
         categoryRepository.save(category);
+        invalidateListings(id);
+        productIndexQueue.enqueueCategorySubtrees(List.of(id));
+        TransactionUtils.afterCommit(categoryTreeManager::categoriesChanged);
     }
 
     @Override
     public List<Category> getTopCategories(int limit) {
-        return categoryRepository.findTopCategories(limit);
+        return categoryRepository.findTopCategories(PageRequest.of(0, limit));
     }
 
     @Override
-    @Cacheable(value = "categoryPaths", key = "#categoryId")
-    public List<Category> getCategoryPath(Long categoryId) {
-        List<Object[]> path = categoryRepository.findCategoryPathById(categoryId);
-        List<Category> result = new ArrayList<>();
-
-        // Convert Object[] results to Category objects
-        for (Object[] row : path) {
-            Category category = new Category();
-            category.setId(Long.valueOf(row[0].toString()));
-            category.setName((String) row[1]);
-            // Add other fields if needed
-            result.add(category);
-        }
-
-        return result;
+    public Map<Long, CategoryProductCount> getProductCounts(Collection<Long> categoryIds) {
+        return productCounter.getCounts(categoryIds);
     }
 
     @Override
-    @Cacheable(value = "categoryHierarchy")
-    public Map<Category, List<Category>> getCategoryHierarchy() {
-        List<Object[]> hierarchyData = categoryRepository.findCategoryHierarchy();
-        Map<Long, Category> categoriesById = new HashMap<>();
-        Map<Category, List<Category>> hierarchy = new HashMap<>();
-
-        // First pass: create all Category objects
-        for (Object[] row : hierarchyData) {
-            Long id = Long.valueOf(row[0].toString());
-            String name = (String) row[1];
-            String description = (String) row[2];
-            Long parentId = row[3] != null ? Long.valueOf(row[3].toString()) : null;
-            Integer level = (Integer) row[4];
-
-            Category category = new Category();
-            category.setId(id);
-            category.setName(name);
-            category.setDescription(description);
-
-            categoriesById.put(id, category);
-            hierarchy.put(category, new ArrayList<>());
-        }
+    public Map<Long, CategoryProductCount> getAllProductCounts() {
+        return productCounter.getAllCounts();
+    }
 
-        // Second pass: build parent-child relationships
-        for (Object[] row : hierarchyData) {
-            Long id = Long.valueOf(row[0].toString());
-            Long parentId = row[3] != null ? Long.valueOf(row[3].toString()) : null;
+    @Override
+    public List<CategoryNode> getCategoryPath(Long categoryId) {
+        CategoryTree tree = getCategoryTree();
+        requireNode(tree, categoryId);
 
-            if (parentId != null) {
-                Category child = categoriesById.get(id);
-                Category parent = categoriesById.get(parentId);
+        return tree.getPath(categoryId);
+    }
 
-                if (parent != null && child != null) {
-                    hierarchy.get(parent).add(child);
-                }
-            }
-        }
+    @Override
+    public Map<Long, List<Long>> getCategoryHierarchy() {
+        return getCategoryTree().getHierarchy();
+    }
 
-        return hierarchy;
+    @Override
+    public CategoryTree getCategoryTree() {
+        return categoryTreeManager.getTree();
     }
 
-    private boolean isDescendantOfCategory(Long potentialDescendantId, Long ancestorId) {
-        Category current = getCategoryById(potentialDescendantId);
+    @Override
+    public boolean isDescendantOfCategory(Long categoryId, Long ancestorId) {
+        return getCategoryTree().isAncestor(ancestorId, categoryId);
+    }
 
-        while (current.getParent() != null) {
-            if (current.getParent().getId().equals(ancestorId)) {
-                return true;
+    /**
+     * Invalidates the product listings of the categories and of their ancestors, read in the tree
+     * as it was before the write.
+     */
+    private void invalidateListings(Long... categoryIds) {
+        CategoryTree tree = getCategoryTree();
+        Set<String> tags = new LinkedHashSet<>();
+        for (Long categoryId : categoryIds) {
+            if (categoryId == null) {
+                continue;
             }
-            current = getCategoryById(current.getParent().getId());
+            tags.add(CacheTags.category(categoryId));
+            tree.getPath(categoryId).forEach(node -> tags.add(CacheTags.category(node.getId())));
         }
+        cacheTags.invalidate(tags);
+    }
 
-        return false;
+    private CategoryNode requireNode(CategoryTree tree, Long id) {
+        return tree.find(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Category not found with id: " + id));
     }
-}
\ No newline at end of file
+}
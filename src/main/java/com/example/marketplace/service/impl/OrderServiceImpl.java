@@ -60,7 +60,7 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public Page<Order> getOrdersByUserId(Long userId, Pageable pageable) {
         // Verify user exists
-        userService.getUserById(userId);
+        userService.getUserSnapshot(userId);
 
         return orderRepository.findByUserId(userId, pageable);
     }
@@ -73,7 +73,7 @@ public class OrderServiceImpl implements OrderService {
     @Override
     public Page<Order> getOrdersByUserIdAndStatus(Long userId, OrderStatus status, Pageable pageable) {
         // Verify user exists
-        userService.getUserById(userId);
+        userService.getUserSnapshot(userId);
 
         return orderRepository.findByUserIdAndStatus(userId, status, pageable);
     }
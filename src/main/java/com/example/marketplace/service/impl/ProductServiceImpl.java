@@ -1,5 +1,10 @@
 package com.example.marketplace.service.impl;
 
+import com.example.marketplace.cache.CacheTags;
+import com.example.marketplace.cache.EntityExistenceGuard;
+import com.example.marketplace.cache.EntityExistenceGuard.EntityType;
+import com.example.marketplace.cache.ProductListingCache;
+import com.example.marketplace.cache.ProductSnapshot;
 import com.example.marketplace.dto.PagedResponse;
 import com.example.marketplace.dto.product.ProductCreateRequest;
 import com.example.marketplace.dto.product.ProductDto;
@@ -14,6 +19,10 @@ import com.example.marketplace.service.AuthService;
 import com.example.marketplace.service.CategoryService;
 import com.example.marketplace.service.ProductService;
 import com.example.marketplace.service.StoreService;
+import com.example.marketplace.service.category.CategoryNode;
+import com.example.marketplace.service.category.CategoryProductCounter;
+import com.example.marketplace.service.category.CategoryTree;
+import com.example.marketplace.service.search.ProductIndexQueue;
 import com.example.marketplace.util.PaginationUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -25,6 +34,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -39,43 +50,68 @@ public class ProductServiceImpl implements ProductService {
     private final StoreService storeService;
     private final CategoryService categoryService;
     private final AuthService authService;
+    private final CategoryProductCounter categoryProductCounter;
+    private final ProductIndexQueue productIndexQueue;
+    private final EntityExistenceGuard existenceGuard;
+    private final ProductListingCache productListings;
+    private final CacheTags cacheTags;
 
     @Override
-    @Cacheable(value = "products", key = "#id")
     public Product getProductById(Long id) {
         log.debug("Fetching product by ID: {}", id);
+        if (!existenceGuard.mightExist(EntityType.PRODUCT, id)) {
+            throw ResourceNotFoundException.withoutStackTrace("Product not found with id: " + id);
+        }
         return productRepository.findById(id)
                 .orElseThrow(() -> {
                     log.warn("Product not found with id: {}", id);
-                    return new ResourceNotFoundException("Product not found with id: " + id);
+                    return existenceGuard.notFound(EntityType.PRODUCT, id, "Product not found with id: " + id);
                 });
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(value = "products", key = "#id", sync = true)
+    public ProductSnapshot getProductSnapshot(Long id) {
+        return ProductSnapshot.of(getProductById(id));
+    }
+
     @Override
     public PagedResponse<ProductDto> getAllProducts(Pageable pageable) {
         log.debug("Fetching all products with pagination");
-        Page<Product> products = productRepository.findAll(pageable);
-        return new PagedResponse<>(products.map(this::convertToDto));
+        return productListings.get("all", pageable, List.of(CacheTags.PRODUCTS),
+                () -> new PagedResponse<>(productRepository.findAll(pageable).map(this::convertToDto)));
     }
 
     @Override
     public PagedResponse<ProductDto> getProductsByStore(Long storeId, Pageable pageable) {
         log.debug("Fetching products by store ID: {}", storeId);
         // Verify store exists
-        storeService.getStoreById(storeId);
+        storeService.getStoreSnapshot(storeId);
 
-        Page<Product> products = productRepository.findByStoreId(storeId, pageable);
-        return new PagedResponse<>(products.map(this::convertToDto));
+        return productListings.get("store:" + storeId, pageable, List.of(CacheTags.store(storeId)),
+                () -> new PagedResponse<>(productRepository.findByStoreId(storeId, pageable).map(this::convertToDto)));
     }
 
     @Override
     public PagedResponse<ProductDto> getProductsByCategory(Long categoryId, Pageable pageable) {
         log.debug("Fetching products by category ID: {}", categoryId);
         // Verify category exists
-        categoryService.getCategoryById(categoryId);
+        categoryService.getCategorySnapshot(categoryId);
 
-        Page<Product> products = productRepository.findByCategories_Id(categoryId, pageable);
-        return new PagedResponse<>(products.map(this::convertToDto));
+        return productListings.get("category:" + categoryId, pageable, List.of(CacheTags.category(categoryId)),
+                () -> new PagedResponse<>(productRepository.findByCategories_Id(categoryId, pageable).map(this::convertToDto)));
+    }
+
+    @Override
+    public PagedResponse<ProductDto> getProductsInCategorySubtree(Long categoryId, Pageable pageable) {
+        log.debug("Fetching products in subtree of category ID: {}", categoryId);
+        // Verify category exists
+        categoryService.getCategorySnapshot(categoryId);
+
+        // Les écritures de produits invalident aussi les ancêtres de leurs catégories
+        return productListings.get("subtree:" + categoryId, pageable, List.of(CacheTags.category(categoryId)),
+                () -> new PagedResponse<>(productRepository.findByCategorySubtree(categoryId, pageable).map(this::convertToDto)));
     }
 
     @Override
@@ -109,15 +145,15 @@ public class ProductServiceImpl implements ProductService {
     @Override
     public PagedResponse<ProductDto> getFeaturedProducts(Pageable pageable) {
         log.debug("Fetching featured products");
-        Page<Product> products = productRepository.findByFeaturedTrue(pageable);
-        return new PagedResponse<>(products.map(this::convertToDto));
+        return productListings.get("featured", pageable, List.of(CacheTags.PRODUCTS),
+                () -> new PagedResponse<>(productRepository.findByFeaturedTrue(pageable).map(this::convertToDto)));
     }
 
     @Override
     public PagedResponse<ProductDto> getAvailableProducts(Pageable pageable) {
         log.debug("Fetching available products");
-        Page<Product> products = productRepository.findByActiveTrueAndQuantityGreaterThan(0, pageable);
-        return new PagedResponse<>(products.map(this::convertToDto));
+        return productListings.get("available", pageable, List.of(CacheTags.PRODUCTS),
+                () -> new PagedResponse<>(productRepository.findByActiveTrueAndQuantityGreaterThan(0, pageable).map(this::convertToDto)));
     }
 
     @Override
@@ -158,6 +194,14 @@ public class ProductServiceImpl implements ProductService {
         }
 
         Product savedProduct = productRepository.save(product);
+        existenceGuard.added(EntityType.PRODUCT, savedProduct.getId());
+        if (product.getCategories() != null) {
+            categoryProductCounter.productAdded(product.getCategories().stream().map(Category::getId).toList());
+        }
+        productIndexQueue.enqueue(savedProduct.getId());
+        invalidateListings(savedProduct.getId(), storeId, product.getCategories() != null
+                ? product.getCategories().stream().map(Category::getId).toList()
+                : List.of());
         log.info("Product created successfully: {}", savedProduct.getId());
 
         return convertToDto(savedProduct);
@@ -170,6 +214,11 @@ public class ProductServiceImpl implements ProductService {
         log.debug("Updating product ID: {} with: {}", id, request);
         Product product = getProductById(id);
 
+        // État de référence lu en base : l'entité peut venir du cache
+        boolean wasActive = productRepository.findActiveById(id).orElse(false);
+        Set<Long> previousCategoryIds = new HashSet<>(productRepository.findCategoryIdsByProductId(id));
+        Set<Long> categoryIds = previousCategoryIds;
+
         // Update product fields
         if (request.getName() != null) {
             product.setName(request.getName());
@@ -201,9 +250,25 @@ public class ProductServiceImpl implements ProductService {
                 categories.add(category);
             }
             product.setCategories(categories);
+            categoryIds = new HashSet<>(request.getCategoryIds());
         }
 
         Product updatedProduct = productRepository.save(product);
+
+        boolean active = Boolean.TRUE.equals(updatedProduct.getActive());
+        if (wasActive != active || !previousCategoryIds.equals(categoryIds)) {
+            if (wasActive) {
+                categoryProductCounter.productRemoved(previousCategoryIds);
+            }
+            if (active) {
+                categoryProductCounter.productAdded(categoryIds);
+            }
+        }
+        productIndexQueue.enqueue(id);
+        Set<Long> listedCategoryIds = new HashSet<>(previousCategoryIds);
+        listedCategoryIds.addAll(categoryIds);
+        invalidateListings(id, updatedProduct.getStore() != null ? updatedProduct.getStore().getId() : null,
+                listedCategoryIds);
         log.info("Product updated successfully: {}", id);
 
         return convertToDto(updatedProduct);
@@ -215,9 +280,15 @@ public class ProductServiceImpl implements ProductService {
     public void deleteProduct(Long id) {
         log.debug("Deleting product ID: {}", id);
         // Verify product exists
-        getProductById(id);
+        Product product = getProductById(id);
 
+        List<Long> categoryIds = productRepository.findCategoryIdsByProductId(id);
+        if (productRepository.findActiveById(id).orElse(false)) {
+            categoryProductCounter.productRemoved(categoryIds);
+        }
         productRepository.deleteById(id);
+        productIndexQueue.enqueue(id);
+        invalidateListings(id, product.getStore() != null ? product.getStore().getId() : null, categoryIds);
         log.info("Product deleted successfully: {}", id);
     }
 
@@ -227,8 +298,20 @@ public class ProductServiceImpl implements ProductService {
     public void toggleProductStatus(Long id) {
         log.debug("Toggling status for product ID: {}", id);
         Product product = getProductById(id);
+        boolean wasActive = productRepository.findActiveById(id).orElse(false);
         product.setActive(!product.getActive());
         productRepository.save(product);
+
+        List<Long> categoryIds = productRepository.findCategoryIdsByProductId(id);
+        if (wasActive != product.getActive()) {
+            if (product.getActive()) {
+                categoryProductCounter.productAdded(categoryIds);
+            } else {
+                categoryProductCounter.productRemoved(categoryIds);
+            }
+        }
+        productIndexQueue.enqueue(id);
+        invalidateListings(id, product.getStore() != null ? product.getStore().getId() : null, categoryIds);
         log.info("Product status toggled: ID={}, newStatus={}", id, product.getActive());
     }
 
@@ -247,6 +330,9 @@ public class ProductServiceImpl implements ProductService {
 
         product.setQuantity(newQuantity);
         productRepository.save(product);
+        productIndexQueue.enqueue(id);
+        invalidateListings(id, product.getStore() != null ? product.getStore().getId() : null,
+                productRepository.findCategoryIdsByProductId(id));
         log.info("Product stock updated: ID={}, newQuantity={}", id, newQuantity);
     }
 
@@ -297,6 +383,26 @@ public class ProductServiceImpl implements ProductService {
         return new PagedResponse<>(dtoPage);
     }
 
+    /**
+     * Invalidates the cached listings the product appears in or may now appear in: the global
+     * ones, its store's, and those of its categories and of their ancestors, whose subtree
+     * listings include it.
+     */
+    private void invalidateListings(Long productId, Long storeId, Collection<Long> categoryIds) {
+        List<String> tags = new ArrayList<>(List.of(CacheTags.PRODUCTS, CacheTags.product(productId)));
+        if (storeId != null) {
+            tags.add(CacheTags.store(storeId));
+        }
+        CategoryTree tree = categoryService.getCategoryTree();
+        for (Long categoryId : categoryIds) {
+            tags.add(CacheTags.category(categoryId));
+            for (CategoryNode ancestor : tree.getPath(categoryId)) {
+                tags.add(CacheTags.category(ancestor.getId()));
+            }
+        }
+        cacheTags.invalidate(tags);
+    }
+
     private ProductDto convertToDto(Product product) {
         ProductDto dto = new ProductDto();
         dto.setId(product.getId());
@@ -11,7 +11,9 @@ import com.example.marketplace.service.OrderService;
 import com.example.marketplace.service.ProductService;
 import com.example.marketplace.service.ReviewService;
 import com.example.marketplace.service.UserService;
+import com.example.marketplace.service.search.ProductSignalRefresher;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -32,6 +34,7 @@ public class ReviewServiceImpl implements ReviewService {
     private final UserService userService;
     private final ProductService productService;
     private final OrderService orderService;
+    private final ObjectProvider<ProductSignalRefresher> productSignalRefresher;
 
     @Override
     public Review getReviewById(Long id) {
@@ -42,7 +45,7 @@ public class ReviewServiceImpl implements ReviewService {
     @Override
     public Page<Review> getReviewsByProductId(Long productId, Pageable pageable) {
         // Verify product exists
-        productService.getProductById(productId);
+        productService.getProductSnapshot(productId);
 
         return reviewRepository.findByProductId(productId, pageable);
     }
@@ -50,7 +53,7 @@ public class ReviewServiceImpl implements ReviewService {
     @Override
     public Page<Review> getReviewsByUserId(Long userId, Pageable pageable) {
         // Verify user exists
-        userService.getUserById(userId);
+        userService.getUserSnapshot(userId);
 
         return reviewRepository.findByUserId(userId, pageable);
     }
@@ -58,7 +61,7 @@ public class ReviewServiceImpl implements ReviewService {
     @Override
     public Page<Review> getReviewsByProductIdAndRating(Long productId, Integer rating, Pageable pageable) {
         // Verify product exists
-        productService.getProductById(productId);
+        productService.getProductSnapshot(productId);
 
         return reviewRepository.findByProductIdAndRating(productId, rating, pageable);
     }
@@ -127,12 +130,14 @@ public class ReviewServiceImpl implements ReviewService {
         Review review = getReviewById(id);
 
         reviewRepository.deleteById(id);
+        // Une suppression échappe au balayage incrémental des signaux de classement
+        productSignalRefresher.ifAvailable(refresher -> refresher.signalsRemoved(List.of(review.getProduct().getId())));
     }
 
     @Override
     public Double calculateAverageRatingForProduct(Long productId) {
         // Verify product exists
-        productService.getProductById(productId);
+        productService.getProductSnapshot(productId);
 
         return reviewRepository.calculateAverageRatingForProduct(productId);
     }
@@ -140,7 +145,7 @@ public class ReviewServiceImpl implements ReviewService {
     @Override
     public Map<Integer, Long> getRatingDistributionForProduct(Long productId) {
         // Verify product exists
-        productService.getProductById(productId);
+        productService.getProductSnapshot(productId);
 
         List<Long> counts = reviewRepository.countRatingsByProduct(productId);
 
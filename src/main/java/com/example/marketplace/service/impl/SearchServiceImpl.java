@@ -1,130 +1,267 @@
 package com.example.marketplace.service.impl;
 
-import com.example.marketplace.model.product.Product;
-import com.example.marketplace.repository.jpa.ProductRepository;
+import com.example.marketplace.dto.search.FacetedSearchResponse;
+import com.example.marketplace.dto.search.ProductSearchHit;
+import com.example.marketplace.dto.search.ProductSearchRequest;
+import com.example.marketplace.dto.search.ReindexStatusDto;
+import com.example.marketplace.dto.search.SuggestionDto;
+import com.example.marketplace.exception.BadRequestException;
+import com.example.marketplace.model.search.ProductDocument;
 import com.example.marketplace.repository.elasticsearch.ProductSearchRepository;
 import com.example.marketplace.service.SearchService;
+import com.example.marketplace.service.search.LuceneSearchService;
+import com.example.marketplace.service.search.ProductDocumentMapper;
+import com.example.marketplace.service.search.ProductFacetedSearch;
+import com.example.marketplace.service.search.ProductIndexQueue;
+import com.example.marketplace.service.search.ProductReindexer;
+import com.example.marketplace.service.search.ProductSearchHits;
+import com.example.marketplace.service.search.ProductSuggester;
+import com.example.marketplace.service.search.SearchMetrics;
+import com.example.marketplace.service.search.SearchResultCache;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.data.elasticsearch.client.elc.NativeQuery;
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
-import org.springframework.data.elasticsearch.core.SearchHit;
-import org.springframework.data.elasticsearch.core.SearchHits;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.elasticsearch.annotations.Query;
+import org.springframework.data.elasticsearch.core.SearchPage;
 import org.springframework.stereotype.Service;
 
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
+/**
+ * Elasticsearch-backed search. Depending on {@code marketplace.search.engine}, requests are instead
+ * answered by the embedded {@link LuceneSearchService} ({@code lucene}) or fall back to it when
+ * Elasticsearch fails ({@code fallback}). With {@code lucene}, the Elasticsearch beans are not
+ * created and only the embedded index is used.
+ */
 @Service
+@Primary
 @RequiredArgsConstructor
+@Slf4j
 public class SearchServiceImpl implements SearchService {
 
-    private final ProductSearchRepository productSearchRepository;
-    private final ProductRepository productRepository;
-    private final ElasticsearchOperations elasticsearchOperations;
+    // Beans Elasticsearch, absents avec engine=lucene où seul l'index embarqué répond
+    private final ObjectProvider<ProductSearchRepository> productSearchRepository;
+    private final ObjectProvider<ProductReindexer> productReindexer;
+    private final ProductIndexQueue productIndexQueue;
+    private final ProductDocumentMapper productDocumentMapper;
+    private final ProductSuggester productSuggester;
+    private final ObjectProvider<ProductFacetedSearch> productFacetedSearch;
+    private final SearchResultCache searchResultCache;
+    private final ObjectProvider<LuceneSearchService> embeddedSearch;
+    private final MeterRegistry meterRegistry;
+    private final SearchMetrics searchMetrics;
 
-    private static final String INDEX_NAME = "products";
+    @Value("${marketplace.search.engine:elasticsearch}")
+    private String engine;
 
     @Override
-    public Page<Product> searchByNameOrDescription(String searchTerm, Pageable pageable) {
-        return productSearchRepository.searchByNameOrDescription(searchTerm, pageable);
+    public Page<ProductSearchHit> searchByNameOrDescription(String searchTerm, Pageable pageable) {
+        return searchMetrics.record("name", true, () -> searchResultCache.get(pageKey("name", searchTerm, pageable),
+                pageable.getPageNumber() == 0, searchMetrics.loader(() -> route(
+                        () -> repositorySearch(() -> repository().searchByNameOrDescription(searchTerm, pageable),
+                                "searchByNameOrDescription", searchTerm),
+                        embedded -> embedded.searchByNameOrDescription(searchTerm, pageable))),
+                page -> hitIds(page.getContent())), Page::getTotalElements);
     }
 
     @Override
-    public Page<Product> searchByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
-        return productSearchRepository.findByPriceBetween(minPrice, maxPrice, pageable);
+    public Page<ProductSearchHit> searchByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
+        return searchMetrics.record("price", false, () -> route(
+                () -> repositorySearch(() -> repository().findByPriceBetween(minPrice, maxPrice, pageable),
+                        "findByPriceBetween", minPrice, maxPrice),
+                embedded -> embedded.searchByPriceRange(minPrice, maxPrice, pageable)), Page::getTotalElements);
     }
 
     @Override
-    public Page<Product> searchByCategoryAndKeyword(String category, String keyword, Pageable pageable) {
-        return productSearchRepository.searchByCategoryAndKeyword(category, keyword, pageable);
+    public Page<ProductSearchHit> searchByCategoryAndKeyword(String category, String keyword, Pageable pageable) {
+        return searchMetrics.record("category", false, () -> route(
+                () -> repositorySearch(() -> repository().searchByCategoryAndKeyword(category, keyword, pageable),
+                        "searchByCategoryAndKeyword", category, keyword),
+                embedded -> embedded.searchByCategoryAndKeyword(category, keyword, pageable)), Page::getTotalElements);
     }
 
     @Override
-    public Page<Product> advancedSearch(String query, Pageable pageable) {
-        return productSearchRepository.advancedSearch(query, pageable);
+    public Page<ProductSearchHit> advancedSearch(String query, Pageable pageable) {
+        return searchMetrics.record("advanced", true, () -> searchResultCache.get(pageKey("advanced", query, pageable),
+                pageable.getPageNumber() == 0, searchMetrics.loader(() -> route(
+                        () -> repositorySearch(() -> repository().advancedSearch(query, pageable),
+                                "advancedSearch", query),
+                        embedded -> embedded.advancedSearch(query, pageable))),
+                page -> hitIds(page.getContent())), Page::getTotalElements);
     }
 
     @Override
-    public Page<Product> fuzzySearch(String searchTerm, Pageable pageable) {
-        return productSearchRepository.fuzzySearch(searchTerm, pageable);
+    public Page<ProductSearchHit> fuzzySearch(String searchTerm, Pageable pageable) {
+        return searchMetrics.record("fuzzy", true, () -> searchResultCache.get(pageKey("fuzzy", searchTerm, pageable),
+                pageable.getPageNumber() == 0, searchMetrics.loader(() -> route(
+                        () -> repositorySearch(() -> repository().fuzzySearch(searchTerm, pageable),
+                                "fuzzySearch", searchTerm),
+                        embedded -> embedded.fuzzySearch(searchTerm, pageable))),
+                page -> hitIds(page.getContent())), Page::getTotalElements);
     }
 
     @Override
-    public Map<String, List<String>> getSuggestions(String searchTerm) {
-        // Simplified implementation of suggestions using basic search
-        // Create a simple query with multi-match on name and description fields
-        NativeQuery searchQuery = NativeQuery.builder()
-                .withQuery(q -> q
-                        .multiMatch(m -> m
-                                .fields("name", "description")
-                                .query(searchTerm)
-                        )
-                )
-                .withPageable(Pageable.ofSize(10))
-                .build();
-
-        // Execute search
-        SearchHits<Product> searchHits = elasticsearchOperations.search(
-                searchQuery, Product.class);
-
-        // Process results
-        Map<String, List<String>> suggestionMap = new HashMap<>();
-        List<String> names = new ArrayList<>();
-        List<String> descriptions = new ArrayList<>();
-
-        for (SearchHit<Product> hit : searchHits) {
-            Product product = hit.getContent();
-            if (product.getName() != null &&
-                    product.getName().toLowerCase().contains(searchTerm.toLowerCase())) {
-                names.add(product.getName());
-            }
-            if (product.getDescription() != null &&
-                    product.getDescription().toLowerCase().contains(searchTerm.toLowerCase())) {
-                String snippet = product.getDescription();
-                if (snippet.length() > 100) {
-                    snippet = snippet.substring(0, 100) + "...";
-                }
-                descriptions.add(snippet);
-            }
+    public FacetedSearchResponse searchProducts(ProductSearchRequest request) {
+        if (request.getCursor() != null || request.isPit()) {
+            // Parcours par curseur : propre à un client, jamais mis en cache
+            return searchMetrics.record("faceted", false,
+                    () -> route(() -> productFacetedSearch.getObject().search(request),
+                            embedded -> embedded.searchProducts(request)),
+                    SearchServiceImpl::totalResults);
         }
+        String key = SearchResultCache.key("faceted", request.getQ(), request.getCategoryIds(),
+                request.getStoreIds(), request.getMinPrice(), request.getMaxPrice(), request.getInStock(),
+                request.getMinRating(), request.getSort(), request.isHighlight(), request.getPage(), request.getSize());
+        return searchMetrics.record("faceted", true, () -> searchResultCache.get(key, request.getPage() == 0,
+                        searchMetrics.loader(() -> route(() -> productFacetedSearch.getObject().search(request),
+                                embedded -> embedded.searchProducts(request))),
+                        SearchServiceImpl::resultIds),
+                SearchServiceImpl::totalResults);
+    }
 
-        suggestionMap.put("names", names);
-        suggestionMap.put("descriptions", descriptions);
-
-        return suggestionMap;
+    @Override
+    public Map<String, List<SuggestionDto>> getSuggestions(String prefix, int limit) {
+        return searchMetrics.record("suggestions", false,
+                () -> route(() -> productSuggester.suggest(prefix, limit), embedded -> embedded.getSuggestions(prefix, limit)),
+                suggestions -> suggestions.values().stream().mapToLong(List::size).sum());
     }
 
     @Override
-    public void indexProduct(Product product) {
-        productSearchRepository.save(product);
+    public void indexProduct(Long productId) {
+        embeddedSearch.ifAvailable(embedded -> embedded.indexProduct(productId));
+        if (!embeddedOnly()) {
+            productDocumentMapper.load(List.of(productId)).forEach(repository()::save);
+        }
+        searchResultCache.indexChanged(List.of(productId));
     }
 
     @Override
     public void deleteProductFromIndex(Long productId) {
-        productSearchRepository.deleteById(productId);
+        embeddedSearch.ifAvailable(embedded -> embedded.deleteProductFromIndex(productId));
+        if (!embeddedOnly()) {
+            repository().deleteById(productId);
+        }
+        searchResultCache.indexChanged(List.of(productId));
     }
 
     @Override
-    @Async
-    public void reindexAllProducts() {
-        // Clear the index
-        productSearchRepository.deleteAll();
+    public ReindexStatusDto reindexAllProducts() {
+        if (embeddedOnly()) {
+            return embeddedSearch.getObject().reindexAllProducts();
+        }
+        // Nouvel index versionné, l'alias "products" reste servi jusqu'à la bascule
+        return productReindexer.getObject().start(false);
+    }
 
-        // Get all products from the database
-        List<Product> products = productRepository.findAll();
+    @Override
+    public ReindexStatusDto resumeReindex() {
+        if (embeddedOnly()) {
+            return embeddedSearch.getObject().resumeReindex();
+        }
+        return productReindexer.getObject().start(true);
+    }
+
+    @Override
+    public ReindexStatusDto getReindexStatus() {
+        if (embeddedOnly()) {
+            return embeddedSearch.getObject().getReindexStatus();
+        }
+        return productReindexer.getObject().getStatus();
+    }
 
-        // Index all products
-        productSearchRepository.saveAll(products);
+    @Override
+    public int replayIndexingDeadLetters() {
+        return productIndexQueue.replayDeadLetters();
     }
 
     @Override
     public long countIndexedProducts() {
-        return productSearchRepository.count();
+        return route(() -> repository().count(), LuceneSearchService::countIndexedProducts);
+    }
+
+    private ProductSearchRepository repository() {
+        return productSearchRepository.getObject();
+    }
+
+    private boolean embeddedOnly() {
+        return "lucene".equals(engine) && embeddedSearch.getIfAvailable() != null;
+    }
+
+    private <T> T route(Supplier<T> elasticsearch, Function<LuceneSearchService, T> embedded) {
+        LuceneSearchService lucene = embeddedSearch.getIfAvailable();
+        if (lucene == null) {
+            return elasticsearch.get();
+        }
+        if ("lucene".equals(engine)) {
+            return searchMetrics.engine("lucene", () -> embedded.apply(lucene));
+        }
+        try {
+            return elasticsearch.get();
+        } catch (BadRequestException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Elasticsearch search failed, answering from the embedded index: {}", e.getMessage());
+            meterRegistry.counter("marketplace.search.fallbacks").increment();
+            return searchMetrics.engine("lucene", () -> embedded.apply(lucene));
+        }
+    }
+
+    private Page<ProductSearchHit> repositorySearch(Supplier<SearchPage<ProductDocument>> search, String method,
+                                                    Object... arguments) {
+        SearchPage<ProductDocument> page = searchMetrics.engine("elasticsearch", search);
+        searchMetrics.took(page.getSearchHits(), () -> renderRepositoryQuery(method, arguments));
+        return ProductSearchHits.toPage(page);
+    }
+
+    /**
+     * Renders the {@code @Query} template of a repository method with its arguments, as sent to
+     * Elasticsearch. Derived queries are rendered as the method call.
+     */
+    static String renderRepositoryQuery(String method, Object... arguments) {
+        for (Method candidate : ProductSearchRepository.class.getMethods()) {
+            if (!candidate.getName().equals(method)) {
+                continue;
+            }
+            Query query = candidate.getAnnotation(Query.class);
+            if (query == null) {
+                break;
+            }
+            String rendered = query.value();
+            // Remplacement du plus grand index au plus petit : ?10 avant ?1
+            for (int i = arguments.length - 1; i >= 0; i--) {
+                String value = String.valueOf(arguments[i]).replace("\\", "\\\\").replace("\"", "\\\"");
+                rendered = rendered.replace("?" + i, value);
+            }
+            return rendered;
+        }
+        return method + Arrays.toString(arguments);
+    }
+
+    private static long totalResults(FacetedSearchResponse response) {
+        return response.getResults() != null ? response.getResults().getTotalElements() : 0L;
+    }
+
+    private static List<Long> resultIds(FacetedSearchResponse response) {
+        return response.getResults() != null ? hitIds(response.getResults().getContent()) : List.of();
+    }
+
+    private static List<Long> hitIds(List<ProductSearchHit> hits) {
+        return hits.stream().map(ProductSearchHit::getId).toList();
+    }
+
+    private static String pageKey(String operation, String text, Pageable pageable) {
+        return SearchResultCache.key(operation, text, pageable.getPageNumber(), pageable.getPageSize(),
+                pageable.getSort());
     }
 }
\ No newline at end of file
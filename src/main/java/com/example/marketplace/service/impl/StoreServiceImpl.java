@@ -1,5 +1,9 @@
 package com.example.marketplace.service.impl;
 
+import com.example.marketplace.cache.CacheTags;
+import com.example.marketplace.cache.EntityExistenceGuard;
+import com.example.marketplace.cache.EntityExistenceGuard.EntityType;
+import com.example.marketplace.cache.StoreSnapshot;
 import com.example.marketplace.exception.ResourceNotFoundException;
 import com.example.marketplace.model.store.Store;
 import com.example.marketplace.model.user.User;
@@ -7,6 +11,7 @@ import com.example.marketplace.model.user.UserRole;
 import com.example.marketplace.repository.jpa.StoreRepository;
 import com.example.marketplace.service.StoreService;
 import com.example.marketplace.service.UserService;
+import com.example.marketplace.service.search.ProductIndexQueue;
 import lombok.RequiredArgsConstructor;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
@@ -16,6 +21,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
@@ -23,12 +29,24 @@ public class StoreServiceImpl implements StoreService {
 
     private final StoreRepository storeRepository;
     private final UserService userService;
+    private final EntityExistenceGuard existenceGuard;
+    private final CacheTags cacheTags;
+    private final ProductIndexQueue productIndexQueue;
 
     @Override
-    @Cacheable(value = "stores", key = "#id")
     public Store getStoreById(Long id) {
+        if (!existenceGuard.mightExist(EntityType.STORE, id)) {
+            throw ResourceNotFoundException.withoutStackTrace("Store not found with id: " + id);
+        }
         return storeRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Store not found with id: " + id));
+                .orElseThrow(() -> existenceGuard.notFound(EntityType.STORE, id, "Store not found with id: " + id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    @Cacheable(value = "stores", key = "#id", sync = true)
+    public StoreSnapshot getStoreSnapshot(Long id) {
+        return StoreSnapshot.of(getStoreById(id));
     }
 
     @Override
@@ -80,7 +98,9 @@ public class StoreServiceImpl implements StoreService {
             store.setActive(true);
         }
 
-        return storeRepository.save(store);
+        Store savedStore = storeRepository.save(store);
+        existenceGuard.added(EntityType.STORE, savedStore.getId());
+        return savedStore;
     }
 
     @Override
@@ -88,6 +108,8 @@ public class StoreServiceImpl implements StoreService {
     @CacheEvict(value = "stores", key = "#id")
     public Store updateStore(Long id, Store storeDetails) {
         Store store = getStoreById(id);
+        String previousName = store.getName();
+        Boolean previousActive = store.getActive();
 
         // Update store details
         if (storeDetails.getName() != null) {
@@ -106,7 +128,14 @@ public class StoreServiceImpl implements StoreService {
             store.setActive(storeDetails.getActive());
         }
 
-        return storeRepository.save(store);
+        Store updatedStore = storeRepository.save(store);
+        cacheTags.invalidate(List.of(CacheTags.store(id)));
+        // Nom et statut de la boutique recopiés dans les documents de recherche de ses produits
+        if (!Objects.equals(previousName, updatedStore.getName())
+                || !Objects.equals(previousActive, updatedStore.getActive())) {
+            productIndexQueue.enqueueStore(id);
+        }
+        return updatedStore;
     }
 
     @Override
@@ -121,6 +150,7 @@ public class StoreServiceImpl implements StoreService {
         userService.changeUserRole(owner.getId(), UserRole.BUYER);
 
         storeRepository.deleteById(id);
+        cacheTags.invalidate(List.of(CacheTags.store(id)));
     }
 
     @Override
@@ -130,6 +160,8 @@ public class StoreServiceImpl implements StoreService {
         Store store = getStoreById(id);
         store.setActive(!store.getActive());
         storeRepository.save(store);
+        cacheTags.invalidate(List.of(CacheTags.store(id)));
+        productIndexQueue.enqueueStore(id);
     }
 
     @Override
@@ -1,5 +1,8 @@
 package com.example.marketplace.service.impl;
 
+import com.example.marketplace.cache.EntityExistenceGuard;
+import com.example.marketplace.cache.EntityExistenceGuard.EntityType;
+import com.example.marketplace.cache.UserSnapshot;
 import com.example.marketplace.dto.user.AddressRequest;
 import com.example.marketplace.dto.user.UserProfileUpdateRequest;
 import com.example.marketplace.exception.AccessDeniedException;
@@ -8,11 +11,15 @@ import com.example.marketplace.model.user.Address;
 import com.example.marketplace.model.user.User;
 import com.example.marketplace.model.user.UserRole;
 import com.example.marketplace.repository.jpa.AddressRepository;
+import com.example.marketplace.repository.jpa.OrderItemRepository;
+import com.example.marketplace.repository.jpa.ReviewRepository;
 import com.example.marketplace.repository.jpa.UserRepository;
 import com.example.marketplace.service.AuthService;
 import com.example.marketplace.service.UserService;
+import com.example.marketplace.service.search.ProductSignalRefresher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
@@ -21,8 +28,10 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -33,18 +42,30 @@ public class UserServiceImpl implements UserService {
     private final AddressRepository addressRepository;
     private final PasswordEncoder passwordEncoder;
     private final AuthService authService;
+    private final EntityExistenceGuard existenceGuard;
+    private final ReviewRepository reviewRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final ObjectProvider<ProductSignalRefresher> productSignalRefresher;
 
     @Override
-    @Cacheable(value = "users", key = "#id")
     public User getUserById(Long id) {
         log.debug("Fetching user by ID: {}", id);
+        if (!existenceGuard.mightExist(EntityType.USER, id)) {
+            throw ResourceNotFoundException.withoutStackTrace("User not found with id: " + id);
+        }
         return userRepository.findById(id)
                 .orElseThrow(() -> {
                     log.warn("User not found with id: {}", id);
-                    return new ResourceNotFoundException("User not found with id: " + id);
+                    return existenceGuard.notFound(EntityType.USER, id, "User not found with id: " + id);
                 });
     }
 
+    @Override
+    @Cacheable(value = "users", key = "#id", sync = true)
+    public UserSnapshot getUserSnapshot(Long id) {
+        return UserSnapshot.of(getUserById(id));
+    }
+
     @Override
     public User getUserByEmail(String email) {
         log.debug("Fetching user by email: {}", email);
@@ -96,6 +117,7 @@ public class UserServiceImpl implements UserService {
         }
 
         User savedUser = userRepository.save(user);
+        existenceGuard.added(EntityType.USER, savedUser.getId());
         log.info("User created successfully with ID: {}", savedUser.getId());
         return savedUser;
     }
@@ -132,7 +154,11 @@ public class UserServiceImpl implements UserService {
         // Check if user exists
         getUserById(id);
 
+        // Avis et commandes supprimés en cascade : leurs produits doivent recalculer leurs signaux
+        Set<Long> productIds = new HashSet<>(reviewRepository.findProductIdsByUserId(id));
+        productIds.addAll(orderItemRepository.findProductIdsByUserId(id));
         userRepository.deleteById(id);
+        productSignalRefresher.ifAvailable(refresher -> refresher.signalsRemoved(productIds));
         log.info("User deleted successfully: {}", id);
     }
 
@@ -1,21 +1,26 @@
 package com.example.marketplace.service.impl;
 
+import com.example.marketplace.cache.WishlistMembershipCache;
 import com.example.marketplace.exception.ResourceNotFoundException;
 import com.example.marketplace.model.cart.Wishlist;
-import com.example.marketplace.model.product.Product;
 import com.example.marketplace.model.user.User;
+import com.example.marketplace.repository.jpa.ProductRepository;
 import com.example.marketplace.repository.jpa.WishlistRepository;
 import com.example.marketplace.service.ProductService;
 import com.example.marketplace.service.UserService;
 import com.example.marketplace.service.WishlistService;
+import com.example.marketplace.stats.ProductWishCounter;
+import com.example.marketplace.util.TransactionUtils;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Service
 @RequiredArgsConstructor
@@ -24,6 +29,9 @@ public class WishlistServiceImpl implements WishlistService {
     private final WishlistRepository wishlistRepository;
     private final UserService userService;
     private final ProductService productService;
+    private final WishlistMembershipCache membershipCache;
+    private final ProductWishCounter wishCounter;
+    private final ProductRepository productRepository;
 
     @Override
     public Wishlist getWishlistById(Long id) {
@@ -34,7 +42,7 @@ public class WishlistServiceImpl implements WishlistService {
     @Override
     public List<Wishlist> getWishlistsByUserId(Long userId) {
         // Verify user exists
-        userService.getUserById(userId);
+        userService.getUserSnapshot(userId);
 
         return wishlistRepository.findByUserId(userId);
     }
@@ -87,67 +95,95 @@ public class WishlistServiceImpl implements WishlistService {
     @Transactional
     public void deleteWishlist(Long id) {
         // Verify wishlist exists
-        getWishlistById(id);
+        Wishlist wishlist = getWishlistById(id);
+        Long userId = wishlist.getUser().getId();
+        List<Long> productIds = wishlistRepository.findProductIdsByWishlistId(id);
 
         wishlistRepository.deleteById(id);
+        TransactionUtils.afterCommit(() -> {
+            membershipCache.evict(userId);
+            productIds.forEach(wishCounter::decrement);
+        });
     }
 
     @Override
     @Transactional
     public Wishlist addProductToWishlist(Long wishlistId, Long productId) {
-        Wishlist wishlist = getWishlistById(wishlistId);
-        Product product = productService.getProductById(productId);
-
-        // Check if product is already in wishlist
-        if (wishlist.getProducts().stream().anyMatch(p -> p.getId().equals(productId))) {
-            // Product already in wishlist, no need to add again
-            return wishlist;
+        Long userId = getWishlistById(wishlistId).getUser().getId();
+        // Verify product exists
+        productService.getProductSnapshot(productId);
+
+        // Direct insert into the join table, a no-op if the product is already there
+        if (wishlistRepository.addProduct(wishlistId, productId) > 0) {
+            TransactionUtils.afterCommit(() -> {
+                membershipCache.productAdded(userId, productId);
+                wishCounter.increment(productId);
+            });
         }
 
-        wishlist.getProducts().add(product);
-        return wishlistRepository.save(wishlist);
+        // Reloaded: the insert bypassed the products collection
+        return getWishlistById(wishlistId);
     }
 
     @Override
     @Transactional
     public Wishlist removeProductFromWishlist(Long wishlistId, Long productId) {
-        Wishlist wishlist = getWishlistById(wishlistId);
+        Long userId = getWishlistById(wishlistId).getUser().getId();
 
-        // Remove product
-        wishlist.getProducts().removeIf(product -> product.getId().equals(productId));
+        if (wishlistRepository.removeProduct(wishlistId, productId) > 0) {
+            TransactionUtils.afterCommit(() -> wishCounter.decrement(productId));
 
-        return wishlistRepository.save(wishlist);
+            // The product may still be in another wishlist of the same user
+            if (!wishlistRepository.existsByUserIdAndProductId(userId, productId)) {
+                TransactionUtils.afterCommit(() -> membershipCache.productRemoved(userId, productId));
+            }
+        }
+
+        return getWishlistById(wishlistId);
     }
 
     @Override
     public boolean isProductInWishlist(Long wishlistId, Long productId) {
-        Wishlist wishlist = getWishlistById(wishlistId);
+        // Verify wishlist exists
+        getWishlistById(wishlistId);
 
-        return wishlist.getProducts().stream()
-                .anyMatch(product -> product.getId().equals(productId));
+        return wishlistRepository.containsProduct(wishlistId, productId);
     }
 
     @Override
-    public long countWishlistsByProduct(Long productId) {
-        // Verify product exists
-        productService.getProductById(productId);
+    public Set<Long> getWishedProductIds(Long userId, Collection<Long> productIds) {
+        return membershipCache.findWishedProductIds(userId, productIds);
+    }
 
-        return wishlistRepository.countWishlistsByProduct(productId);
+    @Override
+    public long countWishlistsByProduct(Long productId) {
+        return wishCounter.getCount(productId);
     }
 
     @Override
     public List<Map<String, Object>> getMostWishedProducts(int limit) {
-        List<Object[]> results = wishlistRepository.findMostWishedProducts(limit);
-        List<Map<String, Object>> mappedResults = new ArrayList<>();
+        Map<Long, Long> ranking = wishCounter.getMostWished(limit);
+        if (ranking.isEmpty()) {
+            return new ArrayList<>();
+        }
 
-        for (Object[] result : results) {
-            Map<String, Object> map = new HashMap<>();
-            map.put("productId", result[0]);
-            map.put("productName", result[1]);
-            map.put("wishCount", result[2]);
-            mappedResults.add(map);
+        Map<Long, String> names = new HashMap<>();
+        for (Object[] row : productRepository.findNamesByIdIn(ranking.keySet())) {
+            names.put((Long) row[0], (String) row[1]);
         }
 
+        List<Map<String, Object>> mappedResults = new ArrayList<>();
+        ranking.forEach((productId, wishCount) -> {
+            // Skip products deleted since they were counted
+            if (names.containsKey(productId)) {
+                Map<String, Object> map = new HashMap<>();
+                map.put("productId", productId);
+                map.put("productName", names.get(productId));
+                map.put("wishCount", wishCount);
+                mappedResults.add(map);
+            }
+        });
+
         return mappedResults;
     }
 
@@ -0,0 +1,213 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the embedded index of every node in line with product writes indexed by any node.
+ * <p>
+ * Each node applies its own index writes directly and broadcasts the ids it wrote; the other
+ * nodes reload those products from the database and apply them on their next sync. Deleted ids are
+ * also kept in Redis for a while. Broadcasts are not delivered to a node that is down or
+ * disconnected, so each node also catches up periodically on the products updated, and the ids
+ * deleted, since the time recorded in its index, with some overlap for writes still committing.
+ */
+@Component
+@ConditionalOnExpression("'${marketplace.search.engine:elasticsearch}' != 'elasticsearch'")
+@RequiredArgsConstructor
+@Slf4j
+public class LuceneIndexSync implements MessageListener {
+
+    static final String CHANNEL = "search:embedded";
+    static final String DELETED_KEY = "search:embedded:deleted";
+
+    private final LuceneProductIndex index;
+    private final ProductDocumentMapper productDocumentMapper;
+    private final ProductRepository productRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${marketplace.search.lucene.sync-batch-size:500}")
+    private int batchSize;
+
+    @Value("${marketplace.search.lucene.catch-up-overlap:5m}")
+    private Duration catchUpOverlap;
+
+    @Value("${marketplace.search.lucene.deleted-retention:7d}")
+    private Duration deletedRetention;
+
+    // Identifie les messages de ce noeud, déjà appliqués localement
+    private final String node = UUID.randomUUID().toString();
+
+    // Produits écrits par les autres noeuds, à recharger au prochain passage
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    public void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Applies documents and deletions to the local index, then announces them to the other nodes.
+     */
+    public void apply(Collection<ProductDocument> documents, Collection<Long> deletedIds) throws IOException {
+        index.apply(documents, deletedIds);
+
+        List<Long> ids = new ArrayList<>(documents.size() + deletedIds.size());
+        documents.forEach(document -> ids.add(document.getId()));
+        ids.addAll(deletedIds);
+        if (ids.isEmpty()) {
+            return;
+        }
+        try {
+            if (!deletedIds.isEmpty()) {
+                long now = System.currentTimeMillis();
+                Set<TypedTuple<String>> tuples = deletedIds.stream()
+                        .map(id -> TypedTuple.of(String.valueOf(id), (double) now))
+                        .collect(Collectors.toSet());
+                redisTemplate.opsForZSet().add(DELETED_KEY, tuples);
+                redisTemplate.opsForZSet().removeRangeByScore(DELETED_KEY, 0, now - deletedRetention.toMillis());
+            }
+            redisTemplate.convertAndSend(CHANNEL,
+                    node + '|' + ids.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        } catch (DataAccessException e) {
+            // Les autres noeuds rattraperont les produits modifiés à leur prochain rattrapage
+            log.warn("Could not announce {} embedded index writes: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || body.substring(0, separator).equals(node)) {
+            return;
+        }
+        try {
+            for (String id : body.substring(separator + 1).split(",")) {
+                pending.add(Long.valueOf(id));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed embedded index update: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reloads the products written by the other nodes and applies them to the local index.
+     */
+    @Scheduled(fixedDelayString = "${marketplace.search.lucene.sync-interval:1000}")
+    public void sync() {
+        while (!pending.isEmpty()) {
+            List<Long> batch = new ArrayList<>(batchSize);
+            Iterator<Long> iterator = pending.iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                Long id = iterator.next();
+                iterator.remove();
+                batch.add(id);
+            }
+            try {
+                reload(batch);
+            } catch (RuntimeException e) {
+                // Remis en file pour le passage suivant
+                pending.addAll(batch);
+                log.warn("Could not apply {} products written by other nodes: {}", batch.size(), e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Reloads the products updated, and removes the products deleted, since the time the local index
+     * caught up to, then moves that time forward.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${marketplace.search.lucene.catch-up-interval:60000}",
+            initialDelayString = "${marketplace.search.lucene.catch-up-interval:60000}")
+    public void catchUp() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        LocalDateTime caughtUpTo = index.getCaughtUpTo();
+        if (caughtUpTo == null) {
+            // Index neuf ou reconstruit avant ce suivi : alimenté en direct à partir de maintenant
+            index.setCaughtUpTo(startedAt);
+            return;
+        }
+        LocalDateTime since = caughtUpTo.minus(catchUpOverlap);
+
+        try {
+            long afterId = 0L;
+            List<Long> ids;
+            int caughtUp = 0;
+            do {
+                ids = productRepository.findIdsUpdatedSince(since, afterId, PageRequest.of(0, batchSize));
+                if (!ids.isEmpty()) {
+                    reload(ids);
+                    caughtUp += ids.size();
+                    afterId = ids.get(ids.size() - 1);
+                }
+            } while (ids.size() == batchSize);
+
+            Set<String> deleted = redisTemplate.opsForZSet().rangeByScore(DELETED_KEY,
+                    since.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), Double.POSITIVE_INFINITY);
+            if (deleted != null && !deleted.isEmpty()) {
+                List<Long> deletedIds = deleted.stream().map(Long::valueOf).toList();
+                for (int from = 0; from < deletedIds.size(); from += batchSize) {
+                    reload(deletedIds.subList(from, Math.min(from + batchSize, deletedIds.size())));
+                }
+                caughtUp += deletedIds.size();
+            }
+
+            index.setCaughtUpTo(startedAt);
+            if (caughtUp > 0) {
+                log.debug("Embedded index caught up on {} product writes since {}", caughtUp, since);
+            }
+        } catch (RuntimeException e) {
+            // Le point de reprise n'avance pas : le prochain passage recommence depuis le même instant
+            log.warn("Embedded index catch-up failed: {}", e.getMessage());
+        }
+    }
+
+    // Produits absents de la base : supprimés de l'index
+    private void reload(List<Long> ids) {
+        List<ProductDocument> documents = productDocumentMapper.load(ids);
+        Set<Long> deleted = new HashSet<>(ids);
+        documents.forEach(document -> deleted.remove(document.getId()));
+        try {
+            index.apply(documents, deleted);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
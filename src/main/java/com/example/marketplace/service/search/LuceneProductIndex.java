@@ -0,0 +1,500 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.dto.search.ProductSearchHit;
+import com.example.marketplace.dto.search.SuggestionDto;
+import com.example.marketplace.model.search.ProductDocument;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.custom.CustomAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoubleDocValuesField;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.StoredFields;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PrefixQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Embedded Lucene product index, memory-mapped from local disk.
+ * <p>
+ * Documents are the same {@link ProductDocument}s that are sent to Elasticsearch, flattened into
+ * Lucene fields: analyzed text for matching, points for range and set filters, doc values for
+ * sorting and stored fields for building {@link ProductSearchHit}s. Writes are visible to searches
+ * as soon as they are applied (near-real-time reader) and committed to disk periodically.
+ * <p>
+ * Each full rebuild goes into a new generation directory, fed with live writes as well, which
+ * replaces the current one only once complete: searches keep the previous index until then.
+ * <p>
+ * Every commit also records how far the index has caught up with the database, so that a node
+ * restarted with an index left on disk knows which product writes it may have missed.
+ */
+@Component
+@ConditionalOnExpression("'${marketplace.search.engine:elasticsearch}' != 'elasticsearch'")
+@Slf4j
+public class LuceneProductIndex implements Closeable {
+
+    static final String ID = "id";
+    static final String ID_TERM = "id_term";
+    static final String NAME = "name";
+    static final String DESCRIPTION = "description";
+    static final String PRICE = "price";
+    static final String IMAGE_URL = "imageUrl";
+    static final String IN_STOCK = "inStock";
+    static final String FEATURED = "featured";
+    static final String ACTIVE = "active";
+    static final String STORE_ID = "storeId";
+    static final String STORE_NAME = "storeName";
+    static final String CATEGORY_ID = "categoryIds";
+    static final String CATEGORY_TREE_ID = "categoryTreeIds";
+    static final String CATEGORY_NAME = "categoryNames";
+    static final String CATEGORY_KEYWORD = "categoryNames.keyword";
+    static final String RATING = "rating";
+    static final String REVIEW_COUNT = "reviewCount";
+    static final String SALES_COUNT = "salesCount";
+    static final String CREATED_AT = "createdAt";
+    static final String SUGGEST = "suggest";
+    static final String SUGGEST_WEIGHT = "suggestWeight";
+
+    private static final String GENERATION_PREFIX = "gen-";
+    private static final String CURRENT_MARKER = "current";
+    private static final String CAUGHT_UP_TO = "caughtUpTo";
+
+    private final Path path;
+    private final Analyzer analyzer;
+    private final Object writeLock = new Object();
+
+    private volatile Generation current;
+    // Génération en cours de reconstruction, et produits écrits depuis son début
+    private Generation rebuilding;
+    private Set<Long> writtenDuringRebuild;
+
+    /**
+     * One physical index, in a directory of its own.
+     */
+    private record Generation(int number, Path path, Directory directory, IndexWriter writer,
+                              SearcherManager searcherManager) {
+
+        static Generation open(Path root, int number, Analyzer analyzer, IndexWriterConfig.OpenMode mode)
+                throws IOException {
+            Path path = root.resolve(GENERATION_PREFIX + number);
+            Files.createDirectories(path);
+            Directory directory = new MMapDirectory(path);
+            IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(analyzer).setOpenMode(mode));
+            return new Generation(number, path, directory, writer, new SearcherManager(writer, null));
+        }
+
+        void close() throws IOException {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface SearcherCallback<T> {
+        T apply(IndexSearcher searcher) throws IOException;
+    }
+
+    public LuceneProductIndex(@Value("${marketplace.search.lucene.path:data/lucene/products}") Path path)
+            throws IOException {
+        Files.createDirectories(path);
+        this.path = path;
+        // Comme l'analyseur standard, avec en plus le repli des accents
+        this.analyzer = CustomAnalyzer.builder()
+                .withTokenizer("standard")
+                .addTokenFilter("lowercase")
+                .addTokenFilter("asciiFolding")
+                .build();
+
+        Path marker = path.resolve(CURRENT_MARKER);
+        int number = Files.exists(marker)
+                ? Integer.parseInt(Files.readString(marker).trim().substring(GENERATION_PREFIX.length()))
+                : 1;
+        this.current = Generation.open(path, number, analyzer, IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+        markCurrent(current);
+        // Restes d'une reconstruction interrompue
+        try (Stream<Path> children = Files.list(path)) {
+            for (Path child : children.toList()) {
+                if (child.getFileName().toString().startsWith(GENERATION_PREFIX) && !child.equals(current.path())) {
+                    FileSystemUtils.deleteRecursively(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds or replaces the given documents and removes the deleted products, then makes the
+     * changes visible to new searches.
+     */
+    public void apply(Collection<ProductDocument> documents, Collection<Long> deletedIds) throws IOException {
+        synchronized (writeLock) {
+            write(current, documents, deletedIds);
+            if (rebuilding != null) {
+                write(rebuilding, documents, deletedIds);
+                documents.forEach(document -> writtenDuringRebuild.add(document.getId()));
+                writtenDuringRebuild.addAll(deletedIds);
+            }
+        }
+    }
+
+    /**
+     * Starts a new generation of the index, empty and fed with every write applied from now on.
+     * Searches keep using the current generation until {@link #finishRebuild()}.
+     */
+    public void startRebuild() throws IOException {
+        synchronized (writeLock) {
+            if (rebuilding != null) {
+                throw new IllegalStateException("A rebuild of the embedded index is already running");
+            }
+            rebuilding = Generation.open(path, current.number() + 1, analyzer, IndexWriterConfig.OpenMode.CREATE);
+            writtenDuringRebuild = new HashSet<>();
+        }
+    }
+
+    /**
+     * Adds documents read from the database to the generation being built, except those of
+     * products written since the rebuild started, which are already more recent there.
+     */
+    public void addRebuilt(Collection<ProductDocument> documents) throws IOException {
+        synchronized (writeLock) {
+            for (ProductDocument document : documents) {
+                if (!writtenDuringRebuild.contains(document.getId())) {
+                    rebuilding.writer().updateDocument(new Term(ID_TERM, document.getId().toString()),
+                            toLucene(document));
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits the generation being built and swaps it in for searches and writes, then drops the
+     * previous one.
+     */
+    public void finishRebuild() throws IOException {
+        Generation previous;
+        synchronized (writeLock) {
+            // La nouvelle génération a reçu les mêmes écritures : elle reprend le même point de rattrapage
+            rebuilding.writer().setLiveCommitData(current.writer().getLiveCommitData());
+            rebuilding.writer().commit();
+            rebuilding.searcherManager().maybeRefreshBlocking();
+            markCurrent(rebuilding);
+            previous = current;
+            current = rebuilding;
+            rebuilding = null;
+            writtenDuringRebuild = null;
+        }
+        // Les recherches en cours gardent leur lecteur jusqu'à sa libération
+        previous.close();
+        FileSystemUtils.deleteRecursively(previous.path());
+    }
+
+    /**
+     * Drops the generation being built, if any; the current one stays in use.
+     */
+    public void abortRebuild() {
+        synchronized (writeLock) {
+            if (rebuilding == null) {
+                return;
+            }
+            try {
+                rebuilding.close();
+                FileSystemUtils.deleteRecursively(rebuilding.path());
+            } catch (IOException e) {
+                log.warn("Could not drop the aborted embedded index generation {}: {}", rebuilding.path(),
+                        e.getMessage());
+            } finally {
+                rebuilding = null;
+                writtenDuringRebuild = null;
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${marketplace.search.lucene.commit-interval:10000}")
+    public void commit() throws IOException {
+        synchronized (writeLock) {
+            if (current.writer().hasUncommittedChanges()) {
+                current.writer().commit();
+            }
+        }
+    }
+
+    /**
+     * The time up to which every product write has been applied, as recorded by
+     * {@link #setCaughtUpTo(LocalDateTime)}, or null for an index that never recorded one.
+     */
+    public LocalDateTime getCaughtUpTo() {
+        synchronized (writeLock) {
+            Iterable<Map.Entry<String, String>> data = current.writer().getLiveCommitData();
+            if (data != null) {
+                for (Map.Entry<String, String> entry : data) {
+                    if (CAUGHT_UP_TO.equals(entry.getKey())) {
+                        return LocalDateTime.parse(entry.getValue());
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Records that every product write up to {@code time} has been applied. Saved with the next
+     * commit, together with the documents it covers.
+     */
+    public void setCaughtUpTo(LocalDateTime time) {
+        synchronized (writeLock) {
+            current.writer().setLiveCommitData(Map.of(CAUGHT_UP_TO, time.toString()).entrySet());
+        }
+    }
+
+    public long count() throws IOException {
+        return withSearcher(searcher -> (long) searcher.getIndexReader().numDocs());
+    }
+
+    public Page<ProductSearchHit> search(Query query, Sort sort, Pageable pageable) throws IOException {
+        int offset = (int) pageable.getOffset();
+        return withSearcher(searcher -> {
+            TopDocs top = sort != null
+                    ? searcher.search(query, offset + pageable.getPageSize(), sort, true)
+                    : searcher.search(query, offset + pageable.getPageSize());
+            long total = top.totalHits.relation == TotalHits.Relation.EQUAL_TO
+                    ? top.totalHits.value
+                    : searcher.count(query);
+
+            StoredFields storedFields = searcher.storedFields();
+            List<ProductSearchHit> hits = new ArrayList<>();
+            for (int i = offset; i < top.scoreDocs.length; i++) {
+                ScoreDoc scoreDoc = top.scoreDocs[i];
+                hits.add(toHit(storedFields.document(scoreDoc.doc), scoreDoc.score));
+            }
+            return new PageImpl<>(hits, pageable, total);
+        });
+    }
+
+    /**
+     * Active products having a name or name suffix that starts with the normalized prefix, by
+     * descending popularity.
+     */
+    public List<SuggestionDto> suggest(String normalizedPrefix, int limit) throws IOException {
+        return withSearcher(searcher -> {
+            Sort byWeight = new Sort(new SortField(SUGGEST_WEIGHT, SortField.Type.LONG, true));
+            TopDocs top = searcher.search(new PrefixQuery(new Term(SUGGEST, normalizedPrefix)), limit, byWeight);
+            StoredFields storedFields = searcher.storedFields();
+            List<SuggestionDto> suggestions = new ArrayList<>(top.scoreDocs.length);
+            for (ScoreDoc scoreDoc : top.scoreDocs) {
+                Document document = storedFields.document(scoreDoc.doc, Set.of(ID, NAME));
+                suggestions.add(new SuggestionDto(document.getField(ID).numericValue().longValue(), document.get(NAME)));
+            }
+            return suggestions;
+        });
+    }
+
+    /**
+     * Splits text into the terms the index holds for an analyzed field.
+     */
+    public List<String> analyze(String field, String text) {
+        List<String> terms = new ArrayList<>();
+        try (TokenStream stream = analyzer.tokenStream(field, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not analyze search text", e);
+        }
+        return terms;
+    }
+
+    @PreDestroy
+    @Override
+    public void close() throws IOException {
+        abortRebuild();
+        synchronized (writeLock) {
+            current.close();
+        }
+    }
+
+    private static void write(Generation generation, Collection<ProductDocument> documents,
+                              Collection<Long> deletedIds) throws IOException {
+        for (ProductDocument document : documents) {
+            generation.writer().updateDocument(new Term(ID_TERM, document.getId().toString()), toLucene(document));
+        }
+        if (!deletedIds.isEmpty()) {
+            generation.writer().deleteDocuments(
+                    deletedIds.stream().map(id -> new Term(ID_TERM, id.toString())).toArray(Term[]::new));
+        }
+        generation.searcherManager().maybeRefresh();
+    }
+
+    private <T> T withSearcher(SearcherCallback<T> callback) throws IOException {
+        while (true) {
+            Generation generation = current;
+            IndexSearcher searcher;
+            try {
+                searcher = generation.searcherManager().acquire();
+            } catch (AlreadyClosedException e) {
+                if (generation == current) {
+                    throw e;
+                }
+                // Génération remplacée entre la lecture et l'acquisition : on relit la courante
+                continue;
+            }
+            try {
+                return callback.apply(searcher);
+            } finally {
+                generation.searcherManager().release(searcher);
+            }
+        }
+    }
+
+    // Écrit puis renomme : le marqueur désigne toujours une génération complète
+    private void markCurrent(Generation generation) throws IOException {
+        Path marker = path.resolve(CURRENT_MARKER);
+        Path temporary = path.resolve(CURRENT_MARKER + ".tmp");
+        Files.writeString(temporary, generation.path().getFileName().toString());
+        Files.move(temporary, marker, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Document toLucene(ProductDocument product) {
+        Document document = new Document();
+        document.add(new StringField(ID_TERM, product.getId().toString(), Field.Store.NO));
+        document.add(new LongPoint(ID, product.getId()));
+        document.add(new StoredField(ID, product.getId()));
+        document.add(new NumericDocValuesField(ID, product.getId()));
+
+        if (product.getName() != null) {
+            document.add(new TextField(NAME, product.getName(), Field.Store.YES));
+        }
+        if (product.getDescription() != null) {
+            document.add(new TextField(DESCRIPTION, product.getDescription(), Field.Store.NO));
+        }
+        if (product.getPrice() != null) {
+            double price = product.getPrice().doubleValue();
+            document.add(new DoublePoint(PRICE, price));
+            document.add(new StoredField(PRICE, price));
+            document.add(new DoubleDocValuesField(PRICE, price));
+        }
+        if (product.getImageUrl() != null) {
+            document.add(new StoredField(IMAGE_URL, product.getImageUrl()));
+        }
+        document.add(new StringField(IN_STOCK, Boolean.toString(Boolean.TRUE.equals(product.getInStock())), Field.Store.YES));
+        document.add(new StringField(FEATURED, Boolean.toString(Boolean.TRUE.equals(product.getFeatured())), Field.Store.YES));
+        document.add(new StringField(ACTIVE, Boolean.toString(Boolean.TRUE.equals(product.getActive())), Field.Store.NO));
+
+        if (product.getStoreId() != null) {
+            document.add(new LongPoint(STORE_ID, product.getStoreId()));
+            document.add(new StoredField(STORE_ID, product.getStoreId()));
+        }
+        if (product.getStoreName() != null) {
+            document.add(new TextField(STORE_NAME, product.getStoreName(), Field.Store.YES));
+        }
+
+        for (Long categoryId : product.getCategoryIds()) {
+            document.add(new StoredField(CATEGORY_ID, categoryId));
+        }
+        for (Long categoryId : product.getCategoryTreeIds()) {
+            document.add(new LongPoint(CATEGORY_TREE_ID, categoryId));
+        }
+        for (String categoryName : product.getCategoryNames()) {
+            document.add(new TextField(CATEGORY_NAME, categoryName, Field.Store.YES));
+            document.add(new StringField(CATEGORY_KEYWORD, categoryName, Field.Store.NO));
+        }
+
+        if (product.getRating() != null) {
+            document.add(new DoublePoint(RATING, product.getRating()));
+            document.add(new StoredField(RATING, product.getRating()));
+            document.add(new DoubleDocValuesField(RATING, product.getRating()));
+        }
+        if (product.getReviewCount() != null) {
+            document.add(new StoredField(REVIEW_COUNT, product.getReviewCount()));
+        }
+        document.add(new NumericDocValuesField(SALES_COUNT, product.getSalesCount() != null ? product.getSalesCount() : 0L));
+        if (product.getCreatedAt() != null) {
+            document.add(new NumericDocValuesField(CREATED_AT,
+                    product.getCreatedAt().toInstant(ZoneOffset.UTC).toEpochMilli()));
+        }
+
+        // Entrées d'autocomplétion calculées par le mapper, produits actifs seulement
+        if (product.getNameSuggest() != null) {
+            for (String input : product.getNameSuggest().getInput()) {
+                document.add(new StringField(SUGGEST, SuggestionSnapshot.normalize(input), Field.Store.NO));
+            }
+            Integer weight = product.getNameSuggest().getWeight();
+            document.add(new NumericDocValuesField(SUGGEST_WEIGHT, weight != null ? weight : 0));
+        }
+        return document;
+    }
+
+    static ProductSearchHit toHit(Document document, float score) {
+        ProductSearchHit hit = new ProductSearchHit();
+        hit.setId(document.getField(ID).numericValue().longValue());
+        hit.setName(document.get(NAME));
+        IndexableField price = document.getField(PRICE);
+        hit.setPrice(price != null ? BigDecimal.valueOf(price.numericValue().doubleValue()) : null);
+        hit.setImageUrl(document.get(IMAGE_URL));
+        hit.setInStock(Boolean.parseBoolean(document.get(IN_STOCK)));
+        hit.setFeatured(Boolean.parseBoolean(document.get(FEATURED)));
+        IndexableField storeId = document.getField(STORE_ID);
+        hit.setStoreId(storeId != null ? storeId.numericValue().longValue() : null);
+        hit.setStoreName(document.get(STORE_NAME));
+        List<Long> categoryIds = new ArrayList<>();
+        for (IndexableField field : document.getFields(CATEGORY_ID)) {
+            categoryIds.add(field.numericValue().longValue());
+        }
+        hit.setCategoryIds(categoryIds);
+        hit.setCategoryNames(List.of(document.getValues(CATEGORY_NAME)));
+        IndexableField rating = document.getField(RATING);
+        hit.setRating(rating != null ? rating.numericValue().doubleValue() : null);
+        IndexableField reviewCount = document.getField(REVIEW_COUNT);
+        hit.setReviewCount(reviewCount != null ? reviewCount.numericValue().intValue() : null);
+        hit.setScore(Float.isNaN(score) ? null : score);
+        return hit;
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.dto.PagedResponse;
+import com.example.marketplace.dto.search.FacetedSearchResponse;
+import com.example.marketplace.dto.search.ProductSearchHit;
+import com.example.marketplace.dto.search.ProductSearchRequest;
+import com.example.marketplace.dto.search.ReindexStatusDto;
+import com.example.marketplace.dto.search.SuggestionDto;
+import com.example.marketplace.exception.BadRequestException;
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import com.example.marketplace.service.SearchService;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.FuzzyQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link SearchService} answered by the embedded {@link LuceneProductIndex} instead of Elasticsearch.
+ * <p>
+ * Active with {@code marketplace.search.engine=lucene} (searches answered by this index only) or
+ * {@code fallback} (Elasticsearch first, this index when it fails). The index of every node is fed
+ * with the writes of all nodes through {@link LuceneIndexSync} and rebuilt from the database when
+ * found empty at startup. Facet counts, the best_match signals boost, highlights and cursors remain
+ * Elasticsearch features. With {@code lucene}, no Elasticsearch bean is created.
+ */
+@Service
+@ConditionalOnExpression("'${marketplace.search.engine:elasticsearch}' != 'elasticsearch'")
+@RequiredArgsConstructor
+@Slf4j
+public class LuceneSearchService implements SearchService {
+
+    private static final Set<String> SORTABLE = Set.of(LuceneProductIndex.PRICE, LuceneProductIndex.RATING,
+            LuceneProductIndex.SALES_COUNT, LuceneProductIndex.CREATED_AT);
+
+    private final LuceneProductIndex index;
+    private final ProductDocumentMapper productDocumentMapper;
+    private final ProductRepository productRepository;
+    private final ProductSuggester productSuggester;
+    private final ProductIndexQueue productIndexQueue;
+    private final LuceneIndexSync indexSync;
+
+    @Value("${marketplace.search.reindex.chunk-size:1000}")
+    private int chunkSize;
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "lucene-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong rebuilt = new AtomicLong();
+    private volatile ReindexStatusDto lastRebuild;
+
+    @Override
+    public Page<ProductSearchHit> searchByNameOrDescription(String searchTerm, Pageable pageable) {
+        return search(text(searchTerm, Map.of(LuceneProductIndex.NAME, 2f, LuceneProductIndex.DESCRIPTION, 1f)),
+                pageable);
+    }
+
+    @Override
+    public Page<ProductSearchHit> searchByPriceRange(BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
+        return search(priceRange(minPrice, maxPrice), pageable);
+    }
+
+    @Override
+    public Page<ProductSearchHit> searchByCategoryAndKeyword(String category, String keyword, Pageable pageable) {
+        Query query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(LuceneProductIndex.CATEGORY_KEYWORD, category)), BooleanClause.Occur.FILTER)
+                .add(text(keyword, Map.of(LuceneProductIndex.NAME, 1f, LuceneProductIndex.DESCRIPTION, 1f)),
+                        BooleanClause.Occur.MUST)
+                .build();
+        return search(query, pageable);
+    }
+
+    @Override
+    public Page<ProductSearchHit> advancedSearch(String query, Pageable pageable) {
+        Query text = text(query, Map.of(LuceneProductIndex.NAME, 3f, LuceneProductIndex.DESCRIPTION, 1f,
+                LuceneProductIndex.STORE_NAME, 0.5f));
+        return search(activeOnly(text), pageable);
+    }
+
+    @Override
+    public Page<ProductSearchHit> fuzzySearch(String searchTerm, Pageable pageable) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        for (String field : List.of(LuceneProductIndex.NAME, LuceneProductIndex.DESCRIPTION)) {
+            for (String term : index.analyze(field, searchTerm)) {
+                // Même tolérance que fuzziness AUTO d'Elasticsearch
+                int edits = term.length() < 3 ? 0 : term.length() < 6 ? 1 : 2;
+                query.add(new FuzzyQuery(new Term(field, term), edits), BooleanClause.Occur.SHOULD);
+            }
+        }
+        return search(query.build(), pageable);
+    }
+
+    @Override
+    public FacetedSearchResponse searchProducts(ProductSearchRequest request) {
+        if (request.getCursor() != null || request.isPit()) {
+            throw new BadRequestException("Cursor pagination is not available on the embedded search engine");
+        }
+        if (request.getSize() < 1 || request.getSize() > ProductFacetedSearch.MAX_PAGE_SIZE || request.getPage() < 0
+                || (long) (request.getPage() + 1) * request.getSize() > ProductFacetedSearch.MAX_RESULT_WINDOW) {
+            throw new BadRequestException("Invalid page or size");
+        }
+
+        BooleanQuery.Builder query = new BooleanQuery.Builder()
+                .add(StringUtils.hasText(request.getQ())
+                        ? text(request.getQ(), Map.of(LuceneProductIndex.NAME, 3f, LuceneProductIndex.CATEGORY_NAME, 2f,
+                        LuceneProductIndex.DESCRIPTION, 1f, LuceneProductIndex.STORE_NAME, 0.5f))
+                        : new MatchAllDocsQuery(), BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(LuceneProductIndex.ACTIVE, "true")), BooleanClause.Occur.FILTER);
+        if (request.getCategoryIds() != null && !request.getCategoryIds().isEmpty()) {
+            query.add(LongPoint.newSetQuery(LuceneProductIndex.CATEGORY_TREE_ID, request.getCategoryIds()),
+                    BooleanClause.Occur.FILTER);
+        }
+        if (request.getStoreIds() != null && !request.getStoreIds().isEmpty()) {
+            query.add(LongPoint.newSetQuery(LuceneProductIndex.STORE_ID, request.getStoreIds()), BooleanClause.Occur.FILTER);
+        }
+        if (request.getMinPrice() != null || request.getMaxPrice() != null) {
+            query.add(priceRange(request.getMinPrice(), request.getMaxPrice()), BooleanClause.Occur.FILTER);
+        }
+        if (Boolean.TRUE.equals(request.getInStock())) {
+            query.add(new TermQuery(new Term(LuceneProductIndex.IN_STOCK, "true")), BooleanClause.Occur.FILTER);
+        }
+        if (request.getMinRating() != null) {
+            query.add(DoublePoint.newRangeQuery(LuceneProductIndex.RATING, request.getMinRating(), Double.POSITIVE_INFINITY),
+                    BooleanClause.Occur.FILTER);
+        }
+
+        Page<ProductSearchHit> page = search(query.build(), sort(request.getSort()),
+                PageRequest.of(request.getPage(), request.getSize()));
+        FacetedSearchResponse response = new FacetedSearchResponse();
+        response.setResults(new PagedResponse<>(page));
+        return response;
+    }
+
+    @Override
+    public Map<String, List<SuggestionDto>> getSuggestions(String prefix, int limit) {
+        return productSuggester.suggest(prefix, limit, "lucene", (normalized, max) -> {
+            try {
+                return index.suggest(normalized, max);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void indexProduct(Long productId) {
+        List<ProductDocument> documents = productDocumentMapper.load(List.of(productId));
+        apply(documents, documents.isEmpty() ? List.of(productId) : List.of());
+    }
+
+    @Override
+    public void deleteProductFromIndex(Long productId) {
+        apply(List.of(), List.of(productId));
+    }
+
+    @Override
+    public ReindexStatusDto reindexAllProducts() {
+        if (rebuilding.compareAndSet(false, true)) {
+            rebuilt.set(0);
+            ReindexStatusDto status = status("RUNNING");
+            status.setStartedAt(LocalDateTime.now());
+            lastRebuild = status;
+            rebuilder.submit(this::rebuild);
+        }
+        return getReindexStatus();
+    }
+
+    @Override
+    public ReindexStatusDto resumeReindex() {
+        // Reconstruction en un seul passage : reprendre revient à recommencer
+        return reindexAllProducts();
+    }
+
+    @Override
+    public ReindexStatusDto getReindexStatus() {
+        ReindexStatusDto status = lastRebuild;
+        if (status == null) {
+            return status("IDLE");
+        }
+        status.setIndexedDocuments(rebuilt.get());
+        return status;
+    }
+
+    @Override
+    public int replayIndexingDeadLetters() {
+        return productIndexQueue.replayDeadLetters();
+    }
+
+    @Override
+    public long countIndexedProducts() {
+        try {
+            return index.count();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (countIndexedProducts() == 0) {
+            log.info("Embedded product index is empty, rebuilding it from the database");
+            reindexAllProducts();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    private void rebuild() {
+        ReindexStatusDto status = lastRebuild;
+        try {
+            // Nouvelle génération, l'index actuel reste servi jusqu'à la bascule
+            index.startRebuild();
+            long afterId = 0L;
+            while (true) {
+                List<Long> ids = productRepository.findIdsInRange(afterId, Long.MAX_VALUE, PageRequest.of(0, chunkSize));
+                if (ids.isEmpty()) {
+                    break;
+                }
+                index.addRebuilt(productDocumentMapper.load(ids));
+                rebuilt.addAndGet(ids.size());
+                afterId = ids.get(ids.size() - 1);
+            }
+            index.finishRebuild();
+            status.setState("COMPLETED");
+            log.info("Embedded product index rebuilt with {} products", rebuilt.get());
+        } catch (IOException | RuntimeException e) {
+            log.error("Embedded product index rebuild failed", e);
+            index.abortRebuild();
+            status.setState("FAILED");
+            status.setError(e.getMessage());
+        } finally {
+            status.setFinishedAt(LocalDateTime.now());
+            rebuilding.set(false);
+        }
+    }
+
+    private void apply(List<ProductDocument> documents, List<Long> deletedIds) {
+        try {
+            indexSync.apply(documents, deletedIds);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Page<ProductSearchHit> search(Query query, Pageable pageable) {
+        return search(query, sort(pageable), pageable);
+    }
+
+    private Page<ProductSearchHit> search(Query query, Sort sort, Pageable pageable) {
+        try {
+            return index.search(query, sort, pageable);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Chaque terme peut correspondre dans n'importe quel champ, comme un multi_match best_fields en OR
+    private Query text(String text, Map<String, Float> boosts) {
+        BooleanQuery.Builder query = new BooleanQuery.Builder();
+        Set<String> seen = new HashSet<>();
+        boosts.forEach((field, boost) -> {
+            for (String term : index.analyze(field, text)) {
+                if (seen.add(field + ':' + term)) {
+                    query.add(new BoostQuery(new TermQuery(new Term(field, term)), boost), BooleanClause.Occur.SHOULD);
+                }
+            }
+        });
+        return query.build();
+    }
+
+    private static Query activeOnly(Query query) {
+        return new BooleanQuery.Builder()
+                .add(query, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(LuceneProductIndex.ACTIVE, "true")), BooleanClause.Occur.FILTER)
+                .build();
+    }
+
+    private static Query priceRange(BigDecimal minPrice, BigDecimal maxPrice) {
+        return DoublePoint.newRangeQuery(LuceneProductIndex.PRICE,
+                minPrice != null ? minPrice.doubleValue() : Double.NEGATIVE_INFINITY,
+                maxPrice != null ? maxPrice.doubleValue() : Double.POSITIVE_INFINITY);
+    }
+
+    private static Sort sort(String sort) {
+        if (sort == null || sort.isBlank() || sort.equals("relevance") || sort.equals("best_match")) {
+            return null;
+        }
+        return switch (sort) {
+            case "price_asc" -> sortBy(LuceneProductIndex.PRICE, false);
+            case "price_desc" -> sortBy(LuceneProductIndex.PRICE, true);
+            case "newest" -> sortBy(LuceneProductIndex.CREATED_AT, true);
+            case "rating" -> sortBy(LuceneProductIndex.RATING, true);
+            case "popularity" -> sortBy(LuceneProductIndex.SALES_COUNT, true);
+            default -> throw new BadRequestException("Unknown sort: " + sort);
+        };
+    }
+
+    private static Sort sort(Pageable pageable) {
+        List<SortField> fields = new ArrayList<>();
+        for (org.springframework.data.domain.Sort.Order order : pageable.getSort()) {
+            if (SORTABLE.contains(order.getProperty())) {
+                fields.add(sortField(order.getProperty(), order.isDescending()));
+            }
+        }
+        if (fields.isEmpty()) {
+            return null;
+        }
+        fields.add(new SortField(LuceneProductIndex.ID, SortField.Type.LONG));
+        return new Sort(fields.toArray(SortField[]::new));
+    }
+
+    private static Sort sortBy(String field, boolean descending) {
+        return new Sort(sortField(field, descending), new SortField(LuceneProductIndex.ID, SortField.Type.LONG));
+    }
+
+    private static SortField sortField(String field, boolean descending) {
+        boolean decimal = field.equals(LuceneProductIndex.PRICE) || field.equals(LuceneProductIndex.RATING);
+        SortField sortField = new SortField(field, decimal ? SortField.Type.DOUBLE : SortField.Type.LONG, descending);
+        // Valeurs absentes en fin de liste, quel que soit le sens
+        sortField.setMissingValue(decimal
+                ? (descending ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY)
+                : (descending ? Long.MIN_VALUE : Long.MAX_VALUE));
+        return sortField;
+    }
+
+    private static ReindexStatusDto status(String state) {
+        ReindexStatusDto status = new ReindexStatusDto();
+        status.setState(state);
+        status.setTargetIndex("lucene");
+        return status;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.OrderItemRepository;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import com.example.marketplace.repository.jpa.ReviewRepository;
+import com.example.marketplace.service.category.CategoryNode;
+import com.example.marketplace.service.category.CategoryTree;
+import com.example.marketplace.service.category.CategoryTreeManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Builds {@link ProductDocument}s for a batch of products with a fixed number of set-based queries
+ * (products with their store, category links, first image, ratings, sales) instead of walking the
+ * entity associations. Category names and paths come from the in-memory category tree.
+ * <p>
+ * A product is indexed as active only while its store is active as well, and inactive categories
+ * lend neither their name nor their path to its document. Store and category writes requeue the
+ * products they affect (see {@link ProductIndexQueue#enqueueStore}).
+ */
+@Component
+@RequiredArgsConstructor
+public class ProductDocumentMapper {
+
+    private final ProductRepository productRepository;
+    private final ReviewRepository reviewRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final CategoryTreeManager categoryTreeManager;
+
+    @Value("${marketplace.search.recent-sales-window:30d}")
+    private Duration recentSalesWindow;
+
+    /**
+     * Returns the documents of the products that still exist, in no particular order.
+     */
+    @Transactional(readOnly = true)
+    public List<ProductDocument> load(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, List<Long>> categoryIds = new HashMap<>();
+        for (Object[] row : productRepository.findCategoryLinksByProductIdIn(productIds)) {
+            categoryIds.computeIfAbsent(toLong(row[0]), id -> new ArrayList<>()).add(toLong(row[1]));
+        }
+        Map<Long, String> images = new HashMap<>();
+        for (Object[] row : productRepository.findFirstImagesByProductIdIn(productIds)) {
+            images.put(toLong(row[0]), (String) row[1]);
+        }
+        Map<Long, Object[]> ratings = new HashMap<>();
+        for (Object[] row : reviewRepository.findRatingsByProductIdIn(productIds)) {
+            ratings.put(toLong(row[0]), row);
+        }
+        Map<Long, Object[]> sales = new HashMap<>();
+        LocalDateTime recentSince = LocalDateTime.now().minus(recentSalesWindow);
+        for (Object[] row : orderItemRepository.findSalesByProductIdIn(productIds, recentSince)) {
+            sales.put(toLong(row[0]), row);
+        }
+
+        CategoryTree tree = categoryTreeManager.getTree();
+        List<ProductDocument> documents = new ArrayList<>(productIds.size());
+        for (Object[] row : productRepository.findSearchRowsByIdIn(productIds)) {
+            Long id = toLong(row[0]);
+            Integer quantity = (Integer) row[4];
+            ProductDocument document = ProductDocument.builder()
+                    .id(id)
+                    .name((String) row[1])
+                    .description((String) row[2])
+                    .price((BigDecimal) row[3])
+                    .inStock(quantity != null && quantity > 0)
+                    .featured((Boolean) row[5])
+                    .active(Boolean.TRUE.equals(row[6]) && !Boolean.FALSE.equals(row[11]))
+                    .createdAt((LocalDateTime) row[7])
+                    .updatedAt((LocalDateTime) row[8])
+                    .storeId(toLong(row[9]))
+                    .storeName((String) row[10])
+                    .imageUrl(images.get(id))
+                    .build();
+
+            applyCategories(document, categoryIds.getOrDefault(id, List.of()), tree);
+
+            Object[] rating = ratings.get(id);
+            document.setRating(rating != null && rating[1] != null ? ((Number) rating[1]).doubleValue() : null);
+            document.setReviewCount(rating != null ? ((Number) rating[2]).intValue() : 0);
+
+            Object[] sold = sales.get(id);
+            document.setSalesCount(sold != null && sold[1] != null ? ((Number) sold[1]).longValue() : 0L);
+            document.setRecentSalesCount(sold != null && sold[2] != null ? ((Number) sold[2]).longValue() : 0L);
+
+            if (Boolean.TRUE.equals(document.getActive())) {
+                Completion suggest = new Completion(SuggestionSnapshot.inputs(document.getName()));
+                suggest.setWeight(suggestionWeight(document.getSalesCount(), document.getRecentSalesCount()));
+                document.setNameSuggest(suggest);
+            }
+
+            documents.add(document);
+        }
+        return documents;
+    }
+
+    /**
+     * Popularity weight of a product for autocomplete, recent sales counting more.
+     * ProductRepository.findSuggestionCandidates orders products by the same formula.
+     */
+    public static int suggestionWeight(long salesCount, long recentSalesCount) {
+        return (int) Math.min(Integer.MAX_VALUE, 1 + salesCount + 4 * recentSalesCount);
+    }
+
+    private void applyCategories(ProductDocument document, List<Long> categoryIds, CategoryTree tree) {
+        Set<Long> treeIds = new LinkedHashSet<>();
+        for (Long categoryId : categoryIds) {
+            document.getCategoryIds().add(categoryId);
+            tree.find(categoryId).ifPresent(node -> {
+                if (node.isActive()) {
+                    document.getCategoryNames().add(node.getName());
+                    List<CategoryNode> path = tree.getPath(categoryId);
+                    document.getCategoryPaths().add(path.stream()
+                            .map(CategoryNode::getName)
+                            .collect(Collectors.joining(" > ")));
+                }
+                treeIds.addAll(node.getPath());
+            });
+        }
+        document.getCategoryTreeIds().addAll(treeIds);
+    }
+
+    private static Long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : null;
+    }
+}
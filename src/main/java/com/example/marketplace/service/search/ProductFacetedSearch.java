@@ -0,0 +1,343 @@
+package com.example.marketplace.service.search;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.AggregationRange;
+import co.elastic.clients.elasticsearch._types.aggregations.LongTermsBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.RangeBucket;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.example.marketplace.dto.PagedResponse;
+import com.example.marketplace.dto.search.FacetBucketDto;
+import com.example.marketplace.dto.search.FacetedSearchResponse;
+import com.example.marketplace.dto.search.ProductSearchHit;
+import com.example.marketplace.dto.search.ProductSearchRequest;
+import com.example.marketplace.exception.BadRequestException;
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.service.category.CategoryNode;
+import com.example.marketplace.service.category.CategoryTree;
+import com.example.marketplace.service.category.CategoryTreeManager;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHitSupport;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query.PointInTime;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Product search returning the result page and all filter facets in a single request.
+ * <p>
+ * Selected facets are applied as a {@code post_filter}, after aggregation. Each facet aggregation
+ * is wrapped in a filter of the <em>other</em> selected facets, so choosing a store narrows the
+ * category counts but keeps every store of the query listed with its own count.
+ */
+@Component
+@ConditionalOnExpression("'${marketplace.search.engine:elasticsearch}' != 'lucene'")
+@RequiredArgsConstructor
+public class ProductFacetedSearch {
+
+    static final int MAX_PAGE_SIZE = 100;
+    static final int MAX_RESULT_WINDOW = 10_000;
+
+    private static final String CATEGORY = "categories";
+    private static final String STORE = "stores";
+    private static final String PRICE = "priceRanges";
+    private static final String RATING = "ratings";
+    private static final String IN_STOCK = "inStock";
+    private static final String VALUES = "values";
+    // Pertinence textuelle pondérée par les ventes, la note, le stock et la nouveauté
+    private static final String BEST_MATCH = "best_match";
+    private static final double[] RATING_FLOORS = {4, 3, 2, 1};
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final CategoryTreeManager categoryTreeManager;
+    private final ProductRanking productRanking;
+    private final SearchMetrics searchMetrics;
+
+    @Value("${marketplace.search.facets.size:20}")
+    private int facetSize;
+
+    @Value("${marketplace.search.facets.price-bounds:25,50,100,250,500}")
+    private List<Double> priceBounds;
+
+    @Value("${marketplace.search.cursor.pit-keep-alive:2m}")
+    private Duration pitKeepAlive;
+
+    public FacetedSearchResponse search(ProductSearchRequest request) {
+        SearchCursor cursor = StringUtils.hasText(request.getCursor()) ? SearchCursor.decode(request.getCursor()) : null;
+        int fingerprint = fingerprint(request);
+        if (cursor != null && cursor.fingerprint() != fingerprint) {
+            throw new BadRequestException("The cursor does not belong to this search");
+        }
+        Pageable pageable = pageable(request, cursor != null);
+        Map<String, Query> selected = selectedFilters(request);
+
+        Query query = Query.of(q -> q.bool(b -> b
+                .must(textQuery(request.getQ()))
+                .filter(term("active", true))));
+        if (BEST_MATCH.equals(request.getSort())) {
+            query = productRanking.boost(query);
+        }
+
+        NativeQueryBuilder builder = NativeQuery.builder()
+                .withQuery(query)
+                .withFilter(and(selected, null, null))
+                .withSort(sort(request.getSort()))
+                .withPageable(pageable)
+                .withSourceFilter(ProductSearchHits.sourceFilter());
+        if (request.isHighlight() && StringUtils.hasText(request.getQ())) {
+            builder.withHighlightQuery(ProductSearchHits.highlightQuery());
+        }
+
+        if (cursor != null) {
+            // Pages suivantes : ni facettes ni total exact, le coût ne dépend pas de la profondeur
+            builder.withSearchAfter(cursor.after()).withTrackTotalHits(false);
+        } else {
+            addFacets(builder, selected);
+        }
+
+        String pit = cursor != null ? cursor.pit() : null;
+        if (pit == null && cursor == null && request.isPit()) {
+            pit = elasticsearchOperations.openPointInTime(IndexCoordinates.of(ProductReindexer.ALIAS), pitKeepAlive);
+        }
+        if (pit != null) {
+            builder.withPointInTime(new PointInTime(pit, pitKeepAlive));
+        }
+
+        NativeQuery nativeQuery = builder.build();
+        SearchHits<ProductDocument> hits = searchMetrics.engine("elasticsearch",
+                () -> elasticsearchOperations.search(nativeQuery, ProductDocument.class));
+        searchMetrics.took(hits, () -> SearchMetrics.render(nativeQuery));
+        Page<ProductSearchHit> page = ProductSearchHits.toPage(SearchHitSupport.searchPageFor(hits, pageable));
+
+        FacetedSearchResponse response = new FacetedSearchResponse();
+        response.setResults(new PagedResponse<>(page));
+        if (hits.getAggregations() instanceof ElasticsearchAggregations aggregations) {
+            readFacets(aggregations, request, response);
+        }
+
+        String nextPit = hits.getPointInTimeId() != null ? hits.getPointInTimeId() : pit;
+        if (hits.getSearchHits().size() == pageable.getPageSize()) {
+            List<Object> after = hits.getSearchHit(hits.getSearchHits().size() - 1).getSortValues();
+            response.setNextCursor(new SearchCursor(after, nextPit, fingerprint).encode());
+        } else if (nextPit != null) {
+            // Dernière page : le point-in-time n'a plus d'usage
+            elasticsearchOperations.closePointInTime(nextPit);
+        }
+        return response;
+    }
+
+    private void addFacets(NativeQueryBuilder builder, Map<String, Query> selected) {
+        builder.withAggregation(CATEGORY, facet(selected, CATEGORY, Aggregation.of(a -> a
+                        .terms(t -> t.field("categoryIds").size(facetSize)))))
+                .withAggregation(STORE, facet(selected, STORE, Aggregation.of(a -> a
+                        .terms(t -> t.field("storeId").size(facetSize))
+                        .aggregations("name", name -> name.terms(t -> t.field("storeName.keyword").size(1))))))
+                .withAggregation(PRICE, facet(selected, PRICE, Aggregation.of(a -> a
+                        .range(r -> r.field("price").ranges(priceRanges())))))
+                .withAggregation(RATING, facet(selected, RATING, Aggregation.of(a -> a
+                        .range(r -> r.field("rating").ranges(ratingRanges())))))
+                .withAggregation(IN_STOCK, Aggregation.of(a -> a
+                        .filter(and(selected, IN_STOCK, term("inStock", true)))))
+                .withTrackTotalHits(true);
+    }
+
+    private Pageable pageable(ProductSearchRequest request, boolean byCursor) {
+        if (request.getSize() < 1 || request.getSize() > MAX_PAGE_SIZE || request.getPage() < 0) {
+            throw new BadRequestException("size must be between 1 and " + MAX_PAGE_SIZE + " and page positive");
+        }
+        if (byCursor) {
+            // La position vient du curseur : pas de from
+            return PageRequest.of(0, request.getSize());
+        }
+        if ((long) (request.getPage() + 1) * request.getSize() > MAX_RESULT_WINDOW) {
+            throw new BadRequestException("Results beyond the first " + MAX_RESULT_WINDOW
+                    + " are only reachable with a cursor");
+        }
+        return PageRequest.of(request.getPage(), request.getSize());
+    }
+
+    // Empreinte des critères qui fixent l'ordre des résultats : un curseur ne vaut que pour eux
+    private static int fingerprint(ProductSearchRequest request) {
+        return SearchResultCache.key("cursor", request.getQ(), request.getCategoryIds(), request.getStoreIds(),
+                request.getMinPrice(), request.getMaxPrice(), request.getInStock(), request.getMinRating(),
+                request.getSort()).hashCode();
+    }
+
+    private Map<String, Query> selectedFilters(ProductSearchRequest request) {
+        Map<String, Query> filters = new LinkedHashMap<>();
+        if (request.getCategoryIds() != null && !request.getCategoryIds().isEmpty()) {
+            filters.put(CATEGORY, terms("categoryTreeIds", request.getCategoryIds()));
+        }
+        if (request.getStoreIds() != null && !request.getStoreIds().isEmpty()) {
+            filters.put(STORE, terms("storeId", request.getStoreIds()));
+        }
+        if (request.getMinPrice() != null || request.getMaxPrice() != null) {
+            filters.put(PRICE, Query.of(q -> q.range(r -> r.number(n -> {
+                n.field("price");
+                if (request.getMinPrice() != null) {
+                    n.gte(request.getMinPrice().doubleValue());
+                }
+                if (request.getMaxPrice() != null) {
+                    n.lte(request.getMaxPrice().doubleValue());
+                }
+                return n;
+            }))));
+        }
+        if (Boolean.TRUE.equals(request.getInStock())) {
+            filters.put(IN_STOCK, term("inStock", true));
+        }
+        if (request.getMinRating() != null) {
+            filters.put(RATING, Query.of(q -> q.range(r -> r.number(n -> n.field("rating").gte(request.getMinRating())))));
+        }
+        return filters;
+    }
+
+    // Agrégation d'une facette sous le filtre des autres facettes sélectionnées
+    private Aggregation facet(Map<String, Query> selected, String name, Aggregation values) {
+        return Aggregation.of(a -> a
+                .filter(and(selected, name, null))
+                .aggregations(VALUES, values));
+    }
+
+    private Query and(Map<String, Query> selected, String excluded, Query extra) {
+        List<Query> filters = new ArrayList<>();
+        selected.forEach((name, filter) -> {
+            if (!name.equals(excluded)) {
+                filters.add(filter);
+            }
+        });
+        if (extra != null) {
+            filters.add(extra);
+        }
+        if (filters.isEmpty()) {
+            return Query.of(q -> q.matchAll(m -> m));
+        }
+        return Query.of(q -> q.bool(b -> b.filter(filters)));
+    }
+
+    private static Query textQuery(String text) {
+        if (!StringUtils.hasText(text)) {
+            return Query.of(q -> q.matchAll(m -> m));
+        }
+        return Query.of(q -> q.multiMatch(m -> m
+                .query(text)
+                .fields("name^3", "categoryNames^2", "description", "storeName^0.5")));
+    }
+
+    private static Query term(String field, boolean value) {
+        return Query.of(q -> q.term(t -> t.field(field).value(value)));
+    }
+
+    private static Query terms(String field, List<Long> values) {
+        List<FieldValue> fieldValues = values.stream().map(FieldValue::of).toList();
+        return Query.of(q -> q.terms(t -> t.field(field).terms(v -> v.value(fieldValues))));
+    }
+
+    // Toujours départagé par l'id : l'ordre est total, condition de search_after
+    private static List<SortOptions> sort(String sort) {
+        SortOptions primary;
+        if (sort == null || sort.isBlank() || sort.equals("relevance") || sort.equals(BEST_MATCH)) {
+            primary = SortOptions.of(s -> s.score(score -> score.order(SortOrder.Desc)));
+        } else {
+            primary = switch (sort) {
+                case "price_asc" -> sortBy("price", SortOrder.Asc);
+                case "price_desc" -> sortBy("price", SortOrder.Desc);
+                case "newest" -> sortBy("createdAt", SortOrder.Desc);
+                case "rating" -> sortBy("rating", SortOrder.Desc);
+                case "popularity" -> sortBy("salesCount", SortOrder.Desc);
+                default -> throw new BadRequestException("Unknown sort: " + sort);
+            };
+        }
+        return List.of(primary, sortBy("id", SortOrder.Asc));
+    }
+
+    private static SortOptions sortBy(String field, SortOrder order) {
+        return SortOptions.of(s -> s.field(f -> f.field(field).order(order)));
+    }
+
+    private List<AggregationRange> priceRanges() {
+        List<AggregationRange> ranges = new ArrayList<>();
+        Double from = null;
+        for (Double bound : priceBounds) {
+            Double lower = from;
+            ranges.add(AggregationRange.of(r -> lower != null ? r.from(lower).to(bound) : r.to(bound)));
+            from = bound;
+        }
+        Double last = from;
+        ranges.add(AggregationRange.of(r -> last != null ? r.from(last) : r));
+        return ranges;
+    }
+
+    private static List<AggregationRange> ratingRanges() {
+        List<AggregationRange> ranges = new ArrayList<>();
+        for (double floor : RATING_FLOORS) {
+            ranges.add(AggregationRange.of(r -> r.from(floor)));
+        }
+        return ranges;
+    }
+
+    private void readFacets(ElasticsearchAggregations aggregations, ProductSearchRequest request,
+                            FacetedSearchResponse response) {
+        CategoryTree tree = categoryTreeManager.getTree();
+        for (LongTermsBucket bucket : values(aggregations, CATEGORY).lterms().buckets().array()) {
+            long categoryId = bucket.key();
+            String label = tree.find(categoryId).map(CategoryNode::getName).orElse(null);
+            response.getCategories().add(new FacetBucketDto(Long.toString(categoryId), label, bucket.docCount(),
+                    request.getCategoryIds() != null && request.getCategoryIds().contains(categoryId)));
+        }
+
+        for (LongTermsBucket bucket : values(aggregations, STORE).lterms().buckets().array()) {
+            long storeId = bucket.key();
+            Aggregate names = bucket.aggregations().get("name");
+            String label = names != null && !names.sterms().buckets().array().isEmpty()
+                    ? names.sterms().buckets().array().get(0).key().stringValue()
+                    : null;
+            response.getStores().add(new FacetBucketDto(Long.toString(storeId), label, bucket.docCount(),
+                    request.getStoreIds() != null && request.getStoreIds().contains(storeId)));
+        }
+
+        for (RangeBucket bucket : values(aggregations, PRICE).range().buckets().array()) {
+            boolean selected = (request.getMinPrice() != null || request.getMaxPrice() != null)
+                    && Objects.equals(bucket.from(), toDouble(request.getMinPrice()))
+                    && Objects.equals(bucket.to(), toDouble(request.getMaxPrice()));
+            response.getPriceRanges().add(new FacetBucketDto(bucket.key(), bucket.key(), bucket.docCount(), selected));
+        }
+
+        for (RangeBucket bucket : values(aggregations, RATING).range().buckets().array()) {
+            boolean selected = request.getMinRating() != null && bucket.from() != null
+                    && bucket.from().equals(request.getMinRating());
+            response.getRatings().add(new FacetBucketDto(bucket.key(), bucket.key(), bucket.docCount(), selected));
+        }
+
+        response.setInStockCount(aggregations.get(IN_STOCK).aggregation().getAggregate().filter().docCount());
+    }
+
+    private static Aggregate values(ElasticsearchAggregations aggregations, String facet) {
+        return aggregations.get(facet).aggregation().getAggregate().filter().aggregations().get(VALUES);
+    }
+
+    private static Double toDouble(BigDecimal value) {
+        return value != null ? value.doubleValue() : null;
+    }
+}
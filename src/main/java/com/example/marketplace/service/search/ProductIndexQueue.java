@@ -0,0 +1,322 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import com.example.marketplace.util.TransactionUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongFunction;
+
+/**
+ * Keeps the product index in sync with committed product writes.
+ * <p>
+ * Product ids are queued once their transaction commits. Repeated writes to the same product
+ * before the next flush collapse into a single entry. Every flush reloads the queued products and
+ * writes them in one bulk request: existing products are upserted, missing ones are deleted.
+ * Failed ids are retried on the next flushes and moved to a Redis dead-letter set after
+ * {@code max-retries}. While a full reindex runs, on any node, writes also go to the index being
+ * built. When the embedded Lucene engine is enabled, each batch is applied to it as well and
+ * announced to the other nodes; with {@code engine=lucene} it is the only index written.
+ * <p>
+ * Documents also carry store and category data: a write to a store or a category queues every
+ * product it shows in, listed page by page by the flushing thread rather than by the writer.
+ * <p>
+ * Ids still queued at shutdown are flushed one last time, and those that could not be indexed are
+ * handed over through a Redis set that the other nodes drain on their next flush.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductIndexQueue {
+
+    static final String DEAD_LETTER_KEY = "search:indexing:dead-letter";
+    static final String HANDOFF_KEY = "search:indexing:handoff";
+
+    private final ProductDocumentMapper productDocumentMapper;
+    private final ProductRepository productRepository;
+    private final ObjectProvider<ElasticsearchOperations> elasticsearchOperations;
+    private final ObjectProvider<ProductReindexer> productReindexer;
+    private final StringRedisTemplate redisTemplate;
+    private final SearchResultCache searchResultCache;
+    private final ObjectProvider<LuceneIndexSync> embeddedIndex;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.search.indexing.batch-size:500}")
+    private int batchSize;
+
+    @Value("${marketplace.search.indexing.max-retries:5}")
+    private int maxRetries;
+
+    // Id produit -> instant (nanoTime) de la plus ancienne écriture non encore indexée
+    private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Integer> attempts = new ConcurrentHashMap<>();
+    // Listes de produits à mettre en file, page par page d'ids, au prochain vidage
+    private final Queue<LongFunction<List<Long>>> scans = new ConcurrentLinkedQueue<>();
+
+    private Timer lagTimer;
+    private Counter indexedCounter;
+    private Counter deadLetterCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        lagTimer = Timer.builder("marketplace.search.indexing.lag")
+                .description("Delay between a product write commit and its indexing")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        indexedCounter = Counter.builder("marketplace.search.indexing.documents")
+                .description("Products upserted or deleted by incremental indexing")
+                .register(meterRegistry);
+        deadLetterCounter = Counter.builder("marketplace.search.indexing.dead-lettered")
+                .description("Products moved to the indexing dead-letter set")
+                .register(meterRegistry);
+        Gauge.builder("marketplace.search.indexing.pending", pending, Map::size)
+                .description("Products waiting to be indexed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the product for indexing once the current transaction commits.
+     */
+    public void enqueue(Long productId) {
+        TransactionUtils.afterCommit(() -> pending.putIfAbsent(productId, System.nanoTime()));
+    }
+
+    /**
+     * Queues every product of the store once the current transaction commits: their documents
+     * carry its name and status.
+     */
+    public void enqueueStore(Long storeId) {
+        TransactionUtils.afterCommit(() -> scans.add(afterId ->
+                productRepository.findIdsByStoreId(storeId, afterId, PageRequest.of(0, batchSize))));
+    }
+
+    /**
+     * Queues every product linked to one of the categories or to one of their descendants once the
+     * current transaction commits: their documents carry the names and paths of the whole chain.
+     */
+    public void enqueueCategorySubtrees(Collection<Long> categoryIds) {
+        if (categoryIds.isEmpty()) {
+            return;
+        }
+        List<Long> roots = List.copyOf(categoryIds);
+        TransactionUtils.afterCommit(() -> scans.add(afterId ->
+                productRepository.findIdsInCategorySubtrees(roots, afterId, batchSize)));
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${marketplace.search.indexing.flush-interval:1000}")
+    public void flush() {
+        adoptHandedOver();
+        expandScans();
+        Map<Long, Long> batch;
+        do {
+            batch = drain();
+            if (!batch.isEmpty()) {
+                flushBatch(batch);
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * Flushes what is still queued and hands the ids that could not be indexed over to the other nodes.
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (pending.isEmpty()) {
+            return;
+        }
+        String[] ids = pending.keySet().stream().map(String::valueOf).toArray(String[]::new);
+        try {
+            redisTemplate.opsForSet().add(HANDOFF_KEY, ids);
+            log.info("{} products left to index handed over to the other nodes", ids.length);
+        } catch (DataAccessException e) {
+            log.error("Could not hand over {} products left to index, they stay out of sync until the next reindex: {}",
+                    ids.length, e.getMessage());
+        }
+    }
+
+    /**
+     * Queues every dead-lettered product again and returns how many were replayed.
+     */
+    public int replayDeadLetters() {
+        List<String> ids = redisTemplate.opsForSet().pop(DEAD_LETTER_KEY, Long.MAX_VALUE);
+        if (ids == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        ids.forEach(id -> pending.putIfAbsent(Long.valueOf(id), now));
+        log.info("Replaying {} dead-lettered products", ids.size());
+        return ids.size();
+    }
+
+    // Ids laissés par un noeud arrêté avant d'avoir pu les indexer
+    private void adoptHandedOver() {
+        List<String> ids;
+        try {
+            ids = redisTemplate.opsForSet().pop(HANDOFF_KEY, Long.MAX_VALUE);
+        } catch (DataAccessException e) {
+            log.debug("Could not read handed over products: {}", e.getMessage());
+            return;
+        }
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        ids.forEach(id -> pending.putIfAbsent(Long.valueOf(id), now));
+        log.info("Adopted {} products handed over by a stopped node", ids.size());
+    }
+
+    private void expandScans() {
+        LongFunction<List<Long>> scan;
+        while ((scan = scans.poll()) != null) {
+            try {
+                long afterId = 0L;
+                List<Long> ids;
+                do {
+                    ids = scan.apply(afterId);
+                    long now = System.nanoTime();
+                    ids.forEach(id -> pending.putIfAbsent(id, now));
+                    if (!ids.isEmpty()) {
+                        afterId = ids.get(ids.size() - 1);
+                    }
+                } while (ids.size() == batchSize);
+            } catch (DataAccessException e) {
+                // Remise en file entière : les produits déjà ajoutés seront simplement réindexés deux fois
+                log.warn("Could not list the products of a store or category write, retrying later: {}", e.getMessage());
+                scans.add(scan);
+                return;
+            }
+        }
+    }
+
+    private Map<Long, Long> drain() {
+        Map<Long, Long> batch = new HashMap<>();
+        Iterator<Map.Entry<Long, Long>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && batch.size() < batchSize) {
+            Map.Entry<Long, Long> entry = iterator.next();
+            // Retrait conditionnel : une écriture concurrente réinsère l'id pour le lot suivant
+            if (pending.remove(entry.getKey(), entry.getValue())) {
+                batch.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return batch;
+    }
+
+    private void flushBatch(Map<Long, Long> batch) {
+        // Sans Elasticsearch (engine=lucene), l'index embarqué est le seul index
+        ElasticsearchOperations operations = elasticsearchOperations.getIfAvailable();
+        List<IndexCoordinates> targets = new ArrayList<>();
+        if (operations != null) {
+            targets.add(IndexCoordinates.of(ProductReindexer.ALIAS));
+            String reindexTarget = productReindexer.getObject().getTargetIndex();
+            if (reindexTarget != null) {
+                targets.add(IndexCoordinates.of(reindexTarget));
+            }
+        }
+
+        try {
+            List<ProductDocument> documents = productDocumentMapper.load(batch.keySet());
+            Set<Long> deleted = new HashSet<>(batch.keySet());
+            List<IndexQuery> queries = new ArrayList<>(documents.size());
+            for (ProductDocument document : documents) {
+                deleted.remove(document.getId());
+                queries.add(new IndexQueryBuilder()
+                        .withId(document.getId().toString())
+                        .withObject(document)
+                        .build());
+            }
+
+            LuceneIndexSync embedded = embeddedIndex.getIfAvailable();
+            if (embedded != null) {
+                embedded.apply(documents, deleted);
+            }
+
+            for (IndexCoordinates target : targets) {
+                if (!queries.isEmpty()) {
+                    operations.bulkIndex(queries, target);
+                }
+                if (!deleted.isEmpty()) {
+                    NativeQuery byIds = NativeQuery.builder()
+                            .withIds(deleted.stream().map(String::valueOf).toList())
+                            .build();
+                    operations.delete(DeleteQuery.builder(byIds).build(), ProductDocument.class, target);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            retryLater(batch, e);
+            return;
+        }
+        searchResultCache.indexChanged(batch.keySet());
+
+        long now = System.nanoTime();
+        batch.forEach((productId, enqueuedAt) -> {
+            attempts.remove(productId);
+            lagTimer.record(Duration.ofNanos(now - enqueuedAt));
+        });
+        indexedCounter.increment(batch.size());
+    }
+
+    private void retryLater(Map<Long, Long> batch, Exception error) {
+        log.warn("Indexing of {} products failed: {}", batch.size(), error.getMessage());
+        List<String> exhausted = new ArrayList<>();
+        batch.forEach((productId, enqueuedAt) -> {
+            int attempt = attempts.merge(productId, 1, Integer::sum);
+            if (attempt >= maxRetries) {
+                attempts.remove(productId);
+                exhausted.add(productId.toString());
+            } else {
+                pending.putIfAbsent(productId, enqueuedAt);
+            }
+        });
+
+        if (exhausted.isEmpty()) {
+            return;
+        }
+        deadLetterCounter.increment(exhausted.size());
+        try {
+            redisTemplate.opsForSet().add(DEAD_LETTER_KEY, exhausted.toArray(String[]::new));
+            log.error("{} products moved to the indexing dead-letter set after {} attempts",
+                    exhausted.size(), maxRetries);
+        } catch (DataAccessException e) {
+            log.error("Could not dead-letter products {}, they stay out of sync until the next reindex: {}",
+                    exhausted, e.getMessage());
+        }
+    }
+}
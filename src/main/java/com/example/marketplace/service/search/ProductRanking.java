@@ -0,0 +1,89 @@
+package com.example.marketplace.service.search;
+
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionBoostMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScore;
+import co.elastic.clients.elasticsearch._types.query_dsl.FunctionScoreMode;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Business-aware relevance: the text score is multiplied by {@code 1 + sum(signals)}, where the
+ * signals are the recent sales velocity (log-damped), the average rating, availability and a
+ * recency decay on the listing date. Each signal has a configurable weight; a zero weight removes it.
+ * <p>
+ * Sales and ratings are read from the indexed document and kept fresh by {@link ProductSignalRefresher}.
+ */
+@Component
+public class ProductRanking {
+
+    @Value("${marketplace.search.ranking.sales-weight:1.0}")
+    private double salesWeight;
+
+    @Value("${marketplace.search.ranking.rating-weight:0.5}")
+    private double ratingWeight;
+
+    @Value("${marketplace.search.ranking.stock-weight:0.5}")
+    private double stockWeight;
+
+    @Value("${marketplace.search.ranking.recency-weight:0.3}")
+    private double recencyWeight;
+
+    @Value("${marketplace.search.ranking.recency-scale:30d}")
+    private Duration recencyScale;
+
+    @Value("${marketplace.search.ranking.recency-offset:7d}")
+    private Duration recencyOffset;
+
+    @Value("${marketplace.search.ranking.recency-decay:0.5}")
+    private double recencyDecay;
+
+    public Query boost(Query textQuery) {
+        List<FunctionScore> functions = new ArrayList<>();
+        // Terme constant : sans signal, le score reste celui du texte
+        functions.add(FunctionScore.of(f -> f.filter(q -> q.matchAll(m -> m)).weight(1.0)));
+        if (salesWeight > 0) {
+            functions.add(FunctionScore.of(f -> f
+                    .fieldValueFactor(v -> v.field("recentSalesCount").modifier(FieldValueFactorModifier.Log1p).missing(0.0))
+                    .weight(salesWeight)));
+        }
+        if (ratingWeight > 0) {
+            // Note ramenée sur [0, 1]
+            functions.add(FunctionScore.of(f -> f
+                    .fieldValueFactor(v -> v.field("rating").factor(0.2).missing(0.0))
+                    .weight(ratingWeight)));
+        }
+        if (stockWeight > 0) {
+            functions.add(FunctionScore.of(f -> f
+                    .filter(q -> q.term(t -> t.field("inStock").value(true)))
+                    .weight(stockWeight)));
+        }
+        if (recencyWeight > 0) {
+            functions.add(FunctionScore.of(f -> f
+                    .gauss(g -> g.date(d -> d
+                            .field("createdAt")
+                            .placement(p -> p
+                                    .origin("now")
+                                    .scale(time(recencyScale))
+                                    .offset(time(recencyOffset))
+                                    .decay(recencyDecay))))
+                    .weight(recencyWeight)));
+        }
+
+        return Query.of(q -> q.functionScore(fs -> fs
+                .query(textQuery)
+                .functions(functions)
+                .scoreMode(FunctionScoreMode.Sum)
+                .boostMode(FunctionBoostMode.Multiply)));
+    }
+
+    private static Time time(Duration duration) {
+        return Time.of(t -> t.time(duration.toMinutes() + "m"));
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.marketplace.service.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.example.marketplace.dto.search.ReindexStatusDto;
+import com.example.marketplace.exception.BadRequestException;
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import com.example.marketplace.util.RedisLocks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.index.AliasAction;
+import org.springframework.data.elasticsearch.core.index.AliasActionParameters;
+import org.springframework.data.elasticsearch.core.index.AliasActions;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rebuilds the product search index without downtime.
+ * <p>
+ * Products are written to a new versioned index ({@code products_v<timestamp>}) while searches keep
+ * hitting the previous one through the {@code products} alias. The id space is cut into fixed
+ * partitions loaded in parallel, chunk by chunk, so memory stays bounded by
+ * {@code parallelism × chunk-size} products; each chunk is one synchronous bulk request, which
+ * throttles the readers to the pace Elasticsearch accepts. Once every partition is done the alias
+ * is moved to the new index in a single atomic request.
+ * <p>
+ * Job state and completed partitions are kept in Redis: a failed or interrupted run can be
+ * resumed and only the missing partitions are reloaded. A Redis lock, owned by the running job and
+ * renewed after every chunk, keeps a second reindex from starting on any node; a job that loses it
+ * stops.
+ */
+@Component
+@ConditionalOnExpression("'${marketplace.search.engine:elasticsearch}' != 'lucene'")
+@RequiredArgsConstructor
+@Slf4j
+public class ProductReindexer {
+
+    public static final String ALIAS = "products";
+
+    private static final String STATE_KEY = "search:reindex:state";
+    private static final String DONE_KEY = "search:reindex:done";
+    private static final String LOCK_KEY = "search:reindex:lock";
+
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final ProductRepository productRepository;
+    private final ProductDocumentMapper productDocumentMapper;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchClient elasticsearchClient;
+    private final StringRedisTemplate redisTemplate;
+    private final SearchResultCache searchResultCache;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.search.reindex.parallelism:4}")
+    private int parallelism;
+
+    @Value("${marketplace.search.reindex.partition-size:50000}")
+    private long partitionSize;
+
+    @Value("${marketplace.search.reindex.chunk-size:1000}")
+    private int chunkSize;
+
+    @Value("${marketplace.search.reindex.max-retries:5}")
+    private int maxRetries;
+
+    @Value("${marketplace.search.reindex.replicas:1}")
+    private int replicas;
+
+    @Value("${marketplace.search.reindex.lock-ttl:5m}")
+    private Duration lockTtl;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService coordinator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "product-reindex");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Counter indexedCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        indexedCounter = Counter.builder("marketplace.search.reindex.documents")
+                .description("Products written to a new index by full reindex runs")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        coordinator.shutdownNow();
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Returns the index being built by a reindex running on any node, if any. The state of a job
+     * whose node died is ignored once its lock has expired.
+     */
+    public String getTargetIndex() {
+        Map<String, String> state;
+        try {
+            state = readState();
+        } catch (DataAccessException e) {
+            // État partagé illisible : écriture dans le seul index courant, comme hors réindexation
+            log.debug("Reindex state unavailable: {}", e.getMessage());
+            return null;
+        }
+        if (!"RUNNING".equals(state.get("state")) || !Boolean.TRUE.equals(redisTemplate.hasKey(LOCK_KEY))) {
+            return null;
+        }
+        return state.get("targetIndex");
+    }
+
+    /**
+     * Starts a reindex in the background. With {@code resume}, a previously failed run continues
+     * into the same index, skipping the partitions it already completed.
+     */
+    public ReindexStatusDto start(boolean resume) {
+        if (!running.compareAndSet(false, true)) {
+            throw new BadRequestException("A product reindex is already running");
+        }
+        String lockToken = UUID.randomUUID().toString();
+        try {
+            // Le drapeau local ne voit pas les réindexations lancées sur les autres noeuds
+            if (!RedisLocks.tryLock(redisTemplate, LOCK_KEY, lockToken, lockTtl)) {
+                throw new BadRequestException("A product reindex is already running on another node");
+            }
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+        try {
+            Map<String, String> previous = readState();
+            boolean resumable = resume
+                    && !"COMPLETED".equals(previous.get("state"))
+                    && previous.get("targetIndex") != null
+                    && indexOps(previous.get("targetIndex")).exists();
+            if (resume && !resumable) {
+                log.info("No resumable reindex found, starting a new one");
+            }
+            Job job = resumable ? resumeJob(previous, lockToken) : newJob(lockToken);
+            coordinator.submit(() -> run(job));
+            return getStatus();
+        } catch (RuntimeException e) {
+            releaseLock(lockToken);
+            running.set(false);
+            throw e;
+        }
+    }
+
+    public ReindexStatusDto getStatus() {
+        Map<String, String> state = readState();
+        ReindexStatusDto status = new ReindexStatusDto();
+        status.setState(state.getOrDefault("state", "IDLE"));
+        status.setTargetIndex(state.get("targetIndex"));
+        status.setTotalPartitions(Integer.parseInt(state.getOrDefault("partitions", "0")));
+        status.setIndexedDocuments(Long.parseLong(state.getOrDefault("indexed", "0")));
+        status.setStartedAt(state.containsKey("startedAt") ? LocalDateTime.parse(state.get("startedAt")) : null);
+        status.setFinishedAt(state.containsKey("finishedAt") ? LocalDateTime.parse(state.get("finishedAt")) : null);
+        status.setError(state.get("error"));
+        Long done = redisTemplate.opsForSet().size(DONE_KEY);
+        status.setCompletedPartitions(done != null ? done.intValue() : 0);
+        return status;
+    }
+
+    private record Job(String targetIndex, int partitions, long partitionSize, String lockToken) {
+    }
+
+    private Job newJob(String lockToken) {
+        Long maxId = productRepository.findMaxId();
+        long size = partitionSize;
+        int partitions = maxId == null ? 0 : (int) ((maxId + size - 1) / size);
+        String targetIndex = ALIAS + "_v" + LocalDateTime.now().format(VERSION_FORMAT);
+
+        // Index de chargement : sans rafraîchissement ni réplique, rétablis avant la bascule
+        Map<String, Object> settings = Map.of("index", Map.of(
+                "refresh_interval", "-1",
+                "number_of_replicas", 0));
+        indexOps(targetIndex).create(settings, elasticsearchOperations.indexOps(ProductDocument.class).createMapping(ProductDocument.class));
+
+        redisTemplate.delete(List.of(STATE_KEY, DONE_KEY));
+        Map<String, String> state = new HashMap<>();
+        state.put("state", "RUNNING");
+        state.put("targetIndex", targetIndex);
+        state.put("partitions", Integer.toString(partitions));
+        state.put("partitionSize", Long.toString(size));
+        state.put("indexed", "0");
+        state.put("startedAt", LocalDateTime.now().toString());
+        redisTemplate.opsForHash().putAll(STATE_KEY, state);
+
+        log.info("Reindexing products into {} ({} partitions of {} ids)", targetIndex, partitions, size);
+        return new Job(targetIndex, partitions, size, lockToken);
+    }
+
+    private Job resumeJob(Map<String, String> state, String lockToken) {
+        Job job = new Job(state.get("targetIndex"),
+                Integer.parseInt(state.get("partitions")),
+                Long.parseLong(state.get("partitionSize")),
+                lockToken);
+        redisTemplate.opsForHash().put(STATE_KEY, "state", "RUNNING");
+        redisTemplate.opsForHash().delete(STATE_KEY, "error", "finishedAt");
+        log.info("Resuming product reindex into {}", job.targetIndex());
+        return job;
+    }
+
+    private void run(Job job) {
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            Set<String> done = redisTemplate.opsForSet().members(DONE_KEY);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int partition = 0; partition < job.partitions(); partition++) {
+                if (done != null && done.contains(Integer.toString(partition))) {
+                    continue;
+                }
+                final int current = partition;
+                futures.add(workers.submit(() -> indexPartition(job, current)));
+            }
+
+            List<String> failures = new ArrayList<>();
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    failures.add(e.getCause().getMessage());
+                }
+            }
+            if (!failures.isEmpty()) {
+                throw new IllegalStateException(failures.size() + " partitions failed, first error: " + failures.get(0));
+            }
+
+            renewLock(job);
+            activate(job.targetIndex());
+            searchResultCache.indexChanged();
+            redisTemplate.opsForHash().put(STATE_KEY, "state", "COMPLETED");
+            redisTemplate.opsForHash().put(STATE_KEY, "finishedAt", LocalDateTime.now().toString());
+            redisTemplate.delete(DONE_KEY);
+            log.info("Product reindex into {} completed, alias {} switched", job.targetIndex(), ALIAS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markFailed(job, "interrupted");
+        } catch (RuntimeException | IOException e) {
+            log.error("Product reindex into {} failed, it can be resumed", job.targetIndex(), e);
+            markFailed(job, e.getMessage());
+        } finally {
+            workers.shutdownNow();
+            releaseLock(job.lockToken());
+            running.set(false);
+        }
+    }
+
+    private void indexPartition(Job job, int partition) {
+        long fromId = partition * job.partitionSize();
+        long toId = fromId + job.partitionSize();
+        IndexCoordinates index = IndexCoordinates.of(job.targetIndex());
+
+        long afterId = fromId;
+        while (true) {
+            List<Long> ids = productRepository.findIdsInRange(afterId, toId, PageRequest.of(0, chunkSize));
+            if (ids.isEmpty()) {
+                break;
+            }
+            List<IndexQuery> queries = productDocumentMapper.load(ids).stream()
+                    .map(document -> new IndexQueryBuilder()
+                            .withId(document.getId().toString())
+                            .withObject(document)
+                            .build())
+                    .toList();
+            if (!queries.isEmpty()) {
+                bulkWithRetry(queries, index);
+            }
+            redisTemplate.opsForHash().increment(STATE_KEY, "indexed", queries.size());
+            indexedCounter.increment(queries.size());
+            renewLock(job);
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < chunkSize) {
+                break;
+            }
+        }
+
+        redisTemplate.opsForSet().add(DONE_KEY, Integer.toString(partition));
+        Long done = redisTemplate.opsForSet().size(DONE_KEY);
+        log.info("Reindex into {}: partition {} done ({}/{})", job.targetIndex(), partition, done, job.partitions());
+    }
+
+    private void bulkWithRetry(List<IndexQuery> queries, IndexCoordinates index) {
+        long backoff = 200;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                elasticsearchOperations.bulkIndex(queries, index);
+                return;
+            } catch (DataAccessException e) {
+                // Rejets (429) ou délais : on ralentit avant de renvoyer le même lot, l'indexation étant idempotente
+                if (attempt >= maxRetries) {
+                    throw e;
+                }
+                log.warn("Bulk request of {} products failed (attempt {}), retrying in {} ms: {}",
+                        queries.size(), attempt, backoff, e.getMessage());
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+                backoff = Math.min(backoff * 2, 10_000);
+            }
+        }
+    }
+
+    private void activate(String targetIndex) throws IOException {
+        elasticsearchClient.indices().putSettings(request -> request
+                .index(targetIndex)
+                .settings(settings -> settings
+                        .refreshInterval(time -> time.time("1s"))
+                        .numberOfReplicas(Integer.toString(replicas))));
+        indexOps(targetIndex).refresh();
+
+        IndexOperations aliasOps = indexOps(ALIAS);
+        AliasActions actions = new AliasActions();
+        List<String> previousIndices = new ArrayList<>();
+        if (aliasOps.exists()) {
+            Map<String, ?> aliased = aliasOps.getAliases(ALIAS);
+            if (aliased.isEmpty()) {
+                // Premier passage : "products" est encore un index réel, supprimé dans la même requête
+                actions.add(new AliasAction.RemoveIndex(AliasActionParameters.builder().withIndices(ALIAS).build()));
+            } else {
+                previousIndices.addAll(aliased.keySet());
+                actions.add(new AliasAction.Remove(AliasActionParameters.builder()
+                        .withIndices(previousIndices.toArray(String[]::new))
+                        .withAliases(ALIAS)
+                        .build()));
+            }
+        }
+        actions.add(new AliasAction.Add(AliasActionParameters.builder()
+                .withIndices(targetIndex)
+                .withAliases(ALIAS)
+                .build()));
+        aliasOps.alias(actions);
+
+        for (String previous : previousIndices) {
+            if (!previous.equals(targetIndex)) {
+                indexOps(previous).delete();
+            }
+        }
+    }
+
+    private void renewLock(Job job) {
+        if (!RedisLocks.renew(redisTemplate, LOCK_KEY, job.lockToken(), lockTtl)) {
+            // Verrou expiré, peut-être repris par une autre réindexation : on s'arrête
+            throw new IllegalStateException("Reindex lock lost");
+        }
+    }
+
+    private void releaseLock(String lockToken) {
+        try {
+            RedisLocks.release(redisTemplate, LOCK_KEY, lockToken);
+        } catch (DataAccessException e) {
+            log.warn("Could not release the reindex lock, it expires in {}: {}", lockTtl, e.getMessage());
+        }
+    }
+
+    private void markFailed(Job job, String error) {
+        try {
+            redisTemplate.opsForHash().put(STATE_KEY, "state", "FAILED");
+            redisTemplate.opsForHash().put(STATE_KEY, "error", error != null ? error : "unknown error");
+            redisTemplate.opsForHash().put(STATE_KEY, "finishedAt", LocalDateTime.now().toString());
+        } catch (DataAccessException e) {
+            log.warn("Could not record failure of reindex into {}: {}", job.targetIndex(), e.getMessage());
+        }
+    }
+
+    private Map<String, String> readState() {
+        Map<String, String> state = new HashMap<>();
+        redisTemplate.opsForHash().entries(STATE_KEY)
+                .forEach((key, value) -> state.put(key.toString(), value.toString()));
+        return state;
+    }
+
+    private IndexOperations indexOps(String index) {
+        return elasticsearchOperations.indexOps(IndexCoordinates.of(index));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.dto.search.ProductSearchHit;
+import com.example.marketplace.model.search.ProductDocument;
+import org.springframework.data.domain.Page;
+import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.SearchPage;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.query.HighlightQuery;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+import org.springframework.data.elasticsearch.core.query.highlight.Highlight;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightField;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightFieldParameters;
+import org.springframework.data.elasticsearch.core.query.highlight.HighlightParameters;
+
+import java.util.List;
+
+/**
+ * Conversion of product search hits to {@link ProductSearchHit}s.
+ * <p>
+ * Searches only fetch the {@code _source} fields a result needs; description, suggestion inputs and
+ * ranking signals stay on the shards.
+ */
+public final class ProductSearchHits {
+
+    // À garder aligné avec les @SourceFilters de ProductSearchRepository
+    public static final String[] SOURCE_FIELDS = {
+            "id", "name", "price", "imageUrl", "inStock", "featured", "storeId", "storeName",
+            "categoryIds", "categoryNames", "rating", "reviewCount"
+    };
+
+    private ProductSearchHits() {
+    }
+
+    public static SourceFilter sourceFilter() {
+        return new FetchSourceFilter(SOURCE_FIELDS, null);
+    }
+
+    /**
+     * Highlights the whole name and up to two description fragments.
+     */
+    public static HighlightQuery highlightQuery() {
+        HighlightParameters parameters = HighlightParameters.builder()
+                .withEncoder("html")
+                .withPreTags("<em>")
+                .withPostTags("</em>")
+                .build();
+        HighlightFieldParameters wholeField = HighlightFieldParameters.builder()
+                .withNumberOfFragments(0)
+                .build();
+        HighlightFieldParameters fragments = HighlightFieldParameters.builder()
+                .withFragmentSize(150)
+                .withNumberOfFragments(2)
+                .build();
+        Highlight highlight = new Highlight(parameters, List.of(
+                new HighlightField("name", wholeField),
+                new HighlightField("description", fragments)));
+        return new HighlightQuery(highlight, ProductDocument.class);
+    }
+
+    public static Page<ProductSearchHit> toPage(SearchPage<ProductDocument> page) {
+        return page.map(ProductSearchHits::toHit);
+    }
+
+    public static ProductSearchHit toHit(SearchHit<ProductDocument> searchHit) {
+        ProductDocument document = searchHit.getContent();
+        ProductSearchHit hit = new ProductSearchHit();
+        hit.setId(document.getId());
+        hit.setName(document.getName());
+        hit.setPrice(document.getPrice());
+        hit.setImageUrl(document.getImageUrl());
+        hit.setInStock(document.getInStock());
+        hit.setFeatured(document.getFeatured());
+        hit.setStoreId(document.getStoreId());
+        hit.setStoreName(document.getStoreName());
+        hit.setCategoryIds(document.getCategoryIds());
+        hit.setCategoryNames(document.getCategoryNames());
+        hit.setRating(document.getRating());
+        hit.setReviewCount(document.getReviewCount());
+        hit.setScore(Float.isNaN(searchHit.getScore()) ? null : searchHit.getScore());
+        if (!searchHit.getHighlightFields().isEmpty()) {
+            hit.setHighlights(searchHit.getHighlightFields());
+        }
+        return hit;
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.repository.jpa.OrderItemRepository;
+import com.example.marketplace.repository.jpa.ReviewRepository;
+import com.example.marketplace.util.RedisLocks;
+import com.example.marketplace.util.TransactionUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Keeps the ranking signals of the product index (sales, recent sales, rating, review count) in
+ * line with the database through partial document updates.
+ * <p>
+ * Each run only touches products whose signals may have moved since the previous one: products on
+ * orders created or updated since, on orders that left the recent-sales window since, or reviewed
+ * since. Deleted reviews and orders leave no trace to scan for, so their products are recorded in
+ * Redis when deleted and picked up by the next run. One node refreshes at a time and the last run
+ * time is shared through Redis.
+ */
+@Component
+@ConditionalOnExpression("'${marketplace.search.engine:elasticsearch}' != 'lucene'")
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSignalRefresher {
+
+    static final String LAST_RUN_KEY = "search:signals:last-run";
+    static final String REMOVED_KEY = "search:signals:removed";
+    private static final String LOCK_KEY = "search:signals:lock";
+
+    private final OrderItemRepository orderItemRepository;
+    private final ReviewRepository reviewRepository;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ProductReindexer productReindexer;
+    private final SearchResultCache searchResultCache;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.search.recent-sales-window:30d}")
+    private Duration recentSalesWindow;
+
+    @Value("${marketplace.search.ranking.signals-chunk-size:1000}")
+    private int chunkSize;
+
+    private Counter updatedCounter;
+
+    @PostConstruct
+    public void initMetrics() {
+        updatedCounter = Counter.builder("marketplace.search.signals.updated")
+                .description("Product documents whose ranking signals were refreshed")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${marketplace.search.ranking.signals-refresh-interval:300000}",
+            initialDelayString = "${marketplace.search.ranking.signals-refresh-interval:300000}")
+    public void refresh() {
+        String token;
+        try {
+            token = RedisLocks.tryLock(redisTemplate, LOCK_KEY, Duration.ofMinutes(10));
+            if (token == null) {
+                return;
+            }
+        } catch (DataAccessException e) {
+            log.warn("Ranking signal refresh skipped: {}", e.getMessage());
+            return;
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            String lastRun = redisTemplate.opsForValue().get(LAST_RUN_KEY);
+            LocalDateTime since = lastRun != null ? LocalDateTime.parse(lastRun) : now.minus(recentSalesWindow);
+
+            TreeSet<Long> productIds = new TreeSet<>(orderItemRepository.findProductIdsWithSalesChangedSince(
+                    since, since.minus(recentSalesWindow), now.minus(recentSalesWindow)));
+            productIds.addAll(reviewRepository.findProductIdsReviewedSince(since));
+            Set<String> removed = redisTemplate.opsForSet().members(REMOVED_KEY);
+            if (removed != null) {
+                removed.forEach(productId -> productIds.add(Long.valueOf(productId)));
+            }
+
+            List<Long> chunk = new ArrayList<>(chunkSize);
+            for (Long productId : productIds) {
+                chunk.add(productId);
+                if (chunk.size() == chunkSize) {
+                    update(chunk, now);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                update(chunk, now);
+            }
+
+            redisTemplate.opsForValue().set(LAST_RUN_KEY, now.toString());
+            if (removed != null && !removed.isEmpty()) {
+                // Seuls les produits traités sont retirés : ceux ajoutés pendant ce passage attendent le suivant
+                redisTemplate.opsForSet().remove(REMOVED_KEY, removed.toArray());
+            }
+            if (!productIds.isEmpty()) {
+                searchResultCache.indexChanged(productIds);
+                log.debug("Ranking signals refreshed for {} products", productIds.size());
+            }
+        } catch (RuntimeException e) {
+            // La prochaine exécution reprend depuis le dernier passage réussi
+            log.error("Ranking signal refresh failed", e);
+        } finally {
+            try {
+                RedisLocks.release(redisTemplate, LOCK_KEY, token);
+            } catch (DataAccessException e) {
+                log.warn("Could not release the ranking signal lock: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * To be called when reviews or orders of {@code productIds} are deleted, so that the next run
+     * recomputes their signals once the deletion has committed.
+     */
+    public void signalsRemoved(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        String[] members = productIds.stream().map(String::valueOf).toArray(String[]::new);
+        TransactionUtils.afterCommit(() -> {
+            try {
+                redisTemplate.opsForSet().add(REMOVED_KEY, members);
+            } catch (DataAccessException e) {
+                log.warn("Could not record {} products for a signal refresh: {}", members.length, e.getMessage());
+            }
+        });
+    }
+
+    private void update(List<Long> productIds, LocalDateTime now) {
+        Map<Long, Object[]> ratings = new HashMap<>();
+        for (Object[] row : reviewRepository.findRatingsByProductIdIn(productIds)) {
+            ratings.put(((Number) row[0]).longValue(), row);
+        }
+        Map<Long, Object[]> sales = new HashMap<>();
+        for (Object[] row : orderItemRepository.findSalesByProductIdIn(productIds, now.minus(recentSalesWindow))) {
+            sales.put(((Number) row[0]).longValue(), row);
+        }
+
+        List<UpdateQuery> queries = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            Object[] rating = ratings.get(productId);
+            Object[] sold = sales.get(productId);
+            Document signals = Document.create();
+            signals.put("rating", rating != null && rating[1] != null ? ((Number) rating[1]).doubleValue() : null);
+            signals.put("reviewCount", rating != null ? ((Number) rating[2]).intValue() : 0);
+            signals.put("salesCount", sold != null && sold[1] != null ? ((Number) sold[1]).longValue() : 0L);
+            signals.put("recentSalesCount", sold != null && sold[2] != null ? ((Number) sold[2]).longValue() : 0L);
+            queries.add(UpdateQuery.builder(productId.toString()).withDocument(signals).build());
+        }
+
+        List<IndexCoordinates> targets = new ArrayList<>();
+        targets.add(IndexCoordinates.of(ProductReindexer.ALIAS));
+        String reindexTarget = productReindexer.getTargetIndex();
+        if (reindexTarget != null) {
+            targets.add(IndexCoordinates.of(reindexTarget));
+        }
+        for (IndexCoordinates target : targets) {
+            try {
+                elasticsearchOperations.bulkUpdate(queries, target);
+            } catch (BulkFailureException e) {
+                // Produits supprimés ou pas encore indexés : la file d'indexation s'en charge
+                log.debug("{} signal updates rejected by {}", e.getFailedDocuments().size(), target.getIndexName());
+            }
+        }
+        updatedCounter.increment(queries.size());
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.marketplace.service.search;
+
+import co.elastic.clients.elasticsearch.core.search.Suggester;
+import com.example.marketplace.dto.search.SuggestionDto;
+import com.example.marketplace.model.product.CategoryProductCount;
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import com.example.marketplace.service.category.CategoryNode;
+import com.example.marketplace.service.category.CategoryProductCounter;
+import com.example.marketplace.service.category.CategoryTreeManager;
+import com.example.marketplace.warmup.WarmupRequests;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilter;
+import org.springframework.data.elasticsearch.core.suggest.response.CompletionSuggestion;
+import org.springframework.data.elasticsearch.core.suggest.response.Suggest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Search-as-you-type suggestions for product and category names.
+ * <p>
+ * Most keystrokes are answered in memory from a {@link SuggestionSnapshot} of the most popular
+ * products: as it holds the heaviest entries, a prefix that yields enough of them there, from a
+ * complete scan of its range, has its exact top results. Other prefixes go to the weighted
+ * completion field of the product index and their answers are kept for a short while. Categories are all in memory, weighted by the number
+ * of active products of their subtree.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSuggester {
+
+    static final String COMPLETION_FIELD = "nameSuggest";
+    private static final String SUGGESTION_NAME = "product-names";
+
+    private final ProductRepository productRepository;
+    private final CategoryTreeManager categoryTreeManager;
+    private final CategoryProductCounter categoryProductCounter;
+    // Absent avec engine=lucene, qui répond par son propre index
+    private final ObjectProvider<ElasticsearchOperations> elasticsearchOperations;
+    private final MeterRegistry meterRegistry;
+    private final SearchMetrics searchMetrics;
+
+    @Value("${marketplace.search.suggestions.snapshot-size:50000}")
+    private int snapshotSize;
+
+    @Value("${marketplace.search.suggestions.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${marketplace.search.suggestions.cache-ttl:60s}")
+    private Duration cacheTtl;
+
+    @Value("${marketplace.search.recent-sales-window:30d}")
+    private Duration recentSalesWindow;
+
+    private volatile SuggestionSnapshot products = SuggestionSnapshot.EMPTY;
+    private volatile SuggestionSnapshot categories = SuggestionSnapshot.EMPTY;
+
+    private record CachedSuggestions(List<SuggestionDto> suggestions, long expiresAt) {
+    }
+
+    // LRU des réponses Elasticsearch pour les préfixes absents de l'instantané
+    private final Map<String, CachedSuggestions> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CachedSuggestions> eldest) {
+                    return size() > cacheSize;
+                }
+            });
+
+    public Map<String, List<SuggestionDto>> suggest(String prefix, int limit) {
+        return suggest(prefix, limit, "elasticsearch", this::complete);
+    }
+
+    /**
+     * Same as {@link #suggest(String, int)}, with the prefixes missing from the snapshot answered
+     * by {@code completer} (normalized prefix, limit) instead of the Elasticsearch completion field.
+     */
+    public Map<String, List<SuggestionDto>> suggest(String prefix, int limit, String source,
+                                                    BiFunction<String, Integer, List<SuggestionDto>> completer) {
+        String normalized = SuggestionSnapshot.normalize(prefix);
+        Map<String, List<SuggestionDto>> suggestions = new LinkedHashMap<>();
+        suggestions.put("products", suggestProducts(normalized, limit, source, completer));
+        suggestions.put("categories", toDtos(categories.lookup(normalized, limit)));
+        return suggestions;
+    }
+
+    private List<SuggestionDto> suggestProducts(String normalized, int limit, String source,
+                                                BiFunction<String, Integer, List<SuggestionDto>> completer) {
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+
+        long start = System.nanoTime();
+        SuggestionSnapshot.Matches fromMemory = products.match(normalized, limit);
+        if (fromMemory.entries().size() >= limit && !fromMemory.truncated()) {
+            record(start, "memory");
+            return toDtos(fromMemory.entries());
+        }
+
+        String key = normalized + '|' + limit;
+        CachedSuggestions cached = cache.get(key);
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            record(start, "cache");
+            return cached.suggestions();
+        }
+
+        List<SuggestionDto> fromIndex = completer.apply(normalized, limit);
+        cache.put(key, new CachedSuggestions(fromIndex, System.currentTimeMillis() + cacheTtl.toMillis()));
+        record(start, source);
+        return fromIndex;
+    }
+
+    private List<SuggestionDto> complete(String normalized, int limit) {
+        NativeQuery query = NativeQuery.builder()
+                .withSuggester(Suggester.of(s -> s.suggesters(SUGGESTION_NAME, field -> field
+                        .prefix(normalized)
+                        .completion(completion -> completion
+                                .field(COMPLETION_FIELD)
+                                .size(limit)
+                                .skipDuplicates(true)))))
+                .withSourceFilter(new FetchSourceFilter(new String[]{"id", "name"}, null))
+                .withMaxResults(0)
+                .build();
+
+        SearchHits<ProductDocument> hits = searchMetrics.engine("elasticsearch",
+                () -> elasticsearchOperations.getObject().search(query, ProductDocument.class));
+        searchMetrics.took(hits, () -> SearchMetrics.render(query));
+        Suggest suggest = hits.getSuggest();
+        if (suggest == null || suggest.getSuggestion(SUGGESTION_NAME) == null) {
+            return List.of();
+        }
+
+        List<SuggestionDto> suggestions = new ArrayList<>();
+        for (Suggest.Suggestion.Entry<? extends Suggest.Suggestion.Entry.Option> entry
+                : suggest.getSuggestion(SUGGESTION_NAME).getEntries()) {
+            for (Suggest.Suggestion.Entry.Option option : entry.getOptions()) {
+                if (option instanceof CompletionSuggestion.Entry.Option<?> completion
+                        && completion.getSearchHit() != null
+                        && completion.getSearchHit().getContent() instanceof ProductDocument document) {
+                    suggestions.add(new SuggestionDto(document.getId(), document.getName()));
+                }
+            }
+        }
+        return suggestions;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${marketplace.search.suggestions.refresh-interval:600000}",
+            initialDelayString = "${marketplace.search.suggestions.refresh-interval:600000}")
+    public void refresh() {
+        try {
+            long start = System.currentTimeMillis();
+            LocalDateTime recentSince = LocalDateTime.now().minus(recentSalesWindow);
+            List<SuggestionSnapshot.Entry> productEntries = new ArrayList<>();
+            for (Object[] row : productRepository.findSuggestionCandidates(recentSince, snapshotSize)) {
+                productEntries.add(new SuggestionSnapshot.Entry(
+                        ((Number) row[0]).longValue(),
+                        (String) row[1],
+                        ProductDocumentMapper.suggestionWeight(((Number) row[2]).longValue(), ((Number) row[3]).longValue())));
+            }
+
+            Map<Long, CategoryProductCount> counts = categoryProductCounter.getAllCounts();
+            List<SuggestionSnapshot.Entry> categoryEntries = new ArrayList<>();
+            for (CategoryNode node : categoryTreeManager.getTree().getAll()) {
+                if (node.isActive()) {
+                    CategoryProductCount count = counts.get(node.getId());
+                    long total = count != null ? count.getTotalCount() : 0L;
+                    categoryEntries.add(new SuggestionSnapshot.Entry(node.getId(), node.getName(),
+                            (int) Math.min(Integer.MAX_VALUE, total)));
+                }
+            }
+
+            products = SuggestionSnapshot.build(productEntries, 10);
+            categories = SuggestionSnapshot.build(categoryEntries, 10);
+            cache.clear();
+            log.info("Suggestion snapshot rebuilt: {} products, {} categories in {} ms",
+                    productEntries.size(), categoryEntries.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.warn("Could not rebuild the suggestion snapshot: {}", e.getMessage());
+        }
+    }
+
+    private void record(long start, String source) {
+        if (WarmupRequests.isCurrent()) {
+            return;
+        }
+        searchMetrics.cacheResult(!source.equals("elasticsearch") && !source.equals("lucene"));
+        Timer.builder("marketplace.search.suggestions")
+                .description("Autocomplete latency by answering tier")
+                .tag("source", source)
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry)
+                .record(Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static List<SuggestionDto> toDtos(List<SuggestionSnapshot.Entry> entries) {
+        return entries.stream()
+                .map(entry -> new SuggestionDto(entry.id(), entry.text()))
+                .toList();
+    }
+}
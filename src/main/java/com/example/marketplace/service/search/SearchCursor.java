@@ -0,0 +1,41 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.exception.BadRequestException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque position in a sorted search: the sort values of the last hit returned ({@code search_after}),
+ * the point-in-time the search runs against if any, and a fingerprint of the query it belongs to.
+ * Clients receive it Base64url-encoded and send it back unchanged to get the next page.
+ */
+public record SearchCursor(List<Object> after, String pit, int fingerprint) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public String encode() {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(this));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not encode search cursor", e);
+        }
+    }
+
+    public static SearchCursor decode(String encoded) {
+        try {
+            SearchCursor cursor = MAPPER.readValue(Base64.getUrlDecoder().decode(encoded.getBytes(StandardCharsets.US_ASCII)),
+                    SearchCursor.class);
+            if (cursor.after() == null || cursor.after().isEmpty()) {
+                throw new BadRequestException("Invalid search cursor");
+            }
+            return cursor;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new BadRequestException("Invalid search cursor");
+        }
+    }
+}
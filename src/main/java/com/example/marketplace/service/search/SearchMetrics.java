@@ -0,0 +1,257 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.warmup.WarmupRequests;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Latency instrumentation of the search operations.
+ * <p>
+ * Each operation is timed end to end under {@code marketplace.search.requests}, tagged with its
+ * result-size bucket and whether the result cache answered it. Inside an operation, the time
+ * spent waiting for the engine ({@code marketplace.search.engine.round-trip}) is recorded next to
+ * the time Elasticsearch reports for the query itself ({@code marketplace.search.engine.took}):
+ * a wide gap between the two points at the network, the client or response parsing rather than
+ * at the query. Operations slower than {@code slow-query-threshold} are logged with their
+ * rendered query to the {@code marketplace.search.slow} logger. Warm-up requests are not recorded.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchMetrics {
+
+    private static final Logger SLOW_LOG = LoggerFactory.getLogger("marketplace.search.slow");
+
+    // Appels hors opération mesurée, comme le rafraîchissement des pages populaires
+    private static final String UNTRACKED = "untracked";
+
+    // Bornes des histogrammes : limitent le nombre de buckets exportés par série
+    private static final Duration MIN_EXPECTED = Duration.ofMillis(1);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(10);
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.search.metrics.slow-query-threshold:500ms}")
+    private Duration slowQueryThreshold;
+
+    private static final class Sample {
+        private final String operation;
+        private String cache;
+        private String engine = "none";
+        private long roundTripNanos = -1;
+        private long tookMillis = -1;
+        private Supplier<String> query;
+
+        private Sample(String operation, String cache) {
+            this.operation = operation;
+            this.cache = cache;
+        }
+    }
+
+    private final ThreadLocal<Sample> current = new ThreadLocal<>();
+
+    /**
+     * Times a search operation.
+     *
+     * @param cached     whether {@code search} goes through the result cache; the cache is then
+     *                   considered to have answered unless a {@link #loader} runs
+     * @param resultSize number of matching results, used for the size bucket
+     */
+    public <T> T record(String operation, boolean cached, Supplier<T> search, ToLongFunction<T> resultSize) {
+        if (WarmupRequests.isCurrent()) {
+            return search.get();
+        }
+        Sample outer = current.get();
+        Sample sample = new Sample(operation, cached ? "hit" : "none");
+        current.set(sample);
+        long start = System.nanoTime();
+        T result = null;
+        try {
+            result = search.get();
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (outer != null) {
+                current.set(outer);
+            } else {
+                current.remove();
+            }
+            finish(sample, elapsed, result != null ? bucket(resultSize.applyAsLong(result)) : "error");
+        }
+    }
+
+    /**
+     * Wraps a cache loader so that running it counts the current operation as a cache miss.
+     */
+    public <T> Supplier<T> loader(Supplier<T> loader) {
+        return () -> {
+            cacheResult(false);
+            return loader.get();
+        };
+    }
+
+    public void cacheResult(boolean hit) {
+        Sample sample = current.get();
+        if (sample != null) {
+            sample.cache = hit ? "hit" : "miss";
+        }
+    }
+
+    /**
+     * Times a call to a search engine as seen from the client.
+     */
+    public <T> T engine(String engine, Supplier<T> call) {
+        if (WarmupRequests.isCurrent()) {
+            return call.get();
+        }
+        long start = System.nanoTime();
+        try {
+            return call.get();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Sample sample = current.get();
+            if (sample != null) {
+                sample.engine = engine;
+                sample.roundTripNanos = elapsed;
+            }
+            Timer.builder("marketplace.search.engine.round-trip")
+                    .description("Search engine call latency measured by the client")
+                    .tag("operation", operation(sample))
+                    .tag("engine", engine)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED)
+                    .maximumExpectedValue(MAX_EXPECTED)
+                    .register(meterRegistry)
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records the execution time reported by Elasticsearch for a response, and keeps the rendered
+     * query in case the operation turns out to be slow.
+     */
+    public void took(SearchHits<?> hits, Supplier<String> query) {
+        if (WarmupRequests.isCurrent()) {
+            return;
+        }
+        Sample sample = current.get();
+        Duration took = hits.getExecutionDuration();
+        if (sample != null) {
+            sample.query = query;
+            sample.tookMillis = took != null ? took.toMillis() : -1;
+        }
+        if (took != null) {
+            Timer.builder("marketplace.search.engine.took")
+                    .description("Query execution time reported by Elasticsearch")
+                    .tag("operation", operation(sample))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED)
+                    .maximumExpectedValue(MAX_EXPECTED)
+                    .register(meterRegistry)
+                    .record(took);
+        }
+    }
+
+    private void finish(Sample sample, long elapsedNanos, String results) {
+        Timer.builder("marketplace.search.requests")
+                .description("Search operation latency, including the result cache")
+                .tag("operation", sample.operation)
+                .tag("results", results)
+                .tag("cache", sample.cache)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+        if (elapsedNanos < slowQueryThreshold.toNanos()) {
+            return;
+        }
+        Counter.builder("marketplace.search.slow")
+                .description("Search operations slower than the slow query threshold")
+                .tag("operation", sample.operation)
+                .register(meterRegistry)
+                .increment();
+        if (SLOW_LOG.isWarnEnabled()) {
+            SLOW_LOG.warn("slow_search operation={} total_ms={} round_trip_ms={} took_ms={} engine={} cache={} results={} query={}",
+                    sample.operation,
+                    elapsedNanos / 1_000_000,
+                    sample.roundTripNanos >= 0 ? sample.roundTripNanos / 1_000_000 : -1,
+                    sample.tookMillis,
+                    sample.engine,
+                    sample.cache,
+                    results,
+                    render(sample.query));
+        }
+    }
+
+    /**
+     * Query, post filter, sort and aggregation names of a native query, for the slow query log.
+     */
+    public static String render(NativeQuery query) {
+        StringBuilder rendered = new StringBuilder();
+        if (query.getQuery() != null) {
+            rendered.append("query=").append(query.getQuery());
+        }
+        if (query.getFilter() != null) {
+            rendered.append(" post_filter=").append(query.getFilter());
+        }
+        if (!query.getSortOptions().isEmpty()) {
+            rendered.append(" sort=").append(query.getSortOptions());
+        }
+        if (!query.getAggregations().isEmpty()) {
+            rendered.append(" aggs=").append(query.getAggregations().keySet());
+        }
+        if (query.getSuggester() != null) {
+            rendered.append(" suggest=").append(query.getSuggester());
+        }
+        return rendered.toString().trim();
+    }
+
+    private static String render(Supplier<String> query) {
+        if (query == null) {
+            return "-";
+        }
+        try {
+            return query.get().replaceAll("\\s+", " ");
+        } catch (RuntimeException e) {
+            log.debug("Could not render slow search query: {}", e.getMessage());
+            return "?";
+        }
+    }
+
+    private static String operation(Sample sample) {
+        return sample != null ? sample.operation : UNTRACKED;
+    }
+
+    // Tranches bornées pour garder un nombre fixe de séries par opération
+    static String bucket(long size) {
+        if (size <= 0) {
+            return "0";
+        }
+        if (size <= 10) {
+            return "1-10";
+        }
+        if (size <= 100) {
+            return "11-100";
+        }
+        if (size <= 1000) {
+            return "101-1000";
+        }
+        return "1000+";
+    }
+}
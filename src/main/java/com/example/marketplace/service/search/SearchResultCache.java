@@ -0,0 +1,389 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.warmup.WarmupRequests;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Short-lived cache of search result pages, keyed by the normalized query, filters, sort and page.
+ * <p>
+ * Every entry remembers the products it shows. Each batch of index writes broadcasts the ids it
+ * touched to every node, which then drops only the pages showing one of them; a full reindex drops
+ * everything. A product that starts matching a cached page it was not on only shows up once that
+ * page expires, so the TTL bounds how long a page may lag the index. First pages of the most requested searches are recomputed in
+ * the background before they expire or go stale, so popular queries are almost never answered by
+ * Elasticsearch on the request path. A page is only recomputed if it has been requested since it
+ * was last refreshed, at most {@code max-refreshes-per-cycle} per cycle, on a small pool of its
+ * own rather than on the shared scheduler thread.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SearchResultCache implements MessageListener {
+
+    static final String CHANNEL = "search:index";
+    private static final String ALL = "*";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.search.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${marketplace.search.cache.ttl:30s}")
+    private Duration ttl;
+
+    @Value("${marketplace.search.cache.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${marketplace.search.cache.top-queries:1000}")
+    private int topQueries;
+
+    @Value("${marketplace.search.cache.refresh-ahead:10s}")
+    private Duration refreshAhead;
+
+    @Value("${marketplace.search.cache.max-refreshes-per-cycle:50}")
+    private int maxRefreshesPerCycle;
+
+    @Value("${marketplace.search.cache.refresh-threads:2}")
+    private int refreshThreads;
+
+    @Value("${marketplace.search.cache.max-invalidations:100000}")
+    private int maxInvalidations;
+
+    // Horloge locale des invalidations : une entrée calculée avant une invalidation qui la concerne est périmée
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong allInvalidatedAt = new AtomicLong();
+
+    private record Computed(Object value, long[] productIds) {
+    }
+
+    private record Entry(Computed computed, long computedAt, long expiresAt) {
+    }
+
+    private static final class Popularity {
+        private final LongAdder hits = new LongAdder();
+        private final Supplier<Computed> loader;
+        private volatile long score;
+        // Demandée depuis son dernier recalcul en arrière-plan : sinon inutile de la recalculer
+        private volatile boolean requested = true;
+
+        private Popularity(Supplier<Computed> loader) {
+            this.loader = loader;
+        }
+    }
+
+    private Cache<String, Entry> entries;
+
+    // Dernière invalidation de chaque produit, gardée tant qu'une entrée antérieure peut encore vivre
+    private Cache<Long, Long> invalidatedAt;
+
+    // Fréquence des premières pages demandées, avec de quoi les recalculer
+    private Cache<String, Popularity> popular;
+
+    // Pages en cours de recalcul, pour ne pas soumettre deux fois la même
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService refreshExecutor;
+
+    private Counter hitCounter;
+    private Counter missCounter;
+    private Counter refreshCounter;
+
+    @PostConstruct
+    public void init() {
+        entries = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .build();
+        invalidatedAt = Caffeine.newBuilder()
+                .maximumSize(maxInvalidations)
+                .expireAfterWrite(ttl.multipliedBy(2))
+                .evictionListener((Long productId, Long at, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        // Invalidation oubliée avant son terme : seule une invalidation globale reste sûre
+                        invalidateAll();
+                    }
+                })
+                .build();
+        popular = Caffeine.newBuilder()
+                .maximumSize(Math.max(topQueries, 1) * 4L)
+                .build();
+        AtomicInteger threadCount = new AtomicInteger();
+        refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(maxRefreshesPerCycle, 1)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "search-cache-refresh-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        hitCounter = Counter.builder("marketplace.search.cache.requests")
+                .description("Search requests answered by the result cache")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        missCounter = Counter.builder("marketplace.search.cache.requests")
+                .description("Search requests answered by the result cache")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        refreshCounter = Counter.builder("marketplace.search.cache.refreshes")
+                .description("Popular search pages recomputed ahead of expiry")
+                .register(meterRegistry);
+        meterRegistry.gauge("marketplace.search.cache.size", entries, Cache::estimatedSize);
+
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /**
+     * Returns the cached result for {@code key}, computing it with {@code loader} when missing,
+     * expired or computed before an index update of one of the products it shows.
+     *
+     * @param firstPage  whether the key is a first page, eligible for background refresh
+     * @param productIds the ids of the products shown by a result
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, boolean firstPage, Supplier<T> loader,
+                     Function<? super T, ? extends Collection<Long>> productIds) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Supplier<Computed> compute = () -> {
+            T value = loader.get();
+            return new Computed(value, productIds.apply(value).stream().mapToLong(Long::longValue).toArray());
+        };
+        // Les requêtes de préchauffage remplissent le cache sans compter dans la popularité
+        Popularity popularity = firstPage && !WarmupRequests.isCurrent()
+                ? popular.get(key, k -> new Popularity(compute))
+                : null;
+        if (popularity != null) {
+            popularity.hits.increment();
+            popularity.requested = true;
+        }
+
+        Entry entry = entries.getIfPresent(key);
+        if (entry != null && isFresh(entry, System.currentTimeMillis())) {
+            hitCounter.increment();
+            return (T) entry.computed().value();
+        }
+
+        missCounter.increment();
+        return (T) load(key, compute);
+    }
+
+    /**
+     * To be called once index writes of {@code productIds} have been sent: invalidates the cached
+     * pages showing one of them, on every node.
+     */
+    public void indexChanged(Collection<Long> productIds) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        invalidate(productIds);
+        publish(productIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+    }
+
+    /**
+     * To be called when the whole index changed, e.g. on an alias switch: invalidates every cached
+     * page on every node.
+     */
+    public void indexChanged() {
+        invalidateAll();
+        publish(ALL);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        if (ALL.equals(body)) {
+            invalidateAll();
+            return;
+        }
+        try {
+            List<Long> productIds = new ArrayList<>();
+            for (String id : body.split(",")) {
+                productIds.add(Long.parseLong(id));
+            }
+            invalidate(productIds);
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed search index update: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recomputes the first pages of the most requested searches that are about to expire or are
+     * stale, then ages the request counts so that the ranking follows current traffic.
+     */
+    @Scheduled(fixedDelayString = "${marketplace.search.cache.refresh-interval:5000}")
+    public void refreshPopular() {
+        if (!enabled || popular.estimatedSize() == 0) {
+            return;
+        }
+
+        List<Map.Entry<String, Popularity>> ranked = new ArrayList<>(popular.asMap().entrySet());
+        for (Map.Entry<String, Popularity> candidate : ranked) {
+            Popularity popularity = candidate.getValue();
+            // Décroissance exponentielle : une requête passée de mode perd son rang en quelques cycles
+            popularity.score = popularity.score / 2 + popularity.hits.sumThenReset();
+        }
+        ranked.sort(Comparator.comparingLong((Map.Entry<String, Popularity> e) -> e.getValue().score).reversed());
+
+        long refreshBefore = System.currentTimeMillis() + refreshAhead.toMillis();
+        int submitted = 0;
+        for (int i = 0; i < ranked.size(); i++) {
+            Map.Entry<String, Popularity> candidate = ranked.get(i);
+            Popularity popularity = candidate.getValue();
+            if (i >= topQueries || popularity.score == 0) {
+                popular.asMap().remove(candidate.getKey(), popularity);
+                continue;
+            }
+            if (submitted >= maxRefreshesPerCycle || !popularity.requested) {
+                continue;
+            }
+
+            Entry entry = entries.getIfPresent(candidate.getKey());
+            if ((entry == null || !isFresh(entry, refreshBefore)) && refreshing.add(candidate.getKey())) {
+                if (submit(candidate.getKey(), popularity)) {
+                    submitted++;
+                } else {
+                    // Pool saturé : les pages suivantes attendront le prochain cycle
+                    refreshing.remove(candidate.getKey());
+                    break;
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    public void clear() {
+        entries.invalidateAll();
+    }
+
+    private boolean submit(String key, Popularity popularity) {
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    popularity.requested = false;
+                    load(key, popularity.loader);
+                    refreshCounter.increment();
+                } catch (RuntimeException e) {
+                    log.debug("Could not refresh search page {}: {}", key, e.getMessage());
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private Object load(String key, Supplier<Computed> loader) {
+        // Horloge lue avant le calcul : une invalidation concurrente rend l'entrée aussitôt périmée
+        long computedAt = sequence.get();
+        Computed computed = loader.get();
+        entries.put(key, new Entry(computed, computedAt, System.currentTimeMillis() + ttl.toMillis()));
+        return computed.value();
+    }
+
+    private boolean isFresh(Entry entry, long now) {
+        if (entry.expiresAt() <= now || entry.computedAt() < allInvalidatedAt.get()) {
+            return false;
+        }
+        for (long productId : entry.computed().productIds()) {
+            Long at = invalidatedAt.getIfPresent(productId);
+            if (at != null && at > entry.computedAt()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void invalidate(Collection<Long> productIds) {
+        long at = sequence.incrementAndGet();
+        for (Long productId : productIds) {
+            invalidatedAt.asMap().merge(productId, at, Math::max);
+        }
+    }
+
+    private void invalidateAll() {
+        allInvalidatedAt.accumulateAndGet(sequence.incrementAndGet(), Math::max);
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, message);
+        } catch (DataAccessException e) {
+            // Les autres noeuds rattrapent à l'expiration de leurs pages
+            log.warn("Could not publish search index update: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Builds a cache key from its parts. Free text is trimmed, lower-cased and whitespace-collapsed
+     * as the analyzer would; collections are sorted so that filter order does not matter.
+     */
+    public static String key(String operation, Object... parts) {
+        StringBuilder key = new StringBuilder(operation);
+        for (Object part : parts) {
+            key.append('|');
+            if (part instanceof String text) {
+                key.append(normalize(text));
+            } else if (part instanceof BigDecimal number) {
+                key.append(number.stripTrailingZeros().toPlainString());
+            } else if (part instanceof Collection<?> values) {
+                key.append(values.stream().map(String::valueOf).distinct().sorted().toList());
+            } else if (part != null) {
+                key.append(part);
+            }
+        }
+        return key.toString();
+    }
+
+    static String normalize(String text) {
+        return text.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.marketplace.service.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.regex.Pattern;
+
+/**
+ * Immutable in-memory prefix index of suggestions (product or category names).
+ * <p>
+ * Every name is expanded into normalized keys (the full name and the suffixes starting at each of
+ * its first words), kept in one sorted array: the keys sharing a prefix form a contiguous range
+ * found by binary search. The best entries of the very short prefixes, whose ranges are the
+ * largest, are precomputed at build time.
+ */
+public final class SuggestionSnapshot {
+
+    public static final SuggestionSnapshot EMPTY = build(List.of(), 1);
+
+    // Au-delà, la plage d'un préfixe court serait trop longue à parcourir à chaque frappe
+    private static final int PRECOMPUTED_PREFIX_LENGTH = 2;
+    private static final int MAX_WORD_SUFFIXES = 4;
+    private static final int MAX_SCAN = 5_000;
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    private static final Comparator<Entry> BY_WEIGHT = Comparator.comparingInt(Entry::weight).reversed()
+            .thenComparing(Entry::id);
+
+    /**
+     * A suggestable name with its popularity weight.
+     */
+    public record Entry(Long id, String text, int weight) {
+    }
+
+    /**
+     * Entries found for a prefix. When {@code truncated}, the prefix range was longer than the scan
+     * limit and the entries are the best of its first keys only, not necessarily the heaviest.
+     */
+    public record Matches(List<Entry> entries, boolean truncated) {
+    }
+
+    private final String[] keys;
+    private final Entry[] entries;
+    private final Map<String, List<Entry>> precomputed;
+    private final int topK;
+
+    private SuggestionSnapshot(String[] keys, Entry[] entries, Map<String, List<Entry>> precomputed, int topK) {
+        this.keys = keys;
+        this.entries = entries;
+        this.precomputed = precomputed;
+        this.topK = topK;
+    }
+
+    public static SuggestionSnapshot build(Collection<Entry> candidates, int topK) {
+        List<Map.Entry<String, Entry>> indexed = new ArrayList<>();
+        for (Entry candidate : candidates) {
+            for (String key : inputs(candidate.text())) {
+                indexed.add(Map.entry(key, candidate));
+            }
+        }
+        indexed.sort(Map.Entry.comparingByKey());
+
+        String[] keys = new String[indexed.size()];
+        Entry[] entries = new Entry[indexed.size()];
+        Map<String, PriorityQueue<Entry>> heaps = new HashMap<>();
+        for (int i = 0; i < indexed.size(); i++) {
+            keys[i] = indexed.get(i).getKey();
+            entries[i] = indexed.get(i).getValue();
+            for (int length = 1; length <= Math.min(PRECOMPUTED_PREFIX_LENGTH, keys[i].length()); length++) {
+                offer(heaps.computeIfAbsent(keys[i].substring(0, length), prefix -> new PriorityQueue<>(BY_WEIGHT.reversed())),
+                        entries[i], topK);
+            }
+        }
+
+        Map<String, List<Entry>> precomputed = new HashMap<>();
+        heaps.forEach((prefix, heap) -> precomputed.put(prefix, sorted(heap)));
+        return new SuggestionSnapshot(keys, entries, precomputed, topK);
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * Returns up to {@code limit} distinct entries whose keys start with the normalized prefix,
+     * by descending weight.
+     */
+    public List<Entry> lookup(String normalizedPrefix, int limit) {
+        return match(normalizedPrefix, limit).entries();
+    }
+
+    /**
+     * Same as {@link #lookup(String, int)}, telling as well whether the scan of the prefix range
+     * was cut short.
+     */
+    public Matches match(String normalizedPrefix, int limit) {
+        if (normalizedPrefix.isEmpty() || limit <= 0) {
+            return new Matches(List.of(), false);
+        }
+        if (normalizedPrefix.length() <= PRECOMPUTED_PREFIX_LENGTH && limit <= topK) {
+            List<Entry> top = precomputed.getOrDefault(normalizedPrefix, List.of());
+            return new Matches(top.size() > limit ? top.subList(0, limit) : top, false);
+        }
+
+        PriorityQueue<Entry> heap = new PriorityQueue<>(BY_WEIGHT.reversed());
+        int from = lowerBound(normalizedPrefix);
+        for (int i = from; i < keys.length && keys[i].startsWith(normalizedPrefix); i++) {
+            if (i - from >= MAX_SCAN) {
+                // Plage trop longue : les premières clés, alphabétiquement, ne sont pas les plus lourdes
+                return new Matches(sorted(heap), true);
+            }
+            offer(heap, entries[i], limit);
+        }
+        return new Matches(sorted(heap), false);
+    }
+
+    /**
+     * Lowercases, strips accents and collapses whitespace.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return SPACES.matcher(MARKS.matcher(decomposed).replaceAll("")).replaceAll(" ")
+                .trim()
+                .toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Normalized keys a name can be found by: the whole name, then the suffixes starting at
+     * its next words ("apple iphone 15", "iphone 15", "15").
+     */
+    public static List<String> inputs(String name) {
+        String normalized = normalize(name);
+        if (normalized.isEmpty()) {
+            return List.of();
+        }
+        List<String> inputs = new ArrayList<>();
+        inputs.add(normalized);
+        int start = normalized.indexOf(' ');
+        while (start >= 0 && inputs.size() <= MAX_WORD_SUFFIXES) {
+            inputs.add(normalized.substring(start + 1));
+            start = normalized.indexOf(' ', start + 1);
+        }
+        return inputs;
+    }
+
+    private int lowerBound(String prefix) {
+        int index = Arrays.binarySearch(keys, prefix);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    // Tas borné à "size" éléments, le moins bien classé en tête ; un même id n'y entre qu'une fois
+    private static void offer(PriorityQueue<Entry> heap, Entry entry, int size) {
+        for (Entry present : heap) {
+            if (present.id().equals(entry.id())) {
+                return;
+            }
+        }
+        heap.offer(entry);
+        if (heap.size() > size) {
+            heap.poll();
+        }
+    }
+
+    private static List<Entry> sorted(PriorityQueue<Entry> heap) {
+        List<Entry> sorted = new ArrayList<>(heap);
+        sorted.sort(BY_WEIGHT);
+        return List.copyOf(sorted);
+    }
+}
@@ -0,0 +1,256 @@
+package com.example.marketplace.stats;
+
+import com.example.marketplace.repository.jpa.WishlistRepository;
+import com.example.marketplace.util.RedisLocks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-product wish counters maintained incrementally instead of aggregating wishlist_products.
+ * <p>
+ * Add/remove deltas are accumulated locally in striped {@link LongAdder}s and flushed periodically
+ * to a Redis hash (exact counts) and sorted set (most-wished ranking). The Redis structures are
+ * rebuilt from the database at startup when missing and reconciled nightly to absorb any drift.
+ * <p>
+ * A rebuild fills temporary keys and swaps them in with one script. Every delta carries the time
+ * its transaction committed; those committed after the rebuild read the database, flushed by any
+ * node meanwhile, are also recorded aside and applied again to the rebuilt counts by that script.
+ * Deltas the read already saw are not counted twice, up to the clock skew between nodes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ProductWishCounter {
+
+    private static final String COUNTS_KEY = "wishlist:stats:counts";
+    private static final String RANKING_KEY = "wishlist:stats:ranking";
+    private static final String REBUILD_LOCK_KEY = "wishlist:stats:rebuild-lock";
+    // Présent pendant une reconstruction, avec l'instant de la lecture en base (epoch millis) : les
+    // deltas validés après cet instant sont aussi notés dans REBUILD_DELTAS_KEY
+    private static final String REBUILDING_KEY = "wishlist:stats:rebuilding";
+    private static final String REBUILD_DELTAS_KEY = "wishlist:stats:rebuild-deltas";
+    private static final Duration REBUILD_TIMEOUT = Duration.ofMinutes(10);
+
+    // KEYS : compteurs, classement, marqueur, deltas de reconstruction ;
+    // ARGV : triplets produit, delta, instant de validation
+    private static final RedisScript<Long> FLUSH_SCRIPT = new DefaultRedisScript<>(
+            "local readAt = tonumber(redis.call('GET', KEYS[3]))\n" +
+            "for i = 1, #ARGV, 3 do\n" +
+            "  redis.call('HINCRBY', KEYS[1], ARGV[i], ARGV[i + 1])\n" +
+            "  redis.call('ZINCRBY', KEYS[2], ARGV[i + 1], ARGV[i])\n" +
+            "  if readAt and tonumber(ARGV[i + 2]) > readAt then\n" +
+            "    redis.call('HINCRBY', KEYS[4], ARGV[i], ARGV[i + 1])\n" +
+            "  end\n" +
+            "end\n" +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', 0)\n" +
+            "return 1", Long.class);
+
+    // KEYS : compteurs, classement, compteurs reconstruits, classement reconstruit, marqueur, deltas
+    private static final RedisScript<Long> SWAP_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('RENAME', KEYS[3], KEYS[1])\n" +
+            "if redis.call('EXISTS', KEYS[4]) == 1 then\n" +
+            "  redis.call('RENAME', KEYS[4], KEYS[2])\n" +
+            "else\n" +
+            "  redis.call('DEL', KEYS[2])\n" +
+            "end\n" +
+            "local deltas = redis.call('HGETALL', KEYS[6])\n" +
+            "for i = 1, #deltas, 2 do\n" +
+            "  redis.call('HINCRBY', KEYS[1], deltas[i], deltas[i + 1])\n" +
+            "  redis.call('ZINCRBY', KEYS[2], deltas[i + 1], deltas[i])\n" +
+            "end\n" +
+            "redis.call('ZREMRANGEBYSCORE', KEYS[2], '-inf', 0)\n" +
+            "redis.call('DEL', KEYS[5], KEYS[6])\n" +
+            "return #deltas / 2", Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final WishlistRepository wishlistRepository;
+
+    // Deltas non poussés, par produit et instant de validation (epoch millis)
+    private final ConcurrentHashMap<Stamped, LongAdder> pending = new ConcurrentHashMap<>();
+
+    private record Stamped(long productId, long committedAt) {
+    }
+
+    /**
+     * Counts a wish added by a transaction that just committed.
+     */
+    public void increment(Long productId) {
+        pending.computeIfAbsent(stamped(productId), key -> new LongAdder()).increment();
+    }
+
+    /**
+     * Counts a wish removed by a transaction that just committed.
+     */
+    public void decrement(Long productId) {
+        pending.computeIfAbsent(stamped(productId), key -> new LongAdder()).decrement();
+    }
+
+    public long getCount(Long productId) {
+        long local = pendingDelta(productId);
+        try {
+            Object stored = redisTemplate.opsForHash().get(COUNTS_KEY, productId.toString());
+            long count = stored != null ? Long.parseLong(stored.toString()) : 0L;
+            return Math.max(0L, count + local);
+        } catch (DataAccessException e) {
+            log.warn("Wish counters unavailable, counting product {} from the database", productId);
+            return wishlistRepository.countWishlistsByProduct(productId);
+        }
+    }
+
+    /**
+     * Returns product ids ordered by descending wish count, with their count.
+     */
+    public Map<Long, Long> getMostWished(int limit) {
+        Set<ZSetOperations.TypedTuple<String>> top;
+        try {
+            top = redisTemplate.opsForZSet().reverseRangeWithScores(RANKING_KEY, 0, limit - 1);
+        } catch (DataAccessException e) {
+            log.warn("Wish counters unavailable, ranking products from the database");
+            Map<Long, Long> ranking = new LinkedHashMap<>();
+            for (Object[] row : wishlistRepository.findMostWishedProducts(limit)) {
+                ranking.put(((Number) row[0]).longValue(), ((Number) row[2]).longValue());
+            }
+            return ranking;
+        }
+
+        Map<Long, Long> ranking = new LinkedHashMap<>();
+        if (top != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : top) {
+                if (tuple.getValue() != null && tuple.getScore() != null && tuple.getScore() > 0) {
+                    ranking.put(Long.valueOf(tuple.getValue()), tuple.getScore().longValue());
+                }
+            }
+        }
+        return ranking;
+    }
+
+    @Scheduled(fixedDelayString = "${marketplace.wishlist.stats.flush-interval:5000}")
+    public void flush() {
+        Map<Stamped, Long> deltas = new HashMap<>();
+        for (Map.Entry<Stamped, LongAdder> entry : pending.entrySet()) {
+            LongAdder adder = entry.getValue();
+            long delta = adder.sumThenReset();
+            if (delta != 0) {
+                deltas.put(entry.getKey(), delta);
+            } else if (pending.remove(entry.getKey(), adder)) {
+                // Un incrément concurrent a pu arriver juste avant le retrait : on le réinjecte
+                long late = adder.sumThenReset();
+                if (late != 0) {
+                    pending.computeIfAbsent(entry.getKey(), key -> new LongAdder()).add(late);
+                }
+            }
+        }
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        try {
+            List<String> args = new ArrayList<>(deltas.size() * 3);
+            deltas.forEach((stamped, delta) -> {
+                args.add(Long.toString(stamped.productId()));
+                args.add(Long.toString(delta));
+                args.add(Long.toString(stamped.committedAt()));
+            });
+            redisTemplate.execute(FLUSH_SCRIPT, List.of(COUNTS_KEY, RANKING_KEY, REBUILDING_KEY, REBUILD_DELTAS_KEY),
+                    args.toArray());
+        } catch (DataAccessException e) {
+            log.warn("Could not flush {} wish counter deltas, retrying later: {}", deltas.size(), e.getMessage());
+            deltas.forEach((stamped, delta) ->
+                    pending.computeIfAbsent(stamped, key -> new LongAdder()).add(delta));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        try {
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(COUNTS_KEY))) {
+                rebuild();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not initialize wish counters: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${marketplace.wishlist.stats.reconcile-cron:0 30 4 * * *}")
+    public void reconcile() {
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            log.warn("Wish counter reconciliation failed: {}", e.getMessage());
+        }
+    }
+
+    private void rebuild() {
+        // Un seul noeud reconstruit les compteurs à la fois
+        String lockToken = RedisLocks.tryLock(redisTemplate, REBUILD_LOCK_KEY, REBUILD_TIMEOUT);
+        if (lockToken == null) {
+            return;
+        }
+
+        String countsTmp = COUNTS_KEY + ":tmp";
+        String rankingTmp = RANKING_KEY + ":tmp";
+        try {
+            redisTemplate.delete(List.of(countsTmp, rankingTmp, REBUILD_DELTAS_KEY));
+            // Juste avant la lecture en base : seuls les deltas validés ensuite seront réappliqués
+            // après la bascule, ceux validés avant étant déjà comptés par la lecture
+            redisTemplate.opsForValue().set(REBUILDING_KEY, Long.toString(System.currentTimeMillis()), REBUILD_TIMEOUT);
+            List<Object[]> rows = wishlistRepository.findWishCountsByProduct();
+
+            Map<String, String> counts = new HashMap<>();
+            List<ZSetOperations.TypedTuple<String>> scores = new ArrayList<>();
+            for (Object[] row : rows) {
+                String productId = row[0].toString();
+                long count = ((Number) row[1]).longValue();
+                counts.put(productId, Long.toString(count));
+                scores.add(ZSetOperations.TypedTuple.of(productId, (double) count));
+            }
+
+            // Marque les compteurs comme initialisés même sans aucun souhait
+            counts.put("_", "0");
+            redisTemplate.opsForHash().putAll(countsTmp, counts);
+            if (!scores.isEmpty()) {
+                redisTemplate.opsForZSet().add(rankingTmp, Set.copyOf(scores));
+            }
+            Long replayed = redisTemplate.execute(SWAP_SCRIPT,
+                    List.of(COUNTS_KEY, RANKING_KEY, countsTmp, rankingTmp, REBUILDING_KEY, REBUILD_DELTAS_KEY));
+            log.info("Wish counters rebuilt for {} products, {} concurrent deltas replayed", scores.size(), replayed);
+        } finally {
+            redisTemplate.delete(List.of(REBUILDING_KEY, REBUILD_DELTAS_KEY, countsTmp, rankingTmp));
+            RedisLocks.release(redisTemplate, REBUILD_LOCK_KEY, lockToken);
+        }
+    }
+
+    private long pendingDelta(Long productId) {
+        long delta = 0L;
+        for (Map.Entry<Stamped, LongAdder> entry : pending.entrySet()) {
+            if (entry.getKey().productId() == productId) {
+                delta += entry.getValue().sum();
+            }
+        }
+        return delta;
+    }
+
+    private static Stamped stamped(Long productId) {
+        return new Stamped(productId, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.marketplace.util;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.function.Supplier;
+
+/**
+ * Conditional GET support for the catalog endpoints: validators are computed from versions and
+ * timestamps before the response body, so that a request whose copy is still current gets a 304
+ * without the body being built or serialized.
+ */
+public class HttpCachingUtil {
+
+    /**
+     * Weak ETag over the given parts, which must together change whenever the representation does.
+     */
+    public static String etag(Object... parts) {
+        StringBuilder value = new StringBuilder();
+        for (Object part : parts) {
+            value.append(part).append('|');
+        }
+        // Faible : la même représentation peut être servie compressée ou non
+        return "W/\"" + DigestUtils.md5DigestAsHex(value.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    /**
+     * Epoch millis of an audit timestamp, or -1 when unknown.
+     */
+    public static long lastModified(LocalDateTime updatedAt) {
+        return updatedAt != null ? updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1L;
+    }
+
+    /**
+     * Response shareable by browsers and CDNs for {@code maxAge}, then revalidated with its validators.
+     */
+    public static CacheControl publicFor(Duration maxAge) {
+        return CacheControl.maxAge(maxAge).cachePublic();
+    }
+
+    /**
+     * Answers 304 when the client's copy matches {@code etag} or {@code lastModified}, and otherwise
+     * 200 with the body supplied. A null {@code etag} skips the check.
+     */
+    public static <T> ResponseEntity<T> conditional(WebRequest request, String etag, long lastModified,
+                                                    CacheControl cacheControl, Supplier<T> body) {
+        if (etag != null && request.checkNotModified(etag, lastModified)) {
+            // Statut et validateurs déjà posés sur la réponse par checkNotModified
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).body(body.get());
+    }
+}
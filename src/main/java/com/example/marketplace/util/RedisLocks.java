@@ -0,0 +1,54 @@
+package com.example.marketplace.util;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+public class RedisLocks {
+
+    // Prolonge ou libère le verrou seulement s'il appartient encore à l'appelant
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end\n" +
+            "return 0", Long.class);
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end\n" +
+            "return 0", Long.class);
+
+    /**
+     * Takes the lock {@code key} for {@code ttl} and returns the token owning it, or null when
+     * it is already held.
+     */
+    public static String tryLock(StringRedisTemplate redisTemplate, String key, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        return tryLock(redisTemplate, key, token, ttl) ? token : null;
+    }
+
+    /**
+     * Takes the lock {@code key} for {@code ttl} on behalf of {@code token}.
+     */
+    public static boolean tryLock(StringRedisTemplate redisTemplate, String key, String token, Duration ttl) {
+        return Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(key, token, ttl));
+    }
+
+    /**
+     * Extends the lock to {@code ttl} from now. Returns false when {@code token} no longer owns it:
+     * it expired, and may have been taken by someone else since.
+     */
+    public static boolean renew(StringRedisTemplate redisTemplate, String key, String token, Duration ttl) {
+        Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(key), token, Long.toString(ttl.toMillis()));
+        return Long.valueOf(1L).equals(renewed);
+    }
+
+    /**
+     * Releases the lock if {@code token} still owns it, never a lock taken by someone else after
+     * this one expired.
+     */
+    public static boolean release(StringRedisTemplate redisTemplate, String key, String token) {
+        Long released = redisTemplate.execute(RELEASE_SCRIPT, List.of(key), token);
+        return Long.valueOf(1L).equals(released);
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.marketplace.warmup;
+
+import com.example.marketplace.dto.product.ProductDto;
+import com.example.marketplace.model.store.Store;
+import com.example.marketplace.security.jwt.JwtTokenProvider;
+import com.example.marketplace.service.CategoryService;
+import com.example.marketplace.service.ProductService;
+import com.example.marketplace.service.StoreService;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Warms the node up before it starts receiving traffic.
+ * <p>
+ * Runs synchronously on {@link ApplicationReadyEvent}: Spring Boot only switches the readiness
+ * state to {@code ACCEPTING_TRAFFIC} once the listeners of that event have returned, so the
+ * readiness probe keeps the node out of the load balancer for the whole warm-up. In order, it
+ * opens the connection pools to their minimum size, loads the hot entries into the caches
+ * (category tree, featured and top-selling products, top stores), then replays synthetic
+ * requests against the node's own HTTP port, authenticated by a throwaway JWT, so that the
+ * security filters, DTO mapping, JSON serialization and search paths are compiled by the JIT and
+ * the Elasticsearch connections opened. These requests are marked as {@link WarmupRequests}: they
+ * fill the search result cache but count neither towards query popularity nor in search metrics. Each phase is timed under
+ * {@code marketplace.warmup.duration}. A failing step is logged and skipped: warm-up never
+ * prevents a node from starting.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StartupWarmup {
+
+    // Mêmes valeurs par défaut que les contrôleurs, pour chauffer les entrées réellement demandées
+    private static final int FEATURED_PAGE_SIZE = 10;
+    private static final int TOP_SELLING_LIMIT = 5;
+    private static final int TOP_STORES_LIMIT = 5;
+
+    private static final String WARMUP_PRINCIPAL = "warmup";
+
+    private final CategoryService categoryService;
+    private final ProductService productService;
+    private final StoreService storeService;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final DataSource dataSource;
+    private final RedisConnectionFactory redisConnectionFactory;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${marketplace.warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${marketplace.warmup.request-rounds:100}")
+    private int requestRounds;
+
+    @Value("${marketplace.warmup.concurrency:4}")
+    private int concurrency;
+
+    @Value("${marketplace.warmup.timeout:60s}")
+    private Duration timeout;
+
+    @Value("${server.servlet.context-path:}")
+    private String contextPath;
+
+    // Après les autres initialisations au démarrage (index, compteurs), dont on chauffe le résultat
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void warmUp(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+
+        try {
+            timed("pools", this::openPools);
+            WarmupTargets targets = timed("data", this::loadCaches);
+            if (event.getApplicationContext() instanceof WebServerApplicationContext webContext
+                    && webContext.getWebServer() != null) {
+                int port = webContext.getWebServer().getPort();
+                timed("requests", () -> replayRequests(port, targets, deadline));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Warm-up aborted: {}", e.getMessage());
+        }
+
+        long elapsed = System.nanoTime() - start;
+        record("total", elapsed);
+        log.info("Warm-up completed in {} ms", TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+
+    /**
+     * Hot ids and search terms found while loading the caches, reused by the synthetic requests.
+     */
+    private record WarmupTargets(List<Long> productIds, List<Long> storeIds, List<String> searchTerms) {
+        static final WarmupTargets NONE = new WarmupTargets(List.of(), List.of(), List.of());
+    }
+
+    private void openPools() {
+        if (dataSource instanceof HikariDataSource hikari) {
+            // Connexions gardées ouvertes ensemble : chacune oblige le pool à en créer une nouvelle
+            List<Connection> connections = new ArrayList<>();
+            try {
+                // La première démarre le pool, qui fixe alors minimumIdle s'il n'est pas configuré
+                connections.add(hikari.getConnection());
+                int size = Math.min(hikari.getMinimumIdle(), hikari.getMaximumPoolSize());
+                while (connections.size() < size) {
+                    connections.add(hikari.getConnection());
+                }
+            } catch (SQLException e) {
+                log.warn("Warm-up opened {} database connections only: {}", connections.size(), e.getMessage());
+            } finally {
+                connections.forEach(this::closeQuietly);
+            }
+        }
+
+        try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+            connection.ping();
+        } catch (RuntimeException e) {
+            log.warn("Warm-up could not reach Redis: {}", e.getMessage());
+        }
+    }
+
+    private WarmupTargets loadCaches() {
+        try {
+            categoryService.getCategoryTree();
+            categoryService.getRootCategories();
+
+            Set<Long> productIds = new LinkedHashSet<>();
+            List<String> searchTerms = new ArrayList<>();
+            List<ProductDto> hotProducts = new ArrayList<>(
+                    productService.getFeaturedProducts(PageRequest.of(0, FEATURED_PAGE_SIZE)).getContent());
+            hotProducts.addAll(productService.getTopSellingProducts(TOP_SELLING_LIMIT));
+            for (ProductDto product : hotProducts) {
+                if (productIds.add(product.getId())) {
+                    productService.getProductSnapshot(product.getId());
+                    searchTerm(product.getName(), searchTerms);
+                }
+            }
+
+            // Classement borné plutôt que toutes les boutiques actives, en nombre non limité
+            Set<Long> storeIds = new LinkedHashSet<>();
+            for (Store store : storeService.getTopStoresByOrderCount(TOP_STORES_LIMIT)) {
+                storeIds.add(store.getId());
+            }
+            storeIds.forEach(storeService::getStoreSnapshot);
+
+            log.info("Warm-up loaded {} products and {} stores into the caches", productIds.size(), storeIds.size());
+            return new WarmupTargets(List.copyOf(productIds), List.copyOf(storeIds), searchTerms);
+        } catch (RuntimeException e) {
+            log.warn("Warm-up could not load the caches: {}", e.getMessage());
+            return WarmupTargets.NONE;
+        }
+    }
+
+    private void replayRequests(int port, WarmupTargets targets, long deadline) {
+        String token = jwtTokenProvider.createToken(new UsernamePasswordAuthenticationToken(
+                WARMUP_PRINCIPAL, null, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+        RestClient client = RestClient.builder()
+                .baseUrl("http://localhost:" + port + contextPath)
+                .defaultHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .defaultHeader(WarmupRequests.HEADER, WarmupRequests.TOKEN)
+                .build();
+        List<String> paths = paths(targets);
+
+        AtomicInteger failures = new AtomicInteger();
+        AtomicInteger sent = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(concurrency, 1));
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int worker = 0; worker < Math.max(concurrency, 1); worker++) {
+                int offset = worker;
+                workers.add(executor.submit(() -> {
+                    for (int round = 0; round < requestRounds && System.nanoTime() < deadline; round++) {
+                        // Décalage par worker : les mêmes chemins ne sont pas tous demandés en même temps
+                        String path = paths.get((round + offset) % paths.size());
+                        sent.incrementAndGet();
+                        try {
+                            client.get().uri(path).retrieve().toBodilessEntity();
+                        } catch (RestClientException e) {
+                            failures.incrementAndGet();
+                            log.debug("Warm-up request {} failed: {}", path, e.getMessage());
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : workers) {
+                future.get(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            }
+        } catch (Exception e) {
+            log.warn("Warm-up requests stopped early: {}", e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        log.info("Warm-up replayed {} requests, {} failed", sent.get(), failures.get());
+    }
+
+    private static List<String> paths(WarmupTargets targets) {
+        List<String> paths = new ArrayList<>(List.of(
+                "/api/categories/root",
+                "/api/categories/tree",
+                "/api/products/featured",
+                "/api/products/top-selling",
+                "/api/stores/active",
+                "/api/stores/top"));
+        targets.productIds().forEach(id -> paths.add("/api/products/" + id));
+        targets.storeIds().forEach(id -> paths.add("/api/stores/" + id));
+        List<String> terms = targets.searchTerms().isEmpty() ? List.of("a") : targets.searchTerms();
+        for (String term : terms) {
+            paths.add("/api/search/products?q=" + term);
+            paths.add("/api/search/suggestions?q=" + term.substring(0, Math.min(term.length(), 3)));
+        }
+        return paths;
+    }
+
+    // Premier mot alphanumérique du nom, utilisable tel quel dans une URL
+    private static void searchTerm(String name, List<String> terms) {
+        if (name == null) {
+            return;
+        }
+        for (String word : name.split("[^\\p{Alnum}]+")) {
+            if (word.length() >= 3 && word.chars().allMatch(c -> c < 128)) {
+                String term = word.toLowerCase();
+                if (!terms.contains(term)) {
+                    terms.add(term);
+                }
+                return;
+            }
+        }
+    }
+
+    private void timed(String phase, Runnable step) {
+        timed(phase, () -> {
+            step.run();
+            return null;
+        });
+    }
+
+    private <T> T timed(String phase, Supplier<T> step) {
+        long start = System.nanoTime();
+        try {
+            return step.get();
+        } finally {
+            record(phase, System.nanoTime() - start);
+        }
+    }
+
+    private void record(String phase, long nanos) {
+        Timer.builder("marketplace.warmup.duration")
+                .description("Startup warm-up duration, by phase")
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Could not release warm-up connection: {}", e.getMessage());
+        }
+    }
+}
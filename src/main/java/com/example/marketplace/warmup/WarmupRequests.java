@@ -0,0 +1,29 @@
+package com.example.marketplace.warmup;
+
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.UUID;
+
+/**
+ * Marks the synthetic requests replayed by {@link StartupWarmup}, so that search popularity and
+ * search metrics can leave them out.
+ */
+public final class WarmupRequests {
+
+    public static final String HEADER = "X-Marketplace-Warmup";
+
+    // Secret propre au processus : un client ne peut pas faire passer ses requêtes pour du préchauffage
+    static final String TOKEN = UUID.randomUUID().toString();
+
+    private WarmupRequests() {
+    }
+
+    /**
+     * Whether the current thread is serving a warm-up request.
+     */
+    public static boolean isCurrent() {
+        return RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes
+                && TOKEN.equals(attributes.getRequest().getHeader(HEADER));
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.model.product.Category;
+import com.example.marketplace.model.product.Product;
+import com.example.marketplace.model.store.Store;
+import com.example.marketplace.model.user.User;
+import com.example.marketplace.model.user.UserRole;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Payload size and encode/decode time of a cached product: the JPA entity as cached before (JDK
+ * serialization, the named caches having no value serializer of their own) against the Smile
+ * snapshot, with and without LZ4. Opt-in: {@code -Dcache.benchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "cache.benchmark", matches = "true")
+class CacheSnapshotBenchmark {
+
+    private static final int ITERATIONS = Integer.getInteger("cache.benchmark.iterations", 50_000);
+
+    @Test
+    void compareCodecs() {
+        Product product = product();
+        ProductSnapshot snapshot = ProductSnapshot.of(product);
+
+        report("entity / jdk", new JdkSerializationRedisSerializer(), product);
+        report("snapshot / smile", new SnapshotRedisSerializer<>(ProductSnapshot.class, false, 0), snapshot);
+        report("snapshot / smile+lz4", new SnapshotRedisSerializer<>(ProductSnapshot.class, true, 256), snapshot);
+    }
+
+    private static <T> void report(String name, RedisSerializer<? super T> serializer, T value) {
+        byte[] bytes = serializer.serialize(value);
+        // Préchauffage du JIT
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            serializer.deserialize(serializer.serialize(value));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serializer.serialize(value);
+        }
+        long encode = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            serializer.deserialize(bytes);
+        }
+        long decode = System.nanoTime() - start;
+
+        System.out.printf("%-22s %6d bytes  encode %7.2f us  decode %7.2f us%n", name, bytes.length,
+                encode / 1e3 / ITERATIONS, decode / 1e3 / ITERATIONS);
+    }
+
+    private static Product product() {
+        LocalDateTime now = LocalDateTime.now();
+
+        User owner = new User();
+        owner.setId(3L);
+        owner.setEmail("vendeur@example.com");
+        owner.setPassword("$2a$10$7EqJtq98hPqEX7fNZaFWoOhi5BWX4Z1Wq4F4lJ7lHfNQf7Rj0eX6a");
+        owner.setFirstName("Claire");
+        owner.setLastName("Martin");
+        owner.setRole(UserRole.SELLER);
+        owner.setCreatedAt(now);
+
+        Store store = new Store();
+        store.setId(7L);
+        store.setName("Maison & Co");
+        store.setDescription("Décoration, luminaires et mobilier pour toute la maison.");
+        store.setOwner(owner);
+        store.setCreatedAt(now);
+
+        Category parent = new Category();
+        parent.setId(3L);
+        parent.setName("Maison");
+        parent.setCreatedAt(now);
+        Category category = new Category();
+        category.setId(9L);
+        category.setName("Éclairage");
+        category.setParent(parent);
+        category.setCreatedAt(now);
+
+        Product product = new Product();
+        product.setId(42L);
+        product.setName("Lampe de bureau orientable");
+        product.setDescription("Lampe LED orientable, trois intensités, bras articulé en aluminium. ".repeat(6));
+        product.setPrice(new BigDecimal("39.90"));
+        product.setQuantity(12);
+        product.setImages(Set.of("lampe-1.jpg", "lampe-2.jpg", "lampe-3.jpg"));
+        product.setStore(store);
+        product.setCategories(Set.of(parent, category));
+        product.setCreatedAt(now);
+        product.setUpdatedAt(now);
+        return product;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.cache.EntityExistenceGuard.EntityType;
+import com.example.marketplace.repository.jpa.CategoryRepository;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import com.example.marketplace.repository.jpa.StoreRepository;
+import com.example.marketplace.repository.jpa.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EntityExistenceGuardTest {
+
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private EntityExistenceGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        guard = new EntityExistenceGuard(productRepository, mock(StoreRepository.class), mock(CategoryRepository.class),
+                mock(UserRepository.class), mock(StringRedisTemplate.class), mock(RedisMessageListenerContainer.class),
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(guard, "enabled", true);
+        ReflectionTestUtils.setField(guard, "falsePositiveRate", 0.01);
+        ReflectionTestUtils.setField(guard, "scanChunkSize", 100);
+        ReflectionTestUtils.setField(guard, "negativeTtl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(guard, "negativeMaxSize", 100L);
+        guard.initialize();
+        when(productRepository.count()).thenReturn(4L);
+    }
+
+    @Test
+    void keepsIdsInsertedWhileTheFilterIsBuilt() {
+        when(productRepository.findIdsInRange(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            // Insertion validée pendant le parcours, sous l'id le plus haut qu'il renverra
+            guard.added(EntityType.PRODUCT, 40L);
+            return List.of(10L, 20L, 30L, 50L);
+        });
+        guard.buildFilters();
+
+        assertThat(guard.mightExist(EntityType.PRODUCT, 40L)).isTrue();
+        assertThat(guard.mightExist(EntityType.PRODUCT, 20L)).isTrue();
+        assertThat(guard.mightExist(EntityType.PRODUCT, 25L)).isFalse();
+    }
+
+    @Test
+    void keepsIdsInsertedBeforeAFilterBuiltWhileTheirTransactionWasOpen() {
+        when(productRepository.findIdsInRange(anyLong(), anyLong(), any())).thenReturn(List.of(10L, 20L, 30L, 50L));
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            guard.added(EntityType.PRODUCT, 40L);
+            // Reconstruction terminée avant le commit : le parcours n'a pas vu l'id 40
+            guard.buildFilters();
+            assertThat(guard.mightExist(EntityType.PRODUCT, 40L)).isFalse();
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(guard.mightExist(EntityType.PRODUCT, 40L)).isTrue();
+    }
+
+    @Test
+    void idsAboveTheLastScanGoToTheDatabaseEvenAfterAHigherInsertion() {
+        when(productRepository.findIdsInRange(anyLong(), anyLong(), any())).thenReturn(List.of(10L, 20L, 30L, 50L));
+        guard.buildFilters();
+
+        guard.onMessage(new DefaultMessage(EntityExistenceGuard.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "other-node|PRODUCT|70".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Message de l'id 60 perdu : il doit quand même être cherché en base
+        assertThat(guard.mightExist(EntityType.PRODUCT, 60L)).isTrue();
+        assertThat(guard.mightExist(EntityType.PRODUCT, 70L)).isTrue();
+
+        guard.notFound(EntityType.PRODUCT, 65L, "Product not found");
+        assertThat(guard.mightExist(EntityType.PRODUCT, 65L)).isFalse();
+    }
+}
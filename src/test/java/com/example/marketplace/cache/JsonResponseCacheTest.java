@@ -0,0 +1,173 @@
+package com.example.marketplace.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JsonResponseCacheTest {
+
+    private final CacheTags cacheTags = mock(CacheTags.class);
+    private final AtomicInteger loads = new AtomicInteger();
+    private Runnable onLoad = () -> { };
+    private JsonResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(cacheTags.versions(anyCollection())).thenReturn(Map.of("store:1", 1L));
+        when(cacheTags.isCurrent(anyMap())).thenReturn(true);
+        cache = new JsonResponseCache(cacheTags, new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cache, "gzipMinSize", 64);
+        cache.initialize();
+    }
+
+    @Test
+    void servesTheSerializedBodyUntilATagMoves() throws IOException {
+        assertThat(request(null).getContentAsString()).isEqualTo(body());
+        MockHttpServletResponse gzipped = request("br, gzip");
+
+        assertThat(loads).hasValue(1);
+        assertThat(gzipped.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gunzip(gzipped.getContentAsByteArray())).isEqualTo(body());
+
+        when(cacheTags.isCurrent(anyMap())).thenReturn(false);
+        request(null);
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void matchingETagAnswersNotModified() throws IOException {
+        String etag = request(null).getHeader(HttpHeaders.ETAG);
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/stores/top");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        write(request, response);
+
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getContentAsByteArray()).isEmpty();
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void concurrentRequestsWaitForTheBodyBeingComputed() throws Exception {
+        CountDownLatch computing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Callable<String> request = () -> {
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                cache.write(new MockHttpServletRequest("GET", "/api/stores/top"), response, "stores:top|5",
+                        CacheControl.maxAge(Duration.ofSeconds(30)), List.of(), () -> {
+                            loads.incrementAndGet();
+                            computing.countDown();
+                            try {
+                                release.await();
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return List.of("store");
+                        }, stores -> List.of("store:1"));
+                return response.getContentAsString();
+            };
+            Future<String> first = executor.submit(request);
+            assertThat(computing.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<String> second = executor.submit(request);
+            release.countDown();
+
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("[\"store\"]");
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("[\"store\"]");
+            assertThat(loads).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void doesNotKeepABodyWhoseItemChangedWhileItWasComputed() throws IOException {
+        Map<String, Long> current = new ConcurrentHashMap<>();
+        when(cacheTags.versions(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> tags = invocation.getArgument(0);
+            return tags.stream().distinct().collect(Collectors.toMap(tag -> tag, tag -> current.getOrDefault(tag, 0L)));
+        });
+        when(cacheTags.isCurrent(anyMap())).thenAnswer(invocation -> {
+            Map<String, Long> versions = invocation.getArgument(0);
+            return versions.entrySet().stream().allMatch(e -> e.getValue().equals(current.getOrDefault(e.getKey(), 0L)));
+        });
+        request(null);
+
+        current.put("store:1", 1L);
+        // Boutique 1 de nouveau modifiée pendant le recalcul du corps
+        onLoad = () -> current.put("store:1", 2L);
+        request(null);
+        onLoad = () -> { };
+        assertThat(loads).hasValue(2);
+
+        request(null);
+        request(null);
+        assertThat(loads).hasValue(3);
+    }
+
+    private MockHttpServletResponse request(String acceptEncoding) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/stores/top");
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        write(request, response);
+        return response;
+    }
+
+    private void write(MockHttpServletRequest request, MockHttpServletResponse response) throws IOException {
+        cache.write(request, response, "stores:top|5", CacheControl.maxAge(Duration.ofSeconds(30)), List.of(),
+                () -> {
+                    loads.incrementAndGet();
+                    onLoad.run();
+                    return Collections.nCopies(20, "store");
+                },
+                stores -> List.of("store:1"));
+    }
+
+    private static String body() {
+        return "[" + String.join(",", Collections.nCopies(20, "\"store\"")) + "]";
+    }
+
+    private static String gunzip(byte[] bytes) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.marketplace.cache;
+
+import com.example.marketplace.dto.PagedResponse;
+import com.example.marketplace.dto.product.ProductDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ProductListingCacheTest {
+
+    private final CacheTags cacheTags = mock(CacheTags.class);
+    private final ConcurrentMapCacheManager cacheManager = new ConcurrentMapCacheManager(ProductListingCache.CACHE_NAME);
+    private final AtomicInteger loads = new AtomicInteger();
+    private Runnable onLoad = () -> { };
+    private ProductListingCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(cacheTags.versions(anyCollection())).thenReturn(Map.of(CacheTags.PRODUCTS, 1L));
+        when(cacheTags.isCurrent(anyMap())).thenReturn(true);
+        cache = new ProductListingCache(cacheManager, cacheTags, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void reloadsAStalePageThroughTheCacheLoader() {
+        assertThat(get().getContent()).hasSize(1);
+        get();
+        assertThat(loads).hasValue(1);
+
+        when(cacheTags.isCurrent(anyMap())).thenReturn(false);
+        get();
+        assertThat(loads).hasValue(2);
+
+        // Page rechargée conservée dans le cache
+        when(cacheTags.isCurrent(anyMap())).thenReturn(true);
+        get();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void doesNotKeepAPageWhoseProductChangedWhileItWasComputed() {
+        Map<String, Long> current = new ConcurrentHashMap<>();
+        when(cacheTags.versions(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> tags = invocation.getArgument(0);
+            return tags.stream().distinct().collect(Collectors.toMap(tag -> tag, tag -> current.getOrDefault(tag, 0L)));
+        });
+        when(cacheTags.isCurrent(anyMap())).thenAnswer(invocation -> {
+            Map<String, Long> versions = invocation.getArgument(0);
+            return versions.entrySet().stream().allMatch(e -> e.getValue().equals(current.getOrDefault(e.getKey(), 0L)));
+        });
+        get();
+
+        current.put(CacheTags.product(7L), 1L);
+        // Produit 7 de nouveau modifié pendant le recalcul de la page
+        onLoad = () -> current.put(CacheTags.product(7L), 2L);
+        get();
+        onLoad = () -> { };
+        assertThat(loads).hasValue(2);
+
+        get();
+        get();
+        assertThat(loads).hasValue(3);
+    }
+
+    private PagedResponse<ProductDto> get() {
+        return cache.get("store:5", PageRequest.of(0, 20), List.of(CacheTags.PRODUCTS), () -> {
+            loads.incrementAndGet();
+            onLoad.run();
+            ProductDto product = new ProductDto();
+            product.setId(7L);
+            return new PagedResponse<>(new PageImpl<>(List.of(product)));
+        });
+    }
+}
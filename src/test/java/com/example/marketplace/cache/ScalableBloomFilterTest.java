@@ -0,0 +1,39 @@
+package com.example.marketplace.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void neverForgetsAnAddedIdWhileGrowingPastItsInitialCapacity() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        for (long id = 1; id <= 20_000; id++) {
+            filter.add(id);
+        }
+
+        for (long id = 1; id <= 20_000; id++) {
+            assertThat(filter.mightContain(id)).isTrue();
+        }
+        assertThat(filter.approximateCount()).isBetween(19_000L, 20_000L);
+    }
+
+    @Test
+    void keepsTheFalsePositiveRateNearTheTargetAfterGrowing() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1_000, 0.01);
+        for (long id = 1; id <= 20_000; id++) {
+            filter.add(id);
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (long id = 1_000_000; id < 1_000_000 + probes; id++) {
+            if (filter.mightContain(id)) {
+                falsePositives++;
+            }
+        }
+        // Borne théorique de la somme des étages : 2 x le taux initial
+        assertThat((double) falsePositives / probes).isLessThan(0.02);
+    }
+}
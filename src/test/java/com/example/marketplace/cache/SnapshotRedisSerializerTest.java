@@ -0,0 +1,61 @@
+package com.example.marketplace.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SnapshotRedisSerializerTest {
+
+    @Test
+    void roundTripsSnapshotsWithAndWithoutCompression() {
+        ProductSnapshot product = product("Lampe de bureau orientable. ".repeat(40));
+        SnapshotRedisSerializer<ProductSnapshot> compressed = new SnapshotRedisSerializer<>(ProductSnapshot.class, true, 256);
+        SnapshotRedisSerializer<ProductSnapshot> raw = new SnapshotRedisSerializer<>(ProductSnapshot.class, false, 256);
+
+        byte[] compressedBytes = compressed.serialize(product);
+        byte[] rawBytes = raw.serialize(product);
+
+        assertThat(compressedBytes[0]).isEqualTo((byte) 1);
+        assertThat(rawBytes[0]).isEqualTo((byte) 0);
+        assertThat(compressedBytes.length).isLessThan(rawBytes.length);
+        // Chaque format se relit quel que soit le réglage courant de la compression
+        assertThat(raw.deserialize(compressedBytes)).isEqualTo(product);
+        assertThat(compressed.deserialize(rawBytes)).isEqualTo(product);
+    }
+
+    @Test
+    void leavesSmallPayloadsUncompressedAndRejectsUnknownFormats() {
+        SnapshotRedisSerializer<ProductSnapshot> serializer = new SnapshotRedisSerializer<>(ProductSnapshot.class, true, 256);
+
+        byte[] bytes = serializer.serialize(product("Lampe"));
+
+        assertThat(bytes[0]).isEqualTo((byte) 0);
+        assertThat(serializer.deserialize(bytes).name()).isEqualTo("Lampe");
+        assertThatThrownBy(() -> serializer.deserialize(new byte[]{9, 1, 2}))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void ignoresFieldsRemovedFromASnapshotSinceTheEntryWasWritten() {
+        SnapshotRedisSerializer<Map> older = new SnapshotRedisSerializer<>(Map.class, false, 256);
+        SnapshotRedisSerializer<ProductSnapshot> current = new SnapshotRedisSerializer<>(ProductSnapshot.class, false, 256);
+
+        byte[] bytes = older.serialize(Map.of("id", 42L, "name", "Lampe", "storeName", "Maison & Co"));
+
+        assertThat(current.deserialize(bytes).name()).isEqualTo("Lampe");
+    }
+
+    static ProductSnapshot product(String description) {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 10, 30);
+        return new ProductSnapshot(42L, "Lampe", description, new BigDecimal("39.90"), 12,
+                List.of("lampe-1.jpg", "lampe-2.jpg"), true, true, 7L, List.of(3L, 9L), now, now);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.marketplace.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.mockito.Mockito.mock;
+
+class TwoLevelCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ConcurrentMapCache remote = new ConcurrentMapCache("products");
+    private final List<String> published = new ArrayList<>();
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        CacheLoadCoordinator coordinator = new CacheLoadCoordinator(mock(StringRedisTemplate.class),
+                Duration.ofSeconds(5), Duration.ofSeconds(2), 1.0, Runnable::run);
+        cache = new TwoLevelCache("products", "maximumSize=100", remote,
+                (name, key) -> published.add(name + ":" + key), coordinator, registry);
+    }
+
+    @Test
+    void answersFromLocalCacheOnceLoadedFromRemote() {
+        remote.put(42L, "product");
+
+        assertThat(cache.get(42L, String.class)).isEqualTo("product");
+        // Modifié dans Redis par un autre noeud sans éviction : la copie locale reste servie
+        remote.put(42L, "changed");
+        assertThat(cache.get(42L, String.class)).isEqualTo("product");
+
+        assertThat(count("l1", "hit")).isEqualTo(1.0);
+        assertThat(count("l2", "hit")).isEqualTo(1.0);
+    }
+
+    @Test
+    void evictionsArePublishedAndRemoteInvalidationsDropLocalEntries() {
+        cache.put(1L, "a");
+        cache.put(2L, "b");
+
+        cache.evict(1L);
+        assertThat(published).containsExactly("products:1");
+        assertThat(cache.get(1L)).isNull();
+
+        remote.put(2L, "b2");
+        cache.invalidateLocal("2");
+        assertThat(cache.get(2L, String.class)).isEqualTo("b2");
+
+        cache.clear();
+        assertThat(published).containsExactly("products:1", "products:null");
+        assertThat(cache.get(2L)).isNull();
+    }
+
+    @Test
+    void concurrentMissesShareASingleLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(() -> cache.get(7L, () -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    release.await();
+                    return "loaded";
+                })));
+            }
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            // Laisse aux autres lectures le temps de rejoindre le chargement en cours
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("loaded");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(loads).hasValue(1);
+        assertThat(remote.get(7L).get()).isEqualTo("loaded");
+        assertThat(registry.get("marketplace.cache.loads").tag("result", "loaded").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void loaderFailuresPropagateUnchanged() {
+        IllegalStateException failure = new IllegalStateException("boom");
+
+        Throwable thrown = catchThrowable(() -> cache.get(9L, () -> {
+            throw failure;
+        }));
+
+        assertThat(thrown).isSameAs(failure);
+        assertThat(cache.get(9L)).isNull();
+    }
+
+    private double count(String tier, String result) {
+        return registry.get("marketplace.cache.requests").tags("tier", tier, "result", result).counter().count();
+    }
+}
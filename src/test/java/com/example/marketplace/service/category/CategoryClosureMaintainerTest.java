@@ -0,0 +1,71 @@
+package com.example.marketplace.service.category;
+
+import com.example.marketplace.model.product.Category;
+import com.example.marketplace.model.product.CategoryClosure;
+import com.example.marketplace.repository.jpa.CategoryClosureRepository;
+import com.example.marketplace.repository.jpa.CategoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(CategoryClosureMaintainer.class)
+// Sans transaction de test : le remplissage au démarrage doit ouvrir la sienne
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CategoryClosureMaintainerTest {
+
+    @Autowired
+    private CategoryClosureMaintainer maintainer;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryClosureRepository closureRepository;
+
+    @AfterEach
+    void cleanUp() {
+        closureRepository.deleteAllInBatch();
+        categoryRepository.findAll().stream()
+                .filter(category -> category.getParent() != null)
+                .forEach(categoryRepository::delete);
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void backfillsTheClosureOfExistingCategoriesAtStartup() {
+        Category root = categoryRepository.save(category("Home", null));
+        Category kitchen = categoryRepository.save(category("Kitchen", root));
+        Category knives = categoryRepository.save(category("Knives", kitchen));
+
+        maintainer.initialize();
+
+        assertThat(closureRepository.findAll())
+                .extracting(CategoryClosure::getAncestorId, CategoryClosure::getDescendantId, CategoryClosure::getDepth)
+                .containsExactlyInAnyOrder(
+                        tuple(root.getId(), root.getId(), 0),
+                        tuple(kitchen.getId(), kitchen.getId(), 0),
+                        tuple(knives.getId(), knives.getId(), 0),
+                        tuple(root.getId(), kitchen.getId(), 1),
+                        tuple(kitchen.getId(), knives.getId(), 1),
+                        tuple(root.getId(), knives.getId(), 2));
+    }
+
+    private static Category category(String name, Category parent) {
+        Category category = new Category();
+        category.setName(name);
+        category.setActive(true);
+        category.setParent(parent);
+        category.setCreatedAt(LocalDateTime.now());
+        return category;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.marketplace.service.category;
+
+import com.example.marketplace.model.product.Category;
+import com.example.marketplace.model.product.CategoryProductCount;
+import com.example.marketplace.repository.jpa.CategoryProductCountRepository;
+import com.example.marketplace.repository.jpa.CategoryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(CategoryProductCounter.class)
+// Sans transaction de test : le remplissage au démarrage et la réconciliation doivent ouvrir la leur
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CategoryProductCounterTest {
+
+    @Autowired
+    private CategoryProductCounter counter;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private CategoryProductCountRepository countRepository;
+
+    @AfterEach
+    void cleanUp() {
+        countRepository.deleteAllInBatch();
+        categoryRepository.deleteAll();
+    }
+
+    @Test
+    void backfillsAndReconcilesCountsOutsideAnyTransaction() {
+        Category books = categoryRepository.save(category("Books"));
+        Category games = categoryRepository.save(category("Games"));
+
+        counter.initialize();
+        assertThat(countRepository.findAll()).extracting(CategoryProductCount::getCategoryId)
+                .containsExactlyInAnyOrder(books.getId(), games.getId());
+
+        countRepository.deleteAllInBatch();
+        counter.reconcile();
+        assertThat(countRepository.count()).isEqualTo(2);
+    }
+
+    private static Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        category.setActive(true);
+        category.setCreatedAt(LocalDateTime.now());
+        return category;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.marketplace.service.category;
+
+import com.example.marketplace.repository.jpa.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CategoryTreeManagerTest {
+
+    private final CategoryRepository categoryRepository = mock(CategoryRepository.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    private final List<Object[]> rows = new ArrayList<>();
+    private CategoryTreeManager manager;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(categoryRepository.findAllForTree()).thenReturn(rows);
+        rows.add(new Object[]{1L, "Electronics", null, null, true, null});
+        when(valueOperations.get(CategoryTreeManager.VERSION_KEY)).thenReturn("4");
+        manager = new CategoryTreeManager(categoryRepository, redisTemplate, mock(RedisMessageListenerContainer.class));
+    }
+
+    @Test
+    void catchesUpWithAVersionWhoseMessageWasLost() {
+        assertThat(manager.getTree().getVersion()).isEqualTo(4L);
+
+        rows.add(new Object[]{2L, "Books", null, null, true, null});
+        when(valueOperations.get(CategoryTreeManager.VERSION_KEY)).thenReturn("5");
+        manager.checkVersion();
+
+        assertThat(manager.getTree().getVersion()).isEqualTo(5L);
+        assertThat(manager.getTree().size()).isEqualTo(2);
+    }
+
+    @Test
+    void publishesWritesMadeWhileRedisWasDownOnceItIsBack() {
+        manager.getTree();
+        when(valueOperations.increment(CategoryTreeManager.VERSION_KEY))
+                .thenThrow(new RedisConnectionFailureException("down"))
+                .thenReturn(5L);
+
+        rows.add(new Object[]{2L, "Books", null, null, true, null});
+        manager.categoriesChanged();
+
+        // Reconstruit localement sous la même version, rien de publié
+        assertThat(manager.getTree().getVersion()).isEqualTo(4L);
+        assertThat(manager.getTree().size()).isEqualTo(2);
+        verify(redisTemplate, never()).convertAndSend(CategoryTreeManager.CHANNEL, "5");
+
+        manager.checkVersion();
+
+        assertThat(manager.getTree().getVersion()).isEqualTo(5L);
+        verify(redisTemplate).convertAndSend(CategoryTreeManager.CHANNEL, "5");
+    }
+}
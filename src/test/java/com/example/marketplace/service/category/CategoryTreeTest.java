@@ -0,0 +1,50 @@
+package com.example.marketplace.service.category;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CategoryTreeTest {
+
+    private static CategoryTree.Row row(long id, String name, Long parentId) {
+        return new CategoryTree.Row(id, name, null, null, true, parentId);
+    }
+
+    private final CategoryTree tree = CategoryTree.build(3L, List.of(
+            row(1, "Electronics", null),
+            row(2, "Phones", 1L),
+            row(3, "Laptops", 1L),
+            row(4, "Smartphones", 2L),
+            row(5, "Books", null),
+            row(6, "Orphan", 99L)));
+
+    @Test
+    void buildsRootsAndChildrenInNameOrder() {
+        assertThat(tree.getVersion()).isEqualTo(3L);
+        assertThat(tree.size()).isEqualTo(6);
+        assertThat(tree.getRoots()).extracting(CategoryNode::getName)
+                .containsExactly("Books", "Electronics", "Orphan");
+        assertThat(tree.getChildren(1L)).extracting(CategoryNode::getName)
+                .containsExactly("Laptops", "Phones");
+    }
+
+    @Test
+    void answersAncestryWithIntervals() {
+        assertThat(tree.isAncestor(1L, 4L)).isTrue();
+        assertThat(tree.isAncestor(2L, 4L)).isTrue();
+        assertThat(tree.isAncestor(3L, 4L)).isFalse();
+        assertThat(tree.isAncestor(4L, 4L)).isFalse();
+        assertThat(tree.isAncestorOrSelf(4L, 4L)).isTrue();
+        assertThat(tree.isAncestor(5L, 2L)).isFalse();
+    }
+
+    @Test
+    void precomputesPathsAndSubtrees() {
+        assertThat(tree.getPath(4L)).extracting(CategoryNode::getId).containsExactly(1L, 2L, 4L);
+        assertThat(tree.find(4L)).get().extracting(CategoryNode::getDepth).isEqualTo(2);
+        assertThat(tree.getSubtree(1L)).extracting(CategoryNode::getId).containsExactly(1L, 3L, 2L, 4L);
+        assertThat(tree.getHierarchy()).containsEntry(2L, List.of(4L));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.marketplace.service.search;
+
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexedObjectInformation;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.ByQueryResponse;
+import org.springframework.data.elasticsearch.core.query.DeleteQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.Query;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory stand-in for {@link ElasticsearchOperations} covering the document writes used by
+ * the indexing code: bulk index, single index and delete by id or by ids query. Documents are kept
+ * per index name. Any other operation throws {@link UnsupportedOperationException}.
+ */
+public class FakeElasticsearchOperations {
+
+    private final Map<String, Map<String, Object>> indices = new ConcurrentHashMap<>();
+    private final AtomicInteger bulkRequests = new AtomicInteger();
+    private final AtomicInteger failuresToInject = new AtomicInteger();
+
+    private final ElasticsearchOperations operations = (ElasticsearchOperations) Proxy.newProxyInstance(
+            ElasticsearchOperations.class.getClassLoader(),
+            new Class<?>[]{ElasticsearchOperations.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "bulkIndex" -> bulkIndex(args);
+                case "index" -> index((IndexQuery) args[0], (IndexCoordinates) args[1]);
+                case "delete" -> delete(args);
+                case "toString" -> "FakeElasticsearchOperations" + indices.keySet();
+                case "hashCode" -> System.identityHashCode(proxy);
+                case "equals" -> proxy == args[0];
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    public ElasticsearchOperations operations() {
+        return operations;
+    }
+
+    public Map<String, Object> documents(String index) {
+        return indices.getOrDefault(index, Map.of());
+    }
+
+    public int bulkRequests() {
+        return bulkRequests.get();
+    }
+
+    /**
+     * Makes the next {@code count} write requests fail.
+     */
+    public void failNext(int count) {
+        failuresToInject.set(count);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<IndexedObjectInformation> bulkIndex(Object[] args) {
+        failIfRequested();
+        bulkRequests.incrementAndGet();
+        IndexCoordinates index = (IndexCoordinates) args[args.length - 1];
+        List<IndexQuery> queries = (List<IndexQuery>) args[0];
+        queries.forEach(query -> store(index).put(query.getId(), query.getObject()));
+        return queries.stream()
+                .map(query -> new IndexedObjectInformation(query.getId(), index.getIndexName(), null, null, null))
+                .toList();
+    }
+
+    private String index(IndexQuery query, IndexCoordinates index) {
+        failIfRequested();
+        store(index).put(query.getId(), query.getObject());
+        return query.getId();
+    }
+
+    private Object delete(Object[] args) {
+        failIfRequested();
+        if (args.length == 2 && args[0] instanceof String id && args[1] instanceof IndexCoordinates index) {
+            store(index).remove(id);
+            return id;
+        }
+        if (args.length == 3 && args[0] instanceof Query query && args[2] instanceof IndexCoordinates index) {
+            query.getIds().forEach(store(index)::remove);
+            return ByQueryResponse.builder().withDeleted(query.getIds().size()).build();
+        }
+        if (args.length == 3 && args[0] instanceof DeleteQuery deleteQuery && args[2] instanceof IndexCoordinates index) {
+            Collection<String> ids = deleteQuery.getQuery().getIds();
+            ids.forEach(store(index)::remove);
+            return ByQueryResponse.builder().withDeleted(ids.size()).build();
+        }
+        throw new UnsupportedOperationException("delete" + List.of(args));
+    }
+
+    private Map<String, Object> store(IndexCoordinates index) {
+        return indices.computeIfAbsent(index.getIndexName(), name -> new ConcurrentHashMap<>());
+    }
+
+    private void failIfRequested() {
+        if (failuresToInject.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+            throw new DataAccessResourceFailureException("injected failure");
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LuceneIndexSyncTest {
+
+    @TempDir
+    Path directory;
+
+    private final ProductDocumentMapper mapper = mock(ProductDocumentMapper.class);
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ZSetOperations<String, String> zSetOperations = mock(ZSetOperations.class);
+
+    private LuceneProductIndex index;
+    private LuceneIndexSync sync;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        index = new LuceneProductIndex(directory);
+        sync = new LuceneIndexSync(index, mapper, productRepository, redisTemplate,
+                mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(sync, "batchSize", 100);
+        ReflectionTestUtils.setField(sync, "catchUpOverlap", Duration.ofMinutes(5));
+        ReflectionTestUtils.setField(sync, "deletedRetention", Duration.ofDays(7));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    private void givenExistingProducts(Long... ids) {
+        List<Long> existing = List.of(ids);
+        doAnswer(invocation -> {
+            Collection<Long> requested = invocation.getArgument(0);
+            return requested.stream().filter(existing::contains).map(LuceneIndexSyncTest::document).toList();
+        }).when(mapper).load(any());
+    }
+
+    private static ProductDocument document(Long id) {
+        return ProductDocument.builder().id(id).name("Product " + id).active(true).build();
+    }
+
+    @Test
+    void appliesWritesAnnouncedByOtherNodesOnly() throws IOException {
+        index.apply(List.of(document(6L)), List.of());
+        givenExistingProducts(5L);
+
+        sync.onMessage(message("other-node|5,6"), null);
+        sync.onMessage(message(ReflectionTestUtils.getField(sync, "node") + "|7"), null);
+        sync.sync();
+
+        assertThat(index.count()).isEqualTo(1);
+        verify(mapper).load(List.of(5L, 6L));
+        verify(mapper, never()).load(List.of(7L));
+    }
+
+    @Test
+    void catchesUpOnProductsUpdatedOrDeletedSinceItsCheckpoint() throws IOException {
+        LocalDateTime checkpoint = LocalDateTime.now().minusHours(1);
+        index.apply(List.of(document(6L)), List.of());
+        index.setCaughtUpTo(checkpoint);
+        givenExistingProducts(7L);
+        when(productRepository.findIdsUpdatedSince(eq(checkpoint.minusMinutes(5)), eq(0L), any()))
+                .thenReturn(List.of(7L));
+        when(zSetOperations.rangeByScore(eq(LuceneIndexSync.DELETED_KEY), anyDouble(), anyDouble()))
+                .thenReturn(Set.of("6"));
+
+        sync.catchUp();
+
+        assertThat(index.count()).isEqualTo(1);
+        assertThat(index.getCaughtUpTo()).isAfter(checkpoint);
+    }
+
+    @Test
+    void keepsItsCheckpointWhenTheCatchUpFails() {
+        LocalDateTime checkpoint = LocalDateTime.now().minusHours(1);
+        index.setCaughtUpTo(checkpoint);
+        when(productRepository.findIdsUpdatedSince(any(), anyLong(), any()))
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+        sync.catchUp();
+
+        assertThat(index.getCaughtUpTo()).isEqualTo(checkpoint);
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage(LuceneIndexSync.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
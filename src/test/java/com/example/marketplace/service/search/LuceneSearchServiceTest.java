@@ -0,0 +1,131 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.dto.search.ProductSearchHit;
+import com.example.marketplace.dto.search.ProductSearchRequest;
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.suggest.Completion;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class LuceneSearchServiceTest {
+
+    @TempDir
+    Path directory;
+
+    private LuceneProductIndex index;
+    private LuceneSearchService searchService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        index = new LuceneProductIndex(directory);
+        searchService = new LuceneSearchService(index, mock(ProductDocumentMapper.class),
+                mock(ProductRepository.class), mock(ProductSuggester.class), mock(ProductIndexQueue.class),
+                mock(LuceneIndexSync.class));
+        index.apply(List.of(
+                product(1L, "Chaussures de randonnée", "149.90", 10L, 4.5, 30),
+                product(2L, "Chaussettes en laine", "12.50", 10L, 4.0, 300),
+                product(3L, "Veste imperméable", "89.00", 20L, null, 5),
+                product(4L, "Sac de randonnée", "59.00", 20L, 3.5, 80)), List.of());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        index.close();
+    }
+
+    @Test
+    void matchesFullTextAndFuzzyTerms() {
+        assertThat(ids(searchService.advancedSearch("randonnee", PageRequest.of(0, 10)).getContent()))
+                .containsExactlyInAnyOrder(1L, 4L);
+        assertThat(ids(searchService.fuzzySearch("chausures", PageRequest.of(0, 10)).getContent()))
+                .contains(1L);
+    }
+
+    @Test
+    void filtersByPriceCategoryAndStore() {
+        ProductSearchRequest request = new ProductSearchRequest();
+        request.setCategoryIds(List.of(100L));
+        request.setMaxPrice(new BigDecimal("100"));
+        request.setSort("price_asc");
+
+        assertThat(ids(searchService.searchProducts(request).getResults().getContent()))
+                .containsExactly(2L, 4L);
+        assertThat(ids(searchService.searchByPriceRange(new BigDecimal("50"), new BigDecimal("90"),
+                PageRequest.of(0, 10)).getContent())).containsExactlyInAnyOrder(3L, 4L);
+    }
+
+    @Test
+    void suggestsByPrefixWithMostPopularFirst() throws IOException {
+        assertThat(index.suggest("chau", 5)).extracting("id").containsExactly(2L, 1L);
+        assertThat(index.suggest("rando", 5)).extracting("id").containsExactly(4L, 1L);
+
+        index.apply(List.of(), List.of(2L));
+        assertThat(index.suggest("chau", 5)).extracting("id").containsExactly(1L);
+    }
+
+    @Test
+    void rebuildsIntoANewGenerationKeepingWritesMadeMeanwhile() throws IOException {
+        index.startRebuild();
+        index.apply(List.of(product(4L, "Sac de voyage", "65.00", 20L, 3.5, 80)), List.of());
+        index.addRebuilt(List.of(product(1L, "Chaussures de randonnée", "149.90", 10L, 4.5, 30),
+                product(4L, "Sac de randonnée", "59.00", 20L, 3.5, 80)));
+
+        // Index actuel servi jusqu'à la bascule
+        assertThat(index.count()).isEqualTo(4);
+
+        index.finishRebuild();
+
+        assertThat(index.count()).isEqualTo(2);
+        assertThat(ids(searchService.advancedSearch("voyage", PageRequest.of(0, 10)).getContent()))
+                .containsExactly(4L);
+        assertThat(ids(searchService.advancedSearch("randonnee", PageRequest.of(0, 10)).getContent()))
+                .containsExactly(1L);
+
+        index.close();
+        index = new LuceneProductIndex(directory);
+        assertThat(index.count()).isEqualTo(2);
+    }
+
+    private static ProductDocument product(Long id, String name, String price, Long storeId, Double rating, int sales) {
+        Completion suggest = new Completion(SuggestionSnapshot.inputs(name));
+        suggest.setWeight(ProductDocumentMapper.suggestionWeight(sales, 0));
+        return ProductDocument.builder()
+                .id(id)
+                .name(name)
+                .description(name + " pour la montagne")
+                .price(new BigDecimal(price))
+                .inStock(true)
+                .featured(false)
+                .active(true)
+                .storeId(storeId)
+                .storeName("Store " + storeId)
+                .categoryIds(new ArrayList<>(List.of(id % 2 == 0 ? 100L : 200L)))
+                .categoryTreeIds(new ArrayList<>(List.of(id % 2 == 0 ? 100L : 200L)))
+                .categoryNames(new ArrayList<>(List.of(id % 2 == 0 ? "Accessoires" : "Vêtements")))
+                .rating(rating)
+                .reviewCount(rating != null ? 3 : 0)
+                .salesCount((long) sales)
+                .recentSalesCount(0L)
+                .createdAt(LocalDateTime.now())
+                .nameSuggest(suggest)
+                .build();
+    }
+
+    private static List<Long> ids(List<ProductSearchHit> hits) {
+        return hits.stream().map(ProductSearchHit::getId).toList();
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ProductIndexQueueTest {
+
+    private final FakeElasticsearchOperations elasticsearch = new FakeElasticsearchOperations();
+    private final ProductDocumentMapper mapper = mock(ProductDocumentMapper.class);
+    private final ProductRepository productRepository = mock(ProductRepository.class);
+    private final ProductReindexer reindexer = mock(ProductReindexer.class);
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final SetOperations<String, String> setOperations = mock(SetOperations.class);
+
+    private ProductIndexQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        queue = new ProductIndexQueue(mapper, productRepository, provider(elasticsearch.operations()), provider(reindexer),
+                redisTemplate, mock(SearchResultCache.class), mock(ObjectProvider.class), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(queue, "batchSize", 100);
+        ReflectionTestUtils.setField(queue, "maxRetries", 2);
+        queue.initMetrics();
+    }
+
+    private void givenExistingProducts(Long... ids) {
+        List<Long> existing = List.of(ids);
+        doAnswer(invocation -> {
+            Collection<Long> requested = invocation.getArgument(0);
+            return requested.stream().filter(existing::contains).map(ProductIndexQueueTest::document).toList();
+        }).when(mapper).load(any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ObjectProvider<T> provider(T bean) {
+        ObjectProvider<T> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(bean);
+        when(provider.getObject()).thenReturn(bean);
+        return provider;
+    }
+
+    private static ProductDocument document(Long id) {
+        return ProductDocument.builder().id(id).name("Product " + id).build();
+    }
+
+    @Test
+    void coalescesRepeatedWritesIntoOneBulkRequest() {
+        givenExistingProducts(1L, 2L);
+
+        queue.enqueue(1L);
+        queue.enqueue(1L);
+        queue.enqueue(2L);
+        assertThat(queue.getPendingCount()).isEqualTo(2);
+
+        queue.flush();
+
+        assertThat(elasticsearch.bulkRequests()).isEqualTo(1);
+        assertThat(elasticsearch.documents("products")).containsOnlyKeys("1", "2");
+        assertThat(queue.getPendingCount()).isZero();
+    }
+
+    @Test
+    void deletesProductsMissingFromTheDatabaseAndWritesToTheReindexTarget() {
+        givenExistingProducts(1L);
+        when(reindexer.getTargetIndex()).thenReturn("products_v2");
+        queue.enqueue(1L);
+        queue.flush();
+        assertThat(elasticsearch.documents("products")).containsOnlyKeys("1");
+        assertThat(elasticsearch.documents("products_v2")).containsOnlyKeys("1");
+
+        queue.enqueue(1L);
+        givenExistingProducts();
+        queue.flush();
+
+        assertThat(elasticsearch.documents("products")).isEmpty();
+        assertThat(elasticsearch.documents("products_v2")).isEmpty();
+    }
+
+    @Test
+    void retriesThenDeadLettersFailedProducts() {
+        givenExistingProducts(7L);
+        elasticsearch.failNext(2);
+
+        queue.enqueue(7L);
+        queue.flush();
+        assertThat(queue.getPendingCount()).isEqualTo(1);
+
+        queue.flush();
+        assertThat(queue.getPendingCount()).isZero();
+        verify(setOperations).add(ProductIndexQueue.DEAD_LETTER_KEY, "7");
+        assertThat(elasticsearch.documents("products")).isEmpty();
+    }
+
+    @Test
+    void handsOverProductsLeftAtShutdownToTheOtherNodes() {
+        givenExistingProducts(7L, 8L);
+        elasticsearch.failNext(1);
+
+        queue.enqueue(7L);
+        queue.shutdown();
+        verify(setOperations).add(ProductIndexQueue.HANDOFF_KEY, "7");
+
+        when(setOperations.pop(ProductIndexQueue.HANDOFF_KEY, Long.MAX_VALUE)).thenReturn(List.of("7", "8"));
+        queue.flush();
+
+        assertThat(elasticsearch.documents("products")).containsOnlyKeys("7", "8");
+    }
+
+    @Test
+    void requeuesEveryProductOfAStoreWritePageByPage() {
+        ReflectionTestUtils.setField(queue, "batchSize", 2);
+        givenExistingProducts(1L, 2L, 3L);
+        when(productRepository.findIdsByStoreId(eq(5L), anyLong(), any())).thenAnswer(invocation -> {
+            long afterId = invocation.getArgument(1);
+            return List.of(1L, 2L, 3L).stream().filter(id -> id > afterId).limit(2).toList();
+        });
+
+        queue.enqueueStore(5L);
+        queue.flush();
+
+        assertThat(elasticsearch.documents("products")).containsOnlyKeys("1", "2", "3");
+        verify(productRepository).findIdsByStoreId(eq(5L), eq(2L), any());
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.exception.BadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchCursorTest {
+
+    @Test
+    void roundTripsSortValuesAndPointInTime() {
+        SearchCursor cursor = new SearchCursor(List.of(12.5, 1700000000000L, 42), "pit-id", 123);
+
+        SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+        assertThat(decoded.after()).containsExactly(12.5, 1700000000000L, 42);
+        assertThat(decoded.pit()).isEqualTo("pit-id");
+        assertThat(decoded.fingerprint()).isEqualTo(123);
+    }
+
+    @Test
+    void rejectsTamperedCursors() {
+        assertThatThrownBy(() -> SearchCursor.decode("not-a-cursor"))
+                .isInstanceOf(BadRequestException.class);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.marketplace.service.search;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.example.marketplace.dto.search.ProductSearchRequest;
+import com.example.marketplace.model.search.ProductDocument;
+import com.example.marketplace.repository.jpa.ProductRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.ClientConfiguration;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchClients;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchTemplate;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compares query latencies of the embedded Lucene engine and Elasticsearch on the same synthetic
+ * catalog. Opt-in: {@code -Dsearch.benchmark=true}, plus
+ * {@code -Dsearch.benchmark.elasticsearch-url=localhost:9200} to include Elasticsearch.
+ */
+@EnabledIfSystemProperty(named = "search.benchmark", matches = "true")
+class SearchEngineBenchmark {
+
+    private static final int PRODUCTS = Integer.getInteger("search.benchmark.products", 50_000);
+    private static final int ITERATIONS = Integer.getInteger("search.benchmark.iterations", 500);
+    private static final IndexCoordinates ES_INDEX = IndexCoordinates.of("products-benchmark");
+
+    private static final String[] WORDS = {"chaussures", "veste", "sac", "montre", "lampe", "table", "chaise",
+            "casque", "clavier", "tapis", "robe", "pantalon", "bouilloire", "vélo", "tente", "gourde"};
+    private static final String[] ADJECTIVES = {"rouge", "bleu", "léger", "imperméable", "compact", "premium",
+            "vintage", "sport", "enfant", "bois", "cuir", "inox"};
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void compareEngines() throws Exception {
+        List<ProductDocument> catalog = catalog();
+
+        try (LuceneProductIndex lucene = new LuceneProductIndex(directory)) {
+            long start = System.nanoTime();
+            for (int from = 0; from < catalog.size(); from += 1000) {
+                lucene.apply(catalog.subList(from, Math.min(from + 1000, catalog.size())), List.of());
+            }
+            lucene.commit();
+            System.out.printf("lucene: %d products indexed in %d ms%n",
+                    catalog.size(), (System.nanoTime() - start) / 1_000_000);
+
+            LuceneSearchService search = new LuceneSearchService(lucene, mock(ProductDocumentMapper.class),
+                    mock(ProductRepository.class), mock(ProductSuggester.class), mock(ProductIndexQueue.class),
+                    mock(LuceneIndexSync.class));
+            PageRequest page = PageRequest.of(0, 20);
+            ProductSearchRequest filtered = new ProductSearchRequest();
+            filtered.setQ("sac");
+            filtered.setCategoryIds(List.of(3L));
+            filtered.setMinPrice(new BigDecimal("20"));
+            filtered.setMaxPrice(new BigDecimal("80"));
+
+            report("lucene full-text", () -> search.advancedSearch("veste imperméable", page));
+            report("lucene fuzzy", () -> search.fuzzySearch("chausures", page));
+            report("lucene filtered", () -> search.searchProducts(filtered));
+        }
+
+        String url = System.getProperty("search.benchmark.elasticsearch-url");
+        if (url == null || url.isBlank()) {
+            return;
+        }
+
+        ElasticsearchTemplate operations = new ElasticsearchTemplate(
+                ElasticsearchClients.createImperative(ClientConfiguration.create(url)));
+        IndexOperations indexOps = operations.indexOps(ES_INDEX);
+        if (indexOps.exists()) {
+            indexOps.delete();
+        }
+        indexOps.create(Map.of(), indexOps.createMapping(ProductDocument.class));
+        try {
+            long start = System.nanoTime();
+            for (int from = 0; from < catalog.size(); from += 1000) {
+                operations.save(catalog.subList(from, Math.min(from + 1000, catalog.size())), ES_INDEX);
+            }
+            indexOps.refresh();
+            System.out.printf("elasticsearch: %d products indexed in %d ms%n",
+                    catalog.size(), (System.nanoTime() - start) / 1_000_000);
+
+            report("elasticsearch full-text", () -> operations.search(esQuery(Query.of(q -> q
+                    .multiMatch(m -> m.query("veste imperméable").fields("name^3", "description")))),
+                    ProductDocument.class, ES_INDEX));
+            report("elasticsearch fuzzy", () -> operations.search(esQuery(Query.of(q -> q
+                    .multiMatch(m -> m.query("chausures").fields("name^3", "description").fuzziness("AUTO")))),
+                    ProductDocument.class, ES_INDEX));
+            report("elasticsearch filtered", () -> operations.search(esQuery(Query.of(q -> q.bool(b -> b
+                    .must(m -> m.match(t -> t.field("name").query("sac")))
+                    .filter(f -> f.term(t -> t.field("categoryTreeIds").value(3L)))
+                    .filter(f -> f.range(r -> r.number(n -> n.field("price").gte(20.0).lte(80.0))))))),
+                    ProductDocument.class, ES_INDEX));
+        } finally {
+            indexOps.delete();
+        }
+    }
+
+    private static NativeQuery esQuery(Query query) {
+        return NativeQuery.builder().withQuery(query).withPageable(PageRequest.of(0, 20)).build();
+    }
+
+    private static void report(String name, Callable<?> query) throws Exception {
+        // Préchauffage : JIT, caches du système de fichiers et du moteur
+        for (int i = 0; i < ITERATIONS / 5; i++) {
+            query.call();
+        }
+        long[] nanos = new long[ITERATIONS];
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            query.call();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        System.out.printf("%-26s p50=%7.3f ms  p99=%7.3f ms%n", name,
+                nanos[ITERATIONS / 2] / 1e6, nanos[(int) (ITERATIONS * 0.99)] / 1e6);
+    }
+
+    private static List<ProductDocument> catalog() {
+        Random random = new Random(42);
+        List<ProductDocument> products = new ArrayList<>(PRODUCTS);
+        for (long id = 1; id <= PRODUCTS; id++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + ADJECTIVES[random.nextInt(ADJECTIVES.length)];
+            long categoryId = 1 + random.nextInt(20);
+            products.add(ProductDocument.builder()
+                    .id(id)
+                    .name(name)
+                    .description(name + " " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " livraison rapide")
+                    .price(BigDecimal.valueOf(1 + random.nextInt(50_000), 2))
+                    .inStock(random.nextInt(10) > 0)
+                    .featured(false)
+                    .active(true)
+                    .storeId(1L + random.nextInt(200))
+                    .storeName("Store")
+                    .categoryIds(new ArrayList<>(List.of(categoryId)))
+                    .categoryTreeIds(new ArrayList<>(List.of(categoryId)))
+                    .categoryNames(new ArrayList<>(List.of("Catégorie " + categoryId)))
+                    .rating(1 + random.nextDouble() * 4)
+                    .reviewCount(random.nextInt(100))
+                    .salesCount((long) random.nextInt(1000))
+                    .recentSalesCount(0L)
+                    .createdAt(LocalDateTime.now().minusDays(random.nextInt(365)))
+                    .build());
+        }
+        return products;
+    }
+}
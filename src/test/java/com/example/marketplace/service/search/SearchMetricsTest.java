@@ -0,0 +1,68 @@
+package com.example.marketplace.service.search;
+
+import com.example.marketplace.warmup.WarmupRequests;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SearchMetricsTest {
+
+    private SimpleMeterRegistry registry;
+    private SearchMetrics metrics;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        metrics = new SearchMetrics(registry);
+        ReflectionTestUtils.setField(metrics, "slowQueryThreshold", Duration.ofMinutes(1));
+    }
+
+    @Test
+    void tagsOperationsWithCacheOutcomeAndResultSize() {
+        metrics.record("fuzzy", true, () -> List.of(1, 2, 3), List::size);
+        metrics.record("fuzzy", true, metrics.loader(() -> metrics.engine("elasticsearch", List::of)), List::size);
+
+        assertThat(registry.get("marketplace.search.requests")
+                .tags("operation", "fuzzy", "cache", "hit", "results", "1-10").timer().count()).isEqualTo(1);
+        assertThat(registry.get("marketplace.search.requests")
+                .tags("operation", "fuzzy", "cache", "miss", "results", "0").timer().count()).isEqualTo(1);
+        assertThat(registry.get("marketplace.search.engine.round-trip")
+                .tags("operation", "fuzzy", "engine", "elasticsearch").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void countsSlowOperations() {
+        ReflectionTestUtils.setField(metrics, "slowQueryThreshold", Duration.ZERO);
+
+        metrics.record("advanced", false, () -> List.of(1), List::size);
+
+        assertThat(registry.get("marketplace.search.slow").tag("operation", "advanced").counter().count())
+                .isEqualTo(1.0);
+        assertThat(SearchMetrics.bucket(5_000)).isEqualTo("1000+");
+    }
+
+    @Test
+    void leavesWarmupRequestsOut() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/search/products");
+        request.addHeader(WarmupRequests.HEADER, ReflectionTestUtils.getField(WarmupRequests.class, "TOKEN"));
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+        try {
+            assertThat(metrics.record("fuzzy", false, () -> metrics.engine("elasticsearch", () -> List.of(1)),
+                    List::size)).containsExactly(1);
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+
+        assertThat(registry.find("marketplace.search.requests").timer()).isNull();
+        assertThat(registry.find("marketplace.search.engine.round-trip").timer()).isNull();
+    }
+}
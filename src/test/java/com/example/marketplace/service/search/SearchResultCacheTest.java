@@ -0,0 +1,140 @@
+package com.example.marketplace.service.search;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SearchResultCacheTest {
+
+    private final StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+    @SuppressWarnings("unchecked")
+    private final ValueOperations<String, String> valueOperations = mock(ValueOperations.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private SearchResultCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        cache = new SearchResultCache(redisTemplate, mock(RedisMessageListenerContainer.class), meterRegistry);
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofMinutes(1));
+        ReflectionTestUtils.setField(cache, "maxEntries", 100);
+        ReflectionTestUtils.setField(cache, "topQueries", 10);
+        ReflectionTestUtils.setField(cache, "refreshAhead", Duration.ofSeconds(10));
+        ReflectionTestUtils.setField(cache, "maxRefreshesPerCycle", 10);
+        ReflectionTestUtils.setField(cache, "refreshThreads", 1);
+        ReflectionTestUtils.setField(cache, "maxInvalidations", 100);
+        cache.init();
+    }
+
+    @Test
+    void servesRepeatedSearchesUntilTheIndexChanges() {
+        String key = SearchResultCache.key("name", "  Red   Shoes ", 0, 20);
+
+        assertThat(cache.get(key, true, this::load, this::shown)).isEqualTo("result-1");
+        assertThat(cache.get(SearchResultCache.key("name", "red shoes", 0, 20), true, this::load, this::shown))
+                .isEqualTo("result-1");
+
+        cache.indexChanged();
+
+        assertThat(cache.get(key, true, this::load, this::shown)).isEqualTo("result-2");
+        assertThat(meterRegistry.get("marketplace.search.cache.requests").tag("result", "hit").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("marketplace.search.cache.requests").tag("result", "miss").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void refreshesPopularFirstPagesInTheBackground() {
+        String key = SearchResultCache.key("faceted", "laptop", List.of(3L, 1L), 0, 20);
+        cache.get(key, true, this::load, this::shown);
+        cache.indexChanged();
+
+        cache.refreshPopular();
+
+        awaitLoads(2);
+        assertThat(cache.get(key, true, this::load, this::shown)).isEqualTo("result-2");
+        assertThat(SearchResultCache.key("faceted", "laptop", List.of(1L, 3L), 0, 20)).isEqualTo(key);
+    }
+
+    @Test
+    void skipsPagesNotRequestedSinceTheirLastRefresh() throws InterruptedException {
+        String key = SearchResultCache.key("name", "lamp", 0, 20);
+        cache.get(key, true, this::load, this::shown);
+        cache.indexChanged();
+        cache.refreshPopular();
+        awaitLoads(2);
+
+        cache.indexChanged();
+        cache.refreshPopular();
+        ExecutorService refreshExecutor = (ExecutorService) ReflectionTestUtils.getField(cache, "refreshExecutor");
+        refreshExecutor.shutdown();
+        assertThat(refreshExecutor.awaitTermination(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void onlyDropsPagesShowingAnUpdatedProduct() {
+        String shoes = SearchResultCache.key("name", "shoes", 0, 20);
+        String lamps = SearchResultCache.key("name", "lamps", 0, 20);
+        cache.get(shoes, false, this::load, result -> List.of(1L, 2L));
+        cache.get(lamps, false, this::load, result -> List.of(3L));
+
+        cache.indexChanged(List.of(2L, 4L));
+
+        assertThat(cache.get(shoes, false, this::load, result -> List.of(1L, 2L))).isEqualTo("result-3");
+        assertThat(cache.get(lamps, false, this::load, result -> List.of(3L))).isEqualTo("result-2");
+    }
+
+    @Test
+    void dropsPagesUpdatedOnAnotherNode() {
+        String key = SearchResultCache.key("name", "desk", 0, 20);
+        cache.get(key, false, this::load, this::shown);
+
+        cache.onMessage(new DefaultMessage(SearchResultCache.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "7,1".getBytes(StandardCharsets.UTF_8)), null);
+
+        assertThat(cache.get(key, false, this::load, this::shown)).isEqualTo("result-2");
+    }
+
+    @AfterEach
+    void tearDown() {
+        cache.shutdown();
+    }
+
+    private void awaitLoads(int expected) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (loads.get() < expected && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(loads).hasValue(expected);
+    }
+
+    private String load() {
+        return "result-" + loads.incrementAndGet();
+    }
+
+    private List<Long> shown(String result) {
+        return List.of(1L);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.marketplace.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SuggestionSnapshotTest {
+
+    private final SuggestionSnapshot snapshot = SuggestionSnapshot.build(List.of(
+            new SuggestionSnapshot.Entry(1L, "Apple iPhone 15", 50),
+            new SuggestionSnapshot.Entry(2L, "iPad Air", 80),
+            new SuggestionSnapshot.Entry(3L, "Écouteurs iPhone", 10),
+            new SuggestionSnapshot.Entry(4L, "Imprimante", 30)), 10);
+
+    @Test
+    void matchesNamePrefixesAndWordStartsByDescendingWeight() {
+        assertThat(snapshot.lookup("i", 10)).extracting(SuggestionSnapshot.Entry::id)
+                .containsExactly(2L, 1L, 4L, 3L);
+        assertThat(snapshot.lookup("iph", 10)).extracting(SuggestionSnapshot.Entry::id)
+                .containsExactly(1L, 3L);
+        assertThat(snapshot.lookup("iph", 1)).extracting(SuggestionSnapshot.Entry::id)
+                .containsExactly(1L);
+    }
+
+    @Test
+    void normalizesCaseAccentsAndSpaces() {
+        assertThat(SuggestionSnapshot.normalize("  Écouteurs   IPHONE ")).isEqualTo("ecouteurs iphone");
+        assertThat(snapshot.lookup(SuggestionSnapshot.normalize("Ecou"), 5)).extracting(SuggestionSnapshot.Entry::id)
+                .containsExactly(3L);
+        assertThat(snapshot.lookup("zz", 5)).isEmpty();
+    }
+
+    @Test
+    void flagsPrefixRangesTooLongToScan() {
+        List<SuggestionSnapshot.Entry> lamps = new ArrayList<>();
+        for (long id = 1; id <= 6_000; id++) {
+            // Les plus lourdes en fin d'ordre alphabétique, au-delà de la limite de parcours
+            lamps.add(new SuggestionSnapshot.Entry(id, String.format("Lampe %04d", id), (int) id));
+        }
+        SuggestionSnapshot large = SuggestionSnapshot.build(lamps, 10);
+
+        SuggestionSnapshot.Matches matches = large.match("lampe", 3);
+        assertThat(matches.truncated()).isTrue();
+        assertThat(matches.entries()).extracting(SuggestionSnapshot.Entry::id).doesNotContain(6_000L);
+        assertThat(large.match("lampe 59", 3).truncated()).isFalse();
+        assertThat(snapshot.match("iph", 10).truncated()).isFalse();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.marketplace.util;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpCachingUtilTest {
+
+    private final CacheControl cacheControl = HttpCachingUtil.publicFor(Duration.ofSeconds(30));
+
+    @Test
+    void matchingETagAnswersNotModifiedWithoutBuildingTheBody() {
+        String etag = HttpCachingUtil.etag(3L, "store", 7L);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/stores/3");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicInteger built = new AtomicInteger();
+
+        ResponseEntity<String> result = HttpCachingUtil.conditional(new ServletWebRequest(request, response),
+                etag, -1L, cacheControl, () -> "body" + built.incrementAndGet());
+
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        assertThat(result.getHeaders().getCacheControl()).isEqualTo("max-age=30, public");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+        assertThat(built).hasValue(0);
+    }
+
+    @Test
+    void changedPartsAnswerTheFullBody() {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/stores/3");
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, HttpCachingUtil.etag(3L, "store", 7L));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        String etag = HttpCachingUtil.etag(3L, "store", 8L);
+
+        ResponseEntity<String> result = HttpCachingUtil.conditional(new ServletWebRequest(request, response),
+                etag, -1L, cacheControl, () -> "body");
+
+        assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(result.getBody()).isEqualTo("body");
+        assertThat(response.getHeader(HttpHeaders.ETAG)).isEqualTo(etag);
+    }
+}